@@ -36,6 +36,7 @@ import com.example.appqlct.fragment.user.ProfileFragment;
 import com.example.appqlct.fragment.user.RecurringExpensesFragment;
 import com.example.appqlct.fragment.user.ReportFragment;
 import com.example.appqlct.fragment.user.TransactionListFragment;
+import com.example.appqlct.fragment.user.WalletFragment;
 import com.example.appqlct.helper.CategoryInitializer;
 import com.example.appqlct.helper.FirebaseHelper;
 import com.example.appqlct.helper.NotificationHelper;
@@ -286,6 +287,7 @@ public class MainActivity extends AppCompatActivity
         // Menu User - chỉ hiển thị nếu KHÔNG phải admin
         menu.findItem(R.id.nav_dashboard).setVisible(!isAdmin);
         menu.findItem(R.id.nav_transactions).setVisible(!isAdmin);
+        menu.findItem(R.id.nav_wallets).setVisible(!isAdmin);
         menu.findItem(R.id.nav_budget).setVisible(!isAdmin);
         menu.findItem(R.id.nav_report).setVisible(!isAdmin);
         menu.findItem(R.id.nav_profile).setVisible(!isAdmin);
@@ -538,6 +540,10 @@ public class MainActivity extends AppCompatActivity
             if (isAdmin) return false; // Admin không được truy cập
             selectedFragment = new TransactionListFragment();
             title = getString(R.string.nav_transactions);
+        } else if (id == R.id.nav_wallets) {
+            if (isAdmin) return false; // Admin không được truy cập
+            selectedFragment = new WalletFragment();
+            title = getString(R.string.nav_wallets);
         } else if (id == R.id.nav_budget) {
             if (isAdmin) return false; // Admin không được truy cập
             selectedFragment = new BudgetFragment();
@@ -692,10 +698,11 @@ public class MainActivity extends AppCompatActivity
 
     /**
      * Tự động khởi tạo danh mục mặc định nếu chưa có
-     * Chạy ngầm khi app khởi động để đảm bảo luôn có danh mục cho người dùng
+     * Nạp bundle danh mục mặc định vào cache local (một lần cho mỗi phiên bản danh mục),
+     * không đọc/ghi categories trên server khi app khởi động
      */
     private void initializeDefaultCategoriesIfNeeded() {
-        categoryInitializer.initializeDefaultCategories(new CategoryInitializer.OnInitializationCompleteListener() {
+        categoryInitializer.loadDefaultCategoriesBundle(this, new CategoryInitializer.OnInitializationCompleteListener() {
             @Override
             public void onSuccess(String message) {
                 // Khởi tạo thành công hoặc đã có sẵn danh mục
@@ -243,6 +243,9 @@ public class ResetPasswordActivity extends AppCompatActivity {
                                     "Mật khẩu đã được đặt lại thành công!", 
                                     Toast.LENGTH_LONG).show();
                             
+                            // Mã OTP đã dùng xong, xóa luôn thay vì chờ TTL
+                            otpHelper.cleanupExpiredOTPs(email);
+                            
                             // Quay về màn hình đăng nhập
                             finish();
                         } else {
@@ -47,7 +47,7 @@ public class CategoryViewAdapter extends RecyclerView.Adapter<CategoryViewAdapte
     }
     
     /**
-     * Cập nhật thông tin ngân sách và chi tiêu cho các categories
+     * Cập nhật thông tin ngân sách và chi tiêu cho các categories (key là category ID)
      */
     public void updateBudgetData(Map<String, Double> budgets, Map<String, Double> spent) {
         this.categoryBudgets = budgets != null ? budgets : new HashMap<>();
@@ -129,9 +129,9 @@ public class CategoryViewAdapter extends RecyclerView.Adapter<CategoryViewAdapte
                 cardView.setCardBackgroundColor(ContextCompat.getColor(itemView.getContext(), R.color.expense_bg));
                 
                 // Display budget information for expense categories
-                String categoryName = category.getName();
-                Double budget = categoryBudgets.get(categoryName);
-                Double spent = categorySpent.getOrDefault(categoryName, 0.0);
+                // Ngân sách và chi tiêu được khóa theo category ID
+                Double budget = categoryBudgets.get(category.getId());
+                Double spent = categorySpent.getOrDefault(category.getId(), 0.0);
                 
                 if (budget != null && budget > 0) {
                     hasBudget = true;
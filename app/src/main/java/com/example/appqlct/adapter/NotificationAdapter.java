@@ -99,7 +99,7 @@ public class NotificationAdapter extends RecyclerView.Adapter<NotificationAdapte
             int iconResId;
             int iconTintColor;
             
-            if ("budget_warning".equals(type)) {
+            if ("budget_warning".equals(type) || "unusual_expense".equals(type)) {
                 iconBgResId = R.drawable.bg_circle_warning;
                 iconResId = R.drawable.ic_notification_warning;
                 iconTintColor = ContextCompat.getColor(itemView.getContext(), R.color.white);
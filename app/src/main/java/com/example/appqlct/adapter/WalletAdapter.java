@@ -0,0 +1,87 @@
+package com.example.appqlct.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.appqlct.R;
+import com.example.appqlct.helper.WalletBalanceIndex;
+import com.example.appqlct.model.Wallet;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * WalletAdapter - Adapter cho RecyclerView hiển thị danh sách ví và số dư tại một ngày
+ */
+public class WalletAdapter extends RecyclerView.Adapter<WalletAdapter.ViewHolder> {
+    private List<Wallet> wallets;
+    private WalletBalanceIndex balanceIndex;
+    private Date balanceDate;
+
+    public WalletAdapter(List<Wallet> wallets) {
+        this.wallets = wallets;
+        this.balanceDate = new Date();
+    }
+
+    /**
+     * Cập nhật chỉ mục số dư và ngày cần hiển thị số dư
+     */
+    public void updateBalances(WalletBalanceIndex balanceIndex, Date balanceDate) {
+        this.balanceIndex = balanceIndex;
+        this.balanceDate = balanceDate;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_wallet, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Wallet wallet = wallets.get(position);
+        holder.tvWalletName.setText(wallet.getName());
+        holder.tvWalletType.setText(typeLabel(holder.itemView, wallet.getType()));
+
+        double balance = balanceIndex != null
+                ? balanceIndex.getBalanceAt(wallet, balanceDate) : wallet.getInitialBalance();
+        holder.tvWalletBalance.setText(String.format(Locale.getDefault(), "%,.0f VND", balance));
+        holder.tvWalletBalance.setTextColor(ContextCompat.getColor(holder.itemView.getContext(),
+                balance < 0 ? R.color.expense_color : R.color.income_color));
+    }
+
+    @Override
+    public int getItemCount() {
+        return wallets.size();
+    }
+
+    private static String typeLabel(View view, String type) {
+        if (Wallet.TYPE_BANK.equals(type)) {
+            return view.getContext().getString(R.string.wallet_type_bank);
+        } else if (Wallet.TYPE_CARD.equals(type)) {
+            return view.getContext().getString(R.string.wallet_type_card);
+        }
+        return view.getContext().getString(R.string.wallet_type_cash);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView tvWalletName, tvWalletType, tvWalletBalance;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvWalletName = itemView.findViewById(R.id.tvWalletName);
+            tvWalletType = itemView.findViewById(R.id.tvWalletType);
+            tvWalletBalance = itemView.findViewById(R.id.tvWalletBalance);
+        }
+    }
+}
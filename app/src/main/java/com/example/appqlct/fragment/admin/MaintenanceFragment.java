@@ -14,23 +14,34 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.appqlct.R;
+import com.example.appqlct.helper.BackupExporter;
+import com.example.appqlct.helper.BackupImporter;
+import com.example.appqlct.helper.CategoryIdMigration;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.TransactionArchiver;
+import com.example.appqlct.model.Category;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.QuerySnapshot;
 
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
  * MaintenanceFragment - Bảo trì hệ thống (chỉ Admin)
- * Các chức năng: xóa dữ liệu cũ, backup, restore
+ * Các chức năng: xóa dữ liệu cũ, lưu trữ dữ liệu cũ, backup, restore, chuyển dữ liệu sang category ID
  */
 public class MaintenanceFragment extends Fragment {
-    private Button btnClearOldData, btnBackup, btnRestore;
+    private Button btnClearOldData, btnArchiveOldData, btnBackup, btnRestore, btnMigrateCategoryIds;
     private FirebaseHelper firebaseHelper;
+    private BackupExporter backupExporter;
+    private BackupImporter backupImporter;
+    private CategoryIdMigration categoryIdMigration;
+    private TransactionArchiver transactionArchiver;
     private ProgressDialog progressDialog;
 
     @Nullable
@@ -75,12 +86,16 @@ public class MaintenanceFragment extends Fragment {
 
     private void initViews(View view) {
         btnClearOldData = view.findViewById(R.id.btnClearOldData);
+        btnArchiveOldData = view.findViewById(R.id.btnArchiveOldData);
         btnBackup = view.findViewById(R.id.btnBackup);
         btnRestore = view.findViewById(R.id.btnRestore);
+        btnMigrateCategoryIds = view.findViewById(R.id.btnMigrateCategoryIds);
 
         btnClearOldData.setOnClickListener(v -> showClearOldDataDialog());
+        btnArchiveOldData.setOnClickListener(v -> showArchiveOldDataDialog());
         btnBackup.setOnClickListener(v -> backupData());
         btnRestore.setOnClickListener(v -> restoreData());
+        btnMigrateCategoryIds.setOnClickListener(v -> showMigrateCategoryIdsDialog());
     }
 
     private void initHelpers() {
@@ -134,35 +149,264 @@ public class MaintenanceFragment extends Fragment {
     }
 
     /**
-     * Backup dữ liệu (xuất thống kê)
+     * Xác nhận lưu trữ dữ liệu cũ: gộp giao dịch các tháng cũ thành archive thay vì xóa
+     */
+    private void showArchiveOldDataDialog() {
+        if (!isAdded() || getContext() == null) return;
+
+        new AlertDialog.Builder(getContext())
+                .setTitle(getString(R.string.archive_old_data))
+                .setMessage("Gộp giao dịch cũ hơn " + TransactionArchiver.ARCHIVE_AFTER_MONTHS +
+                        " tháng thành bản lưu trữ theo từng tháng.\n\n" +
+                        "Dữ liệu vẫn hiển thị trong báo cáo nhưng không còn sửa/xóa được từng giao dịch.")
+                .setPositiveButton("Chạy", (dialog, which) -> startArchiveOldData())
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    private void startArchiveOldData() {
+        if (!isAdded() || getContext() == null) return;
+
+        showProgressDialog("Đang lưu trữ dữ liệu cũ...");
+        transactionArchiver = new TransactionArchiver();
+        transactionArchiver.run(new TransactionArchiver.OnArchiveProgressListener() {
+            @Override
+            public void onProgress(String month, int archivedTransactions) {
+                if (progressDialog != null && progressDialog.isShowing()) {
+                    progressDialog.setMessage("Đã xử lý tháng " + month + ": " +
+                            archivedTransactions + " giao dịch đã lưu trữ");
+                }
+            }
+
+            @Override
+            public void onCompleted(int archivedTransactions, int archiveDocuments, int skippedArchives) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+
+                String message = "Đã lưu trữ " + archivedTransactions + " giao dịch vào " +
+                        archiveDocuments + " bản lưu trữ.";
+                if (skippedArchives > 0) {
+                    message += "\n" + skippedArchives + " tháng quá lớn để lưu trữ được giữ nguyên.";
+                }
+                new AlertDialog.Builder(getContext())
+                        .setTitle("Hoàn tất")
+                        .setMessage(message)
+                        .setPositiveButton("Đóng", null)
+                        .show();
+            }
+
+            @Override
+            public void onError(String error) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+                Toast.makeText(getContext(), "Lỗi: " + error, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Backup dữ liệu: xuất toàn bộ collections ra file NDJSON nén gzip trên thiết bị
+     * Nếu có bản xuất dang dở, hỏi admin muốn tiếp tục hay tạo bản mới
      */
     private void backupData() {
         if (!isAdded() || getContext() == null) return;
-        
+
+        File incomplete = BackupExporter.findIncompleteExport(getContext());
+        if (incomplete == null) {
+            startExport(null);
+            return;
+        }
+
+        new AlertDialog.Builder(getContext())
+                .setTitle("Sao lưu dang dở")
+                .setMessage("Có bản sao lưu chưa hoàn tất (" + incomplete.getName() + ").\n\n" +
+                           "Bạn muốn tiếp tục bản này hay tạo bản sao lưu mới?")
+                .setPositiveButton("Tiếp tục", (dialog, which) -> startExport(incomplete))
+                .setNegativeButton("Tạo mới", (dialog, which) -> startExport(null))
+                .show();
+    }
+
+    /**
+     * Chạy xuất dữ liệu và cập nhật tiến độ lên progress dialog
+     * @param resumeDir thư mục bản xuất cần tiếp tục, null để tạo bản mới
+     */
+    private void startExport(@Nullable File resumeDir) {
+        if (!isAdded() || getContext() == null) return;
+
         showProgressDialog("Đang sao lưu dữ liệu...");
-        
-        // Lấy tất cả dữ liệu để backup
-        firebaseHelper.getAllUsers(new FirebaseHelper.OnUsersLoadedListener() {
+
+        backupExporter = new BackupExporter(getContext());
+        BackupExporter.OnExportProgressListener listener = new BackupExporter.OnExportProgressListener() {
+            @Override
+            public void onProgress(String collection, long collectionCount, long totalCount) {
+                if (progressDialog != null && progressDialog.isShowing()) {
+                    progressDialog.setMessage("Đang sao lưu " + collection + ": " + collectionCount +
+                            "\nTổng cộng: " + totalCount + " bản ghi");
+                }
+            }
+
+            @Override
+            public void onCompleted(File backupDir, long totalCount) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+
+                SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.getDefault());
+                String backupInfo = "BACKUP DỮ LIỆU\n" +
+                                  "Thời gian: " + sdf.format(new Date()) + "\n\n" +
+                                  "Tổng số bản ghi: " + totalCount + "\n\n" +
+                                  "Thư mục: " + backupDir.getAbsolutePath();
+
+                new AlertDialog.Builder(getContext())
+                        .setTitle("Sao lưu thành công")
+                        .setMessage(backupInfo)
+                        .setPositiveButton("Đóng", null)
+                        .show();
+            }
+
             @Override
-            public void onUsersLoaded(java.util.List<com.example.appqlct.model.User> users) {
-                firebaseHelper.getAllTransactions(new FirebaseHelper.OnTransactionsLoadedListener() {
+            public void onError(String error) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+                Toast.makeText(getContext(), "Lỗi: " + error, Toast.LENGTH_SHORT).show();
+            }
+        };
+
+        if (resumeDir != null) {
+            backupExporter.resumeExport(resumeDir, listener);
+        } else {
+            backupExporter.startNewExport(listener);
+        }
+    }
+
+    /**
+     * Restore dữ liệu: chọn một bản sao lưu đã hoàn tất trên thiết bị để khôi phục
+     */
+    private void restoreData() {
+        if (!isAdded() || getContext() == null) return;
+
+        List<File> backups = BackupImporter.listCompletedBackups(getContext());
+        if (backups.isEmpty()) {
+            new AlertDialog.Builder(getContext())
+                    .setTitle("Khôi phục dữ liệu")
+                    .setMessage("Chưa có bản sao lưu nào trên thiết bị.\n\n" +
+                               "Vui lòng tạo bản sao lưu trước.")
+                    .setPositiveButton("Đóng", null)
+                    .show();
+            return;
+        }
+
+        String[] names = new String[backups.size()];
+        for (int i = 0; i < backups.size(); i++) {
+            names[i] = backups.get(i).getName();
+        }
+
+        new AlertDialog.Builder(getContext())
+                .setTitle("Chọn bản sao lưu")
+                .setItems(names, (dialog, which) -> showRestoreConfirmDialog(backups.get(which)))
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    /**
+     * Xác nhận trước khi ghi đè dữ liệu bằng bản sao lưu
+     */
+    private void showRestoreConfirmDialog(File backupDir) {
+        if (!isAdded() || getContext() == null) return;
+
+        new AlertDialog.Builder(getContext())
+                .setTitle("Khôi phục dữ liệu")
+                .setMessage("Khôi phục từ bản sao lưu " + backupDir.getName() + "?\n\n" +
+                           "Các bản ghi cùng ID sẽ bị ghi đè bằng dữ liệu trong bản sao lưu.")
+                .setPositiveButton("Khôi phục", (dialog, which) -> startRestore(backupDir))
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    private void startRestore(File backupDir) {
+        if (!isAdded() || getContext() == null) return;
+
+        showProgressDialog("Đang khôi phục dữ liệu...");
+
+        backupImporter = new BackupImporter();
+        backupImporter.restore(backupDir, new BackupImporter.OnImportProgressListener() {
+            @Override
+            public void onProgress(long written, long total) {
+                if (progressDialog != null && progressDialog.isShowing()) {
+                    progressDialog.setMessage("Đang khôi phục: " + written + "/" + total + " bản ghi");
+                }
+            }
+
+            @Override
+            public void onCompleted(long written, long skipped) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+
+                new AlertDialog.Builder(getContext())
+                        .setTitle("Khôi phục thành công")
+                        .setMessage("Đã khôi phục " + written + " bản ghi.\n" +
+                                   "Bỏ qua " + skipped + " bản ghi không hợp lệ.")
+                        .setPositiveButton("Đóng", null)
+                        .show();
+            }
+
+            @Override
+            public void onError(String error) {
+                hideProgressDialog();
+                if (!isAdded() || getContext() == null) return;
+                Toast.makeText(getContext(), "Lỗi: " + error, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Xác nhận chuyển giao dịch/ngân sách cũ (lưu tên category) sang categoryId
+     */
+    private void showMigrateCategoryIdsDialog() {
+        if (!isAdded() || getContext() == null) return;
+
+        categoryIdMigration = new CategoryIdMigration(requireContext());
+        String message = "Gán categoryId cho các giao dịch và ngân sách cũ đang lưu theo tên danh mục.";
+        if (categoryIdMigration.hasPendingRun()) {
+            message += "\n\nLần chạy trước chưa hoàn tất, sẽ tiếp tục từ vị trí đã dừng.";
+        }
+
+        new AlertDialog.Builder(getContext())
+                .setTitle(getString(R.string.migrate_category_ids))
+                .setMessage(message)
+                .setPositiveButton("Chạy", (dialog, which) -> startCategoryIdMigration())
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    private void startCategoryIdMigration() {
+        if (!isAdded() || getContext() == null) return;
+
+        showProgressDialog("Đang tải danh mục...");
+        firebaseHelper.getAllCategories(new FirebaseHelper.OnCategoriesLoadedListener() {
+            @Override
+            public void onCategoriesLoaded(List<Category> categories) {
+                if (!isAdded() || getContext() == null) {
+                    hideProgressDialog();
+                    return;
+                }
+                categoryIdMigration.run(categories, new CategoryIdMigration.OnMigrationProgressListener() {
+                    @Override
+                    public void onProgress(String collection, int scanned, int updated) {
+                        if (progressDialog != null && progressDialog.isShowing()) {
+                            progressDialog.setMessage("Đang xử lý " + collection + ": đã quét " + scanned +
+                                    ", đã cập nhật " + updated);
+                        }
+                    }
+
                     @Override
-                    public void onTransactionsLoaded(java.util.List<com.example.appqlct.model.Transaction> transactions) {
+                    public void onCompleted(int updated, int unresolved) {
                         hideProgressDialog();
                         if (!isAdded() || getContext() == null) return;
-                        
-                        // Tạo thông tin backup
-                        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.getDefault());
-                        String backupInfo = "BACKUP DỮ LIỆU\n" +
-                                          "Thời gian: " + sdf.format(new Date()) + "\n\n" +
-                                          "Tổng số người dùng: " + users.size() + "\n" +
-                                          "Tổng số giao dịch: " + transactions.size() + "\n\n" +
-                                          "Dữ liệu đã được lưu trên Firebase.\n" +
-                                          "Để khôi phục, vui lòng liên hệ quản trị viên hệ thống.";
-                        
+
                         new AlertDialog.Builder(getContext())
-                                .setTitle("Sao lưu thành công")
-                                .setMessage(backupInfo)
+                                .setTitle("Hoàn tất")
+                                .setMessage("Đã cập nhật " + updated + " bản ghi.\n" +
+                                           unresolved + " bản ghi không tìm thấy danh mục (đã bị xóa) được giữ nguyên.")
                                 .setPositiveButton("Đóng", null)
                                 .show();
                     }
@@ -185,20 +429,6 @@ public class MaintenanceFragment extends Fragment {
         });
     }
 
-    /**
-     * Restore dữ liệu (thông báo)
-     */
-    private void restoreData() {
-        if (!isAdded() || getContext() == null) return;
-        
-        new AlertDialog.Builder(getContext())
-                .setTitle("Khôi phục dữ liệu")
-                .setMessage("Chức năng khôi phục dữ liệu từ backup cần được thực hiện từ Firebase Console.\n\n" +
-                           "Vui lòng liên hệ quản trị viên hệ thống để được hỗ trợ.")
-                .setPositiveButton("Đóng", null)
-                .show();
-    }
-
     private void showProgressDialog(String message) {
         if (!isAdded() || getContext() == null) return;
         progressDialog = new ProgressDialog(getContext());
@@ -216,6 +446,19 @@ public class MaintenanceFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // Dừng sao lưu đang chạy, trạng thái được giữ lại để tiếp tục lần sau
+        if (backupExporter != null) {
+            backupExporter.cancel();
+        }
+        if (backupImporter != null) {
+            backupImporter.cancel();
+        }
+        if (categoryIdMigration != null) {
+            categoryIdMigration.cancel();
+        }
+        if (transactionArchiver != null) {
+            transactionArchiver.cancel();
+        }
         hideProgressDialog();
     }
 }
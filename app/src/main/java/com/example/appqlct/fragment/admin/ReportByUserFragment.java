@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.appqlct.R;
 import com.example.appqlct.adapter.MonthReportAdapter;
 import com.example.appqlct.adapter.UserReportAdapter;
+import com.example.appqlct.helper.CategoryIndex;
 import com.example.appqlct.helper.FirebaseHelper;
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
@@ -34,8 +35,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
 
 /**
  * ReportByUserFragment - Fragment hiển thị báo cáo theo từng người dùng
@@ -187,10 +186,10 @@ public class ReportByUserFragment extends Fragment {
      * Load transactions của một user và tính toán thống kê
      */
     private void loadUserTransactions(User user, Runnable onComplete) {
-        // Load budgets và transactions cùng lúc để tính tổng ngân sách đúng
+        // Load budgets (tổng hợp theo năm, mỗi năm một document) và transactions để tính tổng ngân sách đúng
         String userId = user.getUid();
         Log.d("ReportByUser", "Loading budgets for user: " + userId + " (name: " + user.getName() + ")");
-        firebaseHelper.getUserBudgets(userId, new FirebaseHelper.OnBudgetsLoadedListener() {
+        firebaseHelper.getUserBudgetSummaries(userId, new FirebaseHelper.OnBudgetsLoadedListener() {
             @Override
             public void onBudgetsLoaded(List<Budget> budgets) {
                 if (!isAdded() || getContext() == null) return;
@@ -203,18 +202,13 @@ public class ReportByUserFragment extends Fragment {
                 }
                 
                 // Sau đó load transactions để tính tổng ngân sách dựa trên các tháng có dữ liệu
-                firebaseHelper.getUserTransactions(user.getUid(), new FirebaseHelper.OnTransactionsLoadedListener() {
+                firebaseHelper.getUserTransactionsIncludingArchives(user.getUid(), new FirebaseHelper.OnTransactionsLoadedListener() {
                     @Override
                     public void onTransactionsLoaded(List<Transaction> transactions) {
                         if (!isAdded() || getContext() == null) return;
                         
-                        // Tạo Set chứa tên các expense categories hợp lệ để kiểm tra
-                        Set<String> validCategoryNames = new HashSet<>();
-                        for (Category cat : expenseCategories) {
-                            if (cat.getName() != null) {
-                                validCategoryNames.add(cat.getName());
-                            }
-                        }
+                        // Index các expense categories hợp lệ theo ID
+                        CategoryIndex categoryIndex = new CategoryIndex(expenseCategories);
                         
                         // Loại bỏ budgets duplicate: nếu có nhiều budgets cho cùng category, month, year
                         // thì chỉ lấy budget mới nhất (dựa vào updatedAt hoặc createdAt)
@@ -230,16 +224,17 @@ public class ReportByUserFragment extends Fragment {
                             }
                             
                             // CHỈ tính budgets cho các expense categories hợp lệ
+                            String categoryId = categoryIndex.idOf(budget);
                             String categoryName = budget.getCategoryName();
-                            if (categoryName == null || !validCategoryNames.contains(categoryName)) {
+                            if (categoryIndex.get(categoryId) == null) {
                                 Log.d("ReportByUser", String.format("SKIP budget - category không hợp lệ: %s (user: %s)", 
                                     categoryName, userId));
                                 continue;
                             }
                             
-                            // Tạo key duy nhất: categoryName_month_year
+                            // Tạo key duy nhất: categoryId_month_year
                             String uniqueKey = String.format(Locale.getDefault(), "%s_%04d-%02d", 
-                                categoryName, year, month);
+                                categoryId, year, month);
                             
                             Budget existing = uniqueBudgets.get(uniqueKey);
                             if (existing == null) {
@@ -318,13 +313,8 @@ public class ReportByUserFragment extends Fragment {
                     @Override
                     public void onError(String error) {
                         // Nếu lỗi load transactions, tính tổng budget từ budgets hợp lệ
-                        // Tạo Set chứa tên các expense categories hợp lệ
-                        Set<String> validCategoryNames = new HashSet<>();
-                        for (Category cat : expenseCategories) {
-                            if (cat.getName() != null) {
-                                validCategoryNames.add(cat.getName());
-                            }
-                        }
+                        // Index các expense categories hợp lệ theo ID
+                        CategoryIndex categoryIndex = new CategoryIndex(expenseCategories);
                         
                         // Loại bỏ duplicate và chỉ tính budgets hợp lệ
                         Map<String, Budget> uniqueBudgets = new HashMap<>();
@@ -336,13 +326,13 @@ public class ReportByUserFragment extends Fragment {
                                 continue;
                             }
                             
-                            String categoryName = budget.getCategoryName();
-                            if (categoryName == null || !validCategoryNames.contains(categoryName)) {
+                            String categoryId = categoryIndex.idOf(budget);
+                            if (categoryIndex.get(categoryId) == null) {
                                 continue;
                             }
                             
                             String uniqueKey = String.format(Locale.getDefault(), "%s_%04d-%02d", 
-                                categoryName, year, month);
+                                categoryId, year, month);
                             
                             Budget existing = uniqueBudgets.get(uniqueKey);
                             if (existing == null) {
@@ -376,7 +366,7 @@ public class ReportByUserFragment extends Fragment {
             @Override
             public void onError(String error) {
                 // Nếu lỗi load budgets, chỉ load transactions
-                firebaseHelper.getUserTransactions(user.getUid(), new FirebaseHelper.OnTransactionsLoadedListener() {
+                firebaseHelper.getUserTransactionsIncludingArchives(user.getUid(), new FirebaseHelper.OnTransactionsLoadedListener() {
                     @Override
                     public void onTransactionsLoaded(List<Transaction> transactions) {
                         if (!isAdded() || getContext() == null) return;
@@ -468,8 +458,8 @@ public class ReportByUserFragment extends Fragment {
         RecyclerView recyclerViewMonths = dialogView.findViewById(R.id.recyclerViewMonths);
         recyclerViewMonths.setLayoutManager(new LinearLayoutManager(requireContext()));
         
-        // Load budgets trước
-        firebaseHelper.getUserBudgets(userId, new FirebaseHelper.OnBudgetsLoadedListener() {
+        // Load budgets trước (tổng hợp theo năm thay vì toàn bộ lịch sử budgets)
+        firebaseHelper.getUserBudgetSummaries(userId, new FirebaseHelper.OnBudgetsLoadedListener() {
             @Override
             public void onBudgetsLoaded(List<Budget> budgets) {
                 if (!isAdded() || getContext() == null) return;
@@ -477,13 +467,8 @@ public class ReportByUserFragment extends Fragment {
                 // DEBUG: Log số lượng budgets
                 Log.d("ReportByUser", "User: " + userId + " - Số lượng budgets: " + budgets.size());
                 
-                // Tạo Set chứa tên các expense categories hợp lệ để kiểm tra
-                Set<String> validCategoryNames = new HashSet<>();
-                for (Category cat : expenseCategories) {
-                    if (cat.getName() != null) {
-                        validCategoryNames.add(cat.getName());
-                    }
-                }
+                // Index các expense categories hợp lệ theo ID
+                CategoryIndex categoryIndex = new CategoryIndex(expenseCategories);
                 
                 // Loại bỏ budgets duplicate: nếu có nhiều budgets cho cùng category, month, year
                 // thì chỉ lấy budget mới nhất (dựa vào updatedAt hoặc createdAt)
@@ -504,16 +489,17 @@ public class ReportByUserFragment extends Fragment {
                     }
                     
                     // CHỈ tính budgets cho các expense categories hợp lệ
+                    String categoryId = categoryIndex.idOf(budget);
                     String categoryName = budget.getCategoryName();
-                    if (categoryName == null || !validCategoryNames.contains(categoryName)) {
+                    if (categoryIndex.get(categoryId) == null) {
                         Log.d("ReportByUser", String.format("SKIP budget - category không hợp lệ: %s (user: %s)", 
                             categoryName, userId));
                         continue;
                     }
                     
-                    // Tạo key duy nhất: categoryName_month_year
+                    // Tạo key duy nhất: categoryId_month_year
                     String uniqueKey = String.format(Locale.getDefault(), "%s_%04d-%02d", 
-                        categoryName, year, month);
+                        categoryId, year, month);
                     
                     Budget existing = uniqueBudgets.get(uniqueKey);
                     if (existing == null) {
@@ -560,7 +546,7 @@ public class ReportByUserFragment extends Fragment {
                 }
                 
                 // Sau đó load transactions
-                firebaseHelper.getUserTransactions(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
+                firebaseHelper.getUserTransactionsIncludingArchives(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
                     @Override
                     public void onTransactionsLoaded(List<Transaction> transactions) {
                         if (!isAdded() || getContext() == null) return;
@@ -710,7 +696,7 @@ public class ReportByUserFragment extends Fragment {
             public void onError(String error) {
                 if (!isAdded() || getContext() == null) return;
                 // Nếu lỗi load budgets, vẫn load transactions với budget = 0
-                firebaseHelper.getUserTransactions(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
+                firebaseHelper.getUserTransactionsIncludingArchives(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
                     @Override
                     public void onTransactionsLoaded(List<Transaction> transactions) {
                         if (!isAdded() || getContext() == null) return;
@@ -11,21 +11,25 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.appqlct.R;
+import com.example.appqlct.helper.CategoryIndex;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.HyperLogLog;
+import com.example.appqlct.helper.QuantileSketch;
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
+import com.example.appqlct.model.GlobalStats;
+import com.example.appqlct.model.Leaderboard;
+import com.example.appqlct.model.SpendingDistribution;
 import com.example.appqlct.model.Transaction;
-import com.example.appqlct.model.User;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * ReportTotalFragment - Fragment hiển thị báo cáo tổng quan (tất cả users)
@@ -34,9 +38,15 @@ public class ReportTotalFragment extends Fragment {
     private TextView tvTotalUsers, tvTotalTransactions, tvTotalExpense, tvTotalBudget;
     private TextView tvExpenseCount, tvBudgetCount, tvTopCategory;
     private TextView tvCurrentMonth, tvMonthExpense, tvMonthBudget, tvMonthTransactions;
+    private TextView tvTransactionPercentiles, tvUserSpendPercentiles, tvCategoryMedians;
+    private TextView tvMonthActiveUsers, tvCategoryActiveUsers;
+    private TextView tvTopSpenders, tvTopCategoriesMonth;
     private FirebaseHelper firebaseHelper;
-    private Map<String, String> categoryIdToNameMap; // Map category ID sang tên
+    private CategoryIndex categoryIndex; // Tra cứu category theo ID
     private List<Category> expenseCategories; // Danh sách expense categories hợp lệ
+    private SpendingDistribution spendingDistribution; // Phân bố chi tiêu tháng hiện tại (hiển thị lại khi có tên category)
+    private Map<String, Long> categoryActiveUsers; // Số users hoạt động theo category tháng hiện tại
+    private Leaderboard leaderboard; // Bảng xếp hạng tháng hiện tại
 
     @Nullable
     @Override
@@ -62,12 +72,19 @@ public class ReportTotalFragment extends Fragment {
         tvMonthExpense = view.findViewById(R.id.tvMonthExpense);
         tvMonthBudget = view.findViewById(R.id.tvMonthIncome); // Reuse same view ID
         tvMonthTransactions = view.findViewById(R.id.tvMonthTransactions);
+        tvTransactionPercentiles = view.findViewById(R.id.tvTransactionPercentiles);
+        tvUserSpendPercentiles = view.findViewById(R.id.tvUserSpendPercentiles);
+        tvCategoryMedians = view.findViewById(R.id.tvCategoryMedians);
+        tvMonthActiveUsers = view.findViewById(R.id.tvMonthActiveUsers);
+        tvCategoryActiveUsers = view.findViewById(R.id.tvCategoryActiveUsers);
+        tvTopSpenders = view.findViewById(R.id.tvTopSpenders);
+        tvTopCategoriesMonth = view.findViewById(R.id.tvTopCategoriesMonth);
     }
 
     private void initHelpers() {
         firebaseHelper = new FirebaseHelper();
-        categoryIdToNameMap = new HashMap<>();
-        expenseCategories = new java.util.ArrayList<>();
+        categoryIndex = new CategoryIndex(null);
+        expenseCategories = new ArrayList<>();
         // Load categories để map ID sang tên
         loadCategories();
     }
@@ -81,21 +98,27 @@ public class ReportTotalFragment extends Fragment {
             public void onCategoriesLoaded(List<Category> categories) {
                 if (!isAdded() || getContext() == null) return;
                 
-                categoryIdToNameMap.clear();
                 expenseCategories.clear();
+                categoryIndex = new CategoryIndex(categories);
                 
                 for (Category category : categories) {
                     if (category.getId() != null && category.getName() != null) {
-                        categoryIdToNameMap.put(category.getId(), category.getName());
-                        // Cũng map tên sang tên (để hỗ trợ cả trường hợp category đã là tên)
-                        categoryIdToNameMap.put(category.getName(), category.getName());
-                        
                         // Lưu expense categories
                         if ("expense".equals(category.getType())) {
                             expenseCategories.add(category);
                         }
                     }
                 }
+                
+                if (spendingDistribution != null) {
+                    showSpendingDistribution(spendingDistribution);
+                }
+                if (categoryActiveUsers != null) {
+                    showCategoryActiveUsers(categoryActiveUsers);
+                }
+                if (leaderboard != null) {
+                    showLeaderboard(leaderboard);
+                }
             }
 
             @Override
@@ -106,101 +129,73 @@ public class ReportTotalFragment extends Fragment {
     }
     
     /**
-     * Lấy tên category từ ID hoặc tên gốc
+     * Lấy tên hiện tại của category từ khóa thống kê (category ID, hoặc giá trị gốc nếu không tra được)
      */
-    private String getCategoryName(String categoryIdOrName) {
-        if (categoryIdOrName == null) return getString(R.string.unknown);
-        // Nếu đã có trong map, trả về tên
-        if (categoryIdToNameMap.containsKey(categoryIdOrName)) {
-            return categoryIdToNameMap.get(categoryIdOrName);
-        }
-        // Nếu không có trong map, trả về giá trị gốc (có thể đã là tên)
-        return categoryIdOrName;
+    private String getCategoryName(String categoryKey) {
+        if (categoryKey == null) return getString(R.string.unknown);
+        String name = categoryIndex.nameOf(categoryKey);
+        return name != null ? name : categoryKey;
+    }
+
+    /**
+     * Quy khóa thống kê về category ID (dữ liệu cũ lưu tên category)
+     */
+    private String categoryKey(String key) {
+        String categoryId = categoryIndex.resolveId(key);
+        return categoryId != null ? categoryId : key;
+    }
+
+    private boolean isExpenseCategory(String categoryId) {
+        Category category = categoryIndex.get(categoryId);
+        return category != null && "expense".equals(category.getType());
     }
 
     /**
      * Load dữ liệu báo cáo tổng quan
      */
     private void loadReportData() {
-        // Load users trước để lấy danh sách userId hợp lệ
-        firebaseHelper.getAllUsers(new FirebaseHelper.OnUsersLoadedListener() {
+        // Dữ liệu của user đã xóa được Cloud Function dọn theo, không cần lọc theo danh sách users
+        firebaseHelper.countUsers(new FirebaseHelper.OnCountLoadedListener() {
             @Override
-            public void onUsersLoaded(List<User> users) {
+            public void onCountLoaded(long count) {
                 if (!isAdded() || getContext() == null) return;
-                
-                // Tạo Set chứa các userId hợp lệ (chỉ users có role = "user", không phải admin)
-                Set<String> validUserIds = new HashSet<>();
-                int userCount = 0;
-                for (User u : users) {
-                    if (u.getUid() != null && !"admin".equals(u.getRole())) {
-                        validUserIds.add(u.getUid());
-                        userCount++;
-                    }
-                }
-                tvTotalUsers.setText(String.valueOf(userCount));
-                
-                // Sau khi có danh sách users hợp lệ, load transactions và budgets
-                loadTransactionsWithFilter(validUserIds);
-                loadTotalBudgetWithFilter(validUserIds);
-                
-                // Load thống kê tháng hiện tại
-                loadCurrentMonthStatsWithFilter(validUserIds);
+                tvTotalUsers.setText(String.valueOf(count));
             }
 
             @Override
             public void onError(String error) {
                 if (!isAdded() || getContext() == null) return;
-                // Nếu không load được users, hiển thị 0
                 tvTotalUsers.setText("0");
-                tvTotalTransactions.setText("0");
-                tvTotalExpense.setText(formatAmount(0));
-                tvExpenseCount.setText(getString(R.string.transactions_count, 0));
-                tvTopCategory.setText(getString(R.string.no_data));
-                tvTotalBudget.setText(formatAmount(0));
-                tvBudgetCount.setText("0 ngân sách");
             }
         });
+
+        loadTransactions();
+        loadTotalBudget();
+
+        // Load thống kê tháng hiện tại
+        loadCurrentMonthStats();
+        loadSpendingDistribution();
+        loadActiveUsers();
+        loadLeaderboard();
     }
     
     /**
-     * Load transactions và lọc theo userId hợp lệ
+     * Load thống kê tổng quan từ sharded counter global_stats (không tải toàn bộ giao dịch)
      */
-    private void loadTransactionsWithFilter(Set<String> validUserIds) {
-        firebaseHelper.getAllTransactions(new FirebaseHelper.OnTransactionsLoadedListener() {
+    private void loadTransactions() {
+        firebaseHelper.getGlobalStats(new FirebaseHelper.OnGlobalStatsLoadedListener() {
             @Override
-            public void onTransactionsLoaded(List<Transaction> transactions) {
+            public void onStatsLoaded(GlobalStats stats) {
                 if (!isAdded() || getContext() == null) return;
                 
-                // Lọc chỉ lấy transactions của users hợp lệ
-                List<Transaction> validTransactions = new java.util.ArrayList<>();
-                for (Transaction t : transactions) {
-                    if (t.getUserId() != null && validUserIds.contains(t.getUserId())) {
-                        validTransactions.add(t);
-                    }
-                }
-                
-                int totalCount = validTransactions.size();
-                int expenseCount = 0;
-                double totalExpense = 0;
-                
-                // Thống kê theo category
+                // Thống kê theo category ID
                 Map<String, Double> categoryExpense = new HashMap<>();
-                
-                for (Transaction t : validTransactions) {
-                    // CHỈ tính các transactions thực tế, không tính recurring transaction gốc
-                    if ("expense".equals(t.getType()) && !t.isRecurring()) {
-                        expenseCount++;
-                        totalExpense += t.getAmount();
-                        
-                        // Thống kê theo category
-                        String category = t.getCategory();
-                        categoryExpense.put(category, 
-                                categoryExpense.getOrDefault(category, 0.0) + t.getAmount());
-                    }
+                for (Map.Entry<String, Double> entry : stats.getCategoryTotals().entrySet()) {
+                    String category = categoryKey(entry.getKey());
+                    categoryExpense.put(category, categoryExpense.getOrDefault(category, 0.0) + entry.getValue());
                 }
                 
                 // Tìm category có chi tiêu nhiều nhất
-                String topCategory = getString(R.string.no_data);
                 double maxExpense = 0;
                 String topCategoryKey = null;
                 for (Map.Entry<String, Double> entry : categoryExpense.entrySet()) {
@@ -210,16 +205,12 @@ public class ReportTotalFragment extends Fragment {
                     }
                 }
                 
-                // Map category ID sang tên nếu có
+                tvTotalTransactions.setText(String.valueOf(stats.getTransactionCount()));
+                tvTotalExpense.setText(formatAmount(stats.getExpenseTotal()));
+                tvExpenseCount.setText(getString(R.string.transactions_count, (int) stats.getExpenseCount()));
                 if (topCategoryKey != null) {
-                    topCategory = getCategoryName(topCategoryKey);
-                }
-                
-                tvTotalTransactions.setText(String.valueOf(totalCount));
-                tvTotalExpense.setText(formatAmount(totalExpense));
-                tvExpenseCount.setText(getString(R.string.transactions_count, expenseCount));
-                if (maxExpense > 0) {
-                    tvTopCategory.setText(topCategory + " (" + formatAmount(maxExpense) + ")");
+                    // Map category ID sang tên nếu có
+                    tvTopCategory.setText(getCategoryName(topCategoryKey) + " (" + formatAmount(maxExpense) + ")");
                 } else {
                     tvTopCategory.setText(getString(R.string.no_data));
                 }
@@ -237,9 +228,9 @@ public class ReportTotalFragment extends Fragment {
     }
 
     /**
-     * Load thống kê tháng hiện tại với filter userId
+     * Load thống kê tháng hiện tại
      */
-    private void loadCurrentMonthStatsWithFilter(Set<String> validUserIds) {
+    private void loadCurrentMonthStats() {
         Calendar calendar = Calendar.getInstance();
         int currentMonth = calendar.get(Calendar.MONTH) + 1; // Lưu tháng hiện tại (1-12)
         int currentYear = calendar.get(Calendar.YEAR); // Lưu năm hiện tại
@@ -266,18 +257,10 @@ public class ReportTotalFragment extends Fragment {
             public void onTransactionsLoaded(List<Transaction> transactions) {
                 if (!isAdded() || getContext() == null) return;
                 
-                // Lọc chỉ lấy transactions của users hợp lệ
-                List<Transaction> validTransactions = new java.util.ArrayList<>();
-                for (Transaction t : transactions) {
-                    if (t.getUserId() != null && validUserIds.contains(t.getUserId())) {
-                        validTransactions.add(t);
-                    }
-                }
-                
-                int transactionCount = validTransactions.size();
+                int transactionCount = transactions.size();
                 double totalExpense = 0;
                 
-                for (Transaction t : validTransactions) {
+                for (Transaction t : transactions) {
                     // CHỈ tính các transactions thực tế, không tính recurring transaction gốc
                     if ("expense".equals(t.getType()) && !t.isRecurring()) {
                         totalExpense += t.getAmount();
@@ -289,7 +272,7 @@ public class ReportTotalFragment extends Fragment {
                 tvMonthTransactions.setText(String.valueOf(transactionCount));
                 
                 // Load ngân sách tháng hiện tại
-                loadCurrentMonthBudgetWithFilter(currentMonth, currentYear, validUserIds);
+                loadCurrentMonthBudget(currentMonth, currentYear);
             }
 
             @Override
@@ -303,31 +286,20 @@ public class ReportTotalFragment extends Fragment {
     }
 
     /**
-     * Load tổng ngân sách từ tất cả budgets (chỉ tính expense categories hợp lệ và users hợp lệ)
+     * Load tổng ngân sách từ tất cả budgets (chỉ tính expense categories hợp lệ)
      */
-    private void loadTotalBudgetWithFilter(Set<String> validUserIds) {
-        firebaseHelper.getAllBudgets(new FirebaseHelper.OnBudgetsLoadedListener() {
+    private void loadTotalBudget() {
+        // Đọc tổng hợp theo năm (mỗi user-năm một document) thay vì toàn bộ budgets
+        firebaseHelper.getAllBudgetSummaries(new FirebaseHelper.OnBudgetsLoadedListener() {
             @Override
             public void onBudgetsLoaded(List<Budget> budgets) {
                 if (!isAdded() || getContext() == null) return;
                 
-                // Tạo Set chứa tên các expense categories hợp lệ
-                Set<String> validCategoryNames = new HashSet<>();
-                for (Category cat : expenseCategories) {
-                    if (cat.getName() != null) {
-                        validCategoryNames.add(cat.getName());
-                    }
-                }
                 
                 // Loại bỏ duplicate budgets (cùng userId, category, month, year)
-                // VÀ chỉ tính budgets cho các expense categories hợp lệ VÀ users hợp lệ
+                // VÀ chỉ tính budgets cho các expense categories hợp lệ
                 Map<String, Budget> uniqueBudgets = new HashMap<>();
                 for (Budget budget : budgets) {
-                    // CHỈ tính budgets của users hợp lệ
-                    if (budget.getUserId() == null || !validUserIds.contains(budget.getUserId())) {
-                        continue;
-                    }
-                    
                     // Kiểm tra month và year hợp lệ
                     if (budget.getMonth() < 1 || budget.getMonth() > 12 || 
                         budget.getYear() < 2000 || budget.getYear() > 2100) {
@@ -335,12 +307,12 @@ public class ReportTotalFragment extends Fragment {
                     }
                     
                     // CHỈ tính budgets cho các expense categories hợp lệ
-                    String categoryName = budget.getCategoryName();
-                    if (categoryName == null || !validCategoryNames.contains(categoryName)) {
+                    String categoryId = categoryIndex.idOf(budget);
+                    if (!isExpenseCategory(categoryId)) {
                         continue;
                     }
                     
-                    String uniqueKey = budget.getUserId() + "_" + categoryName + "_" 
+                    String uniqueKey = budget.getUserId() + "_" + categoryId + "_" 
                             + budget.getMonth() + "_" + budget.getYear();
                     Budget existing = uniqueBudgets.get(uniqueKey);
                     if (existing == null) {
@@ -375,42 +347,30 @@ public class ReportTotalFragment extends Fragment {
     }
 
     /**
-     * Load ngân sách tháng hiện tại (chỉ tính expense categories hợp lệ và users hợp lệ)
+     * Load ngân sách tháng hiện tại (chỉ tính expense categories hợp lệ)
      */
-    private void loadCurrentMonthBudgetWithFilter(int month, int year, Set<String> validUserIds) {
-        firebaseHelper.getAllBudgets(new FirebaseHelper.OnBudgetsLoadedListener() {
+    private void loadCurrentMonthBudget(int month, int year) {
+        firebaseHelper.getBudgetsForMonth(month, year, new FirebaseHelper.OnBudgetsLoadedListener() {
             @Override
             public void onBudgetsLoaded(List<Budget> budgets) {
                 if (!isAdded() || getContext() == null) return;
                 
-                // Tạo Set chứa tên các expense categories hợp lệ
-                Set<String> validCategoryNames = new HashSet<>();
-                for (Category cat : expenseCategories) {
-                    if (cat.getName() != null) {
-                        validCategoryNames.add(cat.getName());
-                    }
-                }
                 
-                // Lọc budgets theo tháng/năm và chỉ tính expense categories hợp lệ VÀ users hợp lệ
+                // Lọc budgets theo tháng/năm và chỉ tính expense categories hợp lệ
                 Map<String, Budget> uniqueBudgets = new HashMap<>();
                 for (Budget budget : budgets) {
-                    // CHỈ tính budgets của users hợp lệ
-                    if (budget.getUserId() == null || !validUserIds.contains(budget.getUserId())) {
-                        continue;
-                    }
-                    
                     // Kiểm tra month và year hợp lệ
                     if (budget.getMonth() != month || budget.getYear() != year) {
                         continue;
                     }
                     
                     // CHỈ tính budgets cho các expense categories hợp lệ
-                    String categoryName = budget.getCategoryName();
-                    if (categoryName == null || !validCategoryNames.contains(categoryName)) {
+                    String categoryId = categoryIndex.idOf(budget);
+                    if (!isExpenseCategory(categoryId)) {
                         continue;
                     }
                     
-                    String uniqueKey = budget.getUserId() + "_" + categoryName;
+                    String uniqueKey = budget.getUserId() + "_" + categoryId;
                     Budget existing = uniqueBudgets.get(uniqueKey);
                     if (existing == null) {
                         uniqueBudgets.put(uniqueKey, budget);
@@ -440,6 +400,169 @@ public class ReportTotalFragment extends Fragment {
         });
     }
 
+    /**
+     * Load phân bố chi tiêu tháng hiện tại (median, p90, p99) từ spending_rollups
+     */
+    private void loadSpendingDistribution() {
+        Calendar calendar = Calendar.getInstance();
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int year = calendar.get(Calendar.YEAR);
+
+        firebaseHelper.getSpendingDistribution(month, year,
+                new FirebaseHelper.OnSpendingDistributionLoadedListener() {
+            @Override
+            public void onDistributionLoaded(SpendingDistribution distribution) {
+                if (!isAdded() || getContext() == null) return;
+                spendingDistribution = distribution;
+                showSpendingDistribution(distribution);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                tvTransactionPercentiles.setText(getString(R.string.no_data));
+                tvUserSpendPercentiles.setText(getString(R.string.no_data));
+                tvCategoryMedians.setText(getString(R.string.no_data));
+            }
+        });
+    }
+
+    private void showSpendingDistribution(SpendingDistribution distribution) {
+        tvTransactionPercentiles.setText(formatPercentiles(distribution.getTransactionAmounts()));
+        tvUserSpendPercentiles.setText(formatPercentiles(distribution.getUserMonthlySpend()));
+
+        // Sắp xếp category theo số giao dịch giảm dần
+        List<Map.Entry<String, QuantileSketch>> entries = new ArrayList<>();
+        for (Map.Entry<String, QuantileSketch> entry : distribution.getCategoryAmounts().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue().getCount(), a.getValue().getCount()));
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, QuantileSketch> entry : entries) {
+            if (builder.length() > 0) builder.append("\n");
+            builder.append(getCategoryName(entry.getKey()))
+                    .append(": ")
+                    .append(formatAmount(entry.getValue().quantile(0.5)))
+                    .append(" (")
+                    .append(getString(R.string.transactions_count, (int) entry.getValue().getCount()))
+                    .append(")");
+        }
+        tvCategoryMedians.setText(builder.length() > 0 ? builder.toString() : getString(R.string.no_data));
+    }
+
+    /**
+     * Load số users hoạt động tháng hiện tại (ước lượng HyperLogLog, không tải giao dịch)
+     */
+    private void loadActiveUsers() {
+        Calendar calendar = Calendar.getInstance();
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int year = calendar.get(Calendar.YEAR);
+
+        firebaseHelper.getActiveUserCounts(month, year, new FirebaseHelper.OnActiveUsersLoadedListener() {
+            @Override
+            public void onActiveUsersLoaded(long total, Map<String, Long> byCategory) {
+                if (!isAdded() || getContext() == null) return;
+                tvMonthActiveUsers.setText(formatApproximateCount(total));
+                categoryActiveUsers = byCategory;
+                showCategoryActiveUsers(byCategory);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                tvMonthActiveUsers.setText("0");
+                tvCategoryActiveUsers.setText(getString(R.string.no_data));
+            }
+        });
+    }
+
+    private void showCategoryActiveUsers(Map<String, Long> byCategory) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : byCategory.entrySet()) {
+            if (entry.getValue() > 0) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (builder.length() > 0) builder.append("\n");
+            builder.append(getCategoryName(entry.getKey()))
+                    .append(": ")
+                    .append(formatApproximateCount(entry.getValue()));
+        }
+        tvCategoryActiveUsers.setText(builder.length() > 0 ? builder.toString() : getString(R.string.no_data));
+    }
+
+    /**
+     * Load top users và top categories tháng hiện tại (một document leaderboards)
+     */
+    private void loadLeaderboard() {
+        Calendar calendar = Calendar.getInstance();
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int year = calendar.get(Calendar.YEAR);
+
+        firebaseHelper.getLeaderboard(month, year, new FirebaseHelper.OnLeaderboardLoadedListener() {
+            @Override
+            public void onLeaderboardLoaded(Leaderboard result) {
+                if (!isAdded() || getContext() == null) return;
+                leaderboard = result;
+                showLeaderboard(result);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                tvTopSpenders.setText(getString(R.string.no_data));
+                tvTopCategoriesMonth.setText(getString(R.string.no_data));
+            }
+        });
+    }
+
+    private void showLeaderboard(Leaderboard result) {
+        StringBuilder users = new StringBuilder();
+        int rank = 1;
+        for (Leaderboard.Entry entry : result.getTopUsers()) {
+            if (users.length() > 0) users.append("\n");
+            String name = entry.getLabel() != null && !entry.getLabel().isEmpty()
+                    ? entry.getLabel() : getString(R.string.unknown);
+            users.append(rank++).append(". ").append(name)
+                    .append(": ").append(formatAmount(entry.getTotal()));
+        }
+        tvTopSpenders.setText(users.length() > 0 ? users.toString() : getString(R.string.no_data));
+
+        StringBuilder categories = new StringBuilder();
+        rank = 1;
+        for (Leaderboard.Entry entry : result.getTopCategories()) {
+            if (categories.length() > 0) categories.append("\n");
+            categories.append(rank++).append(". ").append(getCategoryName(entry.getKey()))
+                    .append(": ").append(formatAmount(entry.getTotal()));
+        }
+        tvTopCategoriesMonth.setText(categories.length() > 0 ? categories.toString() : getString(R.string.no_data));
+    }
+
+    private String formatApproximateCount(long count) {
+        if (count == 0) {
+            return "0";
+        }
+        int errorPercent = (int) Math.ceil(HyperLogLog.standardError(HyperLogLog.DEFAULT_PRECISION) * 100);
+        return getString(R.string.approximate_count_format, count, errorPercent);
+    }
+
+    private String formatPercentiles(QuantileSketch sketch) {
+        if (sketch.isEmpty()) {
+            return getString(R.string.no_data);
+        }
+        return getString(R.string.percentiles_format,
+                formatAmount(sketch.quantile(0.5)),
+                formatAmount(sketch.quantile(0.9)),
+                formatAmount(sketch.quantile(0.99)));
+    }
+
     private String formatAmount(double amount) {
         return String.format(Locale.getDefault(), "%,.0f VND", amount);
     }
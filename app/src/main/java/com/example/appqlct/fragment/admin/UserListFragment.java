@@ -256,8 +256,30 @@ public class UserListFragment extends Fragment {
     private void updateUser(User user, String name, String role) {
         String oldRole = user.getRole();
         user.setName(name);
-        user.setRole(role);
-        
+
+        if (role != null && !role.equals(oldRole)) {
+            // Role được đổi qua Cloud Function (custom claim + document users)
+            firebaseHelper.setUserRole(user.getUid(), role)
+                    .addOnCompleteListener(roleTask -> {
+                        if (!isAdded() || getContext() == null) return;
+                        if (roleTask.isSuccessful()) {
+                            user.setRole(role);
+                            saveUserInfo(user);
+                        } else {
+                            Toast.makeText(getContext(), "Lỗi: " + 
+                                    (roleTask.getException() != null ? roleTask.getException().getMessage() : ""), 
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    });
+        } else {
+            saveUserInfo(user);
+        }
+    }
+
+    /**
+     * Lưu thông tin user (role không đổi ở bước này)
+     */
+    private void saveUserInfo(User user) {
         firebaseHelper.saveUser(user, new OnCompleteListener<Void>() {
             @Override
             public void onComplete(@NonNull Task<Void> task) {
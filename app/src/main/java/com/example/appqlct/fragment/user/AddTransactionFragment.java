@@ -23,12 +23,17 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
 
 import com.example.appqlct.R;
+import com.example.appqlct.helper.CategoryIndex;
+import com.example.appqlct.helper.CategoryUsageIndex;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.NoteCategoryClassifier;
 import com.example.appqlct.helper.NotificationHelper;
+import com.example.appqlct.helper.SpendingAnomalyDetector;
 import com.example.appqlct.helper.SharedPreferencesHelper;
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Transaction;
+import com.example.appqlct.model.Wallet;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 
@@ -51,12 +56,18 @@ public class AddTransactionFragment extends DialogFragment {
     private EditText etAmount, etNote;
     private TextView tvDate;
     private Spinner spinnerCategory;
+    private Spinner spinnerWallet;
     private CheckBox checkboxRecurring;
     private View layoutRecurringPeriod;
     private TextView tvStartMonth, tvEndMonth;
     private FirebaseHelper firebaseHelper;
     private SharedPreferencesHelper prefsHelper;
+    private SpendingAnomalyDetector anomalyDetector; // Cảnh báo khoản chi bất thường khi lưu
+    private CategoryUsageIndex categoryUsage; // Xếp hạng category theo mức độ sử dụng (lưu cục bộ)
+    private NoteCategoryClassifier noteClassifier; // Gợi ý category từ ghi chú khi đang gõ
+    private int autoSelectedCategoryPosition = -1; // Vị trí do app tự chọn; khác vị trí hiện tại = user đã tự chọn
     private List<Category> expenseCategories; // Chỉ danh mục chi tiêu
+    private List<Wallet> wallets; // Ví mặc định + ví của user
     private OnTransactionAddedListener listener;
     private boolean categoriesLoaded = false; // Đánh dấu đã load xong danh mục chưa
     private Transaction editTransaction; // Transaction đang được chỉnh sửa (nếu có)
@@ -151,6 +162,7 @@ public class AddTransactionFragment extends DialogFragment {
         initViews(view);
         initHelpers();
         loadCategories();
+        loadWallets();
 
         String title = editTransaction != null ? getString(R.string.edit) : getString(R.string.add_transaction);
         builder.setView(view)
@@ -180,6 +192,7 @@ public class AddTransactionFragment extends DialogFragment {
         etNote = view.findViewById(R.id.etNote);
         tvDate = view.findViewById(R.id.tvDate);
         spinnerCategory = view.findViewById(R.id.spinnerCategory);
+        spinnerWallet = view.findViewById(R.id.spinnerWallet);
         checkboxRecurring = view.findViewById(R.id.checkboxRecurring);
         layoutRecurringPeriod = view.findViewById(R.id.layoutRecurringPeriod);
         tvStartMonth = view.findViewById(R.id.tvStartMonth);
@@ -317,6 +330,24 @@ public class AddTransactionFragment extends DialogFragment {
         };
         etAmount.addTextChangedListener(amountTextWatcher);
         
+        // Gợi ý category theo ghi chú khi đang gõ (chỉ khi thêm mới)
+        if (editTransaction == null) {
+            etNote.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    suggestCategoryFromNote(s.toString());
+                }
+            });
+        }
+        
         // Nếu đang edit, điền dữ liệu vào form
         if (editTransaction != null) {
             // Format số tiền với dấu chấm (.) khi hiển thị (chuẩn Việt Nam)
@@ -446,6 +477,12 @@ public class AddTransactionFragment extends DialogFragment {
         firebaseHelper = new FirebaseHelper();
         prefsHelper = new SharedPreferencesHelper(requireContext());
         expenseCategories = new ArrayList<>();
+        wallets = new ArrayList<>();
+        anomalyDetector = new SpendingAnomalyDetector();
+        anomalyDetector.start(prefsHelper.getUserId());
+        categoryUsage = new CategoryUsageIndex(requireContext(), prefsHelper.getUserId());
+        noteClassifier = NoteCategoryClassifier.forUser(requireContext(), prefsHelper.getUserId());
+        noteClassifier.start(firebaseHelper, prefsHelper.getUserId());
     }
 
     /**
@@ -466,6 +503,8 @@ public class AddTransactionFragment extends DialogFragment {
                         }
                     }
                 }
+                // Category hay dùng gần đây lên đầu thay vì thứ tự alphabet
+                categoryUsage.rank(expenseCategories);
                 
                 categoriesLoaded = true; // Đánh dấu đã load xong
                 
@@ -483,6 +522,64 @@ public class AddTransactionFragment extends DialogFragment {
         });
     }
     
+    /**
+     * Load danh sách ví của user, ví mặc định luôn đứng đầu
+     */
+    private void loadWallets() {
+        String userId = prefsHelper.getUserId();
+        wallets.clear();
+        wallets.add(Wallet.createDefault(userId, getString(R.string.default_wallet)));
+        updateWalletSpinner();
+
+        firebaseHelper.getUserWallets(userId, new FirebaseHelper.OnWalletsLoadedListener() {
+            @Override
+            public void onWalletsLoaded(List<Wallet> walletList) {
+                if (!isAdded() || getContext() == null) return;
+                wallets.addAll(walletList);
+                updateWalletSpinner();
+            }
+
+            @Override
+            public void onError(String error) {
+                // Vẫn chọn được ví mặc định
+            }
+        });
+    }
+
+    private void updateWalletSpinner() {
+        if (!isAdded() || getContext() == null) return;
+
+        List<String> walletNames = new ArrayList<>();
+        for (Wallet wallet : wallets) {
+            walletNames.add(wallet.getName());
+        }
+        ArrayAdapter<String> walletAdapter = new ArrayAdapter<>(getContext(),
+                android.R.layout.simple_spinner_item, walletNames);
+        walletAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerWallet.setAdapter(walletAdapter);
+
+        // Nếu đang edit, chọn ví hiện tại của giao dịch
+        if (editTransaction != null && editTransaction.getWalletId() != null) {
+            for (int i = 0; i < wallets.size(); i++) {
+                if (editTransaction.getWalletId().equals(wallets.get(i).getId())) {
+                    spinnerWallet.setSelection(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ví đang chọn (null = ví mặc định, không ghi walletId giống dữ liệu cũ)
+     */
+    private String selectedWalletId() {
+        int position = spinnerWallet.getSelectedItemPosition();
+        if (position < 0 || position >= wallets.size() || wallets.get(position).isDefault()) {
+            return null;
+        }
+        return wallets.get(position).getId();
+    }
+
     /**
      * Cập nhật spinner danh mục với danh sách expense categories
      */
@@ -508,14 +605,25 @@ public class AddTransactionFragment extends DialogFragment {
         
         // Nếu đang edit, chọn category hiện tại
         if (editTransaction != null && editTransaction.getCategory() != null) {
-            String currentCategory = editTransaction.getCategory();
+            String currentCategoryId = new CategoryIndex(expenseCategories).idOf(editTransaction);
             for (int i = 0; i < expenseCategories.size(); i++) {
-                if (expenseCategories.get(i).getName().equals(currentCategory)) {
+                if (expenseCategories.get(i).getId().equals(currentCategoryId)) {
+                    spinnerCategory.setSelection(i);
+                    break;
+                }
+            }
+        } else if (editTransaction == null) {
+            // Thêm mới: chọn sẵn category hay dùng vào thứ/buổi này (nếu đủ dữ liệu)
+            String suggestedId = categoryUsage.suggest(expenseCategories);
+            for (int i = 0; suggestedId != null && i < expenseCategories.size(); i++) {
+                if (suggestedId.equals(expenseCategories.get(i).getId())) {
                     spinnerCategory.setSelection(i);
                     break;
                 }
             }
         }
+        autoSelectedCategoryPosition = spinnerCategory.getSelectedItemPosition();
+        suggestCategoryFromNote(etNote.getText().toString());
         
         // Nếu không có danh mục thực sự, hiển thị thông báo
         if (expenseCategories.isEmpty()) {
@@ -525,6 +633,24 @@ public class AddTransactionFragment extends DialogFragment {
         }
     }
 
+    /**
+     * Chọn category mà bộ phân loại dự đoán từ ghi chú, trừ khi user đã tự chọn category khác
+     */
+    private void suggestCategoryFromNote(String note) {
+        if (editTransaction != null || !categoriesLoaded || expenseCategories.isEmpty()) return;
+        if (spinnerCategory.getSelectedItemPosition() != autoSelectedCategoryPosition) return;
+        List<String> categoryIds = new ArrayList<>();
+        for (Category category : expenseCategories) {
+            categoryIds.add(category.getId());
+        }
+        String predictedId = noteClassifier.predict(note, categoryIds);
+        int position = predictedId != null ? categoryIds.indexOf(predictedId) : -1;
+        if (position >= 0 && position != autoSelectedCategoryPosition) {
+            spinnerCategory.setSelection(position);
+            autoSelectedCategoryPosition = position;
+        }
+    }
+
     /**
      * Lưu transaction mới vào Firestore
      */
@@ -612,10 +738,19 @@ public class AddTransactionFragment extends DialogFragment {
                 }
             }
             
+            // Đánh giá khoản chi so với thống kê đã có trong bộ nhớ (không đọc Firestore)
+            SpendingAnomalyDetector.Anomaly anomaly = isRecurring ? null
+                    : anomalyDetector.evaluate(selectedCategory.getId(), amount, replacedAmount(selectedCategory));
+            
             if (editTransaction != null) {
                 // Chế độ sửa
+                String previousCategoryId = editTransaction.getCategoryId();
+                String previousNote = editTransaction.getNote();
+                String categoryId = selectedCategory.getId();
                 editTransaction.setAmount(amount);
                 editTransaction.setCategory(selectedCategory.getName());
+                editTransaction.setCategoryId(selectedCategory.getId());
+                editTransaction.setWalletId(selectedWalletId());
                 editTransaction.setNote(note);
                 editTransaction.setDate(selectedDate.getTime());
                 editTransaction.setRecurring(isRecurring);
@@ -633,6 +768,10 @@ public class AddTransactionFragment extends DialogFragment {
                 String oldRecurringTransactionId = editTransaction.getId();
                 
                 firebaseHelper.updateTransaction(editTransaction, task -> {
+                    if (task.isSuccessful()) {
+                        // Chỉ học khi đã lưu được (kể cả khi màn hình đã đóng)
+                        noteClassifier.relearn(previousCategoryId, previousNote, categoryId, note);
+                    }
                     if (!isAdded() || getContext() == null) {
                         isProcessing = false;
                         return;
@@ -694,6 +833,7 @@ public class AddTransactionFragment extends DialogFragment {
                         } else {
                             NotificationHelper.addSuccessNotification(getContext(), userId, 
                                     getString(R.string.edit_transaction_success));
+                            notifyUnusualExpense(anomaly, amount, selectedCategory.getName());
                             
                             // Lưu transaction để gọi listener trong onDismiss (sau khi dialog dismiss)
                             savedTransaction = editTransaction;
@@ -725,6 +865,9 @@ public class AddTransactionFragment extends DialogFragment {
                         type,
                         isRecurring
                 );
+                transaction.setCategoryId(selectedCategory.getId());
+                transaction.setWalletId(selectedWalletId());
+                String categoryId = selectedCategory.getId();
                 
                 // Lưu khoảng thời gian nếu là định kỳ
                 if (isRecurring && startMonth != null && endMonth != null) {
@@ -733,6 +876,11 @@ public class AddTransactionFragment extends DialogFragment {
                 }
 
                 firebaseHelper.addTransaction(transaction, task -> {
+                    if (task.isSuccessful()) {
+                        // Chỉ ghi nhận/học khi đã lưu được (kể cả khi màn hình đã đóng)
+                        categoryUsage.record(categoryId);
+                        noteClassifier.learn(categoryId, note);
+                    }
                     if (!isAdded() || getContext() == null) {
                         isProcessing = false;
                         return;
@@ -776,6 +924,7 @@ public class AddTransactionFragment extends DialogFragment {
                         } else {
                             NotificationHelper.addSuccessNotification(getContext(), userId, 
                                     getString(R.string.add_transaction_success));
+                            notifyUnusualExpense(anomaly, amount, selectedCategory.getName());
                             
                             // Lưu transaction để gọi listener trong onDismiss (sau khi dialog dismiss)
                             savedTransaction = transaction;
@@ -816,6 +965,33 @@ public class AddTransactionFragment extends DialogFragment {
         }
     }
 
+    /**
+     * Số tiền cũ của giao dịch đang sửa nếu nó đã nằm trong thống kê của category được chọn
+     * (chi tiêu thực tế, cùng category), null khi thêm mới
+     */
+    private Double replacedAmount(Category selectedCategory) {
+        if (editTransaction == null || editTransaction.isRecurring()
+                || !"expense".equals(editTransaction.getType())) {
+            return null;
+        }
+        String oldKey = editTransaction.getCategoryId() != null
+                ? editTransaction.getCategoryId() : editTransaction.getCategory();
+        return selectedCategory.getId().equals(oldKey) ? editTransaction.getAmount() : null;
+    }
+
+    /**
+     * Thông báo khoản chi bất thường (ví dụ gấp 5 lần mức chi thường ngày cho category này)
+     */
+    private void notifyUnusualExpense(SpendingAnomalyDetector.Anomaly anomaly, double amount, String categoryName) {
+        if (anomaly == null || getContext() == null) return;
+        String message = getString(R.string.unusual_expense_message,
+                String.format(Locale.getDefault(), "%,.0f VND", amount),
+                categoryName,
+                anomaly.getRatio(),
+                String.format(Locale.getDefault(), "%,.0f VND", anomaly.getMean()));
+        NotificationHelper.addUnusualExpenseNotification(getContext(), prefsHelper.getUserId(), message);
+    }
+
     /**
      * Kiểm tra xem chi tiêu có chạm mốc 80% ngân sách không
      * Hiển thị thông báo nếu đạt ngưỡng
@@ -932,6 +1108,14 @@ public class AddTransactionFragment extends DialogFragment {
                 .show();
     }
     
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (anomalyDetector != null) {
+            anomalyDetector.stop();
+        }
+    }
+
     /**
      * Gọi khi dialog dismiss - đảm bảo fragment đã resume trước khi refresh
      */
@@ -29,6 +29,7 @@ import com.example.appqlct.R;
 import com.example.appqlct.adapter.BudgetAdapter;
 import com.example.appqlct.adapter.CategoryViewAdapter;
 import com.example.appqlct.helper.NotificationHelper;
+import com.example.appqlct.helper.CategoryIndex;
 import com.example.appqlct.helper.FirebaseHelper;
 import com.example.appqlct.helper.SharedPreferencesHelper;
 import com.example.appqlct.model.Budget;
@@ -47,7 +48,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * BudgetFragment - Quản lý ngân sách theo category
@@ -58,6 +58,7 @@ public class BudgetFragment extends Fragment {
     private RecyclerView recyclerViewCategories;
     private CategoryViewAdapter categoryAdapter;
     private List<Category> expenseCategories;
+    private CategoryIndex categoryIndex = new CategoryIndex(null);
     private FirebaseHelper firebaseHelper;
     private SharedPreferencesHelper prefsHelper;
     private int currentMonth, currentYear;
@@ -168,6 +169,7 @@ public class BudgetFragment extends Fragment {
                         expenseCategories.add(cat);
                     }
                 }
+                categoryIndex = new CategoryIndex(expenseCategories);
                 
                 // Cập nhật UI
                 updateCategoriesRecyclerView();
@@ -252,47 +254,36 @@ public class BudgetFragment extends Fragment {
                             }
                         }
                         
-                        // Tạo Set chứa tên các expense categories để kiểm tra
-                        Set<String> validCategoryNames = new HashSet<>();
-                        for (Category cat : expenseCategories) {
-                            if (cat.getName() != null) {
-                                validCategoryNames.add(cat.getName());
-                            }
-                        }
                         
                         // Tính toán budget và spending cho từng category
                         Map<String, Double> categoryBudgets = new HashMap<>();
                         Map<String, Double> categorySpent = new HashMap<>();
                         
-                        // Map budgets theo category name
+                        // Map budgets theo category ID
                         // Chỉ tính budgets cho các category có trong expenseCategories (đã loại bỏ trùng lặp)
                         // Nếu có nhiều budgets cho cùng category, lấy budget mới nhất (dựa vào updatedAt hoặc createdAt)
                         Map<String, Budget> categoryBudgetsMap = new HashMap<>();
                         for (Budget budget : budgets) {
-                            String categoryName = budget.getCategoryName();
-                            // Map tên category từ tiếng Việt sang tiếng Anh nếu cần
-                            String mappedCategoryName = mapCategoryNameToEnglish(categoryName);
-                            // Chỉ xử lý nếu category này hợp lệ
-                            if (!validCategoryNames.contains(mappedCategoryName)) {
+                            String categoryId = categoryIndex.idOf(budget);
+                            // Chỉ xử lý nếu category này còn tồn tại
+                            if (categoryIndex.get(categoryId) == null) {
                                 continue;
                             }
-                            // Sử dụng tên đã map để lưu vào map
-                            categoryName = mappedCategoryName;
                             
-                            Budget existing = categoryBudgetsMap.get(categoryName);
+                            Budget existing = categoryBudgetsMap.get(categoryId);
                             if (existing == null) {
-                                categoryBudgetsMap.put(categoryName, budget);
+                                categoryBudgetsMap.put(categoryId, budget);
                             } else {
                                 // Nếu đã có, so sánh updatedAt để lấy budget mới nhất
                                 Date existingDate = existing.getUpdatedAt() != null ? existing.getUpdatedAt() : existing.getCreatedAt();
                                 Date currentDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
                                 if (existingDate == null || (currentDate != null && currentDate.after(existingDate))) {
-                                    categoryBudgetsMap.put(categoryName, budget);
+                                    categoryBudgetsMap.put(categoryId, budget);
                                 }
                             }
                         }
                         
-                        // Chuyển sang Map<categoryName, amount> để tính tổng
+                        // Chuyển sang Map<categoryId, amount> để tính tổng
                         for (Map.Entry<String, Budget> entry : categoryBudgetsMap.entrySet()) {
                             categoryBudgets.put(entry.getKey(), entry.getValue().getAmount());
                         }
@@ -307,9 +298,9 @@ public class BudgetFragment extends Fragment {
                         for (Transaction t : transactions) {
                             // CHỈ tính các transactions thực tế, không tính recurring transaction gốc
                             if ("expense".equals(t.getType()) && !t.isRecurring()) {
-                                String categoryName = normalizeCategoryName(t.getCategory());
-                                double currentSpent = categorySpent.getOrDefault(categoryName, 0.0);
-                                categorySpent.put(categoryName, currentSpent + t.getAmount());
+                                String categoryId = categoryKey(t);
+                                double currentSpent = categorySpent.getOrDefault(categoryId, 0.0);
+                                categorySpent.put(categoryId, currentSpent + t.getAmount());
                             }
                         }
                         
@@ -368,9 +359,9 @@ public class BudgetFragment extends Fragment {
                                 totalSpent += recurring.getAmount();
                                 
                                 // Thêm vào chi tiêu theo category
-                                String categoryName = normalizeCategoryName(recurring.getCategory());
-                                double currentSpent = categorySpent.getOrDefault(categoryName, 0.0);
-                                categorySpent.put(categoryName, currentSpent + recurring.getAmount());
+                                String categoryId = categoryKey(recurring);
+                                double currentSpent = categorySpent.getOrDefault(categoryId, 0.0);
+                                categorySpent.put(categoryId, currentSpent + recurring.getAmount());
                             }
                         }
                         
@@ -438,36 +429,27 @@ public class BudgetFragment extends Fragment {
             }
         }
         
-        // Tạo Set chứa tên các expense categories để kiểm tra
-        Set<String> validCategoryNames = new HashSet<>();
-        for (Category cat : expenseCategories) {
-            if (cat.getName() != null) {
-                validCategoryNames.add(cat.getName());
-            }
-        }
         
         // Tính toán budget và spending cho từng category
         Map<String, Double> categoryBudgets = new HashMap<>();
         Map<String, Double> categorySpent = new HashMap<>();
         
-        // Map budgets theo category name
+        // Map budgets theo category ID
         Map<String, Budget> categoryBudgetsMap = new HashMap<>();
         for (Budget budget : budgets) {
-            String categoryName = budget.getCategoryName();
-            String mappedCategoryName = mapCategoryNameToEnglish(categoryName);
-            if (!validCategoryNames.contains(mappedCategoryName)) {
+            String categoryId = categoryIndex.idOf(budget);
+            if (categoryIndex.get(categoryId) == null) {
                 continue;
             }
-            categoryName = mappedCategoryName;
             
-            Budget existing = categoryBudgetsMap.get(categoryName);
+            Budget existing = categoryBudgetsMap.get(categoryId);
             if (existing == null) {
-                categoryBudgetsMap.put(categoryName, budget);
+                categoryBudgetsMap.put(categoryId, budget);
             } else {
                 Date existingDate = existing.getUpdatedAt() != null ? existing.getUpdatedAt() : existing.getCreatedAt();
                 Date currentDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
                 if (existingDate == null || (currentDate != null && currentDate.after(existingDate))) {
-                    categoryBudgetsMap.put(categoryName, budget);
+                    categoryBudgetsMap.put(categoryId, budget);
                 }
             }
         }
@@ -484,9 +466,9 @@ public class BudgetFragment extends Fragment {
         for (Transaction t : transactions) {
             // CHỈ tính các transactions thực tế, không tính recurring transaction gốc
             if ("expense".equals(t.getType()) && !t.isRecurring()) {
-                String categoryName = normalizeCategoryName(t.getCategory());
-                double currentSpent = categorySpent.getOrDefault(categoryName, 0.0);
-                categorySpent.put(categoryName, currentSpent + t.getAmount());
+                String categoryId = categoryKey(t);
+                double currentSpent = categorySpent.getOrDefault(categoryId, 0.0);
+                categorySpent.put(categoryId, currentSpent + t.getAmount());
             }
         }
         
@@ -821,7 +803,7 @@ public class BudgetFragment extends Fragment {
                     }
                     
                     // Lưu ngân sách cho từng tháng
-                    saveBudgetsForMonths(category.getName(), amount, selectedMonths);
+                    saveBudgetsForMonths(category, amount, selectedMonths);
                     dialog.dismiss();
                 } catch (NumberFormatException e) {
                     etAmount.setError(getString(R.string.invalid_amount));
@@ -834,80 +816,29 @@ public class BudgetFragment extends Fragment {
     
     /**
      * Lưu ngân sách cho nhiều tháng
-     * Kiểm tra và cập nhật nếu đã tồn tại, thêm mới nếu chưa có
+     * Mỗi tháng có ID cố định nên tất cả được upsert trong một WriteBatch, không cần load budgets trước
      */
-    private void saveBudgetsForMonths(String categoryName, double amount, List<Integer> months) {
+    private void saveBudgetsForMonths(Category category, double amount, List<Integer> months) {
         String userId = prefsHelper.getUserId();
-        AtomicInteger processedCount = new AtomicInteger(0);
-        int totalMonths = months.size();
         
-        // Load tất cả budgets hiện tại để kiểm tra
-        firebaseHelper.getUserBudgets(userId, new FirebaseHelper.OnBudgetsLoadedListener() {
-            @Override
-            public void onBudgetsLoaded(List<Budget> existingBudgets) {
-                if (!isAdded() || getContext() == null) return;
-                
-                // Xử lý từng tháng
-                for (int month : months) {
-                    // Tìm budget đã tồn tại cho category và tháng này (cho selectedYear)
-                    Budget existingBudget = null;
-                    for (Budget b : existingBudgets) {
-                        if (b.getCategoryName().equals(categoryName) 
-                                && b.getMonth() == month 
-                                && b.getYear() == selectedYear) {
-                            existingBudget = b;
-                            break;
-                        }
-                    }
-                    
-                    if (existingBudget != null) {
-                        // Cập nhật budget đã tồn tại
-                        existingBudget.setAmount(amount);
-                        existingBudget.setUpdatedAt(new Date());
-                        firebaseHelper.updateBudget(existingBudget, task -> {
-                            if (!isAdded() || getContext() == null) return;
-                            int count = processedCount.incrementAndGet();
-                            if (count == totalMonths) {
-                                String userId = prefsHelper.getUserId();
-                                NotificationHelper.addSuccessNotification(getContext(), userId, 
-                                        getString(R.string.budget_updated_for_months, totalMonths));
-                                loadBudgetsAndCalculateSpending();
-                            }
-                        });
-                    } else {
-                        // Add new budget - use selectedYear when adding budget
-                        Budget newBudget = new Budget(null, userId, categoryName, amount, month, selectedYear);
-                        firebaseHelper.addBudget(newBudget, task -> {
-                            if (!isAdded() || getContext() == null) return;
-                            int count = processedCount.incrementAndGet();
-                            if (count == totalMonths) {
-                                String userId = prefsHelper.getUserId();
-                                NotificationHelper.addSuccessNotification(getContext(), userId, 
-                                        getString(R.string.budget_saved_for_months, totalMonths));
-                                loadBudgetsAndCalculateSpending();
-                            }
-                        });
-                    }
-                }
-            }
-
-            @Override
-            public void onError(String error) {
-                if (!isAdded() || getContext() == null) return;
-                // If cannot load, still try to add new - use selectedYear when adding budget
-                for (int month : months) {
-                    Budget budget = new Budget(null, userId, categoryName, amount, month, selectedYear);
-                    firebaseHelper.addBudget(budget, task -> {
-                        if (!isAdded() || getContext() == null) return;
-                        int count = processedCount.incrementAndGet();
-                        if (count == totalMonths) {
-                            Toast.makeText(getContext(), 
-                                    getString(R.string.budget_saved_for_months, totalMonths), 
-                                    Toast.LENGTH_SHORT).show();
-                            loadBudgetsAndCalculateSpending();
-                        }
-                    });
-                }
+        List<Budget> budgets = new ArrayList<>();
+        for (int month : months) {
+            Budget budget = new Budget(null, userId, category.getName(), amount, month, selectedYear);
+            budget.setCategoryId(category.getId());
+            budgets.add(budget);
+        }
+        
+        int totalMonths = months.size();
+        firebaseHelper.setBudgetsBatch(budgets).addOnCompleteListener(task -> {
+            if (!isAdded() || getContext() == null) return;
+            if (task.isSuccessful()) {
+                NotificationHelper.addSuccessNotification(getContext(), userId, 
+                        getString(R.string.budget_saved_for_months, totalMonths));
+                loadBudgetsAndCalculateSpending();
+            } else {
+                String error = task.getException() != null ? task.getException().getMessage() : "";
+                NotificationHelper.addErrorNotification(getContext(), userId, 
+                        getString(R.string.error_occurred, error));
             }
         });
     }
@@ -916,33 +847,6 @@ public class BudgetFragment extends Fragment {
         return String.format(Locale.getDefault(), "%,.0f VND", amount);
     }
     
-    /**
-     * Map tên category từ tiếng Việt sang tiếng Anh
-     * Để tương thích với budgets cũ có tên tiếng Việt
-     */
-    private String mapCategoryNameToEnglish(String categoryName) {
-        if (categoryName == null) {
-            return null;
-        }
-        
-        // Map các tên category từ tiếng Việt sang tiếng Anh
-        switch (categoryName) {
-            case "Ăn uống":
-                return "Food & Dining";
-            case "Giao thông":
-                return "Transportation";
-            case "Giáo dục":
-                return "Education";
-            case "Tiện ích":
-                return "Utilities";
-            case "Giải trí":
-                return "Entertainment";
-            default:
-                // Nếu không phải tên tiếng Việt, giữ nguyên
-                return categoryName;
-        }
-    }
-    
     /**
      * Hiển thị dialog xác nhận xóa budget
      */
@@ -957,17 +861,21 @@ public class BudgetFragment extends Fragment {
                 if (!isAdded() || getContext() == null) return;
                 
                 // Tìm budget cho category này trong tháng/năm được chọn
+                // (có thể có bản ghi cũ trùng category/tháng từ trước khi dùng ID cố định, xóa cùng lúc)
                 Budget budgetToDelete = null;
-                String categoryName = category.getName();
-                String mappedCategoryName = mapCategoryNameToEnglish(categoryName);
+                List<String> budgetIdsToDelete = new ArrayList<>();
                 
                 for (Budget budget : budgets) {
-                    String budgetCategoryName = mapCategoryNameToEnglish(budget.getCategoryName());
-                    if (budgetCategoryName.equals(mappedCategoryName) 
+                    if (category.getId().equals(categoryIndex.idOf(budget)) 
                             && budget.getMonth() == selectedMonth 
                             && budget.getYear() == selectedYear) {
-                        budgetToDelete = budget;
-                        break;
+                        budgetIdsToDelete.add(budget.getId());
+                        Date budgetDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
+                        Date currentDate = budgetToDelete == null ? null
+                                : (budgetToDelete.getUpdatedAt() != null ? budgetToDelete.getUpdatedAt() : budgetToDelete.getCreatedAt());
+                        if (budgetToDelete == null || (budgetDate != null && (currentDate == null || budgetDate.after(currentDate)))) {
+                            budgetToDelete = budget;
+                        }
                     }
                 }
                 
@@ -987,7 +895,7 @@ public class BudgetFragment extends Fragment {
                         .setMessage(getString(R.string.delete_budget_confirm, category.getName(), 
                                 formatAmount(finalBudgetToDelete.getAmount())))
                         .setPositiveButton(getString(R.string.delete), (dialog, which) -> {
-                            deleteBudgetForCategory(finalBudgetToDelete);
+                            deleteBudgetsForCategory(budgetIdsToDelete);
                         })
                         .setNegativeButton(getString(R.string.cancel), null)
                         .show();
@@ -1003,17 +911,17 @@ public class BudgetFragment extends Fragment {
     }
     
     /**
-     * Xóa budget cho category
+     * Xóa các budget của category trong tháng được chọn (một WriteBatch)
      */
-    private void deleteBudgetForCategory(Budget budget) {
-        if (budget == null || budget.getId() == null) {
+    private void deleteBudgetsForCategory(List<String> budgetIds) {
+        if (budgetIds.isEmpty() || budgetIds.contains(null)) {
             String userId = prefsHelper.getUserId();
             NotificationHelper.addErrorNotification(getContext(), userId, 
                     getString(R.string.cannot_delete_budget_invalid_id));
             return;
         }
         
-        firebaseHelper.deleteBudget(budget.getId(), task -> {
+        firebaseHelper.deleteBudgets(budgetIds).addOnCompleteListener(task -> {
             if (!isAdded() || getContext() == null) return;
             
             String userId = prefsHelper.getUserId();
@@ -1031,46 +939,12 @@ public class BudgetFragment extends Fragment {
     }
     
     /**
-     * Normalize category name: có thể là ID hoặc tên
-     * Nếu là ID thì cần map sang tên, nếu là tên thì giữ nguyên
-     * Đảm bảo normalize đúng để matching với budgets
+     * Khóa category của giao dịch: category ID (dữ liệu cũ lưu tên được quy về ID)
+     * Category đã bị xóa trả về giá trị đã lưu nên không khớp với ngân sách nào
      */
-    private String normalizeCategoryName(String category) {
-        if (category == null || category.trim().isEmpty()) {
-            return getString(R.string.unknown);
-        }
-        
-        // Kiểm tra xem category có trong danh sách expenseCategories không
-        for (Category cat : expenseCategories) {
-            if (cat.getId() != null && cat.getId().equals(category)) {
-                // Nếu category là ID, map sang tên
-                String name = cat.getName();
-                // Map tên từ tiếng Việt sang tiếng Anh nếu cần (để tương thích với budgets cũ)
-                return mapCategoryNameToEnglish(name);
-            }
-            if (cat.getName() != null && cat.getName().equals(category)) {
-                // Nếu category đã là tên, map từ tiếng Việt sang tiếng Anh nếu cần
-                return mapCategoryNameToEnglish(cat.getName());
-            }
-        }
-        
-        // Nếu không tìm thấy trong expenseCategories, thử map từ tiếng Việt sang tiếng Anh
-        String mappedName = mapCategoryNameToEnglish(category);
-        // Kiểm tra lại xem tên đã map có trong expenseCategories không
-        for (Category cat : expenseCategories) {
-            if (cat.getName() != null && cat.getName().equals(mappedName)) {
-                return mappedName;
-            }
-        }
-        
-        // Nếu không tìm thấy, có thể là ID của category đã bị xóa hoặc tên mới
-        // Kiểm tra xem có phải là ID không (Firestore ID thường dài > 15 ký tự)
-        if (category.length() > 15 && !category.contains(" ") && !category.contains("-")) {
-            return getString(R.string.deleted_category_text);
-        }
-        
-        // Giữ nguyên nếu là tên (đã thử map rồi)
-        return mappedName;
+    private String categoryKey(Transaction transaction) {
+        String categoryId = categoryIndex.idOf(transaction);
+        return categoryId != null ? categoryId : String.valueOf(transaction.getCategory());
     }
 
     @Override
@@ -21,6 +21,7 @@ import androidx.fragment.app.Fragment;
 
 import com.example.appqlct.R;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.NoteCategoryClassifier;
 import com.example.appqlct.helper.NotificationHelper;
 import com.example.appqlct.helper.SharedPreferencesHelper;
 import com.example.appqlct.model.Category;
@@ -526,7 +527,11 @@ public class CategoryTransactionFragment extends Fragment {
             return;
         }
         
+        NoteCategoryClassifier noteClassifier = NoteCategoryClassifier.forUser(requireContext(), prefsHelper.getUserId());
         firebaseHelper.deleteTransaction(transaction.getId(), task -> {
+            if (task.isSuccessful()) {
+                noteClassifier.forget(transaction);
+            }
             if (!isAdded() || getContext() == null) return;
             String userId = prefsHelper.getUserId();
             if (task.isSuccessful()) {
@@ -19,12 +19,15 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.appqlct.R;
 import com.example.appqlct.adapter.TransactionAdapter;
+import com.example.appqlct.helper.CategoryIndex;
 import com.example.appqlct.helper.FirebaseHelper;
 import com.example.appqlct.helper.NotificationHelper;
 import com.example.appqlct.helper.SharedPreferencesHelper;
+import com.example.appqlct.helper.WalletBalanceIndex;
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Transaction;
+import com.example.appqlct.model.Wallet;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -48,6 +51,7 @@ public class DashboardFragment extends Fragment {
     
     // Views
     private TextView tvBudget, tvTotalExpense, tvRemaining, tvMonthYear;
+    private TextView tvTotalBalance, tvWalletBalances;
     private RecyclerView recyclerViewRecent;
     
     // Adapters & Lists
@@ -97,6 +101,8 @@ public class DashboardFragment extends Fragment {
         tvTotalExpense = view.findViewById(R.id.tvTotalExpense);
         tvRemaining = view.findViewById(R.id.tvRemaining);
         tvMonthYear = view.findViewById(R.id.tvMonthYear);
+        tvTotalBalance = view.findViewById(R.id.tvTotalBalance);
+        tvWalletBalances = view.findViewById(R.id.tvWalletBalances);
         recyclerViewRecent = view.findViewById(R.id.recyclerViewRecent);
 
         // Floating Action Button để thêm giao dịch mới
@@ -136,6 +142,59 @@ public class DashboardFragment extends Fragment {
 
         // Load categories trước, sau đó mới load budgets để đảm bảo chỉ tính budgets hợp lệ
         loadCategoriesAndBudgets(userId);
+        loadWalletBalances(userId);
+    }
+
+    /**
+     * Load số dư hiện tại của các ví từ chỉ mục wallet_balances (không tải lịch sử giao dịch)
+     */
+    private void loadWalletBalances(String userId) {
+        firebaseHelper.getUserWallets(userId, new FirebaseHelper.OnWalletsLoadedListener() {
+            @Override
+            public void onWalletsLoaded(List<Wallet> walletList) {
+                if (!isAdded() || getContext() == null) return;
+                List<Wallet> wallets = new ArrayList<>();
+                wallets.add(Wallet.createDefault(userId, getString(R.string.default_wallet)));
+                wallets.addAll(walletList);
+
+                firebaseHelper.getWalletBalances(userId, new FirebaseHelper.OnWalletBalancesLoadedListener() {
+                    @Override
+                    public void onBalancesLoaded(WalletBalanceIndex index) {
+                        if (!isAdded() || getContext() == null) return;
+                        displayWalletBalances(wallets, index);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        // Giữ số dư đang hiển thị
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                // Giữ số dư đang hiển thị
+            }
+        });
+    }
+
+    private void displayWalletBalances(List<Wallet> wallets, WalletBalanceIndex index) {
+        // Số dư tính đến hôm nay (giao dịch định kỳ của các tháng sau chưa được trừ)
+        Date now = new Date();
+        double total = 0;
+        StringBuilder lines = new StringBuilder();
+        for (Wallet wallet : wallets) {
+            double balance = index.getBalanceAt(wallet, now);
+            total += balance;
+            if (lines.length() > 0) {
+                lines.append('\n');
+            }
+            lines.append(getString(R.string.wallet_balance_line, wallet.getName(), formatAmount(balance)));
+        }
+        tvTotalBalance.setText(formatAmount(total));
+        tvTotalBalance.setTextColor(ContextCompat.getColor(requireContext(),
+                total < 0 ? R.color.expense_color : R.color.income_color));
+        tvWalletBalances.setText(lines.toString());
     }
     
     /**
@@ -185,42 +244,31 @@ public class DashboardFragment extends Fragment {
             public void onBudgetsLoaded(List<Budget> budgets) {
                 if (!isAdded() || getContext() == null) return;
                 
-                // Tạo Set chứa tên các expense categories để kiểm tra
-                Set<String> validCategoryNames = new HashSet<>();
-                for (Category cat : expenseCategories) {
-                    if (cat.getName() != null) {
-                        validCategoryNames.add(cat.getName());
-                    }
-                }
-                
-                // Loại bỏ trùng lặp và chỉ tính budgets cho các category hợp lệ
+                // Loại bỏ trùng lặp và chỉ tính budgets cho các category hợp lệ (theo category ID)
                 // Nếu có nhiều budgets cho cùng category, lấy budget mới nhất (dựa vào updatedAt hoặc createdAt)
+                CategoryIndex categoryIndex = new CategoryIndex(expenseCategories);
                 Map<String, Budget> categoryBudgetsMap = new HashMap<>();
                 for (Budget budget : budgets) {
-                    String categoryName = budget.getCategoryName();
-                    // Map tên category từ tiếng Việt sang tiếng Anh nếu cần
-                    String mappedCategoryName = mapCategoryNameToEnglish(categoryName);
-                    // Chỉ xử lý nếu category này hợp lệ
-                    if (!validCategoryNames.contains(mappedCategoryName)) {
+                    String categoryId = categoryIndex.idOf(budget);
+                    // Chỉ xử lý nếu category này còn tồn tại
+                    if (categoryIndex.get(categoryId) == null) {
                         continue;
                     }
-                    // Sử dụng tên đã map để lưu vào map
-                    categoryName = mappedCategoryName;
                     
-                    Budget existing = categoryBudgetsMap.get(categoryName);
+                    Budget existing = categoryBudgetsMap.get(categoryId);
                     if (existing == null) {
-                        categoryBudgetsMap.put(categoryName, budget);
+                        categoryBudgetsMap.put(categoryId, budget);
                     } else {
                         // Nếu đã có, so sánh updatedAt để lấy budget mới nhất
                         Date existingDate = existing.getUpdatedAt() != null ? existing.getUpdatedAt() : existing.getCreatedAt();
                         Date currentDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
                         if (existingDate == null || (currentDate != null && currentDate.after(existingDate))) {
-                            categoryBudgetsMap.put(categoryName, budget);
+                            categoryBudgetsMap.put(categoryId, budget);
                         }
                     }
                 }
                 
-                // Chuyển sang Map<categoryName, amount> để tính tổng
+                // Chuyển sang Map<categoryId, amount> để tính tổng
                 Map<String, Double> categoryBudgets = new HashMap<>();
                 for (Map.Entry<String, Budget> entry : categoryBudgetsMap.entrySet()) {
                     categoryBudgets.put(entry.getKey(), entry.getValue().getAmount());
@@ -655,33 +703,6 @@ public class DashboardFragment extends Fragment {
         return String.format(Locale.getDefault(), "%,.0f VND", amount);
     }
     
-    /**
-     * Map tên category từ tiếng Việt sang tiếng Anh
-     * Để tương thích với budgets cũ có tên tiếng Việt
-     */
-    private String mapCategoryNameToEnglish(String categoryName) {
-        if (categoryName == null) {
-            return null;
-        }
-        
-        // Map các tên category từ tiếng Việt sang tiếng Anh
-        switch (categoryName) {
-            case "Ăn uống":
-                return "Food & Dining";
-            case "Giao thông":
-                return "Transportation";
-            case "Giáo dục":
-                return "Education";
-            case "Tiện ích":
-                return "Utilities";
-            case "Giải trí":
-                return "Entertainment";
-            default:
-                // Nếu không phải tên tiếng Việt, giữ nguyên
-                return categoryName;
-        }
-    }
-
     @Override
     public void onResume() {
         super.onResume();
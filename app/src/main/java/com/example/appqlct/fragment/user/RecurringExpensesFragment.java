@@ -7,6 +7,8 @@ import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
 import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
@@ -19,13 +21,17 @@ import androidx.fragment.app.Fragment;
 import com.example.appqlct.R;
 import com.example.appqlct.fragment.user.AddTransactionFragment;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.NoteCategoryClassifier;
 import com.example.appqlct.helper.NotificationHelper;
+import com.example.appqlct.helper.RecurringPatternDetector;
 import com.example.appqlct.helper.SharedPreferencesHelper;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Transaction;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -37,11 +43,15 @@ import java.util.Map;
 public class RecurringExpensesFragment extends Fragment {
     private TableLayout tableRecurringExpenses;
     private TextView tvEmpty;
+    private LinearLayout layoutSuggestions;
+    private LinearLayout containerSuggestions;
     private List<Transaction> recurringExpensesList;
     private List<Category> allCategories;
     private Map<String, String> categoryIdToNameMap;
     private FirebaseHelper firebaseHelper;
     private SharedPreferencesHelper prefsHelper;
+    private RecurringPatternDetector patternDetector;
+    private ListenerRegistration transactionChangesRegistration;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
 
     @Nullable
@@ -53,6 +63,7 @@ public class RecurringExpensesFragment extends Fragment {
         initHelpers();
         loadCategories();
         loadRecurringExpenses();
+        startPatternDetection();
 
         return view;
     }
@@ -60,6 +71,8 @@ public class RecurringExpensesFragment extends Fragment {
     private void initViews(View view) {
         tableRecurringExpenses = view.findViewById(R.id.tableRecurringExpenses);
         tvEmpty = view.findViewById(R.id.tvEmpty);
+        layoutSuggestions = view.findViewById(R.id.layoutSuggestions);
+        containerSuggestions = view.findViewById(R.id.containerSuggestions);
     }
 
     private void initHelpers() {
@@ -150,6 +163,133 @@ public class RecurringExpensesFragment extends Fragment {
         });
     }
 
+    /**
+     * Lắng nghe giao dịch của user để phát hiện khoản chi lặp lại hàng tháng
+     * Snapshot đầu tiên là toàn bộ lịch sử, các snapshot sau chỉ gồm giao dịch thay đổi
+     */
+    private void startPatternDetection() {
+        String userId = prefsHelper.getUserId();
+        if (userId == null || userId.isEmpty()) return;
+
+        patternDetector = new RecurringPatternDetector(requireContext(), userId);
+        transactionChangesRegistration = firebaseHelper.listenUserTransactionChanges(userId,
+                new FirebaseHelper.OnTransactionChangesListener() {
+                    @Override
+                    public void onTransactionsChanged(List<Transaction> upserted, List<String> removedIds) {
+                        if (!isAdded() || patternDetector == null) return;
+                        patternDetector.update(upserted, removedIds, patterns -> {
+                            if (isAdded() && getView() != null) {
+                                displaySuggestions(patterns);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        // Không phát hiện được thì chỉ ẩn phần đề xuất
+                        android.util.Log.e("RecurringExpenses", "Error listening transactions: " + error);
+                    }
+                });
+    }
+
+    /**
+     * Hiển thị các khoản chi lặp lại được đề xuất
+     */
+    private void displaySuggestions(List<RecurringPatternDetector.RecurringPattern> patterns) {
+        containerSuggestions.removeAllViews();
+        for (RecurringPatternDetector.RecurringPattern pattern : patterns) {
+            View item = LayoutInflater.from(requireContext())
+                    .inflate(R.layout.item_recurring_suggestion, containerSuggestions, false);
+            TextView tvTitle = item.findViewById(R.id.tvSuggestionTitle);
+            TextView tvDetail = item.findViewById(R.id.tvSuggestionDetail);
+            Button btnAdd = item.findViewById(R.id.btnAddSuggestion);
+            Button btnDismiss = item.findViewById(R.id.btnDismissSuggestion);
+
+            tvTitle.setText(suggestionName(pattern));
+            tvDetail.setText(getString(R.string.recurring_suggestion_detail,
+                    formatAmount(pattern.getAmount()), pattern.getDayOfMonth(), pattern.getMonthCount()));
+            btnAdd.setOnClickListener(v -> {
+                containerSuggestions.removeView(item);
+                updateSuggestionsVisibility();
+                addRecurringFromPattern(pattern);
+            });
+            btnDismiss.setOnClickListener(v -> {
+                patternDetector.dismiss(pattern);
+                containerSuggestions.removeView(item);
+                updateSuggestionsVisibility();
+            });
+            containerSuggestions.addView(item);
+        }
+        updateSuggestionsVisibility();
+    }
+
+    private void updateSuggestionsVisibility() {
+        layoutSuggestions.setVisibility(containerSuggestions.getChildCount() > 0 ? View.VISIBLE : View.GONE);
+    }
+
+    private String suggestionName(RecurringPatternDetector.RecurringPattern pattern) {
+        String note = pattern.getNote();
+        if (note != null && !note.trim().isEmpty()) {
+            return note;
+        }
+        String categoryName = pattern.getCategoryName();
+        if (categoryIdToNameMap.containsKey(categoryName)) {
+            categoryName = categoryIdToNameMap.get(categoryName);
+        }
+        return categoryName != null ? categoryName : getString(R.string.unknown);
+    }
+
+    /**
+     * Tạo chi tiêu định kỳ từ mẫu được đề xuất: bắt đầu từ tháng sau lần chi gần nhất, kéo dài 12 tháng,
+     * vào ngày chi quen thuộc của mẫu
+     */
+    private void addRecurringFromPattern(RecurringPatternDetector.RecurringPattern pattern) {
+        String userId = prefsHelper.getUserId();
+        if (userId == null || userId.isEmpty()) return;
+
+        Calendar startMonth = Calendar.getInstance();
+        startMonth.setTime(pattern.getNextMonthStart());
+        Calendar endMonth = (Calendar) startMonth.clone();
+        endMonth.add(Calendar.MONTH, 11);
+        Calendar date = (Calendar) startMonth.clone();
+        date.set(Calendar.DAY_OF_MONTH, Math.min(pattern.getDayOfMonth(), date.getActualMaximum(Calendar.DAY_OF_MONTH)));
+
+        Transaction transaction = new Transaction(
+                null,
+                userId,
+                pattern.getAmount(),
+                pattern.getCategoryName(),
+                pattern.getNote(),
+                date.getTime(),
+                "expense",
+                true
+        );
+        transaction.setCategoryId(pattern.getCategoryId());
+        transaction.setWalletId(pattern.getWalletId());
+        transaction.setRecurringStartMonth(startMonth.getTime());
+        transaction.setRecurringEndMonth(endMonth.getTime());
+
+        String name = suggestionName(pattern);
+        firebaseHelper.addTransaction(transaction, task -> {
+            if (!isAdded() || getContext() == null) return;
+            if (!task.isSuccessful() || task.getResult() == null) {
+                NotificationHelper.addErrorNotification(getContext(), userId,
+                        getString(R.string.add_recurring_suggestion_failed));
+                return;
+            }
+            transaction.setId(task.getResult().getId());
+            firebaseHelper.generateMonthlyTransactionsFromRecurring(transaction, generateTask -> {
+                if (!isAdded() || getContext() == null) return;
+                if (!generateTask.isSuccessful()) {
+                    android.util.Log.e("RecurringExpenses", "Error generating monthly transactions", generateTask.getException());
+                }
+                NotificationHelper.addSuccessNotification(getContext(), userId,
+                        getString(R.string.add_recurring_suggestion_success, name));
+                addRecurringTransactionLocally(transaction);
+            });
+        });
+    }
+
     /**
      * Hiển thị chi tiêu định kỳ trong bảng
      */
@@ -420,7 +560,11 @@ public class RecurringExpensesFragment extends Fragment {
             });
         } else {
             // Nếu không phải định kỳ, chỉ xóa giao dịch đó
+            NoteCategoryClassifier noteClassifier = NoteCategoryClassifier.forUser(requireContext(), prefsHelper.getUserId());
             firebaseHelper.deleteTransaction(transaction.getId(), task -> {
+                if (task.isSuccessful()) {
+                    noteClassifier.forget(transaction);
+                }
                 if (!isAdded() || getContext() == null) return;
                 String userId = prefsHelper.getUserId();
                 if (task.isSuccessful()) {
@@ -435,6 +579,16 @@ public class RecurringExpensesFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (transactionChangesRegistration != null) {
+            transactionChangesRegistration.remove();
+            transactionChangesRegistration = null;
+        }
+        patternDetector = null;
+    }
+
     @Override
     public void onResume() {
         super.onResume();
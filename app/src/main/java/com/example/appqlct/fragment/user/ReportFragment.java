@@ -6,9 +6,12 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.Spinner;
 import android.widget.TextView;
 import androidx.appcompat.widget.SwitchCompat;
 
@@ -23,18 +26,29 @@ import com.example.appqlct.R;
 import com.example.appqlct.adapter.CategoryReportAdapter;
 import com.example.appqlct.adapter.TransactionAdapter;
 import com.example.appqlct.fragment.user.AddTransactionFragment;
+import com.example.appqlct.helper.CategoryIndex;
+import com.example.appqlct.helper.DayBucketIndex;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.LttbDownsampler;
+import com.example.appqlct.helper.NoteCategoryClassifier;
 import com.example.appqlct.helper.SharedPreferencesHelper;
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Transaction;
+import com.example.appqlct.view.CalendarHeatmapView;
 import android.app.AlertDialog;
 import android.widget.Toast;
+import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.charts.PieChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.data.PieData;
 import com.github.mikephil.charting.data.PieDataSet;
 import com.github.mikephil.charting.data.PieEntry;
 import com.github.mikephil.charting.formatter.PercentFormatter;
+import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.text.SimpleDateFormat;
@@ -65,12 +79,38 @@ public class ReportFragment extends Fragment {
     private TransactionAdapter transactionAdapter;
     private FirebaseHelper firebaseHelper;
     private SharedPreferencesHelper prefsHelper;
-    private Map<String, String> categoryIdToNameMap;
+    private CategoryIndex categoryIndex;
     private List<Category> expenseCategories;
     private List<CategoryReportItem> categoryReportItems;
     private List<Transaction> transactionList;
     private ListenerRegistration transactionsListener;
     
+    // Báo cáo khoảng thời gian tùy chọn: chỉ mục theo ngày được dựng một lần và cập nhật theo từng thay đổi
+    private TextView tvCustomRange;
+    private DayBucketIndex dayBucketIndex;
+    private ListenerRegistration dayIndexListener;
+    private boolean dayIndexSnapshotLoaded = false;
+    private boolean dayIndexArchivesLoaded = false;
+    private boolean isRangeMode = false;
+    private Calendar rangeStart, rangeEnd;
+    private SimpleDateFormat dayFormat;
+    
+    // Biểu đồ xu hướng chi tiêu TREND_MONTHS tháng, dựng từ cùng chỉ mục theo ngày
+    private static final int TREND_MONTHS = 24;
+    private TextView tvShowTrend, tvNoTrendData;
+    private LinearLayout layoutTrend;
+    private Spinner spinnerTrendCategory;
+    private SwitchCompat switchTrendWeekly;
+    private LineChart lineChartTrend;
+    private boolean isTrendVisible = false;
+    private final List<String> trendCategoryKeys = new ArrayList<>(); // Vị trí 0 (null) = tất cả category
+    
+    // Heatmap chi tiêu theo ngày của năm đang xem (chế độ năm), cũng dựng từ chỉ mục theo ngày
+    private View cardHeatmap, layoutHeatmap;
+    private TextView tvShowHeatmap;
+    private CalendarHeatmapView heatmapView;
+    private boolean isHeatmapVisible = false;
+    
     // Dữ liệu tháng trước để so sánh
     private double previousMonthTotalExpense = 0;
     private int previousMonthTransactionCount = 0;
@@ -111,6 +151,7 @@ public class ReportFragment extends Fragment {
         initViews(view);
         initHelpers();
         setupPieChart();
+        setupTrendChart();
         loadReportData();
 
         return view;
@@ -148,6 +189,35 @@ public class ReportFragment extends Fragment {
         
         // Khởi tạo switch
         switchViewMode = view.findViewById(R.id.switchViewMode);
+        tvCustomRange = view.findViewById(R.id.tvCustomRange);
+        tvCustomRange.setOnClickListener(v -> showRangePicker());
+        dayFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+        
+        // Biểu đồ xu hướng
+        tvShowTrend = view.findViewById(R.id.tvShowTrend);
+        layoutTrend = view.findViewById(R.id.layoutTrend);
+        spinnerTrendCategory = view.findViewById(R.id.spinnerTrendCategory);
+        switchTrendWeekly = view.findViewById(R.id.switchTrendWeekly);
+        lineChartTrend = view.findViewById(R.id.lineChartTrend);
+        tvNoTrendData = view.findViewById(R.id.tvNoTrendData);
+        tvShowTrend.setOnClickListener(v -> showTrend());
+        cardHeatmap = view.findViewById(R.id.cardHeatmap);
+        layoutHeatmap = view.findViewById(R.id.layoutHeatmap);
+        tvShowHeatmap = view.findViewById(R.id.tvShowHeatmap);
+        heatmapView = view.findViewById(R.id.heatmapView);
+        tvShowHeatmap.setOnClickListener(v -> showHeatmap());
+        heatmapView.setOnDayClickListener(this::openDayTransactions);
+        switchTrendWeekly.setOnCheckedChangeListener((buttonView, isChecked) -> renderTrendChart());
+        spinnerTrendCategory.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                renderTrendChart();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
         
         // Setup click listeners
         setupMonthNavigation();
@@ -182,6 +252,7 @@ public class ReportFragment extends Fragment {
     private void setupViewModeToggle() {
         switchViewMode.setOnCheckedChangeListener((buttonView, isChecked) -> {
             isYearlyMode = isChecked;
+            isRangeMode = false;
             // Reset dữ liệu tháng trước khi chuyển chế độ
             hasPreviousMonthData = false;
             previousMonthTotalExpense = 0;
@@ -204,7 +275,9 @@ public class ReportFragment extends Fragment {
     private void setupMonthNavigation() {
         // Nút Previous
         btnPreviousMonth.setOnClickListener(v -> {
-            if (isYearlyMode) {
+            if (isRangeMode) {
+                shiftRange(-1);
+            } else if (isYearlyMode) {
                 selectedCalendar.add(Calendar.YEAR, -1);
                 if (isDateValid(selectedCalendar)) {
                     updateMonthDisplay();
@@ -227,7 +300,9 @@ public class ReportFragment extends Fragment {
         // Nút Next
         btnNextMonth.setOnClickListener(v -> {
             Calendar now = Calendar.getInstance();
-            if (isYearlyMode) {
+            if (isRangeMode) {
+                shiftRange(1);
+            } else if (isYearlyMode) {
                 selectedCalendar.add(Calendar.YEAR, 1);
                 // Không cho phép chọn năm trong tương lai
                 if (selectedCalendar.get(Calendar.YEAR) <= now.get(Calendar.YEAR)) {
@@ -258,7 +333,13 @@ public class ReportFragment extends Fragment {
         });
         
         // Click vào TextView để mở DatePicker
-        tvMonthYear.setOnClickListener(v -> showDatePicker());
+        tvMonthYear.setOnClickListener(v -> {
+            if (isRangeMode) {
+                showRangePicker();
+            } else {
+                showDatePicker();
+            }
+        });
         
         // Cập nhật hiển thị ban đầu
         updateMonthDisplay();
@@ -283,6 +364,15 @@ public class ReportFragment extends Fragment {
      * Cập nhật hiển thị tháng/năm
      */
     private void updateMonthDisplay() {
+        cardHeatmap.setVisibility(isYearlyMode && !isRangeMode ? View.VISIBLE : View.GONE);
+        renderHeatmap();
+        if (isRangeMode) {
+            tvMonthYear.setText(getString(R.string.date_range_format,
+                    dayFormat.format(rangeStart.getTime()), dayFormat.format(rangeEnd.getTime())));
+            btnPreviousMonth.setEnabled(true);
+            btnNextMonth.setEnabled(rangeEnd.before(Calendar.getInstance()));
+            return;
+        }
         if (isYearlyMode) {
             tvMonthYear.setText(yearFormat.format(selectedCalendar.getTime()));
         } else {
@@ -349,10 +439,155 @@ public class ReportFragment extends Fragment {
         datePickerDialog.show();
     }
 
+    /**
+     * Chọn khoảng thời gian tùy chọn (ngày bắt đầu rồi ngày kết thúc)
+     */
+    private void showRangePicker() {
+        Calendar initialStart = rangeStart != null ? rangeStart : selectedCalendar;
+        DatePickerDialog startPicker = new DatePickerDialog(requireContext(), (view, year, month, dayOfMonth) -> {
+            Calendar start = Calendar.getInstance();
+            start.set(year, month, dayOfMonth, 0, 0, 0);
+            start.set(Calendar.MILLISECOND, 0);
+
+            Calendar initialEnd = rangeEnd != null && rangeEnd.after(start) ? rangeEnd : Calendar.getInstance();
+            DatePickerDialog endPicker = new DatePickerDialog(requireContext(), (endView, endYear, endMonth, endDay) -> {
+                Calendar end = Calendar.getInstance();
+                end.set(endYear, endMonth, endDay, 23, 59, 59);
+                end.set(Calendar.MILLISECOND, 999);
+                showRangeReport(start, end);
+            }, initialEnd.get(Calendar.YEAR), initialEnd.get(Calendar.MONTH), initialEnd.get(Calendar.DAY_OF_MONTH));
+            endPicker.setTitle(getString(R.string.select_range_end));
+            endPicker.getDatePicker().setMinDate(start.getTimeInMillis());
+            endPicker.show();
+        }, initialStart.get(Calendar.YEAR), initialStart.get(Calendar.MONTH), initialStart.get(Calendar.DAY_OF_MONTH));
+        startPicker.setTitle(getString(R.string.select_range_start));
+        startPicker.getDatePicker().setMaxDate(System.currentTimeMillis());
+        startPicker.show();
+    }
+
+    /**
+     * Dời khoảng đang xem sang khoảng liền trước/liền sau có cùng số ngày (ví dụ kỳ lương kế tiếp)
+     */
+    private void shiftRange(int direction) {
+        int days = DayBucketIndex.dayOf(rangeEnd.getTime()) - DayBucketIndex.dayOf(rangeStart.getTime()) + 1;
+        Calendar start = (Calendar) rangeStart.clone();
+        Calendar end = (Calendar) rangeEnd.clone();
+        start.add(Calendar.DAY_OF_MONTH, direction * days);
+        end.add(Calendar.DAY_OF_MONTH, direction * days);
+        showRangeReport(start, end);
+    }
+
+    private void showRangeReport(Calendar start, Calendar end) {
+        isRangeMode = true;
+        rangeStart = start;
+        rangeEnd = end;
+        // Dừng listener của chế độ tháng/năm để không ghi đè báo cáo khoảng
+        if (transactionsListener != null) {
+            transactionsListener.remove();
+            transactionsListener = null;
+        }
+        updateMonthDisplay();
+        if (dayBucketIndex == null) {
+            startDayBucketIndex();
+        } else {
+            renderRangeReport();
+        }
+    }
+
+    /**
+     * Dựng chỉ mục theo ngày từ giao dịch của user (cache cục bộ của Firestore + archive)
+     * và cập nhật theo từng thay đổi cho đến khi rời màn hình
+     */
+    private void startDayBucketIndex() {
+        String userId = prefsHelper.getUserId();
+        dayBucketIndex = new DayBucketIndex();
+
+        firebaseHelper.getUserArchivedTransactions(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
+            @Override
+            public void onTransactionsLoaded(List<Transaction> transactions) {
+                if (dayBucketIndex == null) return;
+                dayBucketIndex.putAll(transactions);
+                dayIndexArchivesLoaded = true;
+                onDayIndexChanged();
+            }
+
+            @Override
+            public void onError(String error) {
+                // Không đọc được archive vẫn báo cáo được các giao dịch hiện có
+                dayIndexArchivesLoaded = true;
+                onDayIndexChanged();
+            }
+        });
+
+        dayIndexListener = firebaseHelper.listenUserTransactionChanges(userId,
+                new FirebaseHelper.OnTransactionChangesListener() {
+            @Override
+            public void onTransactionsChanged(List<Transaction> upserted, List<String> removedIds) {
+                if (dayBucketIndex == null) return;
+                for (String id : removedIds) {
+                    dayBucketIndex.remove(id);
+                }
+                dayBucketIndex.putAll(upserted);
+                dayIndexSnapshotLoaded = true;
+                onDayIndexChanged();
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                Toast.makeText(requireContext(), error, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void onDayIndexChanged() {
+        renderRangeReport();
+        renderTrendChart();
+        renderHeatmap();
+    }
+
+    /**
+     * Hiển thị báo cáo khoảng đang chọn từ chỉ mục (tổng theo category trong O(log số ngày))
+     */
+    private void renderRangeReport() {
+        if (!isRangeMode || !dayIndexSnapshotLoaded || !dayIndexArchivesLoaded) return;
+        if (!isAdded() || getContext() == null) return;
+
+        DayBucketIndex.RangeSummary summary = dayBucketIndex.query(rangeStart.getTime(), rangeEnd.getTime());
+        Map<String, Double> expenseByCategory = new HashMap<>();
+        Map<String, Integer> countByCategory = new HashMap<>();
+        for (Map.Entry<String, Double> entry : summary.getExpenseByCategory().entrySet()) {
+            String name = categoryName(entry.getKey());
+            expenseByCategory.put(name, expenseByCategory.getOrDefault(name, 0.0) + entry.getValue());
+            countByCategory.put(name, countByCategory.getOrDefault(name, 0)
+                    + summary.getCountByCategory().getOrDefault(entry.getKey(), 0));
+        }
+
+        // Ngân sách được đặt theo tháng nên không áp dụng cho khoảng tùy chọn
+        displayReportData(dayBucketIndex.transactionsBetween(rangeStart.getTime(), rangeEnd.getTime()),
+                new ArrayList<>(), summary.getTotalIncome(), summary.getTotalExpense(),
+                expenseByCategory, countByCategory);
+        layoutExpenseComparison.setVisibility(View.GONE);
+        layoutTransactionComparison.setVisibility(View.GONE);
+        tvNoPreviousMonthData.setVisibility(View.GONE);
+    }
+
+    /**
+     * Tên category từ khóa của chỉ mục (category ID, hoặc tên với dữ liệu cũ)
+     */
+    private String categoryName(String categoryKey) {
+        String name = categoryIndex.nameOf(categoryIndex.resolveId(categoryKey));
+        if (name != null) {
+            return name;
+        }
+        return categoryKey == null || categoryKey.trim().isEmpty()
+                ? getString(R.string.unknown) : CategoryIndex.mapLegacyName(categoryKey);
+    }
+
     private void initHelpers() {
         firebaseHelper = new FirebaseHelper();
         prefsHelper = new SharedPreferencesHelper(requireContext());
-        categoryIdToNameMap = new HashMap<>();
+        categoryIndex = new CategoryIndex(null);
         expenseCategories = new ArrayList<>();
     }
 
@@ -408,24 +643,20 @@ public class ReportFragment extends Fragment {
         calendar.set(Calendar.SECOND, 59);
         Date endDate = calendar.getTime();
 
-        // Load categories trước để map ID với tên và lưu expense categories
+        // Load categories trước để tra tên theo ID và lưu expense categories
         firebaseHelper.getAllCategories(new FirebaseHelper.OnCategoriesLoadedListener() {
             @Override
             public void onCategoriesLoaded(List<Category> categories) {
-                categoryIdToNameMap.clear();
                 expenseCategories.clear();
                 for (Category category : categories) {
                     if (category.getId() != null && category.getName() != null) {
-                        // Map ID -> Name
-                        categoryIdToNameMap.put(category.getId(), category.getName());
-                        // Map Name -> Name (để normalize, tránh trường hợp có cả ID và Name)
-                        categoryIdToNameMap.put(category.getName(), category.getName());
                         // Lưu expense categories để filter budgets
                         if ("expense".equals(category.getType())) {
                             expenseCategories.add(category);
                         }
                     }
                 }
+                categoryIndex = new CategoryIndex(categories);
                 // Sau khi load categories, load transactions
                 loadTransactionsAndBudgetsForYear(userId, startDate, endDate, year);
             }
@@ -460,20 +691,16 @@ public class ReportFragment extends Fragment {
             @Override
             public void onCategoriesLoaded(List<Category> categories) {
                 // Cập nhật lại map categories và expense categories
-                categoryIdToNameMap.clear();
                 expenseCategories.clear();
                 for (Category category : categories) {
                     if (category.getId() != null && category.getName() != null) {
-                        // Map ID -> Name
-                        categoryIdToNameMap.put(category.getId(), category.getName());
-                        // Map Name -> Name (để normalize, tránh trường hợp có cả ID và Name)
-                        categoryIdToNameMap.put(category.getName(), category.getName());
                         // Lưu expense categories để filter budgets
                         if ("expense".equals(category.getType())) {
                             expenseCategories.add(category);
                         }
                     }
                 }
+                categoryIndex = new CategoryIndex(categories);
                 
                 // Sau khi reload categories, load transactions với real-time listener
                 if (transactionsListener != null) {
@@ -529,68 +756,68 @@ public class ReportFragment extends Fragment {
     
     /**
      * Load budgets cho cả năm (tổng hợp từ tất cả các tháng)
+     * Một query theo userId + year thay vì 12 query theo từng tháng
      */
     private void loadBudgetsForYear(String userId, int year, List<Transaction> transactions) {
-        // Load budgets cho tất cả 12 tháng và tổng hợp
-        List<Budget> allBudgets = new ArrayList<>();
-        final int[] loadedMonths = {0};
-        final int totalMonths = 12;
-        
-        for (int month = 1; month <= 12; month++) {
-            firebaseHelper.getUserBudgets(userId, month, year, 
-                    new FirebaseHelper.OnBudgetsLoadedListener() {
-                @Override
-                public void onBudgetsLoaded(List<Budget> budgets) {
-                    if (!isAdded() || getContext() == null) return;
-                    
-                    // Thêm budgets vào danh sách tổng hợp
-                    allBudgets.addAll(budgets);
-                    loadedMonths[0]++;
-                    
-                    // Khi đã load xong tất cả 12 tháng, tổng hợp budgets và tính toán
-                    if (loadedMonths[0] == totalMonths) {
-                        // Tổng hợp budgets: cộng dồn budgets của cùng category từ các tháng
-                        List<Budget> aggregatedBudgets = aggregateBudgetsForYear(allBudgets);
-                        calculateAndDisplayReport(transactions, aggregatedBudgets, null, year);
-                    }
-                }
+        firebaseHelper.getUserBudgetsForYear(userId, year, new FirebaseHelper.OnBudgetsLoadedListener() {
+            @Override
+            public void onBudgetsLoaded(List<Budget> budgets) {
+                if (!isAdded() || getContext() == null) return;
+                
+                // Tổng hợp budgets: cộng dồn budgets của cùng category từ các tháng
+                List<Budget> aggregatedBudgets = aggregateBudgetsForYear(budgets);
+                calculateAndDisplayReport(transactions, aggregatedBudgets, null, year);
+            }
 
-                @Override
-                public void onError(String error) {
-                    if (!isAdded() || getContext() == null) return;
-                    loadedMonths[0]++;
-                    
-                    // Nếu đã load xong tất cả (kể cả lỗi), vẫn hiển thị với dữ liệu có
-                    if (loadedMonths[0] == totalMonths) {
-                        List<Budget> aggregatedBudgets = aggregateBudgetsForYear(allBudgets);
-                        calculateAndDisplayReport(transactions, aggregatedBudgets, null, year);
-                    }
-                }
-            });
-        }
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                // Nếu lỗi, vẫn hiển thị báo cáo không có ngân sách
+                calculateAndDisplayReport(transactions, new ArrayList<>(), null, year);
+            }
+        });
     }
     
     /**
      * Tổng hợp budgets cho năm: cộng dồn budgets của cùng category từ tất cả các tháng
+     * Nếu một category/tháng có nhiều budgets (dữ liệu cũ), chỉ lấy budget mới nhất
      */
     private List<Budget> aggregateBudgetsForYear(List<Budget> allBudgets) {
-        Map<String, Double> categoryBudgetMap = new HashMap<>();
-        
-        // Tổng hợp budgets theo category
+        // Loại bỏ duplicate theo categoryId + tháng
+        Map<String, Budget> uniqueBudgets = new HashMap<>();
         for (Budget budget : allBudgets) {
-            String categoryName = budget.getCategoryName();
-            if (categoryName != null) {
-                categoryBudgetMap.put(categoryName, 
-                    categoryBudgetMap.getOrDefault(categoryName, 0.0) + budget.getAmount());
+            String categoryId = categoryIndex.idOf(budget);
+            if (categoryId == null) continue;
+            
+            String uniqueKey = categoryId + "_" + budget.getMonth();
+            Budget existing = uniqueBudgets.get(uniqueKey);
+            if (existing == null) {
+                uniqueBudgets.put(uniqueKey, budget);
+            } else {
+                Date existingDate = existing.getUpdatedAt() != null ? existing.getUpdatedAt() : existing.getCreatedAt();
+                Date currentDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
+                if (existingDate == null || (currentDate != null && currentDate.after(existingDate))) {
+                    uniqueBudgets.put(uniqueKey, budget);
+                }
             }
         }
         
+        Map<String, Double> categoryBudgetMap = new HashMap<>();
+        
+        // Tổng hợp budgets theo category ID
+        for (Budget budget : uniqueBudgets.values()) {
+            String categoryId = categoryIndex.idOf(budget);
+            categoryBudgetMap.put(categoryId, 
+                categoryBudgetMap.getOrDefault(categoryId, 0.0) + budget.getAmount());
+        }
+        
         // Tạo danh sách budgets đã tổng hợp
         List<Budget> aggregatedBudgets = new ArrayList<>();
         for (Map.Entry<String, Double> entry : categoryBudgetMap.entrySet()) {
             // Tạo budget mới với amount đã tổng hợp (tháng và năm không quan trọng cho năm)
             Budget aggregatedBudget = new Budget();
-            aggregatedBudget.setCategoryName(entry.getKey());
+            aggregatedBudget.setCategoryId(entry.getKey());
+            aggregatedBudget.setCategoryName(categoryIndex.nameOf(entry.getKey()));
             aggregatedBudget.setAmount(entry.getValue());
             aggregatedBudgets.add(aggregatedBudget);
         }
@@ -621,24 +848,20 @@ public class ReportFragment extends Fragment {
         calendar.set(Calendar.SECOND, 59);
         Date endDate = calendar.getTime();
 
-        // Load categories trước để map ID với tên và lưu expense categories
+        // Load categories trước để tra tên theo ID và lưu expense categories
         firebaseHelper.getAllCategories(new FirebaseHelper.OnCategoriesLoadedListener() {
             @Override
             public void onCategoriesLoaded(List<Category> categories) {
-                categoryIdToNameMap.clear();
                 expenseCategories.clear();
                 for (Category category : categories) {
                     if (category.getId() != null && category.getName() != null) {
-                        // Map ID -> Name
-                        categoryIdToNameMap.put(category.getId(), category.getName());
-                        // Map Name -> Name (để normalize, tránh trường hợp có cả ID và Name)
-                        categoryIdToNameMap.put(category.getName(), category.getName());
                         // Lưu expense categories để filter budgets
                         if ("expense".equals(category.getType())) {
                             expenseCategories.add(category);
                         }
                     }
                 }
+                categoryIndex = new CategoryIndex(categories);
                 // Sau khi load categories, load transactions
                 loadTransactionsAndBudgets(userId, startDate, endDate, month, year);
                 
@@ -678,20 +901,16 @@ public class ReportFragment extends Fragment {
             @Override
             public void onCategoriesLoaded(List<Category> categories) {
                 // Cập nhật lại map categories và expense categories
-                categoryIdToNameMap.clear();
                 expenseCategories.clear();
                 for (Category category : categories) {
                     if (category.getId() != null && category.getName() != null) {
-                        // Map ID -> Name
-                        categoryIdToNameMap.put(category.getId(), category.getName());
-                        // Map Name -> Name (để normalize, tránh trường hợp có cả ID và Name)
-                        categoryIdToNameMap.put(category.getName(), category.getName());
                         // Lưu expense categories để filter budgets
                         if ("expense".equals(category.getType())) {
                             expenseCategories.add(category);
                         }
                     }
                 }
+                categoryIndex = new CategoryIndex(categories);
                 
                 // Sau khi reload categories, load transactions với real-time listener
                 if (transactionsListener != null) {
@@ -802,7 +1021,7 @@ public class ReportFragment extends Fragment {
                     } else if ("expense".equals(t.getType()) && !t.isRecurring()) {
                         totalExpense += t.getAmount();
                         // Normalize category: nếu là ID thì map sang tên, nếu là tên thì giữ nguyên
-                        String categoryKey = normalizeCategory(t.getCategory());
+                        String categoryKey = normalizeCategory(t);
                         expenseByCategory.put(categoryKey, 
                                 expenseByCategory.getOrDefault(categoryKey, 0.0) + t.getAmount());
                         countByCategory.put(categoryKey, 
@@ -862,7 +1081,7 @@ public class ReportFragment extends Fragment {
                         
                         if (isMonthInRange(selectedMonthCal, startCal, endCal)) {
                             totalExpense += recurring.getAmount();
-                            String categoryKey = normalizeCategory(recurring.getCategory());
+                            String categoryKey = normalizeCategory(recurring);
                             expenseByCategory.put(categoryKey, 
                                     expenseByCategory.getOrDefault(categoryKey, 0.0) + recurring.getAmount());
                             countByCategory.put(categoryKey, 
@@ -934,7 +1153,7 @@ public class ReportFragment extends Fragment {
                             
                             if (isMonthInRange(monthCal, startCal, endCal)) {
                                 totalExpense += recurring.getAmount();
-                                String categoryKey = normalizeCategory(recurring.getCategory());
+                                String categoryKey = normalizeCategory(recurring);
                                 expenseByCategory.put(categoryKey, 
                                         expenseByCategory.getOrDefault(categoryKey, 0.0) + recurring.getAmount());
                                 countByCategory.put(categoryKey, 
@@ -964,7 +1183,7 @@ public class ReportFragment extends Fragment {
                         totalIncome += t.getAmount();
                     } else if ("expense".equals(t.getType()) && !t.isRecurring()) {
                         totalExpense += t.getAmount();
-                        String categoryKey = normalizeCategory(t.getCategory());
+                        String categoryKey = normalizeCategory(t);
                         expenseByCategory.put(categoryKey, 
                                 expenseByCategory.getOrDefault(categoryKey, 0.0) + t.getAmount());
                         countByCategory.put(categoryKey, 
@@ -988,46 +1207,28 @@ public class ReportFragment extends Fragment {
         double balance = totalIncome - totalExpense;
 
         // Tính tổng ngân sách (chỉ tính cho các expense categories hợp lệ, loại bỏ trùng lặp)
-        // Tạo Set chứa tên các expense categories để kiểm tra (đã map sang tiếng Anh)
-        Set<String> validCategoryNames = new HashSet<>();
-        for (Category cat : expenseCategories) {
-            if (cat.getName() != null) {
-                // Map từ tiếng Việt sang tiếng Anh nếu cần
-                String mappedName = mapCategoryNameToEnglish(cat.getName());
-                validCategoryNames.add(mappedName);
-                // Cũng thêm tên gốc để hỗ trợ cả trường hợp budgets có tên tiếng Anh
-                validCategoryNames.add(cat.getName());
-            }
-        }
-        
-        // Loại bỏ trùng lặp và chỉ tính budgets cho các category hợp lệ
-        // Map budgets theo category name (đã normalize)
+        // Map budgets theo category ID, bỏ qua ngân sách của category không còn tồn tại
         Map<String, Budget> categoryBudgetsMap = new HashMap<>();
         for (Budget budget : budgets) {
-            String categoryName = budget.getCategoryName();
-            // Map tên category từ tiếng Việt sang tiếng Anh nếu cần
-            String mappedCategoryName = mapCategoryNameToEnglish(categoryName);
-            // Chỉ xử lý nếu category này hợp lệ
-            if (!validCategoryNames.contains(mappedCategoryName)) {
+            String categoryId = categoryIndex.idOf(budget);
+            if (!isExpenseCategory(categoryId)) {
                 continue;
             }
-            // Sử dụng tên đã map để lưu vào map
-            categoryName = mappedCategoryName;
             
-            Budget existing = categoryBudgetsMap.get(categoryName);
+            Budget existing = categoryBudgetsMap.get(categoryId);
             if (existing == null) {
-                categoryBudgetsMap.put(categoryName, budget);
+                categoryBudgetsMap.put(categoryId, budget);
             } else {
                 // Nếu đã có, so sánh updatedAt để lấy budget mới nhất
                 Date existingDate = existing.getUpdatedAt() != null ? existing.getUpdatedAt() : existing.getCreatedAt();
                 Date currentDate = budget.getUpdatedAt() != null ? budget.getUpdatedAt() : budget.getCreatedAt();
                 if (existingDate == null || (currentDate != null && currentDate.after(existingDate))) {
-                    categoryBudgetsMap.put(categoryName, budget);
+                    categoryBudgetsMap.put(categoryId, budget);
                 }
             }
         }
         
-        // Chuyển sang Map<categoryName, amount> để tính tổng
+        // Chuyển sang Map<categoryId, amount> để tính tổng
         Map<String, Double> categoryBudgets = new HashMap<>();
         for (Map.Entry<String, Budget> entry : categoryBudgetsMap.entrySet()) {
             categoryBudgets.put(entry.getKey(), entry.getValue().getAmount());
@@ -1190,72 +1391,31 @@ public class ReportFragment extends Fragment {
         return !check.before(start) && !check.after(end);
     }
     
+    private boolean isExpenseCategory(String categoryId) {
+        Category category = categoryIndex.get(categoryId);
+        return category != null && "expense".equals(category.getType());
+    }
+
     /**
-     * Normalize category: nếu là ID thì map sang tên, nếu là tên thì giữ nguyên
-     * Đảm bảo normalize đúng để matching với budgets
+     * Tên category của giao dịch để nhóm trong báo cáo
+     * Tra theo category ID nên giao dịch cũ vẫn được nhóm đúng khi category đổi tên
      */
-    private String normalizeCategory(String category) {
+    private String normalizeCategory(Transaction transaction) {
+        String name = categoryIndex.nameOf(categoryIndex.idOf(transaction));
+        if (name != null) {
+            return name;
+        }
+
+        String category = transaction.getCategory();
         if (category == null || category.trim().isEmpty()) {
             return getString(R.string.unknown);
         }
-        
-        // Nếu tìm thấy trong map, trả về giá trị đã được map
-        String normalized = categoryIdToNameMap.get(category);
-        if (normalized != null) {
-            // Nếu normalized khác với category gốc, nghĩa là đã map được (ID -> Name)
-            // Nếu normalized == category, nghĩa là map Name -> Name (đã là tên rồi)
-            // Map từ tiếng Việt sang tiếng Anh nếu cần (để tương thích với budgets cũ)
-            return mapCategoryNameToEnglish(normalized);
-        }
-        
-        // Nếu không tìm thấy trong map, thử map từ tiếng Việt sang tiếng Anh
-        String mappedName = mapCategoryNameToEnglish(category);
-        // Kiểm tra lại xem tên đã map có trong map không
-        normalized = categoryIdToNameMap.get(mappedName);
-        if (normalized != null) {
-            return mapCategoryNameToEnglish(normalized);
-        }
-        
-        // Nếu không tìm thấy trong map:
-        // - Nếu category là ID (chuỗi dài, không có khoảng trắng, giống Firestore ID)
-        //   => có thể category đã bị xóa khỏi database
-        // - Nếu category là tên (có khoảng trắng hoặc ngắn) => có thể là tên mới
-        
-        // Kiểm tra xem category có phải là ID không (Firestore ID thường dài > 15 ký tự, không có khoảng trắng)
-        if (category.length() > 15 && !category.contains(" ") && !category.contains("-")) {
-            // Có thể là ID của category đã bị xóa
+        // Có categoryId nhưng không tra được => category đã bị xóa khỏi database
+        if (transaction.getCategoryId() != null) {
             return getString(R.string.deleted_category);
         }
-        
-        // Nếu không phải ID, có thể là tên mới chưa có trong map, trả về tên đã map
-        return mappedName;
-    }
-    
-    /**
-     * Map tên category từ tiếng Việt sang tiếng Anh
-     * Để tương thích với budgets cũ có tên tiếng Việt
-     */
-    private String mapCategoryNameToEnglish(String categoryName) {
-        if (categoryName == null) {
-            return null;
-        }
-        
-        // Map các tên category từ tiếng Việt sang tiếng Anh
-        switch (categoryName) {
-            case "Ăn uống":
-                return "Food & Dining";
-            case "Giao thông":
-                return "Transportation";
-            case "Giáo dục":
-                return "Education";
-            case "Tiện ích":
-                return "Utilities";
-            case "Giải trí":
-                return "Entertainment";
-            default:
-                // Nếu không phải tên tiếng Việt, giữ nguyên
-                return categoryName;
-        }
+        // Dữ liệu cũ chưa migrate: giữ tên đã lưu (đã map tên tiếng Việt cũ)
+        return CategoryIndex.mapLegacyName(category);
     }
 
     /**
@@ -1490,7 +1650,12 @@ public class ReportFragment extends Fragment {
                         return;
                     }
                     
+                    NoteCategoryClassifier noteClassifier =
+                            NoteCategoryClassifier.forUser(requireContext(), prefsHelper.getUserId());
                     firebaseHelper.deleteTransaction(transaction.getId(), task -> {
+                        if (task.isSuccessful()) {
+                            noteClassifier.forget(transaction);
+                        }
                         if (!isAdded() || getContext() == null) return;
                         
                         if (task.isSuccessful()) {
@@ -1519,7 +1684,9 @@ public class ReportFragment extends Fragment {
     public void onResume() {
         super.onResume();
         // Reload báo cáo cho tháng/năm đang chọn khi quay lại fragment
-        if (firebaseHelper != null && selectedCalendar != null) {
+        if (isRangeMode) {
+            renderRangeReport();
+        } else if (firebaseHelper != null && selectedCalendar != null) {
             if (isYearlyMode) {
                 loadReportDataForYear(selectedCalendar.get(Calendar.YEAR));
             } else {
@@ -1529,6 +1696,164 @@ public class ReportFragment extends Fragment {
         }
     }
 
+    /**
+     * Thiết lập LineChart xu hướng chi tiêu
+     */
+    private void setupTrendChart() {
+        lineChartTrend.getDescription().setEnabled(false);
+        lineChartTrend.getLegend().setEnabled(false);
+        lineChartTrend.getAxisRight().setEnabled(false);
+        lineChartTrend.getAxisLeft().setAxisMinimum(0f);
+        lineChartTrend.setScaleYEnabled(false);
+        XAxis xAxis = lineChartTrend.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setDrawGridLines(false);
+        xAxis.setLabelCount(4);
+    }
+
+    private void showTrend() {
+        isTrendVisible = true;
+        tvShowTrend.setVisibility(View.GONE);
+        layoutTrend.setVisibility(View.VISIBLE);
+        if (dayBucketIndex == null) {
+            startDayBucketIndex();
+        } else {
+            renderTrendChart();
+        }
+    }
+
+    /**
+     * Vẽ chi tiêu theo ngày/tuần trong TREND_MONTHS tháng gần nhất
+     * Chuỗi lấy từ tổng theo bucket của chỉ mục, sau đó giảm bằng LTTB còn khoảng một điểm mỗi dp
+     * chiều rộng biểu đồ (vài trăm điểm thay vì hàng nghìn) mà vẫn giữ các đỉnh chi tiêu
+     */
+    private void renderTrendChart() {
+        if (!isTrendVisible || !dayIndexSnapshotLoaded || !dayIndexArchivesLoaded) return;
+        if (!isAdded() || getContext() == null) return;
+        updateTrendCategories();
+
+        int position = spinnerTrendCategory.getSelectedItemPosition();
+        String categoryKey = position > 0 && position < trendCategoryKeys.size() ? trendCategoryKeys.get(position) : null;
+        int bucketDays = switchTrendWeekly.isChecked() ? 7 : 1;
+
+        Calendar end = Calendar.getInstance();
+        Calendar start = (Calendar) end.clone();
+        start.add(Calendar.MONTH, -TREND_MONTHS);
+        start.set(Calendar.HOUR_OF_DAY, 0);
+        start.set(Calendar.MINUTE, 0);
+        start.set(Calendar.SECOND, 0);
+        start.set(Calendar.MILLISECOND, 0);
+
+        double[] values = dayBucketIndex.expenseSeries(start.getTime(), end.getTime(), categoryKey, bucketDays);
+        boolean hasData = false;
+        double[] days = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            days[i] = (double) i * bucketDays;
+            hasData |= values[i] > 0;
+        }
+        lineChartTrend.setVisibility(hasData ? View.VISIBLE : View.GONE);
+        tvNoTrendData.setVisibility(hasData ? View.GONE : View.VISIBLE);
+        if (!hasData) return;
+
+        float density = getResources().getDisplayMetrics().density;
+        int widthPixels = lineChartTrend.getWidth() > 0
+                ? lineChartTrend.getWidth() : getResources().getDisplayMetrics().widthPixels;
+        int threshold = Math.max(3, Math.round(widthPixels / density));
+
+        List<Entry> entries = new ArrayList<>();
+        for (int index : LttbDownsampler.select(days, values, threshold)) {
+            entries.add(new Entry((float) days[index], (float) values[index]));
+        }
+        LineDataSet dataSet = new LineDataSet(entries, getString(R.string.spending_trend));
+        dataSet.setColor(ContextCompat.getColor(requireContext(), R.color.expense_color));
+        dataSet.setLineWidth(1.5f);
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+        dataSet.setDrawFilled(true);
+        dataSet.setFillColor(ContextCompat.getColor(requireContext(), R.color.expense_light));
+
+        long startMillis = start.getTimeInMillis();
+        SimpleDateFormat axisFormat = new SimpleDateFormat("MM/yy", Locale.getDefault());
+        lineChartTrend.getXAxis().setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                Calendar day = Calendar.getInstance();
+                day.setTimeInMillis(startMillis);
+                day.add(Calendar.DAY_OF_MONTH, Math.round(value));
+                return axisFormat.format(day.getTime());
+            }
+        });
+        lineChartTrend.setData(new LineData(dataSet));
+        lineChartTrend.invalidate();
+    }
+
+    private void showHeatmap() {
+        isHeatmapVisible = true;
+        tvShowHeatmap.setVisibility(View.GONE);
+        layoutHeatmap.setVisibility(View.VISIBLE);
+        if (dayBucketIndex == null) {
+            startDayBucketIndex();
+        } else {
+            renderHeatmap();
+        }
+    }
+
+    /**
+     * Vẽ heatmap của năm đang xem từ mảng chi tiêu từng ngày (chỉ mục tính một lượt và cache theo năm)
+     */
+    private void renderHeatmap() {
+        if (!isHeatmapVisible || !isYearlyMode || isRangeMode) return;
+        if (!dayIndexSnapshotLoaded || !dayIndexArchivesLoaded) return;
+        int year = selectedCalendar.get(Calendar.YEAR);
+        // Ngày 0 (1/1/1970) là Thứ 5, đổi về hàng 0 = Thứ 2
+        int firstWeekday = Math.floorMod(DayBucketIndex.firstDayOfYear(year) + 3, 7);
+        heatmapView.setData(year, dayBucketIndex.dailyExpenses(year), firstWeekday);
+    }
+
+    /**
+     * Mở danh sách giao dịch lọc sẵn theo ngày được chọn trên heatmap
+     */
+    private void openDayTransactions(int year, int dayOfYear) {
+        if (getActivity() == null) return;
+        Calendar day = Calendar.getInstance();
+        day.clear();
+        day.set(year, Calendar.JANUARY, 1);
+        day.add(Calendar.DAY_OF_YEAR, dayOfYear);
+        getActivity().getSupportFragmentManager()
+                .beginTransaction()
+                .replace(R.id.fragment_container, TransactionListFragment.newInstanceForDay(day.getTime()))
+                .addToBackStack(null) // Cho phép quay lại báo cáo bằng nút back
+                .commit();
+    }
+
+    /**
+     * Cập nhật danh sách category của biểu đồ khi chỉ mục có category mới (giữ category đang chọn)
+     */
+    private void updateTrendCategories() {
+        List<String> keys = new ArrayList<>();
+        keys.add(null);
+        keys.addAll(dayBucketIndex.expenseCategoryKeys());
+        if (keys.size() == trendCategoryKeys.size() && trendCategoryKeys.containsAll(keys)) {
+            return;
+        }
+
+        int position = spinnerTrendCategory.getSelectedItemPosition();
+        String selectedKey = position > 0 && position < trendCategoryKeys.size() ? trendCategoryKeys.get(position) : null;
+        trendCategoryKeys.clear();
+        trendCategoryKeys.addAll(keys);
+
+        List<String> names = new ArrayList<>();
+        names.add(getString(R.string.all_categories));
+        for (int i = 1; i < trendCategoryKeys.size(); i++) {
+            names.add(categoryName(trendCategoryKeys.get(i)));
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerTrendCategory.setAdapter(adapter);
+        spinnerTrendCategory.setSelection(Math.max(trendCategoryKeys.indexOf(selectedKey), 0));
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -1547,6 +1872,16 @@ public class ReportFragment extends Fragment {
             transactionsListener.remove();
             transactionsListener = null;
         }
+        if (dayIndexListener != null) {
+            dayIndexListener.remove();
+            dayIndexListener = null;
+        }
+        dayBucketIndex = null;
+        dayIndexSnapshotLoaded = false;
+        dayIndexArchivesLoaded = false;
+        isTrendVisible = false;
+        isHeatmapVisible = false;
+        trendCategoryKeys.clear();
     }
 }
 
@@ -2,11 +2,17 @@ package com.example.appqlct.fragment.user;
 
 import android.app.AlertDialog;
 import android.app.DatePickerDialog;
+import android.app.ProgressDialog;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.Spinner;
 import android.widget.TableLayout;
@@ -15,23 +21,35 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.appqlct.R;
+import com.example.appqlct.helper.CategoryIndex;
+import com.example.appqlct.helper.DayBucketIndex;
 import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.NoteCategoryClassifier;
 import com.example.appqlct.helper.NotificationHelper;
 import com.example.appqlct.helper.SharedPreferencesHelper;
+import com.example.appqlct.helper.StatementImporter;
+import com.example.appqlct.helper.TransactionSearchIndex;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Transaction;
+import com.google.android.gms.tasks.Task;
+import com.google.android.material.snackbar.Snackbar;
 
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * TransactionListFragment - Hiển thị danh sách giao dịch dạng bảng
@@ -40,6 +58,22 @@ import java.util.Map;
 public class TransactionListFragment extends Fragment {
     private static final String ARG_CATEGORY_ID = "category_id";
     private static final String ARG_CATEGORY_NAME = "category_name";
+    private static final String ARG_DAY = "day";
+    private static final String[] STATEMENT_MIME_TYPES = {
+            "text/csv", "text/comma-separated-values", "text/plain",
+            "application/x-ofx", "application/octet-stream"
+    };
+    private static final int UNDO_WINDOW_MS = 5000; // Thời gian cho phép hoàn tác trước khi ghi lên Firestore
+    // Các lựa chọn dời ngày hàng loạt: trường Calendar, số lượng và nhãn tương ứng
+    private static final int[] DATE_SHIFT_FIELDS = {
+            Calendar.MONTH, Calendar.DAY_OF_MONTH, Calendar.DAY_OF_MONTH,
+            Calendar.DAY_OF_MONTH, Calendar.DAY_OF_MONTH, Calendar.MONTH
+    };
+    private static final int[] DATE_SHIFT_AMOUNTS = {-1, -7, -1, 1, 7, 1};
+    private static final int[] DATE_SHIFT_LABELS = {
+            R.string.shift_back_one_month, R.string.shift_back_one_week, R.string.shift_back_one_day,
+            R.string.shift_forward_one_day, R.string.shift_forward_one_week, R.string.shift_forward_one_month
+    };
     
     private TableLayout tableTransactions;
     private TextView tvEmpty;
@@ -47,13 +81,19 @@ public class TransactionListFragment extends Fragment {
     private ImageButton btnSelectMonthYear;
     private ImageButton btnResetFilter;
     private ImageButton btnViewAll; // Nút "Xem tất cả" khi vào từ danh mục cụ thể
+    private ImageButton btnImportStatement; // Nút nhập file sao kê ngân hàng
     private Spinner spinnerCategory;
+    private EditText etSearch;
+    private View layoutSelectionBar; // Thanh thao tác hàng loạt
+    private TextView tvSelectionCount;
     private View rowCategoryFilter; // hàng chứa spinner lọc danh mục
     private com.google.android.material.floatingactionbutton.FloatingActionButton fabAddTransaction;
     private List<Transaction> transactionList;
     private List<Transaction> allTransactions; // Lưu tất cả transactions để lọc
     private List<Category> allCategories; // Danh sách tất cả categories
-    private Map<String, String> categoryIdToNameMap; // Map category ID -> category name
+    private CategoryIndex categoryIndex; // Tra cứu category theo ID
+    private TransactionSearchIndex searchIndex; // Chỉ mục tìm kiếm, cập nhật theo từng thêm/sửa/xóa
+    private String searchQuery = "";
     private FirebaseHelper firebaseHelper;
     private SharedPreferencesHelper prefsHelper;
     private Calendar selectedCalendar;
@@ -62,6 +102,18 @@ public class TransactionListFragment extends Fragment {
     private boolean isFilteringByMonth = false; // Flag để biết có đang lọc theo tháng không
     private String selectedCategoryId = null; // Category ID đang được chọn để lọc (null = tất cả)
     private String initialCategoryName = null; // Tên category ban đầu (nếu có)
+    private Date selectedDay = null; // Ngày đang lọc (mở từ heatmap), null = không lọc theo ngày
+    private ProgressDialog importProgressDialog;
+    private final Set<String> selectedIds = new HashSet<>(); // ID giao dịch đang chọn (rỗng = không ở chế độ chọn)
+    private PendingBulkOperation pendingOperation; // Thao tác hàng loạt chưa ghi lên Firestore (còn hoàn tác được)
+
+    // Chọn file sao kê (CSV/OFX) qua Storage Access Framework
+    private final ActivityResultLauncher<String[]> statementPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    importStatement(uri);
+                }
+            });
     
     /**
      * Tạo instance mới của TransactionListFragment
@@ -78,6 +130,19 @@ public class TransactionListFragment extends Fragment {
         return fragment;
     }
 
+    /**
+     * Tạo instance lọc sẵn các khoản chi của một ngày (mở từ heatmap của báo cáo)
+     * @param day ngày cần xem
+     * @return TransactionListFragment instance
+     */
+    public static TransactionListFragment newInstanceForDay(Date day) {
+        TransactionListFragment fragment = new TransactionListFragment();
+        Bundle args = new Bundle();
+        args.putLong(ARG_DAY, day.getTime());
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -87,6 +152,9 @@ public class TransactionListFragment extends Fragment {
         if (getArguments() != null) {
             selectedCategoryId = getArguments().getString(ARG_CATEGORY_ID);
             initialCategoryName = getArguments().getString(ARG_CATEGORY_NAME);
+            if (getArguments().containsKey(ARG_DAY)) {
+                selectedDay = new Date(getArguments().getLong(ARG_DAY));
+            }
         }
 
         initViews(view);
@@ -105,9 +173,13 @@ public class TransactionListFragment extends Fragment {
         btnSelectMonthYear = view.findViewById(R.id.btnSelectMonthYear);
         btnResetFilter = view.findViewById(R.id.btnResetFilter);
         btnViewAll = view.findViewById(R.id.btnViewAll);
+        btnImportStatement = view.findViewById(R.id.btnImportStatement);
         spinnerCategory = view.findViewById(R.id.spinnerCategory);
+        etSearch = view.findViewById(R.id.etSearch);
         rowCategoryFilter = view.findViewById(R.id.rowCategoryFilter);
         fabAddTransaction = view.findViewById(R.id.fabAddTransaction);
+        layoutSelectionBar = view.findViewById(R.id.layoutSelectionBar);
+        tvSelectionCount = view.findViewById(R.id.tvSelectionCount);
         
         selectedCalendar = Calendar.getInstance();
         
@@ -141,6 +213,7 @@ public class TransactionListFragment extends Fragment {
         // Nút reset về "Tất cả giao dịch" - chỉ hiển thị khi không vào từ danh mục cụ thể
         btnResetFilter.setOnClickListener(v -> {
             isFilteringByMonth = false;
+            selectedDay = null;
             selectedCategoryId = null;
             initialCategoryName = null; // Reset category name
             spinnerCategory.setSelection(0); // Reset về "Tất cả"
@@ -153,6 +226,7 @@ public class TransactionListFragment extends Fragment {
             selectedCategoryId = null;
             initialCategoryName = null;
             isFilteringByMonth = false;
+            selectedDay = null;
             
             // Hiển thị lại spinner và FAB
             if (rowCategoryFilter != null) {
@@ -179,6 +253,43 @@ public class TransactionListFragment extends Fragment {
             }
         });
 
+        // Tìm kiếm theo ghi chú/số tiền, lọc lại mỗi khi nội dung thay đổi
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString().trim();
+                applyFilter();
+            }
+        });
+
+        // Thanh thao tác hàng loạt
+        view.findViewById(R.id.btnCancelSelection).setOnClickListener(v -> {
+            selectedIds.clear();
+            displayTransactions();
+            updateSelectionBar();
+        });
+        view.findViewById(R.id.btnSelectAll).setOnClickListener(v -> {
+            for (Transaction transaction : transactionList) {
+                if (transaction.getId() != null) selectedIds.add(transaction.getId());
+            }
+            displayTransactions();
+            updateSelectionBar();
+        });
+        view.findViewById(R.id.btnBulkCategory).setOnClickListener(v -> showBulkCategoryDialog());
+        view.findViewById(R.id.btnBulkShiftDate).setOnClickListener(v -> showBulkShiftDateDialog());
+        view.findViewById(R.id.btnBulkDelete).setOnClickListener(v -> showBulkDeleteConfirmation());
+
+        // Nút nhập sao kê ngân hàng
+        btnImportStatement.setOnClickListener(v -> statementPicker.launch(STATEMENT_MIME_TYPES));
+
         // Floating Action Button để thêm giao dịch mới
         fabAddTransaction.setOnClickListener(v -> {
             // Mở dialog/fragment để thêm giao dịch
@@ -192,7 +303,8 @@ public class TransactionListFragment extends Fragment {
         transactionList = new ArrayList<>();
         allTransactions = new ArrayList<>();
         allCategories = new ArrayList<>();
-        categoryIdToNameMap = new HashMap<>();
+        categoryIndex = new CategoryIndex(null);
+        searchIndex = new TransactionSearchIndex();
     }
 
     /**
@@ -240,18 +352,14 @@ public class TransactionListFragment extends Fragment {
                 if (!isAdded() || getContext() == null) return;
                 
                 allCategories.clear();
-                categoryIdToNameMap.clear();
                 
                 // Chỉ lấy expense categories
                 for (Category category : categories) {
                     if (category != null && "expense".equals(category.getType())) {
                         allCategories.add(category);
-                        if (category.getId() != null && category.getName() != null) {
-                            categoryIdToNameMap.put(category.getId(), category.getName());
-                            categoryIdToNameMap.put(category.getName(), category.getName());
-                        }
                     }
                 }
+                categoryIndex = new CategoryIndex(allCategories);
                 
                 // Cập nhật spinner
                 updateCategorySpinner();
@@ -288,7 +396,7 @@ public class TransactionListFragment extends Fragment {
         // Nếu có category ID từ Bundle, tự động chọn category trong spinner
         if (selectedCategoryId != null) {
             // Tìm category name từ selectedCategoryId
-            String categoryName = categoryIdToNameMap.get(selectedCategoryId);
+            String categoryName = categoryIndex.nameOf(selectedCategoryId);
             if (categoryName != null) {
                 int position = categoryNames.indexOf(categoryName);
                 if (position > 0) { // position > 0 vì "Tất cả" ở vị trí 0
@@ -312,6 +420,12 @@ public class TransactionListFragment extends Fragment {
                 // Lưu tất cả transactions
                 allTransactions.clear();
                 allTransactions.addAll(transactions);
+                searchIndex.clear();
+                searchIndex.putAll(transactions);
+                // Thao tác hàng loạt chưa ghi lên Firestore vẫn phải hiển thị như đã áp dụng
+                if (pendingOperation != null) {
+                    replaceLocally(pendingOperation.originals, pendingOperation.updated);
+                }
                 
                 // Áp dụng filter nếu có
                 applyFilter();
@@ -331,9 +445,21 @@ public class TransactionListFragment extends Fragment {
     private void applyFilter() {
         transactionList.clear();
         
+        // Bước 0: Tìm kiếm qua chỉ mục (chỉ các giao dịch khớp mới đi tiếp)
+        List<Transaction> source = searchQuery.isEmpty() ? allTransactions : searchIndex.search(searchQuery);
+        
         // Bước 1: Lọc theo tháng/năm nếu có
         List<Transaction> filteredByMonth = new ArrayList<>();
-        if (isFilteringByMonth && selectedCalendar != null) {
+        if (selectedDay != null) {
+            // Lọc theo một ngày (so sánh số ngày, không tạo Calendar cho từng giao dịch)
+            int filterDay = DayBucketIndex.dayOf(selectedDay);
+            for (Transaction transaction : source) {
+                if (transaction != null && transaction.getDate() != null
+                        && DayBucketIndex.dayOf(transaction.getDate()) == filterDay) {
+                    filteredByMonth.add(transaction);
+                }
+            }
+        } else if (isFilteringByMonth && selectedCalendar != null) {
             // Tạo filterCalendar từ selectedCalendar (đã được normalize)
             Calendar filterCalendar = (Calendar) selectedCalendar.clone();
             
@@ -350,7 +476,7 @@ public class TransactionListFragment extends Fragment {
             // Debug log
             android.util.Log.d("TransactionList", "Filtering by: " + (filterMonth + 1) + "/" + filterYear);
             
-            for (Transaction transaction : allTransactions) {
+            for (Transaction transaction : source) {
                 if (transaction == null || transaction.getDate() == null) {
                     continue;
                 }
@@ -371,31 +497,14 @@ public class TransactionListFragment extends Fragment {
             // Debug log
             android.util.Log.d("TransactionList", "Filtered transactions count: " + filteredByMonth.size());
         } else {
-            filteredByMonth.addAll(allTransactions);
+            filteredByMonth.addAll(source);
         }
         
         // Bước 2: Lọc theo danh mục nếu có
         if (selectedCategoryId != null) {
-            // Lấy category name từ selectedCategoryId
-            String selectedCategoryName = categoryIdToNameMap.get(selectedCategoryId);
-            
+            // So sánh theo category ID (dữ liệu cũ lưu tên được quy về ID)
             for (Transaction transaction : filteredByMonth) {
-                String transactionCategory = transaction.getCategory();
-                
-                // So sánh với category ID hoặc category name
-                boolean matches = false;
-                if (selectedCategoryId.equals(transactionCategory)) {
-                    matches = true;
-                } else if (selectedCategoryName != null) {
-                    // So sánh với category name
-                    String transactionCategoryName = categoryIdToNameMap.get(transactionCategory);
-                    if (selectedCategoryName.equals(transactionCategoryName) || 
-                        selectedCategoryName.equals(transactionCategory)) {
-                        matches = true;
-                    }
-                }
-                
-                if (matches) {
+                if (selectedCategoryId.equals(categoryIndex.idOf(transaction))) {
                     transactionList.add(transaction);
                 }
             }
@@ -416,7 +525,10 @@ public class TransactionListFragment extends Fragment {
         transactionList.sort((t1, t2) -> t2.getDate().compareTo(t1.getDate()));
         
         // Cập nhật UI
-        if (isFilteringByMonth && selectedCalendar != null) {
+        if (selectedDay != null) {
+            tvMonthYear.setText(dateFormat.format(selectedDay));
+            btnResetFilter.setVisibility(View.VISIBLE);
+        } else if (isFilteringByMonth && selectedCalendar != null) {
             // Format trực tiếp từ selectedCalendar (đã được normalize trong DatePicker callback)
             // Debug log trước khi format
             android.util.Log.d("TransactionList", "Updating UI - selectedCalendar.MONTH: " + selectedCalendar.get(Calendar.MONTH));
@@ -443,6 +555,16 @@ public class TransactionListFragment extends Fragment {
             btnResetFilter.setVisibility(View.GONE);
         }
         
+        // Bỏ chọn các giao dịch không còn hiển thị
+        if (!selectedIds.isEmpty()) {
+            Set<String> visibleIds = new HashSet<>();
+            for (Transaction transaction : transactionList) {
+                visibleIds.add(transaction.getId());
+            }
+            selectedIds.retainAll(visibleIds);
+        }
+        updateSelectionBar();
+        
         // Hiển thị bảng
         displayTransactions();
         
@@ -509,21 +631,236 @@ public class TransactionListFragment extends Fragment {
             tvDate.setText(dateFormat.format(transaction.getDate()));
             
             // Loại chi tiêu (category name)
-            String categoryDisplay = transaction.getCategory();
-            if (categoryIdToNameMap.containsKey(categoryDisplay)) {
-                categoryDisplay = categoryIdToNameMap.get(categoryDisplay);
-            }
+            String categoryDisplay = categoryIndex.displayNameOf(transaction);
             tvCategory.setText(categoryDisplay != null ? categoryDisplay : getString(R.string.unknown));
             
-            // Thêm click listener để có thể sửa/xóa
+            // Dòng đang chọn được tô màu; nhấn giữ để bắt đầu chọn nhiều
+            Drawable defaultBackground = row.getBackground();
+            if (selectedIds.contains(transaction.getId())) {
+                row.setBackgroundColor(requireContext().getColor(R.color.row_selected_bg));
+            }
+            row.setOnLongClickListener(v -> {
+                toggleSelection(transaction, row, defaultBackground);
+                return true;
+            });
+            
+            // Thêm click listener để có thể sửa/xóa (hoặc chọn/bỏ chọn khi đang ở chế độ chọn)
             row.setOnClickListener(v -> {
-                showTransactionOptionsDialog(transaction);
+                if (!selectedIds.isEmpty()) {
+                    toggleSelection(transaction, row, defaultBackground);
+                } else {
+                    showTransactionOptionsDialog(transaction);
+                }
             });
             
             tableTransactions.addView(row);
         }
     }
 
+    /**
+     * Chọn/bỏ chọn một dòng, chỉ đổi màu dòng đó (không vẽ lại cả bảng)
+     */
+    private void toggleSelection(Transaction transaction, View row, Drawable defaultBackground) {
+        if (transaction.getId() == null) return;
+        if (selectedIds.remove(transaction.getId())) {
+            row.setBackground(defaultBackground);
+        } else {
+            selectedIds.add(transaction.getId());
+            row.setBackgroundColor(requireContext().getColor(R.color.row_selected_bg));
+        }
+        updateSelectionBar();
+    }
+
+    private void updateSelectionBar() {
+        if (selectedIds.isEmpty()) {
+            layoutSelectionBar.setVisibility(View.GONE);
+        } else {
+            tvSelectionCount.setText(getString(R.string.selected_count, selectedIds.size()));
+            layoutSelectionBar.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Các giao dịch đang chọn, theo thứ tự hiển thị
+     */
+    private List<Transaction> selectedTransactions() {
+        List<Transaction> selected = new ArrayList<>();
+        for (Transaction transaction : transactionList) {
+            if (selectedIds.contains(transaction.getId())) {
+                selected.add(transaction);
+            }
+        }
+        return selected;
+    }
+
+    private void showBulkDeleteConfirmation() {
+        List<Transaction> selected = selectedTransactions();
+        if (selected.isEmpty()) return;
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.confirm))
+                .setMessage(getString(R.string.bulk_delete_confirm, selected.size()))
+                .setPositiveButton(getString(R.string.delete), (dialog, which) -> {
+                    applyBulkOperation(new PendingBulkOperation(selected, Collections.emptyList(), true,
+                            getString(R.string.bulk_deleted, selected.size())));
+                })
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    /**
+     * Chuyển các giao dịch đang chọn sang một category
+     */
+    private void showBulkCategoryDialog() {
+        List<Transaction> selected = selectedTransactions();
+        if (selected.isEmpty() || allCategories.isEmpty()) return;
+        String[] names = new String[allCategories.size()];
+        for (int i = 0; i < names.length; i++) {
+            String name = allCategories.get(i).getName();
+            names[i] = name != null ? name : getString(R.string.unknown);
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.bulk_change_category))
+                .setItems(names, (dialog, which) -> {
+                    Category category = allCategories.get(which);
+                    List<Transaction> updated = new ArrayList<>(selected.size());
+                    for (Transaction transaction : selected) {
+                        Transaction copy = copyOf(transaction);
+                        copy.setCategory(category.getName());
+                        copy.setCategoryId(category.getId());
+                        updated.add(copy);
+                    }
+                    applyBulkOperation(new PendingBulkOperation(selected, updated, false,
+                            getString(R.string.bulk_category_changed, selected.size(), names[which])));
+                })
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    /**
+     * Dời ngày các giao dịch đang chọn (trước/sau 1 ngày, 1 tuần hoặc 1 tháng)
+     */
+    private void showBulkShiftDateDialog() {
+        List<Transaction> selected = selectedTransactions();
+        if (selected.isEmpty()) return;
+        String[] options = new String[DATE_SHIFT_LABELS.length];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = getString(DATE_SHIFT_LABELS[i]);
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.bulk_shift_date))
+                .setItems(options, (dialog, which) -> {
+                    Calendar calendar = Calendar.getInstance();
+                    List<Transaction> updated = new ArrayList<>(selected.size());
+                    for (Transaction transaction : selected) {
+                        Transaction copy = copyOf(transaction);
+                        calendar.setTime(transaction.getDate());
+                        calendar.add(DATE_SHIFT_FIELDS[which], DATE_SHIFT_AMOUNTS[which]);
+                        copy.setDate(calendar.getTime());
+                        updated.add(copy);
+                    }
+                    applyBulkOperation(new PendingBulkOperation(selected, updated, false,
+                            getString(R.string.bulk_date_shifted, selected.size())));
+                })
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    /**
+     * Áp dụng thao tác hàng loạt trên máy ngay, còn ghi lên Firestore thì hoãn đến khi hết thời gian hoàn tác
+     * (một lần gọi mạng cho mỗi MAX_BATCH_SIZE giao dịch thay vì một lần cho mỗi giao dịch)
+     */
+    private void applyBulkOperation(PendingBulkOperation operation) {
+        // Thao tác trước còn đang chờ thì ghi luôn, chỉ hoàn tác được thao tác gần nhất
+        commitPendingOperation(pendingOperation);
+        pendingOperation = operation;
+        selectedIds.clear();
+        replaceLocally(operation.originals, operation.updated);
+        applyFilter();
+
+        Snackbar.make(requireView(), operation.message, UNDO_WINDOW_MS)
+                .setAction(R.string.undo, v -> undoPendingOperation(operation))
+                .addCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        if (event != DISMISS_EVENT_ACTION) {
+                            commitPendingOperation(operation);
+                        }
+                    }
+                })
+                .show();
+    }
+
+    private void undoPendingOperation(PendingBulkOperation operation) {
+        if (operation == null || pendingOperation != operation) return;
+        pendingOperation = null;
+        replaceLocally(operation.updated, operation.originals);
+        if (getView() != null) {
+            applyFilter();
+        }
+    }
+
+    /**
+     * Ghi thao tác hàng loạt lên Firestore bằng các WriteBatch; lỗi thì tải lại để đồng bộ
+     */
+    private void commitPendingOperation(PendingBulkOperation operation) {
+        if (operation == null || pendingOperation != operation) return;
+        pendingOperation = null;
+
+        Task<Void> commit;
+        if (operation.delete) {
+            List<String> ids = new ArrayList<>(operation.originals.size());
+            for (Transaction transaction : operation.originals) {
+                ids.add(transaction.getId());
+            }
+            commit = firebaseHelper.deleteTransactionsChunked(ids);
+        } else {
+            commit = firebaseHelper.setTransactionsChunked(operation.updated);
+        }
+        String userId = prefsHelper.getUserId();
+        NoteCategoryClassifier noteClassifier = NoteCategoryClassifier.forUser(requireContext(), userId);
+        commit.addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                // Bỏ ghi chú đã xóa / học lại category mới (updated rỗng khi xóa)
+                noteClassifier.relearn(operation.originals, operation.updated);
+            }
+            if (!isAdded() || getContext() == null) return;
+            if (task.isSuccessful()) {
+                NotificationHelper.addSuccessNotification(getContext(), userId, operation.message);
+            } else {
+                NotificationHelper.addErrorNotification(getContext(), userId,
+                        getString(R.string.bulk_update_failed, operation.originals.size()));
+                // Một số batch có thể đã ghi xong, tải lại để khớp với Firestore
+                loadTransactions();
+            }
+        });
+    }
+
+    /**
+     * Bỏ các giao dịch removed (theo ID) khỏi danh sách và chỉ mục tìm kiếm rồi thêm các giao dịch added
+     */
+    private void replaceLocally(List<Transaction> removed, List<Transaction> added) {
+        Set<String> removedIds = new HashSet<>();
+        for (Transaction transaction : removed) {
+            removedIds.add(transaction.getId());
+            searchIndex.remove(transaction.getId());
+        }
+        allTransactions.removeIf(t -> t != null && removedIds.contains(t.getId()));
+        allTransactions.addAll(added);
+        searchIndex.putAll(added);
+    }
+
+    private static Transaction copyOf(Transaction source) {
+        Transaction copy = new Transaction(source.getId(), source.getUserId(), source.getAmount(),
+                source.getCategory(), source.getNote(), source.getDate(), source.getType(), source.isRecurring());
+        copy.setCategoryId(source.getCategoryId());
+        copy.setWalletId(source.getWalletId());
+        copy.setRecurringStartMonth(source.getRecurringStartMonth());
+        copy.setRecurringEndMonth(source.getRecurringEndMonth());
+        copy.setRecurringTransactionId(source.getRecurringTransactionId());
+        copy.setImportHash(source.getImportHash());
+        return copy;
+    }
+
     /**
      * Format số tiền
      */
@@ -578,6 +915,7 @@ public class TransactionListFragment extends Fragment {
                 android.util.Log.d("TransactionList", "Display will show: " + (selectedCalendar.get(Calendar.MONTH) + 1) + "/" + selectedCalendar.get(Calendar.YEAR));
                 
                 isFilteringByMonth = true;
+                selectedDay = null;
                 applyFilter();
             },
             year,
@@ -596,6 +934,7 @@ public class TransactionListFragment extends Fragment {
         
         // Thêm vào allTransactions
         allTransactions.add(transaction);
+        searchIndex.put(transaction);
         
         // Áp dụng filter để cập nhật transactionList
         applyFilter();
@@ -618,6 +957,7 @@ public class TransactionListFragment extends Fragment {
                 break;
             }
         }
+        searchIndex.put(transaction);
         
         // Áp dụng filter để cập nhật transactionList
         applyFilter();
@@ -626,6 +966,15 @@ public class TransactionListFragment extends Fragment {
         displayTransactions();
     }
     
+    /**
+     * Xóa transaction khỏi local list và chỉ mục tìm kiếm, refresh UI ngay lập tức
+     */
+    private void removeTransactionLocally(String transactionId) {
+        allTransactions.removeIf(t -> t != null && transactionId.equals(t.getId()));
+        searchIndex.remove(transactionId);
+        applyFilter();
+    }
+    
     /**
      * Mở dialog để thêm giao dịch mới
      */
@@ -693,13 +1042,17 @@ public class TransactionListFragment extends Fragment {
             return;
         }
         
+        NoteCategoryClassifier noteClassifier = NoteCategoryClassifier.forUser(requireContext(), prefsHelper.getUserId());
         firebaseHelper.deleteTransaction(transaction.getId(), task -> {
+            if (task.isSuccessful()) {
+                noteClassifier.forget(transaction);
+            }
             if (!isAdded() || getContext() == null) return;
             String userId = prefsHelper.getUserId();
             if (task.isSuccessful()) {
                 NotificationHelper.addSuccessNotification(getContext(), userId, 
                         getString(R.string.delete_transaction_success));
-                loadTransactions();
+                removeTransactionLocally(transaction.getId());
             } else {
                 NotificationHelper.addErrorNotification(getContext(), userId, 
                         getString(R.string.delete_transaction_failed, getString(R.string.unknown)));
@@ -707,6 +1060,94 @@ public class TransactionListFragment extends Fragment {
         });
     }
 
+    /**
+     * Nhập giao dịch từ file sao kê ngân hàng
+     * File được đọc dạng stream ở background, các dòng đã nhập trước đó được bỏ qua
+     */
+    private void importStatement(Uri uri) {
+        InputStream input;
+        try {
+            input = requireContext().getContentResolver().openInputStream(uri);
+        } catch (Exception e) {
+            input = null;
+        }
+        if (input == null) {
+            Toast.makeText(getContext(), getString(R.string.cannot_open_file), Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        importProgressDialog = new ProgressDialog(requireContext());
+        importProgressDialog.setMessage(getString(R.string.importing_statement));
+        importProgressDialog.setCancelable(false);
+        importProgressDialog.show();
+
+        String userId = prefsHelper.getUserId();
+        new StatementImporter(requireContext()).importStatement(input, userId, new ArrayList<>(allCategories),
+                new StatementImporter.OnImportListener() {
+                    @Override
+                    public void onProgress(int rowsRead, int imported) {
+                        if (importProgressDialog != null && importProgressDialog.isShowing()) {
+                            importProgressDialog.setMessage(
+                                    getString(R.string.importing_statement_progress, rowsRead, imported));
+                        }
+                    }
+
+                    @Override
+                    public void onCompleted(StatementImporter.ImportResult result) {
+                        hideImportProgressDialog();
+                        if (!isAdded() || getContext() == null) return;
+                        NotificationHelper.addSuccessNotification(getContext(), userId,
+                                getString(R.string.import_statement_result, result.imported,
+                                        result.duplicates, result.income, result.invalid));
+                        loadTransactions();
+                    }
+
+                    @Override
+                    public void onError(String error, StatementImporter.ImportResult partialResult) {
+                        hideImportProgressDialog();
+                        if (!isAdded() || getContext() == null) return;
+                        NotificationHelper.addErrorNotification(getContext(), userId,
+                                getString(R.string.import_statement_failed, error));
+                        // Các batch đã ghi trước khi lỗi vẫn được giữ lại
+                        if (partialResult != null && partialResult.imported > 0) {
+                            loadTransactions();
+                        }
+                    }
+                });
+    }
+
+    private void hideImportProgressDialog() {
+        if (importProgressDialog != null && importProgressDialog.isShowing()) {
+            importProgressDialog.dismiss();
+        }
+        importProgressDialog = null;
+    }
+
+    @Override
+    public void onDestroyView() {
+        hideImportProgressDialog();
+        // Rời màn hình khi còn trong thời gian hoàn tác thì ghi luôn
+        commitPendingOperation(pendingOperation);
+        super.onDestroyView();
+    }
+
+    /**
+     * Thao tác hàng loạt đã áp dụng trên máy nhưng chưa ghi lên Firestore (còn trong thời gian hoàn tác)
+     */
+    private static class PendingBulkOperation {
+        final List<Transaction> originals; // Giao dịch trước thao tác
+        final List<Transaction> updated; // Giao dịch sau khi sửa (cùng ID), rỗng nếu là xóa
+        final boolean delete;
+        final String message;
+
+        PendingBulkOperation(List<Transaction> originals, List<Transaction> updated, boolean delete, String message) {
+            this.originals = originals;
+            this.updated = updated;
+            this.delete = delete;
+            this.message = message;
+        }
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -0,0 +1,323 @@
+package com.example.appqlct.fragment.user;
+
+import android.app.AlertDialog;
+import android.app.DatePickerDialog;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.appqlct.R;
+import com.example.appqlct.adapter.WalletAdapter;
+import com.example.appqlct.helper.FirebaseHelper;
+import com.example.appqlct.helper.NotificationHelper;
+import com.example.appqlct.helper.SharedPreferencesHelper;
+import com.example.appqlct.helper.WalletBalanceIndex;
+import com.example.appqlct.model.Transfer;
+import com.example.appqlct.model.Wallet;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * WalletFragment - Danh sách ví (tiền mặt, ngân hàng, thẻ) với số dư tại một ngày bất kỳ
+ * Số dư được tính từ chỉ mục wallet_balances (WalletBalanceIndex), đổi ngày không cần tải lại
+ * Chỉ mục được lắng nghe realtime nên số dư tự cập nhật sau khi Cloud Function xử lý giao dịch/chuyển khoản
+ */
+public class WalletFragment extends Fragment {
+    private static final String[] WALLET_TYPES = {Wallet.TYPE_CASH, Wallet.TYPE_BANK, Wallet.TYPE_CARD};
+
+    private TextView tvTotalBalance, tvBalanceDate;
+    private RecyclerView recyclerViewWallets;
+    private WalletAdapter adapter;
+    private List<Wallet> wallets;
+    private WalletBalanceIndex balanceIndex;
+    private ListenerRegistration balancesListener;
+    private Calendar balanceDate;
+    private FirebaseHelper firebaseHelper;
+    private SharedPreferencesHelper prefsHelper;
+    private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_wallets, container, false);
+
+        initHelpers();
+        initViews(view);
+        loadWallets();
+
+        return view;
+    }
+
+    private void initHelpers() {
+        firebaseHelper = new FirebaseHelper();
+        prefsHelper = new SharedPreferencesHelper(requireContext());
+        wallets = new ArrayList<>();
+        balanceDate = Calendar.getInstance();
+    }
+
+    private void initViews(View view) {
+        tvTotalBalance = view.findViewById(R.id.tvTotalBalance);
+        tvBalanceDate = view.findViewById(R.id.tvBalanceDate);
+        recyclerViewWallets = view.findViewById(R.id.recyclerViewWallets);
+
+        adapter = new WalletAdapter(wallets);
+        recyclerViewWallets.setLayoutManager(new LinearLayoutManager(requireContext()));
+        recyclerViewWallets.setAdapter(adapter);
+
+        tvBalanceDate.setOnClickListener(v -> showBalanceDatePicker());
+        view.findViewById(R.id.btnTransfer).setOnClickListener(v -> showTransferDialog());
+        view.findViewById(R.id.fabAddWallet).setOnClickListener(v -> showAddWalletDialog());
+        updateBalanceDateText();
+    }
+
+    /**
+     * Load danh sách ví, sau đó lắng nghe chỉ mục số dư
+     */
+    private void loadWallets() {
+        String userId = prefsHelper.getUserId();
+        firebaseHelper.getUserWallets(userId, new FirebaseHelper.OnWalletsLoadedListener() {
+            @Override
+            public void onWalletsLoaded(List<Wallet> walletList) {
+                if (!isAdded() || getContext() == null) return;
+                wallets.clear();
+                wallets.add(Wallet.createDefault(userId, getString(R.string.default_wallet)));
+                wallets.addAll(walletList);
+                adapter.notifyDataSetChanged();
+                if (balancesListener == null) {
+                    listenBalances();
+                } else {
+                    displayBalances();
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                NotificationHelper.addErrorNotification(requireContext(), userId,
+                        error != null ? error : getString(R.string.error));
+            }
+        });
+    }
+
+    private void listenBalances() {
+        String userId = prefsHelper.getUserId();
+        balancesListener = firebaseHelper.listenWalletBalances(userId, new FirebaseHelper.OnWalletBalancesLoadedListener() {
+            @Override
+            public void onBalancesLoaded(WalletBalanceIndex index) {
+                if (!isAdded() || getContext() == null) return;
+                balanceIndex = index;
+                displayBalances();
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!isAdded() || getContext() == null) return;
+                NotificationHelper.addErrorNotification(requireContext(), userId,
+                        error != null ? error : getString(R.string.error));
+            }
+        });
+    }
+
+    /**
+     * Hiển thị số dư từng ví và tổng số dư vào cuối ngày đang chọn
+     */
+    private void displayBalances() {
+        if (balanceIndex == null) return;
+        double total = 0;
+        for (Wallet wallet : wallets) {
+            total += balanceIndex.getBalanceAt(wallet, balanceDate.getTime());
+        }
+        tvTotalBalance.setText(formatAmount(total));
+        adapter.updateBalances(balanceIndex, balanceDate.getTime());
+    }
+
+    private void updateBalanceDateText() {
+        tvBalanceDate.setText(getString(R.string.balance_as_of, dateFormat.format(balanceDate.getTime())));
+    }
+
+    private void showBalanceDatePicker() {
+        DatePickerDialog datePickerDialog = new DatePickerDialog(requireContext(), (view, year, month, dayOfMonth) -> {
+            balanceDate.set(year, month, dayOfMonth);
+            updateBalanceDateText();
+            // Chỉ mục đã có trong bộ nhớ nên đổi ngày chỉ cần tính lại
+            displayBalances();
+        }, balanceDate.get(Calendar.YEAR), balanceDate.get(Calendar.MONTH), balanceDate.get(Calendar.DAY_OF_MONTH));
+        datePickerDialog.show();
+    }
+
+    /**
+     * Dialog thêm ví mới
+     */
+    private void showAddWalletDialog() {
+        View dialogView = LayoutInflater.from(requireContext()).inflate(R.layout.dialog_add_wallet, null);
+        EditText etWalletName = dialogView.findViewById(R.id.etWalletName);
+        Spinner spinnerWalletType = dialogView.findViewById(R.id.spinnerWalletType);
+        EditText etInitialBalance = dialogView.findViewById(R.id.etInitialBalance);
+
+        List<String> typeLabels = new ArrayList<>();
+        typeLabels.add(getString(R.string.wallet_type_cash));
+        typeLabels.add(getString(R.string.wallet_type_bank));
+        typeLabels.add(getString(R.string.wallet_type_card));
+        ArrayAdapter<String> typeAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, typeLabels);
+        typeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerWalletType.setAdapter(typeAdapter);
+
+        AlertDialog dialog = new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.add_wallet))
+                .setView(dialogView)
+                .setPositiveButton(getString(R.string.save), null)
+                .setNegativeButton(getString(R.string.cancel), null)
+                .create();
+
+        dialog.setOnShowListener(dialogInterface -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String name = etWalletName.getText().toString().trim();
+            if (name.isEmpty()) {
+                etWalletName.setError(getString(R.string.required_field));
+                return;
+            }
+            double initialBalance = parseAmount(etInitialBalance.getText().toString());
+
+            String userId = prefsHelper.getUserId();
+            Wallet wallet = new Wallet(null, userId, name,
+                    WALLET_TYPES[spinnerWalletType.getSelectedItemPosition()], initialBalance);
+            dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(false);
+            firebaseHelper.addWallet(wallet, task -> {
+                if (!isAdded() || getContext() == null) return;
+                if (task.isSuccessful()) {
+                    NotificationHelper.addSuccessNotification(requireContext(), userId,
+                            getString(R.string.add_wallet_success));
+                    dialog.dismiss();
+                    loadWallets();
+                } else {
+                    dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(true);
+                    NotificationHelper.addErrorNotification(requireContext(), userId, getString(R.string.error));
+                }
+            });
+        }));
+        dialog.show();
+    }
+
+    /**
+     * Dialog chuyển tiền giữa hai ví
+     */
+    private void showTransferDialog() {
+        String userId = prefsHelper.getUserId();
+        if (wallets.size() < 2) {
+            NotificationHelper.addInfoNotification(requireContext(), userId,
+                    getString(R.string.transfer_needs_two_wallets));
+            return;
+        }
+
+        View dialogView = LayoutInflater.from(requireContext()).inflate(R.layout.dialog_transfer, null);
+        TextView tvTransferDate = dialogView.findViewById(R.id.tvTransferDate);
+        Spinner spinnerFromWallet = dialogView.findViewById(R.id.spinnerFromWallet);
+        Spinner spinnerToWallet = dialogView.findViewById(R.id.spinnerToWallet);
+        EditText etTransferAmount = dialogView.findViewById(R.id.etTransferAmount);
+        EditText etTransferNote = dialogView.findViewById(R.id.etTransferNote);
+
+        List<String> walletNames = new ArrayList<>();
+        for (Wallet wallet : wallets) {
+            walletNames.add(wallet.getName());
+        }
+        ArrayAdapter<String> walletAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, walletNames);
+        walletAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerFromWallet.setAdapter(walletAdapter);
+        spinnerToWallet.setAdapter(walletAdapter);
+        spinnerToWallet.setSelection(1);
+
+        Calendar transferDate = Calendar.getInstance();
+        tvTransferDate.setText(dateFormat.format(transferDate.getTime()));
+        tvTransferDate.setOnClickListener(v -> new DatePickerDialog(requireContext(), (view, year, month, dayOfMonth) -> {
+            transferDate.set(year, month, dayOfMonth);
+            tvTransferDate.setText(dateFormat.format(transferDate.getTime()));
+        }, transferDate.get(Calendar.YEAR), transferDate.get(Calendar.MONTH), transferDate.get(Calendar.DAY_OF_MONTH)).show());
+
+        AlertDialog dialog = new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.transfer_between_wallets))
+                .setView(dialogView)
+                .setPositiveButton(getString(R.string.save), null)
+                .setNegativeButton(getString(R.string.cancel), null)
+                .create();
+
+        dialog.setOnShowListener(dialogInterface -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            int fromIndex = spinnerFromWallet.getSelectedItemPosition();
+            int toIndex = spinnerToWallet.getSelectedItemPosition();
+            if (fromIndex == toIndex) {
+                NotificationHelper.addInfoNotification(requireContext(), userId,
+                        getString(R.string.transfer_same_wallet));
+                return;
+            }
+            String amountStr = etTransferAmount.getText().toString().trim();
+            if (amountStr.isEmpty()) {
+                etTransferAmount.setError(getString(R.string.required_field));
+                return;
+            }
+            double amount = parseAmount(amountStr);
+            if (amount <= 0) {
+                etTransferAmount.setError(getString(R.string.amount_must_be_greater_than_zero));
+                return;
+            }
+
+            Transfer transfer = new Transfer(null, userId, wallets.get(fromIndex).getId(),
+                    wallets.get(toIndex).getId(), amount, etTransferNote.getText().toString().trim(),
+                    transferDate.getTime());
+            dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(false);
+            firebaseHelper.addTransfer(transfer, task -> {
+                if (!isAdded() || getContext() == null) return;
+                if (task.isSuccessful()) {
+                    NotificationHelper.addSuccessNotification(requireContext(), userId,
+                            getString(R.string.transfer_success));
+                    dialog.dismiss();
+                } else {
+                    dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(true);
+                    NotificationHelper.addErrorNotification(requireContext(), userId, getString(R.string.error));
+                }
+            });
+        }));
+        dialog.show();
+    }
+
+    /**
+     * Parse số tiền đã nhập (bỏ dấu chấm/phẩy phân cách hàng nghìn), trả về 0 nếu không hợp lệ
+     */
+    private double parseAmount(String amountStr) {
+        String cleanAmountStr = amountStr.trim().replaceAll("[.,]", "");
+        if (cleanAmountStr.isEmpty()) return 0;
+        try {
+            return Double.parseDouble(cleanAmountStr);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String formatAmount(double amount) {
+        return String.format(Locale.getDefault(), "%,.0f VND", amount);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (balancesListener != null) {
+            balancesListener.remove();
+            balancesListener = null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.appqlct.helper;
+
+import android.util.Base64;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.GeoPoint;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mã hóa/giải mã document Firestore thành một dòng NDJSON cho file sao lưu
+ * Mỗi dòng có dạng: {"collection": "...", "id": "...", "data": {...}}
+ * Các kiểu đặc biệt của Firestore (Timestamp, DocumentReference, GeoPoint, Blob)
+ * được ghi thành object có field "__type" để có thể khôi phục đúng kiểu
+ */
+public class BackupCodec {
+    public static final String FIELD_COLLECTION = "collection";
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_DATA = "data";
+    public static final String FIELD_TYPE = "__type";
+
+    public static final String TYPE_TIMESTAMP = "timestamp";
+    public static final String TYPE_REFERENCE = "reference";
+    public static final String TYPE_GEOPOINT = "geopoint";
+    public static final String TYPE_BLOB = "blob";
+
+    private BackupCodec() {
+    }
+
+    /**
+     * Ghi một document thành một dòng NDJSON (không kèm ký tự xuống dòng)
+     */
+    public static void writeDocument(JsonWriter writer, String collection, String id,
+                                     Map<String, Object> data) throws IOException {
+        writer.beginObject();
+        writer.name(FIELD_COLLECTION).value(collection);
+        writer.name(FIELD_ID).value(id);
+        writer.name(FIELD_DATA);
+        writeValue(writer, data);
+        writer.endObject();
+        writer.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            writer.value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writer.value(((Number) value).doubleValue());
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            writer.beginObject();
+            writer.name(FIELD_TYPE).value(TYPE_TIMESTAMP);
+            writer.name("seconds").value(timestamp.getSeconds());
+            writer.name("nanoseconds").value(timestamp.getNanoseconds());
+            writer.endObject();
+        } else if (value instanceof Date) {
+            writeValue(writer, new Timestamp((Date) value));
+        } else if (value instanceof DocumentReference) {
+            writer.beginObject();
+            writer.name(FIELD_TYPE).value(TYPE_REFERENCE);
+            writer.name("path").value(((DocumentReference) value).getPath());
+            writer.endObject();
+        } else if (value instanceof GeoPoint) {
+            GeoPoint point = (GeoPoint) value;
+            writer.beginObject();
+            writer.name(FIELD_TYPE).value(TYPE_GEOPOINT);
+            writer.name("latitude").value(point.getLatitude());
+            writer.name("longitude").value(point.getLongitude());
+            writer.endObject();
+        } else if (value instanceof Blob) {
+            writer.beginObject();
+            writer.name(FIELD_TYPE).value(TYPE_BLOB);
+            writer.name("base64").value(Base64.encodeToString(((Blob) value).toBytes(), Base64.NO_WRAP));
+            writer.endObject();
+        } else if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                writer.name(entry.getKey());
+                writeValue(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else if (value instanceof List) {
+            writer.beginArray();
+            for (Object item : (List<Object>) value) {
+                writeValue(writer, item);
+            }
+            writer.endArray();
+        } else {
+            // Kiểu không xác định, ghi dạng chuỗi để không làm hỏng file
+            writer.value(value.toString());
+        }
+    }
+
+    /**
+     * Giải mã phần "data" của một dòng NDJSON thành Map có thể ghi lại vào Firestore
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> readData(FirebaseFirestore db, JsonObject line) {
+        JsonElement data = line.get(FIELD_DATA);
+        if (data == null || !data.isJsonObject()) {
+            return null;
+        }
+        return (Map<String, Object>) readValue(db, data);
+    }
+
+    private static Object readValue(FirebaseFirestore db, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean();
+            }
+            if (primitive.isString()) {
+                return primitive.getAsString();
+            }
+            // Giữ nguyên kiểu số: số nguyên -> Long, số thực -> Double
+            String raw = primitive.getAsString();
+            if (raw.indexOf('.') < 0 && raw.indexOf('e') < 0 && raw.indexOf('E') < 0) {
+                return primitive.getAsLong();
+            }
+            return primitive.getAsDouble();
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            List<Object> list = new ArrayList<>(array.size());
+            for (JsonElement item : array) {
+                list.add(readValue(db, item));
+            }
+            return list;
+        }
+
+        JsonObject object = element.getAsJsonObject();
+        JsonElement type = object.get(FIELD_TYPE);
+        if (type != null && type.isJsonPrimitive()) {
+            switch (type.getAsString()) {
+                case TYPE_TIMESTAMP:
+                    return new Timestamp(object.get("seconds").getAsLong(),
+                            object.get("nanoseconds").getAsInt());
+                case TYPE_REFERENCE:
+                    return db.document(object.get("path").getAsString());
+                case TYPE_GEOPOINT:
+                    return new GeoPoint(object.get("latitude").getAsDouble(),
+                            object.get("longitude").getAsDouble());
+                case TYPE_BLOB:
+                    return Blob.fromBytes(Base64.decode(object.get("base64").getAsString(), Base64.NO_WRAP));
+                default:
+                    break;
+            }
+        }
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            map.put(entry.getKey(), readValue(db, entry.getValue()));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Xuất dữ liệu hệ thống (dành cho Admin) ra file NDJSON nén gzip trên bộ nhớ thiết bị
+ * - Đọc từng trang theo cursor (document id), mỗi trang được ghi thành một gzip member
+ *   nên bộ nhớ sử dụng không phụ thuộc vào số lượng document
+ * - Sau mỗi trang, trạng thái (cursor, số document, số byte đã ghi) được lưu vào
+ *   export_state.json để có thể tiếp tục nếu bị gián đoạn
+ * - Khi hoàn tất, ghi manifest.json chứa số lượng và SHA-256 của từng file
+ */
+public class BackupExporter {
+    private static final String TAG = "BackupExporter";
+    public static final String[] COLLECTIONS = {"users", "transactions", "budgets", "categories", "feedback",
+            "transaction_archives", "wallets", "transfers"};
+    public static final String BACKUP_DIR = "backups";
+    public static final String STATE_FILE = "export_state.json";
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final String FILE_EXTENSION = ".ndjson.gz";
+    private static final int PAGE_SIZE = 500;
+    private static final int MANIFEST_VERSION = 1;
+
+    // Một luồng nền duy nhất để các lần xuất không chạy chồng lên nhau
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final FirebaseFirestore db;
+    private final Gson gson;
+    private final Handler mainHandler;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public BackupExporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = FirebaseFirestore.getInstance();
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Thư mục gốc chứa các bản sao lưu
+     */
+    public static File getBackupRoot(Context context) {
+        File base = context.getExternalFilesDir(null);
+        if (base == null) {
+            base = context.getFilesDir();
+        }
+        return new File(base, BACKUP_DIR);
+    }
+
+    /**
+     * Tìm bản xuất dang dở gần nhất (có export_state.json nhưng chưa hoàn tất)
+     * @return thư mục bản xuất, hoặc null nếu không có
+     */
+    public static File findIncompleteExport(Context context) {
+        File[] dirs = getBackupRoot(context).listFiles(File::isDirectory);
+        if (dirs == null) return null;
+
+        File latest = null;
+        for (File dir : dirs) {
+            ExportState state = readState(new Gson(), dir);
+            if (state != null && !state.completed) {
+                if (latest == null || dir.getName().compareTo(latest.getName()) > 0) {
+                    latest = dir;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Bắt đầu một bản xuất mới trong thư mục đặt tên theo thời gian
+     */
+    public void startNewExport(OnExportProgressListener listener) {
+        String name = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File dir = new File(getBackupRoot(context), name);
+        runExport(dir, listener);
+    }
+
+    /**
+     * Tiếp tục bản xuất dang dở từ checkpoint cuối cùng
+     */
+    public void resumeExport(File dir, OnExportProgressListener listener) {
+        runExport(dir, listener);
+    }
+
+    /**
+     * Dừng bản xuất sau trang hiện tại, trạng thái được giữ lại để tiếp tục sau
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    private void runExport(File dir, OnExportProgressListener listener) {
+        cancelled.set(false);
+        EXECUTOR.execute(() -> {
+            try {
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Không thể tạo thư mục " + dir.getAbsolutePath());
+                }
+
+                ExportState state = readState(gson, dir);
+                if (state == null) {
+                    state = new ExportState();
+                    state.startedAt = System.currentTimeMillis();
+                    for (String collection : COLLECTIONS) {
+                        state.collections.put(collection, new CollectionState());
+                    }
+                    writeState(dir, state);
+                }
+
+                for (String collection : COLLECTIONS) {
+                    CollectionState collectionState = state.collections.get(collection);
+                    if (collectionState == null) {
+                        collectionState = new CollectionState();
+                        state.collections.put(collection, collectionState);
+                    }
+                    if (!collectionState.done) {
+                        exportCollection(dir, collection, state, collectionState, listener);
+                    }
+                    if (cancelled.get()) {
+                        Log.d(TAG, "Export cancelled at collection " + collection);
+                        postError(listener, "Đã tạm dừng sao lưu, có thể tiếp tục sau");
+                        return;
+                    }
+                }
+
+                writeManifest(dir, state);
+                state.completed = true;
+                writeState(dir, state);
+
+                long total = state.totalCount();
+                mainHandler.post(() -> listener.onCompleted(dir, total));
+            } catch (Exception e) {
+                Log.e(TAG, "Export failed: " + dir.getAbsolutePath(), e);
+                postError(listener, e.getMessage() != null ? e.getMessage() : "Unknown error");
+            }
+        });
+    }
+
+    /**
+     * Xuất một collection theo từng trang, tiếp tục từ cursor đã lưu (nếu có)
+     */
+    private void exportCollection(File dir, String collection, ExportState state,
+                                  CollectionState collectionState,
+                                  OnExportProgressListener listener) throws Exception {
+        File file = new File(dir, collection + FILE_EXTENSION);
+
+        // Cắt bỏ phần ghi dở sau checkpoint cuối cùng (gzip member chưa hoàn chỉnh)
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(collectionState.committedBytes);
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(file, true)) {
+            while (!cancelled.get()) {
+                Query query = db.collection(collection)
+                        .orderBy(FieldPath.documentId())
+                        .limit(PAGE_SIZE);
+                if (collectionState.lastDocId != null) {
+                    query = query.startAfter(collectionState.lastDocId);
+                }
+
+                QuerySnapshot page = Tasks.await(query.get(Source.SERVER));
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                String lastId = writePage(fileOut, collection, page);
+                fileOut.flush();
+                fileOut.getFD().sync();
+
+                collectionState.lastDocId = lastId;
+                collectionState.count += page.size();
+                collectionState.committedBytes = file.length();
+                writeState(dir, state);
+
+                long collectionCount = collectionState.count;
+                long totalCount = state.totalCount();
+                mainHandler.post(() -> listener.onProgress(collection, collectionCount, totalCount));
+
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+        }
+
+        if (!cancelled.get()) {
+            collectionState.done = true;
+            writeState(dir, state);
+        }
+    }
+
+    /**
+     * Ghi một trang document thành một gzip member hoàn chỉnh
+     * @return id của document cuối cùng (cursor cho trang tiếp theo)
+     */
+    private String writePage(OutputStream fileOut, String collection, QuerySnapshot page) throws IOException {
+        String lastId = null;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new NonClosingOutputStream(fileOut), 64 * 1024),
+                StandardCharsets.UTF_8))) {
+            for (QueryDocumentSnapshot document : page) {
+                JsonWriter jsonWriter = new JsonWriter(writer);
+                BackupCodec.writeDocument(jsonWriter, collection, document.getId(), document.getData());
+                writer.write('\n');
+                lastId = document.getId();
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * Ghi manifest.json với số lượng document, kích thước và SHA-256 của từng file
+     */
+    private void writeManifest(File dir, ExportState state) throws Exception {
+        Manifest manifest = new Manifest();
+        manifest.version = MANIFEST_VERSION;
+        manifest.startedAt = state.startedAt;
+        manifest.completedAt = System.currentTimeMillis();
+        for (String collection : COLLECTIONS) {
+            CollectionState collectionState = state.collections.get(collection);
+            File file = new File(dir, collection + FILE_EXTENSION);
+            ManifestEntry entry = new ManifestEntry();
+            entry.collection = collection;
+            entry.file = file.getName();
+            entry.count = collectionState != null ? collectionState.count : 0;
+            entry.bytes = file.length();
+            entry.sha256 = sha256(file);
+            manifest.files.add(entry);
+        }
+        try (Writer writer = new FileWriter(new File(dir, MANIFEST_FILE))) {
+            gson.toJson(manifest, writer);
+        }
+    }
+
+    /**
+     * Tính SHA-256 của file theo luồng (không đọc toàn bộ file vào bộ nhớ)
+     */
+    public static String sha256(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format(Locale.US, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static ExportState readState(Gson gson, File dir) {
+        File stateFile = new File(dir, STATE_FILE);
+        if (!stateFile.exists()) return null;
+        try (Reader reader = new FileReader(stateFile)) {
+            return gson.fromJson(reader, ExportState.class);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading export state: " + stateFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Ghi trạng thái qua file tạm rồi đổi tên để không bao giờ để lại file state hỏng
+     */
+    private void writeState(File dir, ExportState state) throws IOException {
+        File tmp = new File(dir, STATE_FILE + ".tmp");
+        try (Writer writer = new FileWriter(tmp)) {
+            gson.toJson(state, writer);
+        }
+        File target = new File(dir, STATE_FILE);
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Không thể lưu trạng thái sao lưu");
+        }
+    }
+
+    private void postError(OnExportProgressListener listener, String error) {
+        mainHandler.post(() -> listener.onError(error));
+    }
+
+    /**
+     * Không đóng stream bên dưới khi đóng GZIPOutputStream (để ghi nhiều gzip member vào cùng file)
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // ========== STATE & MANIFEST ==========
+
+    static class ExportState {
+        long startedAt;
+        boolean completed;
+        Map<String, CollectionState> collections = new LinkedHashMap<>();
+
+        long totalCount() {
+            long total = 0;
+            for (CollectionState collectionState : collections.values()) {
+                total += collectionState.count;
+            }
+            return total;
+        }
+    }
+
+    static class CollectionState {
+        String lastDocId;
+        long count;
+        long committedBytes;
+        boolean done;
+    }
+
+    public static class Manifest {
+        public int version;
+        public long startedAt;
+        public long completedAt;
+        public List<ManifestEntry> files = new ArrayList<>();
+    }
+
+    public static class ManifestEntry {
+        public String collection;
+        public String file;
+        public long count;
+        public long bytes;
+        public String sha256;
+    }
+
+    public interface OnExportProgressListener {
+        void onProgress(String collection, long collectionCount, long totalCount);
+        void onCompleted(File backupDir, long totalCount);
+        void onError(String error);
+    }
+}
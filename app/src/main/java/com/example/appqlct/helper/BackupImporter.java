@@ -0,0 +1,404 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Khôi phục dữ liệu từ bản sao lưu do BackupExporter tạo ra (dành cho Admin)
+ * - Đọc từng dòng NDJSON trong file gzip, không tải toàn bộ file vào bộ nhớ
+ * - Kiểm tra SHA-256 với manifest và validate từng bản ghi theo model tương ứng
+ * - Ghi bằng WriteBatch (tối đa 500 thao tác/batch) với số batch đồng thời có giới hạn;
+ *   khi đủ batch đang chờ, luồng đọc file bị chặn lại (backpressure)
+ * - Tốc độ ghi tăng dần theo quy tắc 500/50/5 của Firestore để tránh bị throttle
+ * - Giữ nguyên document id gốc nên chạy lại nhiều lần vẫn cho cùng một kết quả
+ */
+public class BackupImporter {
+    private static final String TAG = "BackupImporter";
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_COMMIT_RETRIES = 5;
+    private static final long RETRY_BASE_DELAY_MS = 1000;
+
+    // Một luồng đọc file, các batch được commit trên pool riêng
+    private static final ExecutorService READER = Executors.newSingleThreadExecutor();
+
+    private final FirebaseFirestore db;
+    private final Handler mainHandler;
+    private final Config config;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public BackupImporter() {
+        this(new Config());
+    }
+
+    public BackupImporter(Config config) {
+        this.db = FirebaseFirestore.getInstance();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.config = config;
+    }
+
+    /**
+     * Danh sách các bản sao lưu đã hoàn tất (có manifest.json), mới nhất trước
+     */
+    public static List<File> listCompletedBackups(Context context) {
+        List<File> backups = new ArrayList<>();
+        File[] dirs = BackupExporter.getBackupRoot(context).listFiles(File::isDirectory);
+        if (dirs == null) return backups;
+        for (File dir : dirs) {
+            if (new File(dir, BackupExporter.MANIFEST_FILE).exists()) {
+                backups.add(dir);
+            }
+        }
+        backups.sort((d1, d2) -> d2.getName().compareTo(d1.getName()));
+        return backups;
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Khôi phục toàn bộ các file được liệt kê trong manifest của bản sao lưu
+     */
+    public void restore(File backupDir, OnImportProgressListener listener) {
+        cancelled.set(false);
+        READER.execute(() -> {
+            ExecutorService committers = Executors.newFixedThreadPool(config.maxInFlightBatches);
+            try {
+                BackupExporter.Manifest manifest = readManifest(backupDir);
+                long totalExpected = 0;
+                for (BackupExporter.ManifestEntry entry : manifest.files) {
+                    File file = new File(backupDir, entry.file);
+                    if (!BackupExporter.sha256(file).equals(entry.sha256)) {
+                        throw new IOException("Checksum không khớp: " + entry.file);
+                    }
+                    totalExpected += entry.count;
+                }
+
+                ImportRun run = new ImportRun(committers, totalExpected, listener);
+                for (BackupExporter.ManifestEntry entry : manifest.files) {
+                    if (cancelled.get()) break;
+                    run.importFile(new File(backupDir, entry.file), entry.collection);
+                }
+                run.awaitAll();
+
+                long written = run.written.get();
+                long skipped = run.skipped.get();
+                if (cancelled.get()) {
+                    postError(listener, "Đã dừng khôi phục sau " + written + " bản ghi");
+                } else if (run.failure.get() != null) {
+                    postError(listener, run.failure.get());
+                } else {
+                    mainHandler.post(() -> listener.onCompleted(written, skipped));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Restore failed: " + backupDir.getAbsolutePath(), e);
+                postError(listener, e.getMessage() != null ? e.getMessage() : "Unknown error");
+            } finally {
+                committers.shutdown();
+            }
+        });
+    }
+
+    private BackupExporter.Manifest readManifest(File backupDir) throws IOException {
+        try (Reader reader = new FileReader(new File(backupDir, BackupExporter.MANIFEST_FILE))) {
+            BackupExporter.Manifest manifest = new Gson().fromJson(reader, BackupExporter.Manifest.class);
+            if (manifest == null || manifest.files == null) {
+                throw new IOException("Manifest không hợp lệ");
+            }
+            return manifest;
+        }
+    }
+
+    /**
+     * Trạng thái của một lần khôi phục: batch đang tích lũy, giới hạn đồng thời và tốc độ
+     */
+    private class ImportRun {
+        private final ExecutorService committers;
+        private final Semaphore inFlight;
+        private final RampUpRateLimiter rateLimiter;
+        private final long totalExpected;
+        private final OnImportProgressListener listener;
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        private List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        ImportRun(ExecutorService committers, long totalExpected, OnImportProgressListener listener) {
+            this.committers = committers;
+            this.inFlight = new Semaphore(config.maxInFlightBatches);
+            this.rateLimiter = new RampUpRateLimiter(config.initialOpsPerSecond,
+                    config.rampUpIntervalMs, config.maxOpsPerSecond);
+            this.totalExpected = totalExpected;
+            this.listener = listener;
+        }
+
+        void importFile(File file, String collection) throws Exception {
+            // GZIPInputStream đọc được file gồm nhiều gzip member nối tiếp nhau
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (cancelled.get() || failure.get() != null) return;
+                    if (line.isEmpty()) continue;
+
+                    JsonObject json;
+                    try {
+                        json = JsonParser.parseString(line).getAsJsonObject();
+                    } catch (Exception e) {
+                        Log.w(TAG, "Skip malformed line in " + file.getName());
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+
+                    String id = stringOrNull(json.get(BackupCodec.FIELD_ID));
+                    Map<String, Object> data = BackupCodec.readData(db, json);
+                    String error = id == null || data == null ? "missing id/data" : validate(collection, data);
+                    if (error != null) {
+                        Log.w(TAG, "Skip invalid " + collection + "/" + id + ": " + error);
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+
+                    batch.add(new PendingWrite(db.collection(collection).document(id), data));
+                    if (batch.size() >= MAX_BATCH_SIZE) {
+                        flush();
+                    }
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Gửi batch hiện tại đi commit; chặn nếu đã đủ số batch đang chờ
+         */
+        private void flush() throws InterruptedException {
+            if (batch.isEmpty()) return;
+            List<PendingWrite> toCommit = batch;
+            int size = toCommit.size();
+            batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+            inFlight.acquire();
+            rateLimiter.acquire(size);
+            committers.execute(() -> {
+                try {
+                    commitWithRetry(toCommit);
+                    long total = written.addAndGet(size);
+                    mainHandler.post(() -> listener.onProgress(total, totalExpected));
+                } catch (Exception e) {
+                    Log.e(TAG, "Batch commit failed", e);
+                    failure.compareAndSet(null, e.getMessage() != null ? e.getMessage() : "Batch commit failed");
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        /**
+         * Batch chỉ gồm các thao tác set() nên có thể thử lại an toàn
+         * (WriteBatch chỉ commit được một lần nên mỗi lần thử tạo batch mới)
+         */
+        private void commitWithRetry(List<PendingWrite> writes) throws Exception {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    WriteBatch writeBatch = db.batch();
+                    for (PendingWrite write : writes) {
+                        writeBatch.set(write.ref, write.data);
+                    }
+                    Tasks.await(writeBatch.commit());
+                    return;
+                } catch (Exception e) {
+                    if (attempt + 1 >= MAX_COMMIT_RETRIES) throw e;
+                    rateLimiter.backOff();
+                    Thread.sleep(RETRY_BASE_DELAY_MS << attempt);
+                }
+            }
+        }
+
+        /**
+         * Đợi tất cả các batch đang chờ commit xong
+         */
+        void awaitAll() throws InterruptedException {
+            inFlight.acquire(config.maxInFlightBatches);
+            inFlight.release(config.maxInFlightBatches);
+        }
+    }
+
+    /**
+     * Validate bản ghi theo các field bắt buộc của model tương ứng
+     * @return mô tả lỗi, hoặc null nếu hợp lệ
+     */
+    static String validate(String collection, Map<String, Object> data) {
+        switch (collection) {
+            case "users":
+                // Model User
+                if (!(data.get("email") instanceof String)) return "email";
+                if (!(data.get("role") instanceof String)) return "role";
+                return null;
+            case "transactions":
+                // Model Transaction
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("amount") instanceof Number)) return "amount";
+                if (!(data.get("date") instanceof Timestamp)) return "date";
+                if (!Arrays.asList("income", "expense").contains(data.get("type"))) return "type";
+                return null;
+            case "budgets":
+                // Model Budget
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("categoryName") instanceof String)) return "categoryName";
+                if (!(data.get("amount") instanceof Number)) return "amount";
+                Object month = data.get("month");
+                if (!(month instanceof Number) || ((Number) month).intValue() < 1
+                        || ((Number) month).intValue() > 12) return "month";
+                if (!(data.get("year") instanceof Number)) return "year";
+                return null;
+            case "categories":
+                // Model Category
+                if (!(data.get("name") instanceof String)) return "name";
+                if (!(data.get("type") instanceof String)) return "type";
+                return null;
+            case "feedback":
+                // Model Feedback
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("content") instanceof String)) return "content";
+                return null;
+            case "transaction_archives":
+                // Tháng giao dịch đã lưu trữ (TransactionArchiver)
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("monthStart") instanceof Timestamp)) return "monthStart";
+                if (!(data.get("data") instanceof Blob)) return "data";
+                return null;
+            case "wallets":
+                // Model Wallet
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("name") instanceof String)) return "name";
+                return null;
+            case "transfers":
+                // Model Transfer
+                if (!(data.get("userId") instanceof String)) return "userId";
+                if (!(data.get("amount") instanceof Number)) return "amount";
+                if (!(data.get("date") instanceof Timestamp)) return "date";
+                return null;
+            default:
+                return "unknown collection";
+        }
+    }
+
+    private static String stringOrNull(JsonElement element) {
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    private void postError(OnImportProgressListener listener, String error) {
+        mainHandler.post(() -> listener.onError(error));
+    }
+
+    private static class PendingWrite {
+        final DocumentReference ref;
+        final Map<String, Object> data;
+
+        PendingWrite(DocumentReference ref, Map<String, Object> data) {
+            this.ref = ref;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Giới hạn số thao tác ghi mỗi giây, bắt đầu từ initialOpsPerSecond và
+     * tăng 50% sau mỗi rampUpIntervalMs (quy tắc 500/50/5 của Firestore)
+     */
+    private static class RampUpRateLimiter {
+        private final long rampUpIntervalMs;
+        private final double maxOpsPerSecond;
+        private double opsPerSecond;
+        private long lastRampAt;
+        private long nextFreeAt;
+
+        RampUpRateLimiter(double initialOpsPerSecond, long rampUpIntervalMs, double maxOpsPerSecond) {
+            this.opsPerSecond = initialOpsPerSecond;
+            this.rampUpIntervalMs = rampUpIntervalMs;
+            this.maxOpsPerSecond = maxOpsPerSecond;
+            this.lastRampAt = System.currentTimeMillis();
+            this.nextFreeAt = lastRampAt;
+        }
+
+        /**
+         * Giữ chỗ cho ops thao tác rồi chờ đến lượt; chỉ giữ lock khi tính thời điểm,
+         * việc chờ nằm ngoài lock để các luồng commit khác vẫn giữ chỗ được
+         */
+        void acquire(int ops) throws InterruptedException {
+            long wait = reserve(ops);
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+
+        private synchronized long reserve(int ops) {
+            long now = System.currentTimeMillis();
+            if (now - lastRampAt >= rampUpIntervalMs) {
+                opsPerSecond = Math.min(maxOpsPerSecond, opsPerSecond * 1.5);
+                lastRampAt = now;
+            }
+            long start = Math.max(now, nextFreeAt);
+            nextFreeAt = start + (long) (ops * 1000 / opsPerSecond);
+            return start - now;
+        }
+
+        /**
+         * Giảm tốc độ khi commit lỗi (thường do bị throttle)
+         */
+        synchronized void backOff() {
+            opsPerSecond = Math.max(1, opsPerSecond / 2);
+            lastRampAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Cấu hình tốc độ ghi; giá trị mặc định phù hợp với Firestore production,
+     * khi khôi phục vào emulator có thể tăng initialOpsPerSecond
+     */
+    public static class Config {
+        public int maxInFlightBatches = 4;
+        public double initialOpsPerSecond = 500;
+        public double maxOpsPerSecond = 10000;
+        public long rampUpIntervalMs = 5 * 60 * 1000;
+    }
+
+    public interface OnImportProgressListener {
+        void onProgress(long written, long total);
+        void onCompleted(long written, long skipped);
+        void onError(String error);
+    }
+}
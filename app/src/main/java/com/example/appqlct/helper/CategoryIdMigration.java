@@ -0,0 +1,175 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.appqlct.model.Category;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chuyển dữ liệu cũ sang khóa category theo ID (dành cho Admin)
+ * - Duyệt transactions và budgets theo từng trang (cursor là document id)
+ * - Document chưa có categoryId hợp lệ được ghi thêm categoryId và tên category hiện tại,
+ *   mỗi trang ghi trong một WriteBatch
+ * - Cursor được lưu sau mỗi batch nên có thể tiếp tục nếu bị gián đoạn
+ */
+public class CategoryIdMigration {
+    private static final String TAG = "CategoryIdMigration";
+    private static final String PREFS_NAME = "category_id_migration";
+    private static final String KEY_CURSOR_PREFIX = "cursor_";
+    private static final String KEY_DONE_PREFIX = "done_";
+    private static final String KEY_UPDATED = "updated";
+    private static final String KEY_UNRESOLVED = "unresolved";
+
+    private static final String COLLECTION_TRANSACTIONS = "transactions";
+    private static final String COLLECTION_BUDGETS = "budgets";
+    // Collection -> field lưu tên/ID category cũ
+    private static final String[][] TARGETS = {
+            {COLLECTION_TRANSACTIONS, "category"},
+            {COLLECTION_BUDGETS, "categoryName"}
+    };
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final FirebaseFirestore db;
+    private final SharedPreferences prefs;
+    private final Handler mainHandler;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public CategoryIdMigration(Context context) {
+        this.db = FirebaseFirestore.getInstance();
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Có lần chạy trước bị gián đoạn chưa hoàn tất không
+     */
+    public boolean hasPendingRun() {
+        for (String[] target : TARGETS) {
+            if (prefs.contains(KEY_CURSOR_PREFIX + target[0]) || prefs.getBoolean(KEY_DONE_PREFIX + target[0], false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Dừng sau batch hiện tại, cursor được giữ lại để tiếp tục sau
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Chạy (hoặc tiếp tục) migration
+     * @param categories danh sách tất cả categories hiện có
+     */
+    public void run(List<Category> categories, OnMigrationProgressListener listener) {
+        cancelled.set(false);
+        CategoryIndex index = new CategoryIndex(categories);
+        EXECUTOR.execute(() -> {
+            try {
+                int updated = prefs.getInt(KEY_UPDATED, 0);
+                int unresolved = prefs.getInt(KEY_UNRESOLVED, 0);
+
+                for (String[] target : TARGETS) {
+                    String collection = target[0];
+                    String legacyField = target[1];
+                    if (prefs.getBoolean(KEY_DONE_PREFIX + collection, false)) continue;
+
+                    String cursor = prefs.getString(KEY_CURSOR_PREFIX + collection, null);
+                    int scanned = 0;
+                    while (true) {
+                        if (cancelled.get()) {
+                            postCancelled(listener);
+                            return;
+                        }
+
+                        Query query = db.collection(collection)
+                                .orderBy(FieldPath.documentId())
+                                .limit(FirebaseHelper.MAX_BATCH_SIZE);
+                        if (cursor != null) {
+                            query = query.startAfter(cursor);
+                        }
+                        QuerySnapshot page = Tasks.await(query.get(Source.SERVER));
+                        if (page.isEmpty()) break;
+
+                        WriteBatch batch = db.batch();
+                        int pageUpdates = 0;
+                        for (QueryDocumentSnapshot document : page) {
+                            String currentId = document.getString("categoryId");
+                            if (currentId != null && index.get(currentId) != null) continue;
+
+                            String resolvedId = index.resolveId(document.getString(legacyField));
+                            if (resolvedId == null) {
+                                // Category đã bị xóa hoặc là ngân sách tổng, giữ nguyên
+                                unresolved++;
+                                continue;
+                            }
+                            batch.update(document.getReference(),
+                                    "categoryId", resolvedId,
+                                    legacyField, index.nameOf(resolvedId));
+                            pageUpdates++;
+                        }
+                        if (pageUpdates > 0) {
+                            Tasks.await(batch.commit());
+                        }
+
+                        updated += pageUpdates;
+                        scanned += page.size();
+                        cursor = page.getDocuments().get(page.size() - 1).getId();
+                        // Lưu checkpoint sau khi batch đã được ghi
+                        prefs.edit()
+                                .putString(KEY_CURSOR_PREFIX + collection, cursor)
+                                .putInt(KEY_UPDATED, updated)
+                                .putInt(KEY_UNRESOLVED, unresolved)
+                                .commit();
+
+                        int scannedSoFar = scanned;
+                        int updatedSoFar = updated;
+                        mainHandler.post(() -> listener.onProgress(collection, scannedSoFar, updatedSoFar));
+
+                        if (page.size() < FirebaseHelper.MAX_BATCH_SIZE) break;
+                    }
+                    prefs.edit().putBoolean(KEY_DONE_PREFIX + collection, true).commit();
+                }
+
+                // Hoàn tất: xóa trạng thái để lần chạy sau quét lại từ đầu
+                prefs.edit().clear().commit();
+                int totalUpdated = updated;
+                int totalUnresolved = unresolved;
+                mainHandler.post(() -> listener.onCompleted(totalUpdated, totalUnresolved));
+            } catch (Exception e) {
+                Log.e(TAG, "Category id migration failed", e);
+                String message = e.getMessage() != null ? e.getMessage() : "Unknown error";
+                mainHandler.post(() -> listener.onError(message));
+            }
+        });
+    }
+
+    private void postCancelled(OnMigrationProgressListener listener) {
+        mainHandler.post(() -> listener.onError("Đã dừng, có thể tiếp tục lần sau"));
+    }
+
+    public interface OnMigrationProgressListener {
+        void onProgress(String collection, int scanned, int updated);
+        void onCompleted(int updated, int unresolved);
+        void onError(String error);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Budget;
+import com.example.appqlct.model.Category;
+import com.example.appqlct.model.Transaction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tra cứu category theo ID ổn định
+ * Giao dịch/ngân sách mới lưu categoryId; dữ liệu cũ chỉ có tên (hoặc ID trong field category)
+ * được quy về ID qua resolveId cho đến khi CategoryIdMigration ghi lại categoryId
+ */
+public class CategoryIndex {
+    // Tên category tiếng Việt của các phiên bản cũ -> tên hiện tại
+    private static final Map<String, String> LEGACY_NAMES = new HashMap<>();
+
+    static {
+        LEGACY_NAMES.put("an uong", "Food & Dining");
+        LEGACY_NAMES.put("giao thong", "Transportation");
+        LEGACY_NAMES.put("giao duc", "Education");
+        LEGACY_NAMES.put("tien ich", "Utilities");
+        LEGACY_NAMES.put("giai tri", "Entertainment");
+    }
+
+    private final Map<String, Category> categoriesById = new HashMap<>();
+    private final Map<String, String> idsByName = new HashMap<>(); // Tên đã chuẩn hóa -> ID
+
+    public CategoryIndex(List<Category> categories) {
+        if (categories == null) {
+            categories = Collections.emptyList();
+        }
+        for (Category category : categories) {
+            if (category == null || category.getId() == null) continue;
+            categoriesById.put(category.getId(), category);
+            if (category.getName() != null) {
+                idsByName.put(TextNormalizer.normalize(category.getName()), category.getId());
+            }
+        }
+    }
+
+    /**
+     * Quy giá trị category (ID hoặc tên, kể cả tên tiếng Việt cũ) về ID
+     * @return ID của category, null nếu không tìm thấy (category đã bị xóa)
+     */
+    public String resolveId(String idOrName) {
+        if (idOrName == null || idOrName.trim().isEmpty()) {
+            return null;
+        }
+        if (categoriesById.containsKey(idOrName)) {
+            return idOrName;
+        }
+        String key = TextNormalizer.normalize(idOrName);
+        String id = idsByName.get(key);
+        if (id == null && LEGACY_NAMES.containsKey(key)) {
+            id = idsByName.get(TextNormalizer.normalize(LEGACY_NAMES.get(key)));
+        }
+        return id;
+    }
+
+    public String idOf(Transaction transaction) {
+        if (transaction.getCategoryId() != null) {
+            return transaction.getCategoryId();
+        }
+        return resolveId(transaction.getCategory());
+    }
+
+    public String idOf(Budget budget) {
+        if (budget.getCategoryId() != null) {
+            return budget.getCategoryId();
+        }
+        return resolveId(budget.getCategoryName());
+    }
+
+    public Category get(String categoryId) {
+        return categoryId != null ? categoriesById.get(categoryId) : null;
+    }
+
+    /**
+     * Tên hiện tại của category (đã đổi tên thì trả về tên mới), null nếu không tìm thấy
+     */
+    public String nameOf(String categoryId) {
+        Category category = get(categoryId);
+        return category != null ? category.getName() : null;
+    }
+
+    /**
+     * Tên để hiển thị cho giao dịch: tên hiện tại nếu tra được, ngược lại giữ giá trị đã lưu
+     */
+    public String displayNameOf(Transaction transaction) {
+        String name = nameOf(idOf(transaction));
+        return name != null ? name : transaction.getCategory();
+    }
+
+    /**
+     * Map tên category tiếng Việt cũ sang tên hiện tại, giữ nguyên nếu không phải tên cũ
+     */
+    public static String mapLegacyName(String categoryName) {
+        if (categoryName == null) {
+            return null;
+        }
+        String mapped = LEGACY_NAMES.get(TextNormalizer.normalize(categoryName));
+        return mapped != null ? mapped : categoryName;
+    }
+
+    public boolean isEmpty() {
+        return categoriesById.isEmpty();
+    }
+}
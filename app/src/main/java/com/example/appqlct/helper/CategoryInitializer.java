@@ -1,14 +1,15 @@
 package com.example.appqlct.helper;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+
 import com.example.appqlct.model.Category;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -16,84 +17,98 @@ import java.util.Map;
 
 /**
  * Utility class để khởi tạo các danh mục mặc định cho ứng dụng
+ * Danh mục mặc định được đóng gói sẵn dưới dạng Firestore bundle trong assets
+ * (tạo bằng functions/scripts/build-category-bundle.js) và nạp vào cache local một lần
+ * cho mỗi phiên bản danh mục, nên lần mở app đầu tiên không cần đọc categories từ server
+ * CATALOG_VERSION là config/category_catalog.version tại thời điểm tạo bundle: sau khi nạp bundle,
+ * FirebaseHelper coi cache đã đồng bộ phiên bản này và chỉ đọc lại từ server khi phiên bản tăng
  */
 public class CategoryInitializer {
     private static final String COLLECTION_CATEGORIES = "categories";
+
+    // Tăng khi danh sách danh mục mặc định (và file bundle) thay đổi, khớp với build-category-bundle.js
+    public static final int CATALOG_VERSION = 1;
+    public static final String NAMED_QUERY_DEFAULT_CATEGORIES = "default-categories";
+    private static final String BUNDLE_ASSET = "bundles/default_categories.bundle";
+    private static final String PREFS_NAME = "category_catalog";
+    private static final String KEY_BUNDLE_VERSION = "bundle_version";
+
     private FirebaseFirestore db;
+    private FirebaseHelper firebaseHelper;
 
     public CategoryInitializer() {
         db = FirebaseFirestore.getInstance();
+        firebaseHelper = new FirebaseHelper();
     }
 
     /**
-     * Khởi tạo các danh mục mặc định
-     * Xóa tất cả danh mục cũ và chỉ thêm 5 danh mục mới
+     * Nạp bundle danh mục mặc định vào cache local nếu chưa nạp phiên bản hiện tại
+     * Không đọc/ghi gì trên server; các màn hình sau đó đọc được danh mục ngay cả khi offline
      * @param listener Callback để xử lý kết quả
      */
-    public void initializeDefaultCategories(OnInitializationCompleteListener listener) {
-        // Đầu tiên, xóa tất cả danh mục hiện có
-        db.collection(COLLECTION_CATEGORIES)
-                .get()
-                .addOnCompleteListener(deleteTask -> {
-                    if (deleteTask.isSuccessful()) {
-                        QuerySnapshot snapshot = deleteTask.getResult();
-                        List<Task<Void>> deleteTasks = new ArrayList<>();
-                        
-                        // Xóa tất cả danh mục hiện có
-                        for (QueryDocumentSnapshot document : snapshot) {
-                            Task<Void> deleteTask2 = document.getReference().delete();
-                            deleteTasks.add(deleteTask2);
-                        }
-                        
-                        // Đợi tất cả các task xóa hoàn thành, sau đó thêm danh mục mới
-                        if (deleteTasks.isEmpty()) {
-                            // Không có danh mục nào để xóa, thêm danh mục mới luôn
-                            addDefaultCategories(listener);
-                        } else {
-                            Tasks.whenAllComplete(deleteTasks)
-                                    .addOnCompleteListener(deleteCompleteTask -> {
-                                        if (deleteCompleteTask.isSuccessful()) {
-                                            // Sau khi xóa xong, thêm danh mục mới
-                                            addDefaultCategories(listener);
-                                        } else {
-                                            listener.onError(deleteCompleteTask.getException() != null ? 
-                                                    deleteCompleteTask.getException().getMessage() : "Error deleting old categories");
-                                        }
-                                    });
-                        }
+    public void loadDefaultCategoriesBundle(Context context, OnInitializationCompleteListener listener) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        FirebaseHelper.attachCatalogPreferences(prefs);
+        if (prefs.getInt(KEY_BUNDLE_VERSION, 0) >= CATALOG_VERSION) {
+            listener.onSuccess("Default categories bundle already loaded");
+            return;
+        }
+
+        InputStream bundleStream;
+        try {
+            bundleStream = context.getAssets().open(BUNDLE_ASSET);
+        } catch (IOException e) {
+            listener.onError(e.getMessage() != null ? e.getMessage() : "Default categories bundle not found");
+            return;
+        }
+
+        db.loadBundle(bundleStream)
+                .addOnCompleteListener(task -> {
+                    try {
+                        bundleStream.close();
+                    } catch (IOException e) {
+                        // Bỏ qua lỗi đóng stream
+                    }
+                    if (task.isSuccessful()) {
+                        prefs.edit().putInt(KEY_BUNDLE_VERSION, CATALOG_VERSION).apply();
+                        FirebaseHelper.seedCatalogVersion(CATALOG_VERSION);
+                        listener.onSuccess("Loaded default categories bundle v" + CATALOG_VERSION);
                     } else {
-                        listener.onError(deleteTask.getException() != null ? 
-                                deleteTask.getException().getMessage() : "Error getting categories list");
+                        listener.onError(task.getException() != null ?
+                                task.getException().getMessage() : "Error loading default categories bundle");
                     }
                 });
     }
-    
+
     /**
-     * Thêm 5 danh mục mặc định mới
+     * Khởi tạo các danh mục mặc định trên server
+     * Ghi (merge) các danh mục mặc định với ID cố định trong một WriteBatch,
+     * không xóa danh mục hiện có nên chạy lại nhiều lần cũng không tạo bản trùng
+     * @param listener Callback để xử lý kết quả
      */
-    private void addDefaultCategories(OnInitializationCompleteListener listener) {
+    public void initializeDefaultCategories(OnInitializationCompleteListener listener) {
         List<Category> defaultCategories = getDefaultCategories();
-        List<Task<DocumentReference>> addTasks = new ArrayList<>();
-        
+        WriteBatch batch = db.batch();
+
         for (Category category : defaultCategories) {
             Map<String, Object> categoryData = new HashMap<>();
             categoryData.put("name", category.getName());
             categoryData.put("icon", category.getIcon());
             categoryData.put("type", category.getType());
 
-            Task<DocumentReference> addTask = db.collection(COLLECTION_CATEGORIES)
-                    .add(categoryData);
-            addTasks.add(addTask);
+            batch.set(db.collection(COLLECTION_CATEGORIES).document(category.getId()),
+                    categoryData, SetOptions.merge());
         }
+        firebaseHelper.bumpCategoryCatalogVersion(batch);
 
-        // Đợi tất cả các task thêm hoàn thành
-        Tasks.whenAllComplete(addTasks)
-                .addOnCompleteListener(addTask -> {
-                    if (addTask.isSuccessful()) {
+        batch.commit()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
                         listener.onSuccess("Initialized " + defaultCategories.size() + " default categories");
                     } else {
-                        listener.onError(addTask.getException() != null ? 
-                                addTask.getException().getMessage() : "Unknown error");
+                        listener.onError(task.getException() != null ?
+                                task.getException().getMessage() : "Unknown error");
                     }
                 });
     }
@@ -121,14 +136,15 @@ public class CategoryInitializer {
 
     /**
      * Lấy danh sách các danh mục Chi tiêu mặc định
+     * ID cố định, phải trùng với danh sách trong functions/scripts/build-category-bundle.js
      */
     private List<Category> getExpenseCategories() {
         List<Category> categories = new ArrayList<>();
-        categories.add(new Category(null, "Food & Dining", "🍔", "expense"));
-        categories.add(new Category(null, "Transportation", "🚗", "expense"));
-        categories.add(new Category(null, "Education", "📚", "expense"));
-        categories.add(new Category(null, "Utilities", "💡", "expense"));
-        categories.add(new Category(null, "Entertainment", "🎬", "expense"));
+        categories.add(new Category("food_dining", "Food & Dining", "🍔", "expense"));
+        categories.add(new Category("transportation", "Transportation", "🚗", "expense"));
+        categories.add(new Category("education", "Education", "📚", "expense"));
+        categories.add(new Category("utilities", "Utilities", "💡", "expense"));
+        categories.add(new Category("entertainment", "Entertainment", "🎬", "expense"));
         return categories;
     }
 
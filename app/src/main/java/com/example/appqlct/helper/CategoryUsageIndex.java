@@ -0,0 +1,150 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.appqlct.model.Category;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chỉ mục mức độ sử dụng category của user, lưu trong SharedPreferences (không cần truy vấn Firestore)
+ * - Mỗi category giữ số lần dùng và điểm gần đây giảm dần theo hàm mũ (chu kỳ bán rã HALF_LIFE_DAYS ngày),
+ *   cùng điểm theo từng khung giờ trong tuần (thứ x buổi) để gợi ý category khi mở dialog
+ * - Ghi nhận một giao dịch chỉ cập nhật một category: O(1)
+ */
+public class CategoryUsageIndex {
+    private static final String PREFS_NAME = "category_usage_prefs";
+    private static final String KEY_USAGE_PREFIX = "usage_";
+    private static final double HALF_LIFE_DAYS = 30;
+    private static final double DECAY_PER_MILLI = Math.log(2) / (HALF_LIFE_DAYS * 24 * 60 * 60 * 1000);
+    private static final int PERIODS_PER_DAY = 4; // Đêm, sáng, chiều, tối
+    private static final int SLOT_COUNT = 7 * PERIODS_PER_DAY;
+    // Điểm tối thiểu của khung giờ để tự chọn sẵn (khoảng 2 lần dùng gần đây trong cùng khung giờ)
+    private static final double MIN_SUGGEST_SCORE = 2.0;
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private final String key;
+    private final Map<String, Usage> usageByCategory;
+
+    public CategoryUsageIndex(Context context, String userId) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        key = KEY_USAGE_PREFIX + (userId == null || userId.isEmpty() ? "default" : userId);
+        usageByCategory = load();
+    }
+
+    private Map<String, Usage> load() {
+        String json = prefs.getString(key, null);
+        if (json == null) return new HashMap<>();
+        try {
+            Type type = new TypeToken<Map<String, Usage>>() {}.getType();
+            Map<String, Usage> usage = gson.fromJson(json, type);
+            return usage != null ? usage : new HashMap<>();
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Ghi nhận một lần dùng category tại thời điểm hiện tại
+     */
+    public void record(String categoryId) {
+        if (categoryId == null) return;
+        long now = System.currentTimeMillis();
+        Usage usage = usageByCategory.get(categoryId);
+        if (usage == null || usage.slotScores == null || usage.slotScores.length != SLOT_COUNT) {
+            usage = new Usage();
+            usageByCategory.put(categoryId, usage);
+        }
+        // Đưa điểm cũ về thời điểm hiện tại rồi cộng lần dùng mới
+        double factor = decay(usage.lastUsed, now);
+        usage.score = usage.score * factor + 1;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            usage.slotScores[i] *= factor;
+        }
+        usage.slotScores[slotOf(now)] += 1;
+        usage.count++;
+        usage.lastUsed = now;
+        prefs.edit().putString(key, gson.toJson(usageByCategory)).apply();
+    }
+
+    /**
+     * Sắp xếp categories theo điểm gần đây giảm dần, bằng điểm thì theo số lần dùng;
+     * category chưa dùng giữ nguyên thứ tự ban đầu ở cuối danh sách
+     */
+    public void rank(List<Category> categories) {
+        long now = System.currentTimeMillis();
+        Map<String, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Usage> entry : usageByCategory.entrySet()) {
+            scores.put(entry.getKey(), entry.getValue().score * decay(entry.getValue().lastUsed, now));
+        }
+        Collections.sort(categories, (a, b) -> {
+            int byScore = Double.compare(scoreOf(scores, b), scoreOf(scores, a));
+            if (byScore != 0) return byScore;
+            return Integer.compare(countOf(b), countOf(a));
+        });
+    }
+
+    /**
+     * Category hay dùng nhất vào thứ và buổi hiện tại, null nếu chưa đủ dữ liệu
+     */
+    public String suggest(List<Category> categories) {
+        long now = System.currentTimeMillis();
+        int slot = slotOf(now);
+        String best = null;
+        double bestScore = MIN_SUGGEST_SCORE;
+        for (Category category : categories) {
+            Usage usage = usageByCategory.get(category.getId());
+            if (usage == null || usage.slotScores == null || usage.slotScores.length != SLOT_COUNT) continue;
+            double score = usage.slotScores[slot] * decay(usage.lastUsed, now);
+            if (score >= bestScore) {
+                best = category.getId();
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static double scoreOf(Map<String, Double> scores, Category category) {
+        Double score = scores.get(category.getId());
+        return score != null ? score : 0;
+    }
+
+    private int countOf(Category category) {
+        Usage usage = usageByCategory.get(category.getId());
+        return usage != null ? usage.count : 0;
+    }
+
+    private static double decay(long from, long to) {
+        return from <= 0 || to <= from ? 1 : Math.exp(-DECAY_PER_MILLI * (to - from));
+    }
+
+    /**
+     * Khung giờ trong tuần: thứ (0..6) x buổi (0-6h, 6-11h, 11-17h, 17-24h)
+     */
+    private static int slotOf(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        int period = hour < 6 ? 0 : hour < 11 ? 1 : hour < 17 ? 2 : 3;
+        return (calendar.get(Calendar.DAY_OF_WEEK) - 1) * PERIODS_PER_DAY + period;
+    }
+
+    /**
+     * Mức độ sử dụng của một category (điểm lưu tại thời điểm lastUsed)
+     */
+    private static class Usage {
+        int count;
+        double score;
+        long lastUsed;
+        double[] slotScores = new double[SLOT_COUNT];
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Chỉ mục tổng tiền tố theo ngày cho báo cáo khoảng thời gian tùy chọn (ví dụ kỳ lương đến kỳ lương)
+ * - Mỗi category có một FenwickTree số tiền chi và một FenwickTree số giao dịch, bucket là một ngày
+ * - Tổng của khoảng [ngày bắt đầu, ngày kết thúc] được trả về trong O(log số ngày) mỗi category,
+ *   không duyệt lại giao dịch
+ * - Giao dịch được cập nhật theo ID (thêm/sửa/xóa) nên chỉ mục luôn khớp với dữ liệu mới nhất
+ * - Chuỗi tổng chi theo ngày/tuần (biểu đồ xu hướng) lấy từ cùng các cây, mỗi bucket một truy vấn khoảng
+ * - Chi tiêu từng ngày của một năm (heatmap) được tính một lượt và cache cho đến khi chỉ mục thay đổi
+ * Chỉ tính giao dịch thực tế (không tính giao dịch định kỳ gốc) như các báo cáo khác.
+ */
+public class DayBucketIndex {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int INITIAL_CAPACITY_DAYS = 3 * 366;
+
+    private final Map<String, Entry> entries = new HashMap<>(); // id -> giá trị đã cộng vào chỉ mục
+    private final Map<String, FenwickTree> expenseByCategory = new HashMap<>();
+    private final Map<String, FenwickTree> countByCategory = new HashMap<>();
+    private final TreeMap<Integer, List<Transaction>> transactionsByDay = new TreeMap<>();
+    private final Map<Integer, double[]> dailyExpenseByYear = new HashMap<>(); // năm -> chi tiêu từng ngày
+    private FenwickTree incomeTree;
+    private FenwickTree expenseTree; // Tổng chi mọi category
+    private FenwickTree transactionCountTree;
+    private int baseDay; // Ngày ứng với vị trí 0
+    private int capacity;
+
+    public DayBucketIndex() {
+        reset(dayOf(new Date()) - INITIAL_CAPACITY_DAYS + 1, INITIAL_CAPACITY_DAYS);
+    }
+
+    /**
+     * Số ngày tính từ 1/1/1970 theo múi giờ của thiết bị
+     */
+    public static int dayOf(Date date) {
+        long millis = date.getTime();
+        return (int) Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MILLIS);
+    }
+
+    private void reset(int baseDay, int capacity) {
+        this.baseDay = baseDay;
+        this.capacity = capacity;
+        expenseByCategory.clear();
+        countByCategory.clear();
+        incomeTree = new FenwickTree(capacity);
+        expenseTree = new FenwickTree(capacity);
+        transactionCountTree = new FenwickTree(capacity);
+    }
+
+    /**
+     * Thêm hoặc cập nhật nhiều giao dịch
+     */
+    public void putAll(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            put(transaction);
+        }
+    }
+
+    /**
+     * Thêm hoặc cập nhật một giao dịch (giá trị cũ cùng ID được bớt ra trước)
+     */
+    public void put(Transaction transaction) {
+        if (transaction.getId() == null) return;
+        remove(transaction.getId());
+        if (transaction.isRecurring() || transaction.getDate() == null) return;
+
+        Entry entry = new Entry(transaction);
+        int day = entry.day;
+        if (day < baseDay || day >= baseDay + capacity) {
+            grow(day);
+        }
+        entries.put(transaction.getId(), entry);
+        apply(entry, 1);
+        List<Transaction> dayList = transactionsByDay.get(day);
+        if (dayList == null) {
+            dayList = new ArrayList<>();
+            transactionsByDay.put(day, dayList);
+        }
+        dayList.add(transaction);
+    }
+
+    /**
+     * Xóa giao dịch khỏi chỉ mục
+     */
+    public void remove(String transactionId) {
+        Entry existing = entries.remove(transactionId);
+        if (existing == null) return;
+        int day = existing.day;
+        apply(existing, -1);
+        List<Transaction> dayList = transactionsByDay.get(day);
+        if (dayList != null) {
+            dayList.remove(existing.transaction);
+            if (dayList.isEmpty()) {
+                transactionsByDay.remove(day);
+            }
+        }
+    }
+
+    private void apply(Entry entry, int sign) {
+        dailyExpenseByYear.clear();
+        int index = entry.day - baseDay;
+        transactionCountTree.add(index, sign);
+        if ("expense".equals(entry.type)) {
+            expenseTree.add(index, sign * entry.amount);
+            tree(expenseByCategory, entry.categoryKey).add(index, sign * entry.amount);
+            tree(countByCategory, entry.categoryKey).add(index, sign);
+        } else if ("income".equals(entry.type)) {
+            incomeTree.add(index, sign * entry.amount);
+        }
+    }
+
+    private FenwickTree tree(Map<String, FenwickTree> trees, String key) {
+        FenwickTree tree = trees.get(key);
+        if (tree == null) {
+            tree = new FenwickTree(capacity);
+            trees.put(key, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Mở rộng khoảng ngày (gấp đôi) để chứa ngày mới rồi dựng lại các cây
+     */
+    private void grow(int day) {
+        int newBase = Math.min(baseDay, day);
+        int newEnd = Math.max(baseDay + capacity, day + 1);
+        int newCapacity = capacity;
+        while (newCapacity < newEnd - newBase) {
+            newCapacity *= 2;
+        }
+        // Dành chỗ trống về phía ngày cũ hơn nếu mở rộng về quá khứ
+        if (day < baseDay) {
+            newBase = newEnd - newCapacity;
+        }
+        reset(newBase, newCapacity);
+        for (Entry entry : entries.values()) {
+            apply(entry, 1);
+        }
+    }
+
+    /**
+     * Khóa category của giao dịch: category ID, hoặc tên với dữ liệu cũ
+     */
+    private static String categoryKey(Transaction transaction) {
+        if (transaction.getCategoryId() != null) return transaction.getCategoryId();
+        return transaction.getCategory() != null ? transaction.getCategory() : "";
+    }
+
+    private int clampIndex(int day) {
+        return Math.max(-1, Math.min(capacity - 1, day - baseDay));
+    }
+
+    /**
+     * Tổng hợp khoảng [startDate, endDate] (theo ngày, gồm cả hai đầu)
+     */
+    public RangeSummary query(Date startDate, Date endDate) {
+        int startDay = dayOf(startDate);
+        int endDay = dayOf(endDate);
+        RangeSummary summary = new RangeSummary();
+        // Khoảng nằm ngoài chỉ mục (giống expenseSeries): không kẹp ngày bắt đầu về ngày cuối chỉ mục
+        if (endDay < startDay || endDay < baseDay || startDay >= baseDay + capacity) return summary;
+        int from = Math.max(0, clampIndex(startDay));
+        int to = clampIndex(endDay);
+
+        summary.totalIncome = incomeTree.rangeSum(from, to);
+        summary.transactionCount = (int) Math.round(transactionCountTree.rangeSum(from, to));
+        for (Map.Entry<String, FenwickTree> entry : expenseByCategory.entrySet()) {
+            int count = (int) Math.round(countByCategory.get(entry.getKey()).rangeSum(from, to));
+            if (count <= 0) continue;
+            double amount = entry.getValue().rangeSum(from, to);
+            summary.expenseByCategory.put(entry.getKey(), amount);
+            summary.countByCategory.put(entry.getKey(), count);
+            summary.totalExpense += amount;
+        }
+        return summary;
+    }
+
+    /**
+     * Tổng chi theo từng bucket bucketDays ngày (1 = theo ngày, 7 = theo tuần) trong khoảng [startDate, endDate]
+     * @param categoryKey category cần lấy, null = tổng mọi category
+     * @return mảng tổng chi, phần tử i ứng với bucket bắt đầu từ ngày dayOf(startDate) + i * bucketDays
+     */
+    public double[] expenseSeries(Date startDate, Date endDate, String categoryKey, int bucketDays) {
+        int startDay = dayOf(startDate);
+        int endDay = dayOf(endDate);
+        if (endDay < startDay) return new double[0];
+        double[] series = new double[(endDay - startDay) / bucketDays + 1];
+
+        FenwickTree tree = categoryKey == null ? expenseTree : expenseByCategory.get(categoryKey);
+        if (tree == null) return series;
+        for (int i = 0; i < series.length; i++) {
+            int from = startDay + i * bucketDays;
+            int to = Math.min(from + bucketDays - 1, endDay);
+            int fromIndex = Math.max(0, clampIndex(from));
+            int toIndex = clampIndex(to);
+            if (to < baseDay || from >= baseDay + capacity) continue;
+            series[i] = tree.rangeSum(fromIndex, toIndex);
+        }
+        return series;
+    }
+
+    /**
+     * Chi tiêu từng ngày của năm, phần tử i ứng với ngày firstDayOfYear(year) + i (365 hoặc 366 phần tử)
+     * Tính một lượt qua các bucket ngày của năm đó rồi cache, mảng trả về không được sửa
+     */
+    public double[] dailyExpenses(int year) {
+        double[] days = dailyExpenseByYear.get(year);
+        if (days != null) return days;
+
+        int firstDay = firstDayOfYear(year);
+        days = new double[firstDayOfYear(year + 1) - firstDay];
+        for (Map.Entry<Integer, List<Transaction>> bucket
+                : transactionsByDay.subMap(firstDay, true, firstDay + days.length, false).entrySet()) {
+            for (Transaction transaction : bucket.getValue()) {
+                Entry entry = entries.get(transaction.getId());
+                if (entry != null && "expense".equals(entry.type)) {
+                    days[bucket.getKey() - firstDay] += entry.amount;
+                }
+            }
+        }
+        dailyExpenseByYear.put(year, days);
+        return days;
+    }
+
+    /**
+     * Ngày (theo dayOf) của 1/1 năm year
+     */
+    public static int firstDayOfYear(int year) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        return dayOf(calendar.getTime());
+    }
+
+    /**
+     * Các category đã có khoản chi trong chỉ mục (khóa là category ID, hoặc tên với dữ liệu cũ)
+     */
+    public Set<String> expenseCategoryKeys() {
+        return expenseByCategory.keySet();
+    }
+
+    /**
+     * Danh sách giao dịch trong khoảng (để hiển thị), lấy theo bucket ngày
+     */
+    public List<Transaction> transactionsBetween(Date startDate, Date endDate) {
+        List<Transaction> result = new ArrayList<>();
+        for (List<Transaction> dayList : transactionsByDay.subMap(dayOf(startDate), true, dayOf(endDate), true).values()) {
+            result.addAll(dayList);
+        }
+        return result;
+    }
+
+    /**
+     * Giá trị của giao dịch tại thời điểm đưa vào chỉ mục (Transaction có thể bị sửa trực tiếp ở nơi khác
+     * trước khi bản mới được put, nên phải giữ lại giá trị cũ để bớt ra đúng)
+     */
+    private static class Entry {
+        final Transaction transaction;
+        final int day;
+        final String type;
+        final String categoryKey;
+        final double amount;
+
+        Entry(Transaction transaction) {
+            this.transaction = transaction;
+            this.day = dayOf(transaction.getDate());
+            this.type = transaction.getType();
+            this.categoryKey = categoryKey(transaction);
+            this.amount = transaction.getAmount();
+        }
+    }
+
+    /**
+     * Kết quả tổng hợp một khoảng thời gian (khóa category là ID, hoặc tên với dữ liệu cũ)
+     */
+    public static class RangeSummary {
+        private double totalIncome;
+        private double totalExpense;
+        private int transactionCount;
+        private final Map<String, Double> expenseByCategory = new HashMap<>();
+        private final Map<String, Integer> countByCategory = new HashMap<>();
+
+        public double getTotalIncome() {
+            return totalIncome;
+        }
+
+        public double getTotalExpense() {
+            return totalExpense;
+        }
+
+        public int getTransactionCount() {
+            return transactionCount;
+        }
+
+        public Map<String, Double> getExpenseByCategory() {
+            return expenseByCategory;
+        }
+
+        public Map<String, Integer> getCountByCategory() {
+            return countByCategory;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.appqlct.helper;
+
+/**
+ * Fenwick tree (Binary Indexed Tree) cho tổng tiền tố: cập nhật một vị trí và lấy tổng một khoảng
+ * đều O(log n)
+ */
+public class FenwickTree {
+    private final double[] tree;
+
+    public FenwickTree(int size) {
+        this.tree = new double[size + 1];
+    }
+
+    public int size() {
+        return tree.length - 1;
+    }
+
+    /**
+     * Cộng delta vào vị trí index (0-based)
+     */
+    public void add(int index, double delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Tổng các vị trí [0, index] (0-based), index < 0 trả về 0
+     */
+    public double prefixSum(int index) {
+        double sum = 0;
+        for (int i = Math.min(index + 1, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Tổng các vị trí [from, to] (0-based, gồm cả hai đầu)
+     */
+    public double rangeSum(int from, int to) {
+        if (to < from) return 0;
+        return prefixSum(to) - prefixSum(from - 1);
+    }
+}
@@ -1,12 +1,18 @@
 package com.example.appqlct.helper;
 
+import android.content.SharedPreferences;
 import android.util.Log;
 
 import com.example.appqlct.model.Budget;
 import com.example.appqlct.model.Category;
 import com.example.appqlct.model.Feedback;
+import com.example.appqlct.model.GlobalStats;
+import com.example.appqlct.model.Leaderboard;
+import com.example.appqlct.model.SpendingDistribution;
 import com.example.appqlct.model.Transaction;
+import com.example.appqlct.model.Transfer;
 import com.example.appqlct.model.User;
+import com.example.appqlct.model.Wallet;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
@@ -16,20 +22,29 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.firestore.AggregateSource;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.functions.FirebaseFunctions;
 
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,7 +63,30 @@ public class FirebaseHelper {
     private static final String COLLECTION_CATEGORIES = "categories";
     private static final String COLLECTION_FEEDBACK = "feedback";
     private static final String COLLECTION_CONFIG = "config";
+    // config/category_catalog.version tăng mỗi khi danh mục chung thay đổi
+    static final String DOC_CATEGORY_CATALOG = "category_catalog";
+    static final String FIELD_CATALOG_VERSION = "version";
     private static final String COLLECTION_BUDGETS = "budgets";
+    private static final String COLLECTION_BUDGET_SUMMARIES = "budget_summaries";
+    private static final String COLLECTION_SPENDING_ROLLUPS = "spending_rollups";
+    private static final String COLLECTION_ACTIVE_USERS = "active_users";
+    private static final String COLLECTION_GLOBAL_STATS = "global_stats";
+    private static final String COLLECTION_LEADERBOARDS = "leaderboards";
+    private static final String COLLECTION_WALLETS = "wallets";
+    private static final String COLLECTION_TRANSFERS = "transfers";
+    private static final String COLLECTION_WALLET_BALANCES = "wallet_balances";
+
+    // Phiên bản danh mục đã có trong cache local (-1: chưa đồng bộ), lưu lại trong catalogPrefs
+    // để lần mở app sau không phải đọc lại cả collection categories
+    private static volatile long syncedCatalogVersion = -1;
+    private static SharedPreferences catalogPrefs;
+    private static final String KEY_SYNCED_CATALOG_VERSION = "synced_version";
+    // Đã so phiên bản với server trong tiến trình này (chỉ đọc config/category_catalog một lần)
+    private static volatile boolean catalogVersionChecked;
+    public static final int LEADERBOARD_SIZE = 20;
+
+    // Giới hạn số thao tác trong một WriteBatch của Firestore
+    public static final int MAX_BATCH_SIZE = 500;
 
     public FirebaseHelper() {
         db = FirebaseFirestore.getInstance();
@@ -133,6 +171,32 @@ public class FirebaseHelper {
                 .addOnCompleteListener(listener);
     }
 
+    /**
+     * Đổi role của user (dành cho Admin)
+     * Gọi Cloud Function setUserRole để gán custom claim "role" và cập nhật document users
+     */
+    public Task<Void> setUserRole(String uid, String role) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("uid", uid);
+        data.put("role", role);
+
+        return FirebaseFunctions.getInstance()
+                .getHttpsCallable("setUserRole")
+                .call(data)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        return Tasks.forException(task.getException() != null ?
+                                task.getException() : new Exception("Unknown error"));
+                    }
+                    // Nếu đổi role của chính mình thì làm mới token để rules nhận claim mới ngay
+                    FirebaseUser currentUser = auth.getCurrentUser();
+                    if (currentUser != null && currentUser.getUid().equals(uid)) {
+                        return currentUser.getIdToken(true).continueWith(tokenTask -> null);
+                    }
+                    return Tasks.forResult(null);
+                });
+    }
+
     /**
      * Lấy tất cả users (dành cho Admin)
      */
@@ -154,8 +218,28 @@ public class FirebaseHelper {
                 });
     }
 
+    /**
+     * Đếm số users có role "user" (dành cho Admin báo cáo)
+     * Dùng aggregate count trên server nên không phải tải toàn bộ collection users
+     */
+    public void countUsers(OnCountLoadedListener listener) {
+        db.collection(COLLECTION_USERS)
+                .whereEqualTo("role", "user")
+                .count()
+                .get(AggregateSource.SERVER)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        listener.onCountLoaded(task.getResult().getCount());
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
     /**
      * Xóa user (dành cho Admin)
+     * Transactions, budgets và feedback của user được Cloud Function purgeDeletedUserData
+     * xóa theo sau (tiến độ lưu ở user_deletions/{uid})
      */
     public void deleteUser(String uid, OnCompleteListener<Void> listener) {
         db.collection(COLLECTION_USERS)
@@ -253,10 +337,25 @@ public class FirebaseHelper {
      * Thêm transaction mới
      */
     public void addTransaction(Transaction transaction, OnCompleteListener<DocumentReference> listener) {
+        db.collection(COLLECTION_TRANSACTIONS)
+                .add(toTransactionData(transaction))
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Chuyển Transaction thành Map để ghi vào Firestore
+     */
+    private Map<String, Object> toTransactionData(Transaction transaction) {
         Map<String, Object> transactionData = new HashMap<>();
         transactionData.put("userId", transaction.getUserId());
         transactionData.put("amount", transaction.getAmount());
         transactionData.put("category", transaction.getCategory());
+        if (transaction.getCategoryId() != null) {
+            transactionData.put("categoryId", transaction.getCategoryId());
+        }
+        if (transaction.getWalletId() != null) {
+            transactionData.put("walletId", transaction.getWalletId());
+        }
         transactionData.put("note", transaction.getNote());
         transactionData.put("date", transaction.getDate());
         transactionData.put("type", transaction.getType());
@@ -270,10 +369,54 @@ public class FirebaseHelper {
         if (transaction.getRecurringEndMonth() != null) {
             transactionData.put("recurringEndMonth", transaction.getRecurringEndMonth());
         }
+        if (transaction.getImportHash() != null) {
+            transactionData.put("importHash", transaction.getImportHash());
+        }
+        return transactionData;
+    }
+
+    /**
+     * Ghi nhiều transaction (đã có sẵn id) trong một WriteBatch
+     * Tối đa MAX_BATCH_SIZE transaction mỗi lần gọi
+     */
+    public Task<Void> setTransactionsBatch(List<Transaction> transactions) {
+        if (transactions.size() > MAX_BATCH_SIZE) {
+            return Tasks.forException(new IllegalArgumentException("Batch quá lớn: " + transactions.size()));
+        }
+        WriteBatch batch = db.batch();
+        for (Transaction transaction : transactions) {
+            batch.set(db.collection(COLLECTION_TRANSACTIONS).document(transaction.getId()),
+                    toTransactionData(transaction));
+        }
+        return batch.commit();
+    }
 
-        db.collection(COLLECTION_TRANSACTIONS)
-                .add(transactionData)
-                .addOnCompleteListener(listener);
+    /**
+     * Ghi đè nhiều transaction (đã có sẵn id), chia thành các WriteBatch tối đa MAX_BATCH_SIZE document
+     * Mỗi batch là một lần gọi mạng và ghi nguyên tử, các batch khác nhau thì độc lập
+     */
+    public Task<Void> setTransactionsChunked(List<Transaction> transactions) {
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int start = 0; start < transactions.size(); start += MAX_BATCH_SIZE) {
+            int end = Math.min(start + MAX_BATCH_SIZE, transactions.size());
+            commits.add(setTransactionsBatch(transactions.subList(start, end)));
+        }
+        return Tasks.whenAll(commits);
+    }
+
+    /**
+     * Xóa nhiều transaction, chia thành các WriteBatch tối đa MAX_BATCH_SIZE document
+     */
+    public Task<Void> deleteTransactionsChunked(List<String> transactionIds) {
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int start = 0; start < transactionIds.size(); start += MAX_BATCH_SIZE) {
+            WriteBatch batch = db.batch();
+            for (String transactionId : transactionIds.subList(start, Math.min(start + MAX_BATCH_SIZE, transactionIds.size()))) {
+                batch.delete(db.collection(COLLECTION_TRANSACTIONS).document(transactionId));
+            }
+            commits.add(batch.commit());
+        }
+        return Tasks.whenAll(commits);
     }
 
     /**
@@ -514,7 +657,7 @@ public class FirebaseHelper {
                         }
                         Log.d("FirebaseHelper", String.format("getMonthlyTransactions - userId: %s, tổng số transactions hợp lệ: %d", 
                             userId, transactions.size()));
-                        listener.onTransactionsLoaded(transactions);
+                        deliverWithArchives(getArchivedTransactions(userId, startDate, endDate), transactions, listener);
                     } else {
                         Log.e("FirebaseHelper", "getMonthlyTransactions - Error: " + (task.getException() != null ? task.getException().getMessage() : "Unknown"));
                         listener.onError(task.getException().getMessage());
@@ -528,6 +671,8 @@ public class FirebaseHelper {
      */
     public ListenerRegistration listenMonthlyTransactions(String userId, Date startDate, Date endDate, 
                                                           OnTransactionsLoadedListener listener) {
+        // Archive không thay đổi trong lúc lắng nghe nên chỉ đọc một lần cho mọi snapshot
+        Task<List<Transaction>> archivedTask = getArchivedTransactions(userId, startDate, endDate);
         return db.collection(COLLECTION_TRANSACTIONS)
                 .whereEqualTo("userId", userId)
                 .whereGreaterThanOrEqualTo("date", startDate)
@@ -596,7 +741,7 @@ public class FirebaseHelper {
                                 Log.e("FirebaseHelper", "Error parsing listen monthly transaction document: " + document.getId(), e);
                             }
                         }
-                        listener.onTransactionsLoaded(transactions);
+                        deliverWithArchives(archivedTask, transactions, listener);
                     }
                 });
     }
@@ -605,27 +750,9 @@ public class FirebaseHelper {
      * Cập nhật transaction
      */
     public void updateTransaction(Transaction transaction, OnCompleteListener<Void> listener) {
-        Map<String, Object> transactionData = new HashMap<>();
-        transactionData.put("userId", transaction.getUserId());
-        transactionData.put("amount", transaction.getAmount());
-        transactionData.put("category", transaction.getCategory());
-        transactionData.put("note", transaction.getNote());
-        transactionData.put("date", transaction.getDate());
-        transactionData.put("type", transaction.getType());
-        transactionData.put("isRecurring", transaction.isRecurring());
-        if (transaction.getRecurringTransactionId() != null) {
-            transactionData.put("recurringTransactionId", transaction.getRecurringTransactionId());
-        }
-        if (transaction.getRecurringStartMonth() != null) {
-            transactionData.put("recurringStartMonth", transaction.getRecurringStartMonth());
-        }
-        if (transaction.getRecurringEndMonth() != null) {
-            transactionData.put("recurringEndMonth", transaction.getRecurringEndMonth());
-        }
-
         db.collection(COLLECTION_TRANSACTIONS)
                 .document(transaction.getId())
-                .set(transactionData)
+                .set(toTransactionData(transaction))
                 .addOnCompleteListener(listener);
     }
 
@@ -660,7 +787,10 @@ public class FirebaseHelper {
                         final int[] errorCount = {0};
                         
                         for (QueryDocumentSnapshot document : snapshot) {
-                            document.getReference().delete()
+                            DocumentReference reference = document.getReference();
+                            // Đánh dấu trước khi xóa để Cloud Functions giữ nguyên thống kê của giao dịch cũ
+                            reference.update(TransactionArchiver.FIELD_ARCHIVED_TO, TransactionArchiver.ARCHIVED_TO_RETENTION)
+                                    .onSuccessTask(aVoid -> reference.delete())
                                     .addOnSuccessListener(aVoid -> {
                                         synchronized (deletedCount) {
                                             deletedCount[0]++;
@@ -707,7 +837,7 @@ public class FirebaseHelper {
                             }
                             transactions.add(transaction);
                         }
-                        listener.onTransactionsLoaded(transactions);
+                        deliverWithArchives(getArchivedTransactions(null, null, null), transactions, listener);
                     } else {
                         listener.onError(task.getException().getMessage());
                     }
@@ -734,59 +864,313 @@ public class FirebaseHelper {
                             }
                             transactions.add(transaction);
                         }
-                        listener.onTransactionsLoaded(transactions);
+                        deliverWithArchives(getArchivedTransactions(null, startDate, endDate), transactions, listener);
                     } else {
                         listener.onError(task.getException().getMessage());
                     }
                 });
     }
 
+    /**
+     * Lấy các giao dịch đã lưu trữ của user (các tháng cũ trong transaction_archives)
+     */
+    public void getUserArchivedTransactions(String userId, OnTransactionsLoadedListener listener) {
+        getArchivedTransactions(userId, null, null).addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                listener.onTransactionsLoaded(task.getResult());
+            } else {
+                listener.onError(task.getException() != null ? task.getException().getMessage() : "Unknown error");
+            }
+        });
+    }
+
+    /**
+     * Lắng nghe thay đổi giao dịch của user theo từng document (thêm/sửa/xóa)
+     * Snapshot đầu tiên lấy từ cache cục bộ của Firestore nếu có, sau đó mỗi lần ghi (kể cả ghi
+     * offline trên thiết bị) chỉ trả về các document thay đổi
+     */
+    public ListenerRegistration listenUserTransactionChanges(String userId, OnTransactionChangesListener listener) {
+        return db.collection(COLLECTION_TRANSACTIONS)
+                .whereEqualTo("userId", userId)
+                .addSnapshotListener((querySnapshot, error) -> {
+                    if (error != null) {
+                        listener.onError(error.getMessage());
+                        return;
+                    }
+                    if (querySnapshot == null) return;
+
+                    List<Transaction> upserted = new ArrayList<>();
+                    List<String> removedIds = new ArrayList<>();
+                    for (DocumentChange change : querySnapshot.getDocumentChanges()) {
+                        DocumentSnapshot document = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            removedIds.add(document.getId());
+                            continue;
+                        }
+                        try {
+                            Transaction transaction = document.toObject(Transaction.class);
+                            transaction.setId(document.getId());
+                            transaction.setDate(document.getDate("date"));
+                            upserted.add(transaction);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error parsing transaction change: " + document.getId(), e);
+                        }
+                    }
+                    listener.onTransactionsChanged(upserted, removedIds);
+                });
+    }
+
+    /**
+     * Lấy tất cả transactions của user, kể cả các tháng đã lưu trữ (dành cho báo cáo)
+     * Giao dịch từ archive chỉ dùng để thống kê, không sửa/xóa được
+     */
+    public void getUserTransactionsIncludingArchives(String userId, OnTransactionsLoadedListener listener) {
+        getUserTransactions(userId, new OnTransactionsLoadedListener() {
+            @Override
+            public void onTransactionsLoaded(List<Transaction> transactions) {
+                deliverWithArchives(getArchivedTransactions(userId, null, null), transactions, listener);
+            }
+
+            @Override
+            public void onError(String error) {
+                listener.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Đọc giao dịch đã lưu trữ (transaction_archives, mỗi tháng một document) trong khoảng thời gian
+     * Khoảng thời gian từ TransactionArchiver.archiveCutoff() trở đi chưa thể có archive nên không đọc
+     * @param userId null để đọc của tất cả users (Admin)
+     * @param startDate null nếu không giới hạn
+     * @param endDate null nếu không giới hạn
+     */
+    private Task<List<Transaction>> getArchivedTransactions(String userId, Date startDate, Date endDate) {
+        Date cutoff = TransactionArchiver.archiveCutoff();
+        if (startDate != null && !startDate.before(cutoff)) {
+            return Tasks.forResult(new ArrayList<>());
+        }
+
+        Query query = db.collection(TransactionArchiver.COLLECTION_ARCHIVES);
+        if (userId != null) {
+            query = query.whereEqualTo("userId", userId);
+        }
+        if (startDate != null) {
+            // Archive lưu theo đầu tháng nên lùi về đầu tháng của startDate
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(startDate);
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            query = query.whereGreaterThanOrEqualTo("monthStart", calendar.getTime());
+        }
+        if (endDate != null) {
+            query = query.whereLessThanOrEqualTo("monthStart", endDate);
+        }
+
+        return query.get().continueWith(task -> {
+            List<Transaction> transactions = new ArrayList<>();
+            for (QueryDocumentSnapshot archive : task.getResult()) {
+                for (Transaction transaction : TransactionArchiver.unpack(archive)) {
+                    Date date = transaction.getDate();
+                    if ((startDate == null || !date.before(startDate))
+                            && (endDate == null || !date.after(endDate))) {
+                        transactions.add(transaction);
+                    }
+                }
+            }
+            return transactions;
+        });
+    }
+
+    /**
+     * Gộp giao dịch đã lưu trữ vào kết quả rồi trả về listener
+     * Nếu không đọc được archive vẫn trả về giao dịch hiện có
+     */
+    private void deliverWithArchives(Task<List<Transaction>> archivedTask, List<Transaction> transactions,
+                                     OnTransactionsLoadedListener listener) {
+        archivedTask.addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                List<Transaction> merged = new ArrayList<>(transactions);
+                merged.addAll(task.getResult());
+                listener.onTransactionsLoaded(merged);
+            } else {
+                Log.w("FirebaseHelper", "Cannot load archived transactions", task.getException());
+                listener.onTransactionsLoaded(transactions);
+            }
+        });
+    }
+
     // ========== CATEGORY OPERATIONS ==========
 
+    /**
+     * Dùng SharedPreferences để nhớ phiên bản danh mục đã đồng bộ giữa các lần mở app
+     * (gọi khi app khởi động, trước khi các màn hình đọc danh mục)
+     */
+    static synchronized void attachCatalogPreferences(SharedPreferences prefs) {
+        catalogPrefs = prefs;
+        syncedCatalogVersion = Math.max(syncedCatalogVersion, prefs.getLong(KEY_SYNCED_CATALOG_VERSION, -1));
+    }
+
+    /**
+     * Bundle danh mục mặc định đã nạp vào cache: cache có ít nhất phiên bản này
+     */
+    static synchronized void seedCatalogVersion(long bundleVersion) {
+        if (bundleVersion > syncedCatalogVersion) {
+            setSyncedCatalogVersion(bundleVersion);
+        }
+    }
+
+    private static synchronized void setSyncedCatalogVersion(long version) {
+        syncedCatalogVersion = version;
+        if (catalogPrefs != null) {
+            catalogPrefs.edit().putLong(KEY_SYNCED_CATALOG_VERSION, version).apply();
+        }
+    }
+
     /**
      * Lấy tất cả categories
+     * Danh mục luôn được lấy từ cache local (bundle mặc định + lần đồng bộ gần nhất); mỗi tiến trình chỉ
+     * đọc document phiên bản config/category_catalog một lần và chỉ đọc lại cả collection từ server
+     * khi phiên bản trên server khác phiên bản đã đồng bộ (hoặc cache trống)
      */
     public void getAllCategories(OnCategoriesLoadedListener listener) {
-        db.collection(COLLECTION_CATEGORIES)
+        if (catalogVersionChecked) {
+            getCachedCategories(listener, syncedCatalogVersion);
+            return;
+        }
+        db.collection(COLLECTION_CONFIG)
+                .document(DOC_CATEGORY_CATALOG)
                 .get()
+                .addOnCompleteListener(versionTask -> {
+                    if (!versionTask.isSuccessful() || versionTask.getResult().getMetadata().isFromCache()) {
+                        // Không biết phiên bản trên server (offline): dùng những gì đang có trong cache
+                        getCachedCategories(listener, -1);
+                        return;
+                    }
+                    DocumentSnapshot versionDoc = versionTask.getResult();
+                    Long version = versionDoc.exists() ? versionDoc.getLong(FIELD_CATALOG_VERSION) : null;
+                    long currentVersion = version != null ? version : 0;
+                    if (currentVersion == syncedCatalogVersion) {
+                        catalogVersionChecked = true;
+                        getCachedCategories(listener, currentVersion);
+                    } else {
+                        getServerCategories(listener, currentVersion);
+                    }
+                });
+    }
+
+    /**
+     * Đọc danh mục từ cache local, cache của collection trống thì thử named query của bundle,
+     * cuối cùng mới đọc từ server
+     * @param version phiên bản đã biết, -1 nếu không đọc được phiên bản
+     */
+    private void getCachedCategories(OnCategoriesLoadedListener listener, long version) {
+        db.collection(COLLECTION_CATEGORIES)
+                .get(Source.CACHE)
                 .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        List<Category> categories = new ArrayList<>();
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            try {
-                                Category category = document.toObject(Category.class);
-                                if (category != null) {
-                                    // Đảm bảo có đầy đủ thông tin
-                                    if (category.getName() != null && category.getType() != null) {
-                                        category.setId(document.getId());
-                                        // Đảm bảo icon không null
-                                        if (category.getIcon() == null) {
-                                            category.setIcon("");
-                                        }
-                                        categories.add(category);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                // Bỏ qua các document không hợp lệ, tiếp tục với document tiếp theo
+                    if (task.isSuccessful() && !task.getResult().isEmpty()) {
+                        listener.onCategoriesLoaded(toSortedCategories(task.getResult()));
+                    } else {
+                        getBundledCategories(new OnCategoriesLoadedListener() {
+                            @Override
+                            public void onCategoriesLoaded(List<Category> categories) {
+                                listener.onCategoriesLoaded(categories);
                             }
-                        }
-                        // Sắp xếp: income trước, expense sau, sau đó sắp xếp theo tên
-                        categories.sort((c1, c2) -> {
-                            int typeCompare = c1.getType().compareTo(c2.getType());
-                            if (typeCompare != 0) {
-                                return typeCompare;
+
+                            @Override
+                            public void onError(String error) {
+                                getServerCategories(listener, version);
                             }
-                            return c1.getName().compareTo(c2.getName());
-                        });
-                        listener.onCategoriesLoaded(categories);
+                        }, null);
+                    }
+                });
+    }
+
+    private void getServerCategories(OnCategoriesLoadedListener listener, long version) {
+        db.collection(COLLECTION_CATEGORIES)
+                .get(Source.SERVER)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        if (version >= 0) {
+                            setSyncedCatalogVersion(version);
+                            catalogVersionChecked = true;
+                        }
+                        listener.onCategoriesLoaded(toSortedCategories(task.getResult()));
                     } else {
                         String errorMessage = task.getException() != null ? 
                                 task.getException().getMessage() : "Unknown error";
-                        listener.onError(errorMessage);
+                        // Không lấy được từ server thì dùng danh mục mặc định đã nạp từ bundle
+                        getBundledCategories(listener, errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Thêm thao tác tăng phiên bản danh mục vào batch để client biết cần đọc lại từ server
+     */
+    void bumpCategoryCatalogVersion(WriteBatch batch) {
+        // Lần đọc danh mục sau kiểm tra lại phiên bản trên server
+        catalogVersionChecked = false;
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_CATALOG_VERSION, FieldValue.increment(1));
+        batch.set(db.collection(COLLECTION_CONFIG).document(DOC_CATEGORY_CATALOG), data, SetOptions.merge());
+    }
+
+    /**
+     * Lấy danh mục từ named query của bundle danh mục mặc định (chỉ đọc cache local)
+     */
+    private void getBundledCategories(OnCategoriesLoadedListener listener, String serverError) {
+        db.getNamedQuery(CategoryInitializer.NAMED_QUERY_DEFAULT_CATEGORIES)
+                .addOnCompleteListener(queryTask -> {
+                    Query query = queryTask.isSuccessful() ? queryTask.getResult() : null;
+                    if (query == null) {
+                        listener.onError(serverError);
+                        return;
                     }
+                    query.get(Source.CACHE).addOnCompleteListener(cacheTask -> {
+                        if (cacheTask.isSuccessful() && !cacheTask.getResult().isEmpty()) {
+                            listener.onCategoriesLoaded(toSortedCategories(cacheTask.getResult()));
+                        } else {
+                            listener.onError(serverError);
+                        }
+                    });
                 });
     }
 
+    private List<Category> toSortedCategories(QuerySnapshot snapshot) {
+        List<Category> categories = new ArrayList<>();
+        for (QueryDocumentSnapshot document : snapshot) {
+            try {
+                Category category = document.toObject(Category.class);
+                if (category != null) {
+                    // Đảm bảo có đầy đủ thông tin
+                    if (category.getName() != null && category.getType() != null) {
+                        category.setId(document.getId());
+                        // Đảm bảo icon không null
+                        if (category.getIcon() == null) {
+                            category.setIcon("");
+                        }
+                        categories.add(category);
+                    }
+                }
+            } catch (Exception e) {
+                // Bỏ qua các document không hợp lệ, tiếp tục với document tiếp theo
+            }
+        }
+        // Sắp xếp: income trước, expense sau, sau đó sắp xếp theo tên
+        categories.sort((c1, c2) -> {
+            int typeCompare = c1.getType().compareTo(c2.getType());
+            if (typeCompare != 0) {
+                return typeCompare;
+            }
+            return c1.getName().compareTo(c2.getName());
+        });
+        return categories;
+    }
+
     /**
      * Thêm category mới (dành cho Admin)
      */
@@ -796,8 +1180,17 @@ public class FirebaseHelper {
         categoryData.put("icon", category.getIcon());
         categoryData.put("type", category.getType());
 
-        db.collection(COLLECTION_CATEGORIES)
-                .add(categoryData)
+        DocumentReference categoryRef = db.collection(COLLECTION_CATEGORIES).document();
+        WriteBatch batch = db.batch();
+        batch.set(categoryRef, categoryData);
+        bumpCategoryCatalogVersion(batch);
+        batch.commit()
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return categoryRef;
+                })
                 .addOnCompleteListener(listener);
     }
 
@@ -810,20 +1203,20 @@ public class FirebaseHelper {
         categoryData.put("icon", category.getIcon());
         categoryData.put("type", category.getType());
 
-        db.collection(COLLECTION_CATEGORIES)
-                .document(category.getId())
-                .set(categoryData)
-                .addOnCompleteListener(listener);
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(COLLECTION_CATEGORIES).document(category.getId()), categoryData);
+        bumpCategoryCatalogVersion(batch);
+        batch.commit().addOnCompleteListener(listener);
     }
 
     /**
      * Xóa category (dành cho Admin)
      */
     public void deleteCategory(String categoryId, OnCompleteListener<Void> listener) {
-        db.collection(COLLECTION_CATEGORIES)
-                .document(categoryId)
-                .delete()
-                .addOnCompleteListener(listener);
+        WriteBatch batch = db.batch();
+        batch.delete(db.collection(COLLECTION_CATEGORIES).document(categoryId));
+        bumpCategoryCatalogVersion(batch);
+        batch.commit().addOnCompleteListener(listener);
     }
 
     // ========== FEEDBACK OPERATIONS ==========
@@ -891,6 +1284,9 @@ public class FirebaseHelper {
         Map<String, Object> budgetData = new HashMap<>();
         budgetData.put("userId", budget.getUserId());
         budgetData.put("categoryName", budget.getCategoryName());
+        if (budget.getCategoryId() != null) {
+            budgetData.put("categoryId", budget.getCategoryId());
+        }
         budgetData.put("amount", budget.getAmount());
         budgetData.put("month", budget.getMonth());
         budgetData.put("year", budget.getYear());
@@ -903,134 +1299,31 @@ public class FirebaseHelper {
     }
 
     /**
-     * Lấy tất cả ngân sách của một user
-     * Lưu ý: Query này có thể cần composite index trong Firestore
-     * Firebase sẽ tự động đề xuất tạo index khi cần
+     * Lấy ngân sách của user trong một năm (tối đa 12 x số category documents)
      */
-    public void getUserBudgets(String userId, OnBudgetsLoadedListener listener) {
+    public void getUserBudgetsForYear(String userId, int year, OnBudgetsLoadedListener listener) {
+        getUserBudgetsForMonthRange(userId, year, 1, 12, listener);
+    }
+
+    /**
+     * Lấy ngân sách của user từ tháng fromMonth đến toMonth (1-12) của một năm
+     * Cần composite index budgets(userId, year, month) trong firestore.indexes.json
+     */
+    public void getUserBudgetsForMonthRange(String userId, int year, int fromMonth, int toMonth,
+                                            OnBudgetsLoadedListener listener) {
         db.collection(COLLECTION_BUDGETS)
                 .whereEqualTo("userId", userId)
+                .whereEqualTo("year", year)
+                .whereGreaterThanOrEqualTo("month", fromMonth)
+                .whereLessThanOrEqualTo("month", toMonth)
+                .orderBy("month")
                 .get()
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
-                        Log.d("FirebaseHelper", "getUserBudgets - userId: " + userId + ", số documents: " + task.getResult().size());
                         List<Budget> budgets = new ArrayList<>();
                         for (QueryDocumentSnapshot document : task.getResult()) {
-                            try {
-                                Budget budget = document.toObject(Budget.class);
-                                budget.setId(document.getId());
-                                
-                                // DEBUG: Log raw data từ Firestore
-                                Log.d("FirebaseHelper", String.format("Document ID: %s, raw month type: %s, raw year type: %s, raw userId: %s", 
-                                    document.getId(), 
-                                    document.get("month") != null ? document.get("month").getClass().getSimpleName() : "null",
-                                    document.get("year") != null ? document.get("year").getClass().getSimpleName() : "null",
-                                    document.get("userId") != null ? document.get("userId").toString() : "null"));
-                                
-                                // Parse userId thủ công từ document để đảm bảo đúng
-                                Object userIdObj = document.get("userId");
-                                String docUserId = null;
-                                if (userIdObj != null) {
-                                    docUserId = userIdObj.toString();
-                                }
-                                // Nếu userId từ document khác với userId được query, bỏ qua (an toàn)
-                                if (docUserId == null || !docUserId.equals(userId)) {
-                                    Log.w("FirebaseHelper", String.format("SKIP budget - Document ID: %s, userId không khớp: expected=%s, actual=%s", 
-                                        document.getId(), userId, docUserId));
-                                    continue;
-                                }
-                                budget.setUserId(docUserId);
-                                
-                                // Parse month và year thủ công từ document để đảm bảo đúng format
-                                // Firestore có thể trả về Long hoặc Integer
-                                int month = 0;
-                                Object monthObj = document.get("month");
-                                if (monthObj != null) {
-                                    if (monthObj instanceof Long) {
-                                        month = ((Long) monthObj).intValue();
-                                    } else if (monthObj instanceof Integer) {
-                                        month = (Integer) monthObj;
-                                    } else if (monthObj instanceof Number) {
-                                        month = ((Number) monthObj).intValue();
-                                    } else {
-                                        // Nếu không parse được, thử dùng giá trị từ budget object
-                                        month = budget.getMonth();
-                                    }
-                                } else {
-                                    // Nếu monthObj là null, thử dùng giá trị từ budget object
-                                    month = budget.getMonth();
-                                }
-                                
-                                // DEBUG: Log giá trị month sau khi parse
-                                Log.d("FirebaseHelper", String.format("Document ID: %s, parsed month: %d", document.getId(), month));
-                                
-                                // Kiểm tra month hợp lệ (1-12) - bắt buộc phải có
-                                if (month < 1 || month > 12) {
-                                    // Bỏ qua budget không hợp lệ
-                                    Log.w("FirebaseHelper", String.format("SKIP budget - Document ID: %s, month không hợp lệ: %d", document.getId(), month));
-                                    continue;
-                                }
-                                budget.setMonth(month);
-                                
-                                int year = 0;
-                                Object yearObj = document.get("year");
-                                if (yearObj != null) {
-                                    if (yearObj instanceof Long) {
-                                        year = ((Long) yearObj).intValue();
-                                    } else if (yearObj instanceof Integer) {
-                                        year = (Integer) yearObj;
-                                    } else if (yearObj instanceof Number) {
-                                        year = ((Number) yearObj).intValue();
-                                    } else {
-                                        // Nếu không parse được, thử dùng giá trị từ budget object
-                                        year = budget.getYear();
-                                    }
-                                } else {
-                                    // Nếu yearObj là null, thử dùng giá trị từ budget object
-                                    year = budget.getYear();
-                                }
-                                
-                                // DEBUG: Log giá trị year sau khi parse
-                                Log.d("FirebaseHelper", String.format("Document ID: %s, parsed year: %d", document.getId(), year));
-                                
-                                // Kiểm tra year hợp lệ (2000-2100) - bắt buộc phải có
-                                if (year < 2000 || year > 2100) {
-                                    // Bỏ qua budget không hợp lệ
-                                    Log.w("FirebaseHelper", String.format("SKIP budget - Document ID: %s, year không hợp lệ: %d", document.getId(), year));
-                                    continue;
-                                }
-                                budget.setYear(year);
-                            
-                                // Convert Firestore Timestamp to Date
-                                Object createdAtObj = document.get("createdAt");
-                                if (createdAtObj instanceof com.google.firebase.Timestamp) {
-                                    budget.setCreatedAt(((com.google.firebase.Timestamp) createdAtObj).toDate());
-                                }
-                                Object updatedAtObj = document.get("updatedAt");
-                                if (updatedAtObj instanceof com.google.firebase.Timestamp) {
-                                    budget.setUpdatedAt(((com.google.firebase.Timestamp) updatedAtObj).toDate());
-                                }
-                                
-                                // DEBUG: Log budget hợp lệ được thêm vào list
-                                Log.d("FirebaseHelper", String.format("ADD budget - ID: %s, userId: %s, category: %s, amount: %.0f, month: %d, year: %d", 
-                                    budget.getId(), budget.getUserId(), budget.getCategoryName(), budget.getAmount(), budget.getMonth(), budget.getYear()));
-                                
-                                budgets.add(budget);
-                            } catch (Exception e) {
-                                // Bỏ qua budget nếu có lỗi khi parse
-                                Log.e("FirebaseHelper", "ERROR parsing budget - Document ID: " + document.getId(), e);
-                                continue;
-                            }
+                            budgets.add(toBudget(document));
                         }
-                        
-                        // DEBUG: Log tổng số budgets hợp lệ
-                        Log.d("FirebaseHelper", "Tổng số budgets hợp lệ: " + budgets.size());
-                        // Sắp xếp theo năm và tháng (descending) trong code
-                        budgets.sort((b1, b2) -> {
-                            int yearCompare = Integer.compare(b2.getYear(), b1.getYear());
-                            if (yearCompare != 0) return yearCompare;
-                            return Integer.compare(b2.getMonth(), b1.getMonth());
-                        });
                         listener.onBudgetsLoaded(budgets);
                     } else {
                         listener.onError(task.getException().getMessage());
@@ -1039,60 +1332,277 @@ public class FirebaseHelper {
     }
 
     /**
-     * Lấy tất cả ngân sách (dành cho Admin)
+     * Lấy ngân sách của tất cả users cho tháng/năm cụ thể (dành cho Admin)
+     * Cần composite index budgets(year, month) trong firestore.indexes.json
      */
-    public void getAllBudgets(OnBudgetsLoadedListener listener) {
+    public void getBudgetsForMonth(int month, int year, OnBudgetsLoadedListener listener) {
         db.collection(COLLECTION_BUDGETS)
+                .whereEqualTo("year", year)
+                .whereEqualTo("month", month)
                 .get()
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         List<Budget> budgets = new ArrayList<>();
                         for (QueryDocumentSnapshot document : task.getResult()) {
-                            try {
-                                Budget budget = document.toObject(Budget.class);
-                                budget.setId(document.getId());
-                                
-                                // Parse dates
-                                Object createdAtObj = document.get("createdAt");
-                                if (createdAtObj instanceof com.google.firebase.Timestamp) {
-                                    budget.setCreatedAt(((com.google.firebase.Timestamp) createdAtObj).toDate());
-                                }
-                                Object updatedAtObj = document.get("updatedAt");
-                                if (updatedAtObj instanceof com.google.firebase.Timestamp) {
-                                    budget.setUpdatedAt(((com.google.firebase.Timestamp) updatedAtObj).toDate());
-                                }
-                                
-                                // Parse month và year
-                                Object monthObj = document.get("month");
-                                if (monthObj != null) {
-                                    if (monthObj instanceof Long) {
-                                        budget.setMonth(((Long) monthObj).intValue());
-                                    } else if (monthObj instanceof Integer) {
-                                        budget.setMonth((Integer) monthObj);
-                                    }
-                                }
-                                
-                                Object yearObj = document.get("year");
-                                if (yearObj != null) {
-                                    if (yearObj instanceof Long) {
-                                        budget.setYear(((Long) yearObj).intValue());
-                                    } else if (yearObj instanceof Integer) {
-                                        budget.setYear((Integer) yearObj);
-                                    }
+                            budgets.add(toBudget(document));
+                        }
+                        listener.onBudgetsLoaded(budgets);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Lấy tổng hợp ngân sách theo năm của một user (mỗi năm một document budget_summaries)
+     * Kết quả được trả về dưới dạng danh sách Budget (mỗi category/tháng một budget, đã loại bỏ duplicate)
+     */
+    public void getUserBudgetSummaries(String userId, OnBudgetsLoadedListener listener) {
+        db.collection(COLLECTION_BUDGET_SUMMARIES)
+                .whereEqualTo("userId", userId)
+                .orderBy("year")
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        List<Budget> budgets = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            expandBudgetSummary(document, budgets);
+                        }
+                        listener.onBudgetsLoaded(budgets);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Lấy tổng hợp ngân sách theo năm của tất cả users (dành cho Admin)
+     */
+    public void getAllBudgetSummaries(OnBudgetsLoadedListener listener) {
+        db.collection(COLLECTION_BUDGET_SUMMARIES)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        List<Budget> budgets = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            expandBudgetSummary(document, budgets);
+                        }
+                        listener.onBudgetsLoaded(budgets);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Lấy thống kê tổng toàn hệ thống (dành cho Admin)
+     * Cloud Function updateGlobalStats ghi vào các shard global_stats/totals/shards/{n},
+     * ở đây cộng tất cả shard lại (không phụ thuộc số shard)
+     */
+    @SuppressWarnings("unchecked")
+    public void getGlobalStats(OnGlobalStatsLoadedListener listener) {
+        db.collection(COLLECTION_GLOBAL_STATS)
+                .document("totals")
+                .collection("shards")
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        GlobalStats stats = new GlobalStats();
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            stats.addShard(toLong(document.get("transactionCount")),
+                                    toLong(document.get("expenseCount")),
+                                    toDouble(document.get("expenseTotal")));
+                            Object categoriesObj = document.get("categories");
+                            if (!(categoriesObj instanceof Map)) continue;
+                            for (Map.Entry<String, Object> entry : ((Map<String, Object>) categoriesObj).entrySet()) {
+                                if (!(entry.getValue() instanceof Map)) continue;
+                                Map<String, Object> category = (Map<String, Object>) entry.getValue();
+                                stats.addCategory(entry.getKey(), toLong(category.get("count")), toDouble(category.get("total")));
+                            }
+                        }
+                        listener.onStatsLoaded(stats);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Lấy bảng xếp hạng top users và top categories theo chi tiêu của một tháng (dành cho Admin)
+     * Cloud Functions duy trì leaderboards/{yyyyMM}, ở đây chỉ đọc một document
+     */
+    @SuppressWarnings("unchecked")
+    public void getLeaderboard(int month, int year, OnLeaderboardLoadedListener listener) {
+        db.collection(COLLECTION_LEADERBOARDS)
+                .document(String.format(Locale.US, "%04d%02d", year, month))
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        Leaderboard leaderboard = new Leaderboard();
+                        DocumentSnapshot document = task.getResult();
+                        Object usersObj = document.get("users");
+                        if (usersObj instanceof List) {
+                            for (Object item : (List<Object>) usersObj) {
+                                if (!(item instanceof Map) || leaderboard.getTopUsers().size() >= LEADERBOARD_SIZE) continue;
+                                Map<String, Object> entry = (Map<String, Object>) item;
+                                leaderboard.getTopUsers().add(new Leaderboard.Entry((String) entry.get("userId"),
+                                        (String) entry.get("name"), toDouble(entry.get("total"))));
+                            }
+                        }
+                        Object categoriesObj = document.get("categories");
+                        if (categoriesObj instanceof List) {
+                            for (Object item : (List<Object>) categoriesObj) {
+                                if (!(item instanceof Map) || leaderboard.getTopCategories().size() >= LEADERBOARD_SIZE) continue;
+                                Map<String, Object> entry = (Map<String, Object>) item;
+                                String categoryKey = (String) entry.get("categoryKey");
+                                leaderboard.getTopCategories().add(new Leaderboard.Entry(categoryKey,
+                                        categoryKey, toDouble(entry.get("total"))));
+                            }
+                        }
+                        listener.onLeaderboardLoaded(leaderboard);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * Lấy phân bố chi tiêu của tất cả users trong một tháng (dành cho Admin)
+     * Đọc các shard của spending_rollups/{yyyyMM} (do Cloud Function updateSpendingRollups cập nhật)
+     * và gộp lại, không cần tải giao dịch
+     */
+    @SuppressWarnings("unchecked")
+    public void getSpendingDistribution(int month, int year, OnSpendingDistributionLoadedListener listener) {
+        String monthKey = String.format(Locale.US, "%04d%02d", year, month);
+        db.collection(COLLECTION_SPENDING_ROLLUPS)
+                .document(monthKey)
+                .collection("shards")
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        SpendingDistribution distribution = new SpendingDistribution(month, year);
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            distribution.getTransactionAmounts().merge(QuantileSketch.fromMap(document.get("transactions")));
+                            distribution.getUserMonthlySpend().merge(QuantileSketch.fromMap(document.get("userSpend")));
+                            Object categoriesObj = document.get("categories");
+                            if (categoriesObj instanceof Map) {
+                                for (Map.Entry<String, Object> entry : ((Map<String, Object>) categoriesObj).entrySet()) {
+                                    distribution.mergeCategory(entry.getKey(), QuantileSketch.fromMap(entry.getValue()));
                                 }
-                                
-                                budgets.add(budget);
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error parsing budget: " + document.getId(), e);
                             }
                         }
-                        listener.onBudgetsLoaded(budgets);
+                        listener.onDistributionLoaded(distribution);
                     } else {
                         listener.onError(task.getException().getMessage());
                     }
                 });
     }
 
+    /**
+     * Đếm số users hoạt động (có giao dịch) trong tháng, tổng và theo category (dành cho Admin)
+     * Ước lượng bằng HyperLogLog từ active_users/{yyyyMM} (do Cloud Function updateActiveUsers cập nhật),
+     * chi phí đọc không phụ thuộc số users
+     */
+    public void getActiveUserCounts(int month, int year, OnActiveUsersLoadedListener listener) {
+        DocumentReference monthRef = db.collection(COLLECTION_ACTIVE_USERS)
+                .document(String.format(Locale.US, "%04d%02d", year, month));
+        Task<DocumentSnapshot> monthTask = monthRef.get();
+        Task<QuerySnapshot> categoriesTask = monthRef.collection("categories").get();
+        Tasks.whenAllComplete(monthTask, categoriesTask).addOnCompleteListener(task -> {
+            if (!monthTask.isSuccessful() || !categoriesTask.isSuccessful()) {
+                Exception e = monthTask.getException() != null ? monthTask.getException() : categoriesTask.getException();
+                listener.onError(e != null ? e.getMessage() : "Unknown error");
+                return;
+            }
+            DocumentSnapshot monthDoc = monthTask.getResult();
+            long total = monthDoc.exists()
+                    ? HyperLogLog.fromMap(monthDoc.get("precision"), monthDoc.get("registers")).estimate()
+                    : 0;
+            // ID document là hash của category, category nằm trong field categoryKey
+            // (document cũ dùng thẳng category làm ID thì gộp registers với document mới)
+            Map<String, HyperLogLog> registersByCategory = new HashMap<>();
+            for (QueryDocumentSnapshot document : categoriesTask.getResult()) {
+                String categoryKey = document.getString("categoryKey");
+                if (categoryKey == null) categoryKey = document.getId();
+                HyperLogLog hll = HyperLogLog.fromMap(document.get("precision"), document.get("registers"));
+                HyperLogLog existing = registersByCategory.get(categoryKey);
+                if (existing == null) {
+                    registersByCategory.put(categoryKey, hll);
+                } else {
+                    existing.merge(hll);
+                }
+            }
+            Map<String, Long> byCategory = new HashMap<>();
+            for (Map.Entry<String, HyperLogLog> entry : registersByCategory.entrySet()) {
+                byCategory.put(entry.getKey(), entry.getValue().estimate());
+            }
+            listener.onActiveUsersLoaded(total, byCategory);
+        });
+    }
+
+    /**
+     * Chuyển document budget sang Budget (Firestore trả month/year dạng Long, ngày dạng Timestamp)
+     */
+    private Budget toBudget(DocumentSnapshot document) {
+        Budget budget = document.toObject(Budget.class);
+        budget.setId(document.getId());
+        Object monthObj = document.get("month");
+        if (monthObj instanceof Number) {
+            budget.setMonth(((Number) monthObj).intValue());
+        }
+        Object yearObj = document.get("year");
+        if (yearObj instanceof Number) {
+            budget.setYear(((Number) yearObj).intValue());
+        }
+        Object createdAtObj = document.get("createdAt");
+        if (createdAtObj instanceof com.google.firebase.Timestamp) {
+            budget.setCreatedAt(((com.google.firebase.Timestamp) createdAtObj).toDate());
+        }
+        Object updatedAtObj = document.get("updatedAt");
+        if (updatedAtObj instanceof com.google.firebase.Timestamp) {
+            budget.setUpdatedAt(((com.google.firebase.Timestamp) updatedAtObj).toDate());
+        }
+        return budget;
+    }
+
+    /**
+     * Tách document budget_summaries ({userId, year, amounts["MM"][categoryKey]}) thành các Budget
+     * categoryKey là category ID (hoặc tên với budget cũ), CategoryIndex.idOf quy về ID khi đọc
+     */
+    @SuppressWarnings("unchecked")
+    private void expandBudgetSummary(DocumentSnapshot document, List<Budget> budgets) {
+        String userId = document.getString("userId");
+        Long year = document.getLong("year");
+        Object amountsObj = document.get("amounts");
+        if (userId == null || year == null || !(amountsObj instanceof Map)) {
+            return;
+        }
+        for (Map.Entry<String, Object> monthEntry : ((Map<String, Object>) amountsObj).entrySet()) {
+            if (!(monthEntry.getValue() instanceof Map)) continue;
+            int month;
+            try {
+                month = Integer.parseInt(monthEntry.getKey());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            for (Map.Entry<String, Object> categoryEntry : ((Map<String, Object>) monthEntry.getValue()).entrySet()) {
+                if (!(categoryEntry.getValue() instanceof Number)) continue;
+                Budget budget = new Budget(null, userId, categoryEntry.getKey(),
+                        ((Number) categoryEntry.getValue()).doubleValue(), month, year.intValue());
+                budget.setId(document.getId() + "_" + monthEntry.getKey() + "_" + categoryEntry.getKey());
+                budgets.add(budget);
+            }
+        }
+    }
+
     /**
      * Lấy ngân sách của user cho tháng/năm cụ thể
      */
@@ -1132,6 +1642,9 @@ public class FirebaseHelper {
         Map<String, Object> budgetData = new HashMap<>();
         budgetData.put("userId", budget.getUserId());
         budgetData.put("categoryName", budget.getCategoryName());
+        if (budget.getCategoryId() != null) {
+            budgetData.put("categoryId", budget.getCategoryId());
+        }
         budgetData.put("amount", budget.getAmount());
         budgetData.put("month", budget.getMonth());
         budgetData.put("year", budget.getYear());
@@ -1157,6 +1670,57 @@ public class FirebaseHelper {
                 .addOnCompleteListener(listener);
     }
 
+    /**
+     * ID cố định của ngân sách theo user, category và tháng: {userId}_{categoryId}_{yyyyMM}
+     * Cùng category/tháng luôn trỏ về một document nên ghi đè không cần đọc trước
+     */
+    public static String budgetDocumentId(String userId, String categoryId, int month, int year) {
+        return String.format(Locale.US, "%s_%s_%04d%02d", userId, categoryId, year, month);
+    }
+
+    /**
+     * Ghi (upsert) nhiều ngân sách trong một WriteBatch, không cần đọc trước
+     * Mỗi budget được set(merge) vào document có ID cố định (budgetDocumentId)
+     * createdAt không được ghi để không ghi đè ngày tạo của document đã tồn tại
+     * @param budgets Danh sách budgets (bắt buộc có userId và categoryId), tối đa MAX_BATCH_SIZE
+     */
+    public Task<Void> setBudgetsBatch(List<Budget> budgets) {
+        if (budgets.size() > MAX_BATCH_SIZE) {
+            return Tasks.forException(new IllegalArgumentException(
+                    "Tối đa " + MAX_BATCH_SIZE + " ngân sách trong một batch"));
+        }
+        WriteBatch batch = db.batch();
+        Date now = new Date();
+        for (Budget budget : budgets) {
+            String budgetId = budgetDocumentId(budget.getUserId(), budget.getCategoryId(),
+                    budget.getMonth(), budget.getYear());
+            budget.setId(budgetId);
+
+            Map<String, Object> budgetData = new HashMap<>();
+            budgetData.put("userId", budget.getUserId());
+            budgetData.put("categoryId", budget.getCategoryId());
+            budgetData.put("categoryName", budget.getCategoryName());
+            budgetData.put("amount", budget.getAmount());
+            budgetData.put("month", budget.getMonth());
+            budgetData.put("year", budget.getYear());
+            budgetData.put("updatedAt", now);
+            batch.set(db.collection(COLLECTION_BUDGETS).document(budgetId), budgetData, SetOptions.merge());
+        }
+        return batch.commit();
+    }
+
+    /**
+     * Xóa nhiều ngân sách trong một WriteBatch
+     * (ngân sách tạo trước khi dùng ID cố định có thể trùng category/tháng nên xóa cùng lúc)
+     */
+    public Task<Void> deleteBudgets(List<String> budgetIds) {
+        WriteBatch batch = db.batch();
+        for (String budgetId : budgetIds) {
+            batch.delete(db.collection(COLLECTION_BUDGETS).document(budgetId));
+        }
+        return batch.commit();
+    }
+
     // ========== RECURRING EXPENSE OPERATIONS ==========
 
     /**
@@ -1250,16 +1814,10 @@ public class FirebaseHelper {
                                     false // Không phải giao dịch định kỳ, đây là giao dịch thực tế
                             );
                             monthlyTransaction.setRecurringTransactionId(recurringTransaction.getId());
+                            monthlyTransaction.setCategoryId(recurringTransaction.getCategoryId());
+                            monthlyTransaction.setWalletId(recurringTransaction.getWalletId());
 
-                            Map<String, Object> transactionData = new HashMap<>();
-                            transactionData.put("userId", monthlyTransaction.getUserId());
-                            transactionData.put("amount", monthlyTransaction.getAmount());
-                            transactionData.put("category", monthlyTransaction.getCategory());
-                            transactionData.put("note", monthlyTransaction.getNote());
-                            transactionData.put("date", monthlyTransaction.getDate());
-                            transactionData.put("type", monthlyTransaction.getType());
-                            transactionData.put("isRecurring", false);
-                            transactionData.put("recurringTransactionId", recurringTransaction.getId());
+                            Map<String, Object> transactionData = toTransactionData(monthlyTransaction);
 
                             Task<DocumentReference> task = db.collection(COLLECTION_TRANSACTIONS).add(transactionData);
                             tasks.add(task);
@@ -1346,6 +1904,115 @@ public class FirebaseHelper {
                 });
     }
 
+    // ========== WALLET OPERATIONS ==========
+
+    /**
+     * Thêm ví mới cho user
+     */
+    public void addWallet(Wallet wallet, OnCompleteListener<DocumentReference> listener) {
+        Map<String, Object> walletData = new HashMap<>();
+        walletData.put("userId", wallet.getUserId());
+        walletData.put("name", wallet.getName());
+        walletData.put("type", wallet.getType());
+        walletData.put("initialBalance", wallet.getInitialBalance());
+        walletData.put("createdAt", wallet.getCreatedAt() != null ? wallet.getCreatedAt() : new Date());
+        db.collection(COLLECTION_WALLETS)
+                .add(walletData)
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Lấy danh sách ví của user (không gồm ví mặc định, ví mặc định không có document)
+     */
+    public void getUserWallets(String userId, OnWalletsLoadedListener listener) {
+        db.collection(COLLECTION_WALLETS)
+                .whereEqualTo("userId", userId)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        List<Wallet> wallets = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            Wallet wallet = document.toObject(Wallet.class);
+                            wallet.setId(document.getId());
+                            wallets.add(wallet);
+                        }
+                        // Sắp xếp theo thời gian tạo để thứ tự ví ổn định
+                        wallets.sort((a, b) -> {
+                            if (a.getCreatedAt() == null || b.getCreatedAt() == null) return 0;
+                            return a.getCreatedAt().compareTo(b.getCreatedAt());
+                        });
+                        listener.onWalletsLoaded(wallets);
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Ghi chuyển khoản giữa hai ví (Cloud Function updateTransferBalances cập nhật số dư hai ví)
+     */
+    public void addTransfer(Transfer transfer, OnCompleteListener<DocumentReference> listener) {
+        Map<String, Object> transferData = new HashMap<>();
+        transferData.put("userId", transfer.getUserId());
+        transferData.put("fromWalletId", transfer.getFromWalletId());
+        transferData.put("toWalletId", transfer.getToWalletId());
+        transferData.put("amount", transfer.getAmount());
+        transferData.put("note", transfer.getNote());
+        transferData.put("date", transfer.getDate());
+        transferData.put("createdAt", new Date());
+        db.collection(COLLECTION_TRANSFERS)
+                .add(transferData)
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Đọc chỉ mục số dư của tất cả ví của user (một document wallet_balances mỗi ví)
+     * Số dư tại ngày bất kỳ được tính từ chỉ mục, không cần tải lịch sử giao dịch
+     */
+    public void getWalletBalances(String userId, OnWalletBalancesLoadedListener listener) {
+        db.collection(COLLECTION_WALLET_BALANCES)
+                .whereEqualTo("userId", userId)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        listener.onBalancesLoaded(toWalletBalanceIndex(task.getResult()));
+                    } else {
+                        listener.onError(task.getException().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Lắng nghe chỉ mục số dư của user: nhận chỉ mục mới mỗi khi Cloud Function cập nhật
+     * (ví dụ ngay sau khi ghi giao dịch hoặc chuyển khoản)
+     */
+    public ListenerRegistration listenWalletBalances(String userId, OnWalletBalancesLoadedListener listener) {
+        return db.collection(COLLECTION_WALLET_BALANCES)
+                .whereEqualTo("userId", userId)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        listener.onError(e.getMessage());
+                        return;
+                    }
+                    if (snapshot != null) {
+                        listener.onBalancesLoaded(toWalletBalanceIndex(snapshot));
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WalletBalanceIndex toWalletBalanceIndex(QuerySnapshot snapshot) {
+        WalletBalanceIndex index = new WalletBalanceIndex();
+        for (QueryDocumentSnapshot document : snapshot) {
+            String walletId = document.getString("walletId");
+            Object days = document.get("days");
+            if (walletId != null) {
+                index.putWallet(walletId, days instanceof Map ? (Map<String, Object>) days : null);
+            }
+        }
+        return index;
+    }
+
     // ========== INTERFACES ==========
 
     public interface OnUserLoadedListener {
@@ -1358,11 +2025,31 @@ public class FirebaseHelper {
         void onError(String error);
     }
 
+    public interface OnCountLoadedListener {
+        void onCountLoaded(long count);
+        void onError(String error);
+    }
+
     public interface OnTransactionsLoadedListener {
         void onTransactionsLoaded(List<Transaction> transactions);
         void onError(String error);
     }
 
+    public interface OnTransactionChangesListener {
+        void onTransactionsChanged(List<Transaction> upserted, List<String> removedIds);
+        void onError(String error);
+    }
+
+    public interface OnWalletsLoadedListener {
+        void onWalletsLoaded(List<Wallet> wallets);
+        void onError(String error);
+    }
+
+    public interface OnWalletBalancesLoadedListener {
+        void onBalancesLoaded(WalletBalanceIndex index);
+        void onError(String error);
+    }
+
     public interface OnCategoriesLoadedListener {
         void onCategoriesLoaded(List<Category> categories);
         void onError(String error);
@@ -1378,6 +2065,26 @@ public class FirebaseHelper {
         void onError(String error);
     }
 
+    public interface OnGlobalStatsLoadedListener {
+        void onStatsLoaded(GlobalStats stats);
+        void onError(String error);
+    }
+
+    public interface OnLeaderboardLoadedListener {
+        void onLeaderboardLoaded(Leaderboard leaderboard);
+        void onError(String error);
+    }
+
+    public interface OnSpendingDistributionLoadedListener {
+        void onDistributionLoaded(SpendingDistribution distribution);
+        void onError(String error);
+    }
+
+    public interface OnActiveUsersLoadedListener {
+        void onActiveUsersLoaded(long total, Map<String, Long> byCategory);
+        void onError(String error);
+    }
+
     public interface OnDeleteOldTransactionsListener {
         void onDeleted(int count);
         void onError(String error);
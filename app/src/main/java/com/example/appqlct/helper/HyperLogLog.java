@@ -0,0 +1,80 @@
+package com.example.appqlct.helper;
+
+import java.util.Map;
+
+/**
+ * Ước lượng số phần tử khác nhau (số users hoạt động) từ registers HyperLogLog
+ * Registers do Cloud Function updateActiveUsers ghi vào active_users ({precision, registers: {index: rank}}),
+ * sai số chuẩn ~1.04/sqrt(2^precision), bộ nhớ không phụ thuộc số users
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 10; // Khớp PRECISION trong functions/active-users.js
+
+    private final int precision;
+    private final int[] registers;
+
+    public HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new int[1 << precision];
+    }
+
+    /**
+     * Đọc từ document active_users (precision và map registers)
+     */
+    public static HyperLogLog fromMap(Object precisionObj, Object registersObj) {
+        int precision = precisionObj instanceof Number ? ((Number) precisionObj).intValue() : DEFAULT_PRECISION;
+        HyperLogLog hll = new HyperLogLog(precision);
+        if (registersObj instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) registersObj).entrySet()) {
+                if (!(entry.getValue() instanceof Number)) continue;
+                try {
+                    int index = Integer.parseInt(String.valueOf(entry.getKey()));
+                    if (index >= 0 && index < hll.registers.length) {
+                        hll.registers[index] = Math.max(hll.registers[index], ((Number) entry.getValue()).intValue());
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return hll;
+    }
+
+    /**
+     * Gộp registers (cùng precision) - kết quả là ước lượng của hợp hai tập
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Precision mismatch: " + precision + " vs " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    /**
+     * Ước lượng số phần tử khác nhau
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int register : registers) {
+            sum += Math.pow(2, -register);
+            if (register == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Hiệu chỉnh cho số lượng nhỏ (linear counting)
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Sai số chuẩn tương đối của ước lượng với precision cho trước
+     */
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.appqlct.helper;
+
+/**
+ * Giảm số điểm của chuỗi thời gian bằng Largest-Triangle-Three-Buckets (LTTB)
+ * - Giữ điểm đầu và điểm cuối, chia các điểm còn lại thành (threshold - 2) bucket
+ * - Mỗi bucket chọn điểm tạo tam giác lớn nhất với điểm đã chọn ở bucket trước và điểm trung bình
+ *   của bucket sau, nên giữ được đỉnh/đáy và hình dạng của đường thay vì lấy mẫu đều
+ */
+public class LttbDownsampler {
+
+    private LttbDownsampler() {
+    }
+
+    /**
+     * Chọn tối đa threshold điểm từ chuỗi (x tăng dần)
+     * @return chỉ số các điểm được giữ, theo thứ tự tăng dần
+     */
+    public static int[] select(double[] x, double[] y, int threshold) {
+        int size = x.length;
+        if (threshold >= size || threshold < 3) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        int count = 0;
+        selected[count++] = 0;
+
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            // Điểm trung bình của bucket kế tiếp (bucket cuối dùng điểm cuối cùng)
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - avgX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (avgY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[count++] = chosen;
+            previous = chosen;
+        }
+
+        selected[count] = size - 1;
+        return selected;
+    }
+}
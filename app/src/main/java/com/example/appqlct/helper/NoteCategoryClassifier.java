@@ -0,0 +1,326 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.appqlct.model.Transaction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gợi ý category từ ghi chú bằng Naive Bayes đa thức (multinomial), chạy hoàn toàn trên máy
+ * - Ghi chú được chuẩn hóa bằng TextNormalizer ("grab đi làm" -> grab, di, lam) rồi đếm token theo category
+ * - Mỗi giao dịch lưu/sửa chỉ cộng/trừ số đếm của token trong ghi chú đó, không huấn luyện lại cả lô
+ * - Dự đoán chỉ duyệt các category x token của ghi chú (vài chục micro giây)
+ * - Mô hình lưu trong file gzip (mỗi category một dòng "id, số ghi chú, token:số lần") ở filesDir;
+ *   lần đầu chưa có file thì học một lượt từ giao dịch hiện có của user
+ * - Mỗi user dùng chung một instance (forUser) để các màn hình thêm/sửa/xóa giao dịch không ghi đè
+ *   file mô hình của nhau; chỉ cập nhật sau khi giao dịch đã lưu/xóa thành công
+ */
+public class NoteCategoryClassifier {
+    private static final String TAG = "NoteCategoryClassifier";
+    private static final String MODEL_FILE_PREFIX = "note_classifier_";
+    private static final String FORMAT_VERSION = "v1";
+    private static final Pattern NON_TOKEN = Pattern.compile("[^a-z0-9]+");
+    private static final int MIN_DOCUMENTS = 5; // Cần đủ ghi chú đã học mới gợi ý
+    private static final double MIN_CONFIDENCE = 0.5; // Xác suất hậu nghiệm tối thiểu của category gợi ý
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Map<String, NoteCategoryClassifier> INSTANCES = new HashMap<>();
+
+    private final File modelFile;
+    private final Map<String, Integer> documentsByCategory = new HashMap<>();
+    private final Map<String, Integer> tokensByCategory = new HashMap<>();
+    private final Map<String, Map<String, Integer>> tokenCounts = new HashMap<>(); // category -> token -> số lần
+    private final Map<String, Integer> vocabulary = new HashMap<>(); // token -> số lần trên mọi category
+    private int totalDocuments;
+    private boolean loaded; // Mô hình đã đọc từ file hoặc đã học từ giao dịch của user
+    private boolean learning; // Đang tải giao dịch để học lần đầu
+
+    NoteCategoryClassifier(File modelFile) {
+        this.modelFile = modelFile;
+    }
+
+    /**
+     * Instance dùng chung của user (gọi trên main thread)
+     */
+    public static synchronized NoteCategoryClassifier forUser(Context context, String userId) {
+        String key = userId == null || userId.isEmpty() ? "default" : userId;
+        NoteCategoryClassifier classifier = INSTANCES.get(key);
+        if (classifier == null) {
+            classifier = new NoteCategoryClassifier(new File(context.getApplicationContext().getFilesDir(),
+                    MODEL_FILE_PREFIX + key + ".gz"));
+            INSTANCES.put(key, classifier);
+        }
+        return classifier;
+    }
+
+    /**
+     * Đọc mô hình đã lưu; nếu chưa có thì học một lượt từ giao dịch của user rồi lưu lại
+     */
+    public void start(FirebaseHelper firebaseHelper, String userId) {
+        if (ensureLoaded() || learning) return;
+        learning = true;
+        firebaseHelper.getUserTransactions(userId, new FirebaseHelper.OnTransactionsLoadedListener() {
+            @Override
+            public void onTransactionsLoaded(List<Transaction> transactions) {
+                learning = false;
+                if (loaded) return;
+                learnAll(transactions);
+                loaded = true;
+                save();
+            }
+
+            @Override
+            public void onError(String error) {
+                // Chưa có mô hình: lần mở màn hình sau sẽ thử học lại
+                learning = false;
+            }
+        });
+    }
+
+    /**
+     * Mô hình đã sẵn sàng để cập nhật; chưa có thì các thay đổi được bỏ qua vì lần học đầu tiên
+     * đọc lại toàn bộ giao dịch hiện có (và không được ghi đè file bằng mô hình rỗng)
+     */
+    private boolean ensureLoaded() {
+        if (!loaded) {
+            loaded = load();
+        }
+        return loaded;
+    }
+
+    private void learnAll(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            if (!isLearnable(transaction)) continue;
+            update(transaction.getCategoryId(), transaction.getNote(), 1);
+        }
+    }
+
+    /**
+     * Học từ một giao dịch vừa lưu (thêm mới)
+     */
+    public void learn(String categoryId, String note) {
+        if (!ensureLoaded()) return;
+        update(categoryId, note, 1);
+        save();
+    }
+
+    /**
+     * Cập nhật khi sửa giao dịch: bỏ ghi chú/category cũ rồi học ghi chú/category mới
+     * categoryId null chỉ bỏ ghi chú cũ (giao dịch bị xóa)
+     */
+    public void relearn(String oldCategoryId, String oldNote, String categoryId, String note) {
+        if (!ensureLoaded()) return;
+        update(oldCategoryId, oldNote, -1);
+        update(categoryId, note, 1);
+        save();
+    }
+
+    /**
+     * Cập nhật sau khi sửa/xóa hàng loạt: originals[i] được thay bằng updated[i],
+     * updated rỗng (hoặc null) nghĩa là các giao dịch đã bị xóa; ghi file một lần
+     */
+    public void relearn(List<Transaction> originals, List<Transaction> updated) {
+        if (!ensureLoaded()) return;
+        for (int i = 0; i < originals.size(); i++) {
+            Transaction original = originals.get(i);
+            if (isLearnable(original)) {
+                update(original.getCategoryId(), original.getNote(), -1);
+            }
+            Transaction replacement = updated != null && i < updated.size() ? updated.get(i) : null;
+            if (isLearnable(replacement)) {
+                update(replacement.getCategoryId(), replacement.getNote(), 1);
+            }
+        }
+        save();
+    }
+
+    /**
+     * Bỏ ghi chú của một giao dịch đã bị xóa
+     */
+    public void forget(Transaction transaction) {
+        relearn(Collections.singletonList(transaction), null);
+    }
+
+    private static boolean isLearnable(Transaction transaction) {
+        return transaction != null && !transaction.isIncome() && !transaction.isRecurring();
+    }
+
+    private void update(String categoryId, String note, int sign) {
+        if (categoryId == null) return;
+        List<String> tokens = tokenize(note);
+        if (tokens.isEmpty()) return;
+        Map<String, Integer> counts = tokenCounts.get(categoryId);
+        if (counts == null) {
+            if (sign < 0) return;
+            counts = new HashMap<>();
+            tokenCounts.put(categoryId, counts);
+        }
+        for (String token : tokens) {
+            add(counts, token, sign);
+            add(vocabulary, token, sign);
+        }
+        add(tokensByCategory, categoryId, sign * tokens.size());
+        add(documentsByCategory, categoryId, sign);
+        totalDocuments = Math.max(0, totalDocuments + sign);
+        if (!documentsByCategory.containsKey(categoryId)) {
+            tokenCounts.remove(categoryId);
+        }
+    }
+
+    private static void add(Map<String, Integer> counts, String key, int delta) {
+        int value = (counts.containsKey(key) ? counts.get(key) : 0) + delta;
+        if (value > 0) {
+            counts.put(key, value);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    /**
+     * Category có xác suất cao nhất cho ghi chú, chỉ xét các category cho phép
+     * @return category ID, null nếu chưa đủ dữ liệu hoặc không đủ chắc chắn
+     */
+    public String predict(String note, Collection<String> categoryIds) {
+        // Dùng mô hình đã lưu kể cả khi start chưa được gọi
+        if (!ensureLoaded() || totalDocuments < MIN_DOCUMENTS) return null;
+        List<String> tokens = new ArrayList<>();
+        for (String token : tokenize(note)) {
+            // Token chưa từng gặp không giúp phân biệt category
+            if (vocabulary.containsKey(token)) tokens.add(token);
+        }
+        if (tokens.isEmpty()) return null;
+
+        // log P(c) + tổng log P(token | c), làm trơn Laplace
+        String best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        List<Double> scores = new ArrayList<>();
+        int vocabularySize = vocabulary.size();
+        for (String categoryId : categoryIds) {
+            Integer documents = documentsByCategory.get(categoryId);
+            if (documents == null) continue;
+            Map<String, Integer> counts = tokenCounts.get(categoryId);
+            Integer categoryTokens = tokensByCategory.get(categoryId);
+            if (counts == null || categoryTokens == null) continue;
+            double denominator = categoryTokens + vocabularySize;
+            double score = Math.log(documents / (double) totalDocuments);
+            for (String token : tokens) {
+                Integer count = counts.get(token);
+                score += Math.log(((count != null ? count : 0) + 1) / denominator);
+            }
+            scores.add(score);
+            if (score > bestScore) {
+                bestScore = score;
+                best = categoryId;
+            }
+        }
+        if (best == null) return null;
+
+        // Xác suất hậu nghiệm của category tốt nhất (chuẩn hóa trên các category đang xét)
+        double sum = 0;
+        for (double score : scores) {
+            sum += Math.exp(score - bestScore);
+        }
+        return 1 / sum >= MIN_CONFIDENCE ? best : null;
+    }
+
+    static List<String> tokenize(String note) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_TOKEN.split(TextNormalizer.normalize(note))) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // ========== PERSISTENCE ==========
+
+    private boolean load() {
+        if (!modelFile.exists()) return false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(modelFile)), StandardCharsets.UTF_8))) {
+            if (!FORMAT_VERSION.equals(reader.readLine())) return false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 3) continue;
+                String categoryId = parts[0];
+                int documents = Integer.parseInt(parts[1]);
+                Map<String, Integer> counts = new HashMap<>();
+                int tokens = 0;
+                for (String pair : parts[2].split(" ")) {
+                    int separator = pair.indexOf(':');
+                    if (separator <= 0) continue;
+                    String token = pair.substring(0, separator);
+                    int count = Integer.parseInt(pair.substring(separator + 1));
+                    counts.put(token, count);
+                    add(vocabulary, token, count);
+                    tokens += count;
+                }
+                documentsByCategory.put(categoryId, documents);
+                tokensByCategory.put(categoryId, tokens);
+                tokenCounts.put(categoryId, counts);
+                totalDocuments += documents;
+            }
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            Log.e(TAG, "Cannot read classifier model", e);
+            documentsByCategory.clear();
+            tokensByCategory.clear();
+            tokenCounts.clear();
+            vocabulary.clear();
+            totalDocuments = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Ghi mô hình ở background (nội dung được chụp lại trên luồng gọi)
+     */
+    private void save() {
+        StringBuilder content = new StringBuilder(FORMAT_VERSION).append('\n');
+        for (Map.Entry<String, Map<String, Integer>> category : tokenCounts.entrySet()) {
+            content.append(category.getKey()).append('\t')
+                    .append(documentsByCategory.get(category.getKey())).append('\t');
+            boolean first = true;
+            for (Map.Entry<String, Integer> token : category.getValue().entrySet()) {
+                if (!first) content.append(' ');
+                content.append(token.getKey()).append(':').append(token.getValue());
+                first = false;
+            }
+            content.append('\n');
+        }
+        String snapshot = content.toString();
+        EXECUTOR.execute(() -> {
+            File temp = new File(modelFile.getPath() + ".tmp");
+            try (Writer writer = new OutputStreamWriter(
+                    new GZIPOutputStream(new FileOutputStream(temp)), StandardCharsets.UTF_8)) {
+                writer.write(snapshot);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot write classifier model", e);
+                return;
+            }
+            if (!temp.renameTo(modelFile)) {
+                Log.e(TAG, "Cannot replace classifier model");
+            }
+        });
+    }
+}
@@ -87,6 +87,13 @@ public class NotificationHelper {
         addNotificationStatic(context, userId, context.getString(R.string.notification), message, "info");
     }
     
+    /**
+     * Static method để thêm cảnh báo khoản chi bất thường
+     */
+    public static void addUnusualExpenseNotification(Context context, String userId, String message) {
+        addNotificationStatic(context, userId, context.getString(R.string.unusual_expense_title), message, "unusual_expense");
+    }
+    
     /**
      * Thêm thông báo mới
      */
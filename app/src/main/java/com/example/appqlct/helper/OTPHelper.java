@@ -4,6 +4,7 @@ import android.util.Log;
 
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
@@ -147,6 +148,7 @@ public class OTPHelper {
                                 Log.w(TAG, "OTP expired for email: " + normalizedEmail + 
                                         ", expiresAt: " + expiresAt + ", now: " + new Date());
                                 listener.onError("Mã OTP đã hết hạn");
+                                cleanupExpiredOTPs(normalizedEmail);
                                 return;
                             }
                             
@@ -190,10 +192,27 @@ public class OTPHelper {
     }
     
     /**
-     * Xóa mã OTP đã hết hạn (có thể gọi định kỳ để dọn dẹp)
+     * Xóa mã OTP của email nếu đã được sử dụng hoặc đã hết hạn
+     * Các mã bị bỏ dở được TTL policy trên expiresAt và Cloud Function sweepExpiredOTPs dọn dẹp
+     * @param email Email của user
      */
-    public void cleanupExpiredOTPs() {
-        // Có thể implement sau nếu cần
+    public void cleanupExpiredOTPs(String email) {
+        String normalizedEmail = normalizeEmail(email);
+        if (normalizedEmail == null || normalizedEmail.isEmpty()) {
+            return;
+        }
+        
+        DocumentReference otpRef = db.collection(COLLECTION_OTP).document(normalizedEmail);
+        otpRef.get().addOnSuccessListener(document -> {
+            if (!document.exists()) return;
+            Boolean used = document.getBoolean("used");
+            Date expiresAt = document.getDate("expiresAt");
+            boolean expired = expiresAt != null && expiresAt.before(new Date());
+            if ((used != null && used) || expired) {
+                otpRef.delete().addOnFailureListener(e ->
+                        Log.w(TAG, "Error deleting OTP for email: " + normalizedEmail, e));
+            }
+        });
     }
     
     public interface OnOTPCreatedListener {
@@ -0,0 +1,114 @@
+package com.example.appqlct.helper;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sketch ước lượng phân vị (median, p90, p99...) theo thuật toán DDSketch
+ * - Mỗi giá trị dương được đếm vào bucket logarit, giá trị ước lượng sai lệch tối đa
+ *   RELATIVE_ACCURACY so với giá trị thật
+ * - Gộp hai sketch là cộng count theo bucket nên gộp theo thứ tự nào cũng cho cùng kết quả
+ * Dữ liệu được Cloud Function updateSpendingRollups ghi vào spending_rollups,
+ * RELATIVE_ACCURACY phải khớp với functions/spending-rollup.js
+ */
+public class QuantileSketch {
+    public static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    private final TreeMap<Integer, Long> bins = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+    private double sum;
+
+    /**
+     * Đọc sketch từ map Firestore ({count, sum, zero, bins: {index: count}})
+     */
+    public static QuantileSketch fromMap(Object value) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (!(value instanceof Map)) {
+            return sketch;
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        sketch.zeroCount = Math.max(0, toLong(map.get("zero")));
+        sketch.sum = map.get("sum") instanceof Number ? ((Number) map.get("sum")).doubleValue() : 0;
+        long binTotal = 0;
+        Object binsObj = map.get("bins");
+        if (binsObj instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) binsObj).entrySet()) {
+                long binCount = toLong(entry.getValue());
+                if (binCount <= 0) continue; // Bucket đã bị trừ hết khi giao dịch bị sửa/xóa
+                try {
+                    sketch.bins.put(Integer.parseInt(String.valueOf(entry.getKey())), binCount);
+                    binTotal += binCount;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        // Tính lại count từ các bucket để không lệch nếu dữ liệu chưa nhất quán
+        sketch.count = sketch.zeroCount + binTotal;
+        return sketch;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * Thêm một giá trị vào sketch
+     */
+    public void add(double value) {
+        if (value > 0) {
+            int index = (int) Math.ceil(Math.log(value) / Math.log(GAMMA));
+            bins.put(index, bins.getOrDefault(index, 0L) + 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+    }
+
+    /**
+     * Gộp sketch khác vào sketch này
+     */
+    public void merge(QuantileSketch other) {
+        for (Map.Entry<Integer, Long> entry : other.bins.entrySet()) {
+            bins.put(entry.getKey(), bins.getOrDefault(entry.getKey(), 0L) + entry.getValue());
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+    }
+
+    /**
+     * Ước lượng phân vị q (0..1), trả về 0 nếu sketch rỗng
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> entry : bins.entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return 2 * Math.pow(GAMMA, entry.getKey()) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, bins.lastKey()) / (GAMMA + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.appqlct.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Phát hiện khoản chi lặp lại hàng tháng từ lịch sử giao dịch để đề xuất tạo chi tiêu định kỳ
+ * - Giao dịch được gom theo category rồi theo tháng; mẫu là chuỗi >= MIN_MONTHS tháng liên tiếp (đến tháng
+ *   trước hoặc tháng này) có khoản chi cùng category, số tiền lệch <= AMOUNT_TOLERANCE, ngày lệch <= MAX_DAY_DIFF
+ * - Lần đầu quét toàn bộ lịch sử một lượt, sau đó mỗi thay đổi chỉ tính lại category bị ảnh hưởng;
+ *   mỗi category chỉ duyệt giao dịch của chính nó một lượt cho mỗi mốc (số tiền khác nhau) của tháng
+ *   gần nhất, thường chỉ 1-2 mốc nên chi phí gần như tuyến tính theo lịch sử
+ * - Mọi tính toán chạy trên một luồng nền riêng, kết quả trả về main thread
+ * - Bỏ qua mẫu đã có chi tiêu định kỳ tương ứng hoặc user đã bỏ qua (lưu trong SharedPreferences)
+ */
+public class RecurringPatternDetector {
+    private static final String PREFS_NAME = "recurring_detector_prefs";
+    private static final String KEY_DISMISSED_PREFIX = "dismissed_";
+    private static final int MIN_MONTHS = 3;
+    private static final double AMOUNT_TOLERANCE = 0.1; // ±10% so với khoản chi gần nhất
+    private static final int MAX_DAY_DIFF = 5;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // Chỉ truy cập trên EXECUTOR
+    private final Map<String, Occurrence> occurrences = new HashMap<>(); // ID giao dịch -> khoản chi
+    private final Map<String, Map<Integer, List<Occurrence>>> monthsByCategory = new HashMap<>();
+    private final Map<String, Occurrence> templates = new HashMap<>(); // ID chi tiêu định kỳ -> mẫu đã có
+    private final Map<String, List<RecurringPattern>> patternsByCategory = new HashMap<>();
+    private final Calendar calendar = Calendar.getInstance();
+
+    private Handler mainHandler; // Tạo khi cần để phần phát hiện mẫu không phụ thuộc Looper
+    private final SharedPreferences prefs;
+    private final String dismissedKey;
+
+    public RecurringPatternDetector(Context context, String userId) {
+        this(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                KEY_DISMISSED_PREFIX + (userId == null || userId.isEmpty() ? "default" : userId));
+    }
+
+    RecurringPatternDetector(SharedPreferences prefs, String dismissedKey) {
+        this.prefs = prefs;
+        this.dismissedKey = dismissedKey;
+    }
+
+    /**
+     * Cập nhật theo thay đổi giao dịch (lần đầu là toàn bộ lịch sử) rồi trả về các mẫu đang đề xuất
+     */
+    public void update(List<Transaction> upserted, List<String> removedIds, OnPatternsDetectedListener listener) {
+        List<Transaction> changed = new ArrayList<>(upserted);
+        List<String> removed = new ArrayList<>(removedIds);
+        Set<String> dismissed = new HashSet<>(prefs.getStringSet(dismissedKey, new HashSet<>()));
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        Handler handler = mainHandler;
+        EXECUTOR.execute(() -> {
+            List<RecurringPattern> result = apply(changed, removed, dismissed, new Date());
+            handler.post(() -> listener.onPatternsDetected(result));
+        });
+    }
+
+    /**
+     * Áp dụng thay đổi và tính lại mẫu của các category bị ảnh hưởng (chạy trên EXECUTOR)
+     * @param now thời điểm hiện tại, quyết định mẫu nào còn diễn ra
+     */
+    List<RecurringPattern> apply(List<Transaction> upserted, List<String> removedIds,
+                                 Set<String> dismissed, Date now) {
+        Set<String> dirtyCategories = new HashSet<>();
+        for (String id : removedIds) {
+            removeOccurrence(id, dirtyCategories);
+        }
+        for (Transaction transaction : upserted) {
+            if (transaction.getId() == null) continue;
+            removeOccurrence(transaction.getId(), dirtyCategories);
+            addOccurrence(transaction, dirtyCategories);
+        }
+        int currentMonth = monthIndex(now);
+        for (String categoryKey : dirtyCategories) {
+            patternsByCategory.put(categoryKey, detect(categoryKey, currentMonth));
+        }
+        return collect(dismissed);
+    }
+
+    /**
+     * Không đề xuất lại mẫu này nữa
+     */
+    public void dismiss(RecurringPattern pattern) {
+        Set<String> dismissed = new HashSet<>(prefs.getStringSet(dismissedKey, new HashSet<>()));
+        dismissed.add(pattern.getKey());
+        prefs.edit().putStringSet(dismissedKey, dismissed).apply();
+    }
+
+    private void addOccurrence(Transaction transaction, Set<String> dirtyCategories) {
+        if (transaction.getDate() == null || transaction.isIncome()) return;
+        // Giao dịch tự động sinh từ chi tiêu định kỳ đã được quản lý, không cần đề xuất
+        if (transaction.getRecurringTransactionId() != null) return;
+        Occurrence occurrence = new Occurrence(transaction, monthIndex(transaction.getDate()),
+                calendar.get(Calendar.DAY_OF_MONTH));
+        dirtyCategories.add(occurrence.categoryKey);
+        if (transaction.isRecurring()) {
+            templates.put(transaction.getId(), occurrence);
+            return;
+        }
+        occurrences.put(transaction.getId(), occurrence);
+        Map<Integer, List<Occurrence>> months = monthsByCategory.get(occurrence.categoryKey);
+        if (months == null) {
+            months = new HashMap<>();
+            monthsByCategory.put(occurrence.categoryKey, months);
+        }
+        List<Occurrence> month = months.get(occurrence.month);
+        if (month == null) {
+            month = new ArrayList<>();
+            months.put(occurrence.month, month);
+        }
+        month.add(occurrence);
+    }
+
+    private void removeOccurrence(String id, Set<String> dirtyCategories) {
+        Occurrence template = templates.remove(id);
+        if (template != null) {
+            dirtyCategories.add(template.categoryKey);
+        }
+        Occurrence occurrence = occurrences.remove(id);
+        if (occurrence == null) return;
+        dirtyCategories.add(occurrence.categoryKey);
+        Map<Integer, List<Occurrence>> months = monthsByCategory.get(occurrence.categoryKey);
+        List<Occurrence> month = months.get(occurrence.month);
+        month.remove(occurrence);
+        if (month.isEmpty()) {
+            months.remove(occurrence.month);
+            if (months.isEmpty()) {
+                monthsByCategory.remove(occurrence.categoryKey);
+            }
+        }
+    }
+
+    /**
+     * Tìm các mẫu của một category: mỗi khoản chi của tháng gần nhất là một mốc, đi lùi từng tháng
+     * tìm khoản chi tương tự cho đến khi đứt chuỗi
+     */
+    private List<RecurringPattern> detect(String categoryKey, int currentMonth) {
+        List<RecurringPattern> patterns = new ArrayList<>();
+        Map<Integer, List<Occurrence>> months = monthsByCategory.get(categoryKey);
+        if (months == null) return patterns;
+        int latestMonth = Integer.MIN_VALUE;
+        for (int month : months.keySet()) {
+            latestMonth = Math.max(latestMonth, month);
+        }
+        // Mẫu phải còn diễn ra: lần gần nhất trong tháng này hoặc tháng trước
+        if (latestMonth < currentMonth - 1) return patterns;
+
+        for (Occurrence anchor : months.get(latestMonth)) {
+            if (matchesAny(patterns, anchor.amount)) continue;
+            int count = 1;
+            for (int month = latestMonth - 1; months.containsKey(month); month--) {
+                if (findSimilar(months.get(month), anchor) == null) break;
+                count++;
+            }
+            if (count >= MIN_MONTHS) {
+                patterns.add(new RecurringPattern(anchor, count));
+            }
+        }
+        return patterns;
+    }
+
+    private static Occurrence findSimilar(List<Occurrence> candidates, Occurrence anchor) {
+        Occurrence best = null;
+        for (Occurrence candidate : candidates) {
+            if (!similarAmount(candidate.amount, anchor.amount)) continue;
+            int dayDiff = Math.abs(candidate.day - anchor.day);
+            // Ngày cuối tháng và đầu tháng sau cũng coi là gần nhau
+            if (Math.min(dayDiff, 31 - dayDiff) > MAX_DAY_DIFF) continue;
+            if (best == null || Math.abs(candidate.amount - anchor.amount) < Math.abs(best.amount - anchor.amount)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static boolean similarAmount(double amount, double reference) {
+        return Math.abs(amount - reference) <= AMOUNT_TOLERANCE * reference;
+    }
+
+    private static boolean matchesAny(List<RecurringPattern> patterns, double amount) {
+        for (RecurringPattern pattern : patterns) {
+            if (similarAmount(amount, pattern.amount)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gộp mẫu của mọi category, bỏ mẫu đã có chi tiêu định kỳ tương ứng hoặc đã bị bỏ qua
+     */
+    private List<RecurringPattern> collect(Set<String> dismissed) {
+        Map<String, List<Occurrence>> templatesByCategory = new HashMap<>();
+        for (Occurrence template : templates.values()) {
+            List<Occurrence> list = templatesByCategory.get(template.categoryKey);
+            if (list == null) {
+                list = new ArrayList<>();
+                templatesByCategory.put(template.categoryKey, list);
+            }
+            list.add(template);
+        }
+
+        List<RecurringPattern> result = new ArrayList<>();
+        for (List<RecurringPattern> patterns : patternsByCategory.values()) {
+            for (RecurringPattern pattern : patterns) {
+                if (dismissed.contains(pattern.getKey())) continue;
+                boolean covered = false;
+                List<Occurrence> existing = templatesByCategory.get(pattern.categoryKey);
+                for (int i = 0; existing != null && i < existing.size() && !covered; i++) {
+                    covered = similarAmount(existing.get(i).amount, pattern.amount);
+                }
+                if (!covered) result.add(pattern);
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.amount, a.amount));
+        return result;
+    }
+
+    /**
+     * Chỉ số tháng (năm * 12 + tháng); để lại ngày của date trong calendar cho lời gọi tiếp theo
+     */
+    private int monthIndex(Date date) {
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    /**
+     * Khoản chi đã gom (giá trị tại thời điểm đưa vào detector)
+     */
+    private static class Occurrence {
+        final String categoryKey;
+        final String categoryId;
+        final String categoryName;
+        final String note;
+        final String walletId;
+        final double amount;
+        final int month;
+        final int day;
+
+        Occurrence(Transaction transaction, int month, int day) {
+            this.categoryId = transaction.getCategoryId();
+            this.categoryName = transaction.getCategory();
+            this.categoryKey = categoryId != null ? categoryId : (categoryName != null ? categoryName : "");
+            this.note = transaction.getNote();
+            this.walletId = transaction.getWalletId();
+            this.amount = transaction.getAmount();
+            this.month = month;
+            this.day = day;
+        }
+    }
+
+    /**
+     * Một khoản chi lặp lại hàng tháng được đề xuất
+     */
+    public static class RecurringPattern {
+        private final String categoryKey;
+        private final String categoryId;
+        private final String categoryName;
+        private final String note;
+        private final String walletId;
+        private final double amount;
+        private final int dayOfMonth;
+        private final int monthCount;
+        private final int lastMonth; // Tháng gần nhất có khoản chi (năm * 12 + tháng)
+
+        RecurringPattern(Occurrence anchor, int monthCount) {
+            this.categoryKey = anchor.categoryKey;
+            this.categoryId = anchor.categoryId;
+            this.categoryName = anchor.categoryName;
+            this.note = anchor.note;
+            this.walletId = anchor.walletId;
+            this.amount = anchor.amount;
+            this.dayOfMonth = anchor.day;
+            this.monthCount = monthCount;
+            this.lastMonth = anchor.month;
+        }
+
+        /**
+         * Khóa để ghi nhớ mẫu đã bị bỏ qua
+         */
+        public String getKey() {
+            return categoryKey + "|" + Math.round(amount);
+        }
+
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public String getWalletId() {
+            return walletId;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public int getDayOfMonth() {
+            return dayOfMonth;
+        }
+
+        public int getMonthCount() {
+            return monthCount;
+        }
+
+        /**
+         * Ngày 1 của tháng kế tiếp sau lần chi gần nhất (tháng bắt đầu của chi tiêu định kỳ)
+         */
+        public Date getNextMonthStart() {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set((lastMonth + 1) / 12, (lastMonth + 1) % 12, 1);
+            return calendar.getTime();
+        }
+    }
+
+    public interface OnPatternsDetectedListener {
+        void onPatternsDetected(List<RecurringPattern> patterns);
+    }
+}
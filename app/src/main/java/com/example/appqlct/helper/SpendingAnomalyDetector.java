@@ -0,0 +1,117 @@
+package com.example.appqlct.helper;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Phát hiện khoản chi bất thường so với thói quen của user theo từng category
+ * - Cloud Function updateSpendingStats duy trì spending_stats/{userId}: mỗi category {n, mean, m2} (Welford)
+ * - Detector giữ document này trong bộ nhớ qua snapshot listener (đăng ký khi mở màn hình),
+ *   khi lưu giao dịch chỉ tính z-score O(1), không đọc thêm Firestore
+ */
+public class SpendingAnomalyDetector {
+    private static final String COLLECTION_SPENDING_STATS = "spending_stats";
+    // Cần đủ số giao dịch để độ lệch chuẩn có ý nghĩa
+    private static final int MIN_SAMPLES = 5;
+    private static final double Z_SCORE_THRESHOLD = 3.0;
+    // Bỏ qua khoản chi chỉ lớn hơn trung bình một chút dù độ lệch chuẩn rất nhỏ
+    private static final double MIN_RATIO_TO_MEAN = 2.0;
+
+    private final Map<String, double[]> stats = new HashMap<>(); // categoryKey -> {n, mean, m2}
+    private ListenerRegistration registration;
+
+    /**
+     * Bắt đầu theo dõi thống kê của user (gọi khi mở màn hình thêm/sửa giao dịch)
+     */
+    @SuppressWarnings("unchecked")
+    public void start(String userId) {
+        stop();
+        if (userId == null || userId.isEmpty()) return;
+        registration = FirebaseFirestore.getInstance()
+                .collection(COLLECTION_SPENDING_STATS)
+                .document(userId)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null || snapshot == null) return;
+                    stats.clear();
+                    Object categoriesObj = snapshot.get("categories");
+                    if (!(categoriesObj instanceof Map)) return;
+                    for (Map.Entry<String, Object> entry : ((Map<String, Object>) categoriesObj).entrySet()) {
+                        if (!(entry.getValue() instanceof Map)) continue;
+                        Map<String, Object> value = (Map<String, Object>) entry.getValue();
+                        stats.put(entry.getKey(), new double[]{
+                                toDouble(value.get("n")), toDouble(value.get("mean")), toDouble(value.get("m2"))});
+                    }
+                });
+    }
+
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        stats.clear();
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * Đánh giá một khoản chi
+     * @param categoryKey category ID (hoặc tên với dữ liệu cũ)
+     * @param amount số tiền mới
+     * @param replacedAmount số tiền cũ của giao dịch đang sửa cùng category (đã nằm trong thống kê), null nếu thêm mới
+     * @return kết quả nếu khoản chi bất thường, null nếu bình thường hoặc chưa đủ dữ liệu
+     */
+    public Anomaly evaluate(String categoryKey, double amount, Double replacedAmount) {
+        double[] values = stats.get(categoryKey);
+        if (values == null) return null;
+        double n = values[0];
+        double mean = values[1];
+        double m2 = values[2];
+
+        // Bỏ giá trị cũ khỏi thống kê (phép ngược của Welford) để không so với chính nó
+        if (replacedAmount != null && n > 1) {
+            double newMean = (n * mean - replacedAmount) / (n - 1);
+            m2 = Math.max(0, m2 - (replacedAmount - newMean) * (replacedAmount - mean));
+            mean = newMean;
+            n = n - 1;
+        }
+        if (n < MIN_SAMPLES || mean <= 0) return null;
+
+        double stdDev = Math.sqrt(m2 / (n - 1));
+        double ratio = amount / mean;
+        if (ratio < MIN_RATIO_TO_MEAN) return null;
+        // Độ lệch chuẩn bằng 0 (mọi khoản chi như nhau): khoản chi gấp đôi trở lên được coi là bất thường
+        double zScore = stdDev > 0 ? (amount - mean) / stdDev : Double.POSITIVE_INFINITY;
+        if (zScore < Z_SCORE_THRESHOLD) return null;
+        return new Anomaly(mean, ratio, zScore);
+    }
+
+    public static class Anomaly {
+        private final double mean;
+        private final double ratio;
+        private final double zScore;
+
+        Anomaly(double mean, double ratio, double zScore) {
+            this.mean = mean;
+            this.ratio = ratio;
+            this.zScore = zScore;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getRatio() {
+            return ratio;
+        }
+
+        public double getZScore() {
+            return zScore;
+        }
+    }
+}
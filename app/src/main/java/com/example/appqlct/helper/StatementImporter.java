@@ -0,0 +1,580 @@
+package com.example.appqlct.helper;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.appqlct.model.Category;
+import com.example.appqlct.model.Transaction;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Nhập giao dịch từ file sao kê ngân hàng (CSV hoặc OFX)
+ * - Đọc file theo từng dòng, mỗi MAX_BATCH_SIZE giao dịch được ghi bằng một WriteBatch
+ * - Tự nhận diện cột ngày / số tiền / nội dung / danh mục từ dòng tiêu đề CSV
+ * - Tự gán danh mục theo tên danh mục có sẵn (so khớp không dấu với cột danh mục hoặc nội dung)
+ * - Bỏ qua các dòng đã nhập trước đó nhờ chỉ mục hash nội dung (ngày + số tiền + ghi chú)
+ *   lưu trên thiết bị; document id cũng sinh từ hash nên nhập lại không tạo bản trùng
+ * Chỉ nhập các khoản chi (số tiền âm, hoặc cột ghi nợ), các khoản thu được bỏ qua
+ */
+public class StatementImporter {
+    private static final String TAG = "StatementImporter";
+    private static final String INDEX_FILE_PREFIX = "import_index_";
+    private static final String ID_PREFIX = "imp_";
+    // Khi offline WriteBatch chỉ hoàn tất lúc có mạng trở lại, không chờ vô hạn
+    private static final long COMMIT_TIMEOUT_SECONDS = 30;
+
+    private static final String[] DATE_HEADERS = {"date", "ngay", "ngay giao dich", "transaction date",
+            "posting date", "ngay hach toan", "thoi gian"};
+    private static final String[] AMOUNT_HEADERS = {"amount", "so tien", "gia tri", "so tien giao dich"};
+    private static final String[] DEBIT_HEADERS = {"debit", "ghi no", "so tien ghi no", "withdrawal", "tien ra"};
+    private static final String[] CREDIT_HEADERS = {"credit", "ghi co", "so tien ghi co", "deposit", "tien vao"};
+    private static final String[] NOTE_HEADERS = {"description", "memo", "note", "noi dung", "dien giai",
+            "ghi chu", "mo ta", "chi tiet"};
+    private static final String[] CATEGORY_HEADERS = {"category", "danh muc", "loai"};
+    private static final String[] DATE_PATTERNS = {"dd/MM/yyyy HH:mm:ss", "dd/MM/yyyy HH:mm", "dd/MM/yyyy",
+            "dd-MM-yyyy", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd", "dd.MM.yyyy", "yyyyMMdd"};
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final FirebaseHelper firebaseHelper;
+    private final Handler mainHandler;
+
+    public StatementImporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.firebaseHelper = new FirebaseHelper();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Nhập file sao kê cho user
+     * @param input stream của file (được đóng khi xong)
+     * @param userId user sở hữu các giao dịch
+     * @param expenseCategories danh sách danh mục chi tiêu hiện có để tự gán
+     */
+    public void importStatement(InputStream input, String userId, List<Category> expenseCategories,
+                                OnImportListener listener) {
+        EXECUTOR.execute(() -> {
+            ImportResult result = new ImportResult();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                CategoryMatcher matcher = new CategoryMatcher(expenseCategories);
+                Set<String> knownHashes = loadIndex(userId);
+                Map<String, Integer> occurrences = new HashMap<>();
+                List<Transaction> batch = new ArrayList<>(FirebaseHelper.MAX_BATCH_SIZE);
+
+                RowSource rows = openRowSource(reader);
+                StatementRow row;
+                while ((row = rows.next()) != null) {
+                    result.rows++;
+                    Transaction transaction = toTransaction(row, userId, matcher, result);
+                    if (transaction == null) continue;
+
+                    // Các dòng giống hệt nhau trong cùng file được phân biệt bằng số thứ tự xuất hiện
+                    String key = contentKey(transaction);
+                    int occurrence = occurrences.merge(key, 1, Integer::sum);
+                    String hash = sha1(userId + "|" + key + "|" + occurrence);
+                    if (knownHashes.contains(hash)) {
+                        result.duplicates++;
+                        continue;
+                    }
+                    transaction.setImportHash(hash);
+                    transaction.setId(ID_PREFIX + hash);
+                    batch.add(transaction);
+
+                    if (batch.size() >= FirebaseHelper.MAX_BATCH_SIZE) {
+                        commit(batch, userId, knownHashes, result, listener);
+                    }
+                }
+                commit(batch, userId, knownHashes, result, listener);
+
+                mainHandler.post(() -> listener.onCompleted(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Import failed", e);
+                String message = e.getMessage() != null ? e.getMessage() : "Unknown error";
+                mainHandler.post(() -> listener.onError(message, result));
+            }
+        });
+    }
+
+    private void commit(List<Transaction> batch, String userId, Set<String> knownHashes,
+                        ImportResult result, OnImportListener listener) throws Exception {
+        if (batch.isEmpty()) return;
+        try {
+            Tasks.await(firebaseHelper.setTransactionsBatch(batch), COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // Batch vẫn nằm trong hàng đợi của Firestore và sẽ được ghi khi có mạng;
+            // document id sinh từ hash nên nhập lại file sau đó không tạo bản trùng
+            throw new IOException("Timed out waiting for the server, check your connection and import again", e);
+        }
+
+        List<String> hashes = new ArrayList<>(batch.size());
+        for (Transaction transaction : batch) {
+            hashes.add(transaction.getImportHash());
+        }
+        appendIndex(userId, hashes);
+        knownHashes.addAll(hashes);
+        result.imported += batch.size();
+        batch.clear();
+
+        int rows = result.rows;
+        int imported = result.imported;
+        mainHandler.post(() -> listener.onProgress(rows, imported));
+    }
+
+    /**
+     * Chuyển một dòng sao kê thành giao dịch chi tiêu, hoặc null nếu bỏ qua
+     */
+    static Transaction toTransaction(StatementRow row, String userId, CategoryMatcher matcher,
+                                     ImportResult result) {
+        Date date = parseDate(row.date);
+        if (date == null) {
+            result.invalid++;
+            return null;
+        }
+
+        // Sao kê tách cột ghi nợ / ghi có thường để "0" hoặc trống ở cột ghi nợ của dòng ghi có
+        double debit = row.debit != null && !row.debit.trim().isEmpty() ? parseAmount(row.debit) : Double.NaN;
+        double amount;
+        if (!Double.isNaN(debit) && debit != 0) {
+            amount = Math.abs(debit);
+        } else if (row.amount != null && !row.amount.trim().isEmpty()) {
+            double signed = parseAmount(row.amount);
+            if (Double.isNaN(signed)) {
+                result.invalid++;
+                return null;
+            }
+            if (signed >= 0) {
+                // Khoản thu, ứng dụng chỉ quản lý chi tiêu
+                result.income++;
+                return null;
+            }
+            amount = -signed;
+        } else {
+            // Chỉ có cột ghi có (khoản thu) hoặc không có số tiền
+            result.income++;
+            return null;
+        }
+        if (Double.isNaN(amount) || amount <= 0) {
+            result.invalid++;
+            return null;
+        }
+
+        String note = row.note != null ? row.note.trim() : "";
+        Category category = matcher.match(row.category, note);
+        if (category == null) {
+            result.invalid++;
+            return null;
+        }
+        Transaction transaction = new Transaction(null, userId, amount, category.getName(), note, date, "expense");
+        transaction.setCategoryId(category.getId());
+        return transaction;
+    }
+
+    private static String contentKey(Transaction transaction) {
+        String day = new SimpleDateFormat("yyyyMMdd", Locale.US).format(transaction.getDate());
+        return day + "|" + Math.round(transaction.getAmount()) + "|" + TextNormalizer.normalize(transaction.getNote());
+    }
+
+    // ========== PARSING ==========
+
+    static RowSource openRowSource(BufferedReader reader) throws IOException {
+        reader.mark(4096);
+        char[] head = new char[4096];
+        int read = reader.read(head);
+        reader.reset();
+        String start = read > 0 ? new String(head, 0, read) : "";
+        if (start.contains("OFXHEADER") || start.contains("<OFX>")) {
+            return new OfxRowSource(reader);
+        }
+        return new CsvRowSource(reader);
+    }
+
+    static Date parseDate(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        for (String pattern : DATE_PATTERNS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setLenient(false);
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(trimmed, position);
+            if (date != null && position.getIndex() == trimmed.length()) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Đọc số tiền theo nhiều định dạng: "1.234.567", "1,234,567.00", "-50000", "(50.000)", "50 000 VND"
+     * @return NaN nếu không đọc được
+     */
+    static double parseAmount(String value) {
+        if (value == null) return Double.NaN;
+        String s = value.trim();
+        boolean negative = false;
+        if (s.startsWith("(") && s.endsWith(")")) {
+            negative = true;
+            s = s.substring(1, s.length() - 1);
+        }
+        s = s.replaceAll("[^0-9.,\\-]", "");
+        if (s.startsWith("-")) {
+            negative = !negative;
+            s = s.substring(1);
+        }
+        if (s.isEmpty()) return Double.NaN;
+
+        int lastDot = s.lastIndexOf('.');
+        int lastComma = s.lastIndexOf(',');
+        if (lastDot >= 0 && lastComma >= 0) {
+            // Dấu xuất hiện sau cùng là dấu thập phân
+            char decimal = lastDot > lastComma ? '.' : ',';
+            char group = decimal == '.' ? ',' : '.';
+            s = s.replace(String.valueOf(group), "").replace(decimal, '.');
+        } else if (lastDot >= 0 || lastComma >= 0) {
+            char sep = lastDot >= 0 ? '.' : ',';
+            int count = s.length() - s.replace(String.valueOf(sep), "").length();
+            int digitsAfter = s.length() - s.lastIndexOf(sep) - 1;
+            if (count > 1 || digitsAfter == 3) {
+                // Dấu phân cách hàng nghìn (VND không có phần thập phân)
+                s = s.replace(String.valueOf(sep), "");
+            } else {
+                s = s.replace(sep, '.');
+            }
+        }
+        try {
+            double amount = Double.parseDouble(s);
+            return negative ? -amount : amount;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static int findColumn(List<String> headers, String[] candidates) {
+        for (String candidate : candidates) {
+            for (int i = 0; i < headers.size(); i++) {
+                if (headers.get(i).equals(candidate)) return i;
+            }
+        }
+        // So khớp theo từ: "ngay gd" khớp "ngay", nhưng "chi tiet" không khớp "chi"
+        for (String candidate : candidates) {
+            for (int i = 0; i < headers.size(); i++) {
+                if ((" " + headers.get(i) + " ").contains(" " + candidate + " ")) return i;
+            }
+        }
+        return -1;
+    }
+
+    static class StatementRow {
+        String date;
+        String amount;
+        String debit;
+        String note;
+        String category;
+    }
+
+    interface RowSource {
+        StatementRow next() throws IOException;
+    }
+
+    /**
+     * Đọc CSV (dấu phân cách "," ";" hoặc tab, hỗ trợ trường trong ngoặc kép nhiều dòng)
+     */
+    private static class CsvRowSource implements RowSource {
+        private final BufferedReader reader;
+        private char delimiter = ',';
+        private int dateCol = -1, amountCol = -1, debitCol = -1, noteCol = -1, categoryCol = -1;
+
+        CsvRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public StatementRow next() throws IOException {
+            while (true) {
+                List<String> fields = readRecord();
+                if (fields == null) return null;
+                if (dateCol < 0) {
+                    detectHeader(fields);
+                    continue;
+                }
+                if (fields.size() <= dateCol) continue;
+
+                StatementRow row = new StatementRow();
+                row.date = get(fields, dateCol);
+                row.amount = get(fields, amountCol);
+                row.debit = get(fields, debitCol);
+                row.note = get(fields, noteCol);
+                row.category = get(fields, categoryCol);
+                return row;
+            }
+        }
+
+        /**
+         * Dòng đầu tiên có cột ngày và cột số tiền được coi là dòng tiêu đề
+         * (các dòng thông tin tài khoản phía trên bị bỏ qua)
+         */
+        private void detectHeader(List<String> fields) {
+            List<String> headers = new ArrayList<>(fields.size());
+            for (String field : fields) {
+                headers.add(TextNormalizer.normalize(field));
+            }
+            int date = findColumn(headers, DATE_HEADERS);
+            int debit = findColumn(headers, DEBIT_HEADERS);
+            int amount = findColumn(headers, AMOUNT_HEADERS);
+            int credit = findColumn(headers, CREDIT_HEADERS);
+            if (date < 0 || (amount < 0 && debit < 0)) return;
+            // "so tien ghi no" cũng chứa "so tien": ưu tiên cột ghi nợ, không dùng cột ghi có làm số tiền
+            if (amount == debit || amount == credit) amount = -1;
+            dateCol = date;
+            debitCol = debit;
+            amountCol = amount;
+            noteCol = findColumn(headers, NOTE_HEADERS);
+            categoryCol = findColumn(headers, CATEGORY_HEADERS);
+        }
+
+        private String get(List<String> fields, int index) {
+            return index >= 0 && index < fields.size() ? fields.get(index) : null;
+        }
+
+        private List<String> readRecord() throws IOException {
+            String line = reader.readLine();
+            if (line == null) return null;
+            if (dateCol < 0) {
+                delimiter = guessDelimiter(line);
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean inQuotes = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (inQuotes) {
+                        if (c == '"') {
+                            if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                                field.append('"');
+                                i++;
+                            } else {
+                                inQuotes = false;
+                            }
+                        } else {
+                            field.append(c);
+                        }
+                    } else if (c == '"') {
+                        inQuotes = true;
+                    } else if (c == delimiter) {
+                        fields.add(field.toString().trim());
+                        field.setLength(0);
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (!inQuotes) break;
+                // Trường trong ngoặc kép kéo dài sang dòng tiếp theo
+                line = reader.readLine();
+                if (line == null) break;
+                field.append('\n');
+            }
+            fields.add(field.toString().trim());
+            return fields;
+        }
+
+        private static char guessDelimiter(String line) {
+            int commas = 0, semicolons = 0, tabs = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == ',') commas++;
+                else if (c == ';') semicolons++;
+                else if (c == '\t') tabs++;
+            }
+            if (tabs > commas && tabs > semicolons) return '\t';
+            if (semicolons > commas) return ';';
+            return ',';
+        }
+    }
+
+    /**
+     * Đọc OFX/QFX: mỗi khối <STMTTRN> là một giao dịch (TRNAMT âm là khoản chi)
+     */
+    private static class OfxRowSource implements RowSource {
+        private final BufferedReader reader;
+        // Các thẻ còn lại của dòng đang đọc (nhiều giao dịch có thể nằm trên cùng một dòng)
+        private final Deque<String> pendingTags = new ArrayDeque<>();
+
+        OfxRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public StatementRow next() throws IOException {
+            StatementRow row = null;
+            while (true) {
+                if (pendingTags.isEmpty()) {
+                    String line = reader.readLine();
+                    if (line == null) return null;
+                    // File OFX có thể không xuống dòng giữa các thẻ
+                    pendingTags.addAll(Arrays.asList(line.replace("<", "\n<").split("\n")));
+                }
+                while (!pendingTags.isEmpty()) {
+                    String tag = pendingTags.poll().trim();
+                    if (tag.isEmpty()) continue;
+                    String upper = tag.toUpperCase(Locale.ROOT);
+                    if (upper.startsWith("<STMTTRN>")) {
+                        row = new StatementRow();
+                    } else if (upper.startsWith("</STMTTRN>")) {
+                        if (row != null) return row;
+                    } else if (row != null) {
+                        if (upper.startsWith("<DTPOSTED>")) {
+                            String value = value(tag);
+                            row.date = value.length() >= 8 ? value.substring(0, 8) : value;
+                        } else if (upper.startsWith("<TRNAMT>")) {
+                            row.amount = value(tag);
+                        } else if (upper.startsWith("<NAME>") && row.note == null) {
+                            row.note = value(tag);
+                        } else if (upper.startsWith("<MEMO>")) {
+                            row.note = value(tag);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static String value(String tag) {
+            int end = tag.indexOf('>');
+            return end >= 0 ? tag.substring(end + 1).trim() : "";
+        }
+    }
+
+    /**
+     * Tự gán danh mục: ưu tiên cột danh mục trong file, sau đó tìm tên danh mục trong nội dung,
+     * cuối cùng dùng danh mục "Khác"/"Other" hoặc danh mục đầu tiên
+     */
+    static class CategoryMatcher {
+        // Giữ thứ tự danh mục để kết quả so khớp ổn định giữa các lần nhập
+        private final Map<String, Category> byNormalizedName = new LinkedHashMap<>();
+        private final Category fallback;
+
+        CategoryMatcher(List<Category> categories) {
+            Category other = null;
+            for (Category category : categories) {
+                if (category == null || category.getName() == null) continue;
+                String normalized = TextNormalizer.normalize(category.getName());
+                if (normalized.isEmpty()) continue;
+                byNormalizedName.putIfAbsent(normalized, category);
+                if (normalized.equals("khac") || normalized.equals("other") || normalized.equals("others")) {
+                    other = category;
+                }
+            }
+            if (other == null && !categories.isEmpty()) {
+                other = categories.get(0);
+            }
+            this.fallback = other;
+        }
+
+        Category match(String categoryField, String note) {
+            if (categoryField != null) {
+                Category exact = byNormalizedName.get(TextNormalizer.normalize(categoryField));
+                if (exact != null) return exact;
+            }
+            // Ưu tiên tên dài nhất: "an uong ngoai" thắng "an uong" khi nội dung chứa cả hai
+            String normalizedNote = TextNormalizer.normalize(note);
+            Category best = null;
+            int bestLength = 0;
+            if (!normalizedNote.isEmpty()) {
+                for (Map.Entry<String, Category> entry : byNormalizedName.entrySet()) {
+                    String name = entry.getKey();
+                    if (name.length() > bestLength && normalizedNote.contains(name)) {
+                        best = entry.getValue();
+                        bestLength = name.length();
+                    }
+                }
+            }
+            return best != null ? best : fallback;
+        }
+    }
+
+    // ========== HASH INDEX ==========
+
+    private File indexFile(String userId) {
+        return new File(context.getFilesDir(), INDEX_FILE_PREFIX + userId + ".txt");
+    }
+
+    private Set<String> loadIndex(String userId) throws IOException {
+        Set<String> hashes = new HashSet<>();
+        File file = indexFile(userId);
+        if (!file.exists()) return hashes;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) hashes.add(line);
+            }
+        }
+        return hashes;
+    }
+
+    private void appendIndex(String userId, List<String> hashes) throws IOException {
+        try (Writer writer = new FileWriter(indexFile(userId), true)) {
+            for (String hash : hashes) {
+                writer.write(hash);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String sha1(String text) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(text.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format(Locale.US, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Thống kê kết quả nhập
+     */
+    public static class ImportResult {
+        public int rows; // Số dòng dữ liệu đã đọc
+        public int imported; // Số giao dịch đã ghi
+        public int duplicates; // Số dòng đã nhập trước đó
+        public int income; // Số khoản thu bị bỏ qua
+        public int invalid; // Số dòng không đọc được
+    }
+
+    public interface OnImportListener {
+        void onProgress(int rowsRead, int imported);
+        void onCompleted(ImportResult result);
+        void onError(String error, ImportResult partialResult);
+    }
+}
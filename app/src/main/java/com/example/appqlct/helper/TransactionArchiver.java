@@ -0,0 +1,441 @@
+package com.example.appqlct.helper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.appqlct.model.Transaction;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lưu trữ giao dịch cũ (dành cho Admin)
+ * - Mỗi tháng đã đóng (cũ hơn ARCHIVE_AFTER_MONTHS tháng) của một user được gộp thành một document
+ *   transaction_archives/{userId}_{yyyyMM}: các mảng số tiền, thời điểm, loại, category, ghi chú
+ *   được nén gzip trong một Blob
+ * - Mỗi tháng được đọc theo trang MAX_BATCH_SIZE giao dịch (theo date) để không giữ cả tháng trong bộ nhớ;
+ *   mỗi trang gộp thêm vào archive của từng user trong trang
+ * - Document gốc được đánh dấu archivedTo cùng batch với lần ghi archive rồi mới bị xóa; archive giữ
+ *   id giao dịch nên chạy lại sau khi bị gián đoạn không tạo bản ghi trùng
+ * - Báo cáo đọc archive qua FirebaseHelper cho các khoảng thời gian cũ (một lần đọc mỗi tháng)
+ */
+public class TransactionArchiver {
+    private static final String TAG = "TransactionArchiver";
+    public static final String COLLECTION_ARCHIVES = "transaction_archives";
+    private static final String COLLECTION_TRANSACTIONS = "transactions";
+    // Dấu trên giao dịch sắp bị xóa vì đã lưu trữ (id archive) hoặc vì xóa dữ liệu cũ (ARCHIVED_TO_RETENTION),
+    // Cloud Functions dựa vào đó để không bớt giao dịch khỏi rollup/thống kê/số dư ví
+    public static final String FIELD_ARCHIVED_TO = "archivedTo";
+    public static final String ARCHIVED_TO_RETENTION = "retention";
+
+    // Chỉ lưu trữ các tháng cũ hơn số tháng này (cùng mốc với xóa dữ liệu cũ > 1 năm)
+    public static final int ARCHIVE_AFTER_MONTHS = 12;
+    private static final int FORMAT_VERSION = 1;
+    // Document Firestore tối đa 1 MiB, chừa chỗ cho các field khác
+    private static final int MAX_PACKED_BYTES = 900 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Gson GSON = new Gson();
+
+    private final FirebaseFirestore db;
+    private final Handler mainHandler;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public TransactionArchiver() {
+        this.db = FirebaseFirestore.getInstance();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * ID của archive: {userId}_{yyyyMM}
+     */
+    public static String archiveId(String userId, int year, int month) {
+        return String.format(Locale.US, "%s_%04d%02d", userId, year, month);
+    }
+
+    /**
+     * Mốc lưu trữ: ngày đầu tháng, ARCHIVE_AFTER_MONTHS tháng trước tháng hiện tại
+     * Mốc chỉ tăng theo thời gian nên khoảng thời gian sau mốc chắc chắn chưa có archive
+     */
+    public static Date archiveCutoff() {
+        Calendar calendar = startOfMonth(new Date());
+        calendar.add(Calendar.MONTH, -ARCHIVE_AFTER_MONTHS);
+        return calendar.getTime();
+    }
+
+    /**
+     * Dừng sau tháng đang xử lý, các tháng chưa xử lý sẽ được lưu trữ ở lần chạy sau
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Lưu trữ tất cả các tháng trước archiveCutoff(), từ tháng cũ nhất
+     */
+    public void run(OnArchiveProgressListener listener) {
+        cancelled.set(false);
+        EXECUTOR.execute(() -> {
+            try {
+                Date cutoff = archiveCutoff();
+                QuerySnapshot oldest = Tasks.await(db.collection(COLLECTION_TRANSACTIONS)
+                        .whereLessThan("date", cutoff)
+                        .orderBy("date")
+                        .limit(1)
+                        .get(Source.SERVER));
+
+                int archivedTransactions = 0;
+                Set<String> archiveDocuments = new HashSet<>();
+                Set<String> skippedArchives = new HashSet<>();
+                if (!oldest.isEmpty()) {
+                    Date oldestDate = oldest.getDocuments().get(0).getDate("date");
+                    Calendar month = startOfMonth(oldestDate != null ? oldestDate : cutoff);
+                    SimpleDateFormat monthFormat = new SimpleDateFormat("MM/yyyy", Locale.getDefault());
+
+                    while (month.getTime().before(cutoff)) {
+                        if (cancelled.get()) {
+                            mainHandler.post(() -> listener.onError("Đã dừng, có thể tiếp tục lần sau"));
+                            return;
+                        }
+
+                        Date monthStart = month.getTime();
+                        month.add(Calendar.MONTH, 1);
+                        Date monthEnd = month.getTime();
+
+                        // Đọc từng trang; trang sau bắt đầu sau document cuối của trang trước
+                        // (document đó đã bị xóa nhưng vẫn dùng được làm mốc)
+                        DocumentSnapshot lastDocument = null;
+                        while (true) {
+                            Query pageQuery = db.collection(COLLECTION_TRANSACTIONS)
+                                    .whereGreaterThanOrEqualTo("date", monthStart)
+                                    .whereLessThan("date", monthEnd)
+                                    .orderBy("date")
+                                    .limit(FirebaseHelper.MAX_BATCH_SIZE);
+                            if (lastDocument != null) {
+                                pageQuery = pageQuery.startAfter(lastDocument);
+                            }
+                            List<DocumentSnapshot> page = Tasks.await(pageQuery.get(Source.SERVER)).getDocuments();
+                            if (page.isEmpty()) break;
+                            lastDocument = page.get(page.size() - 1);
+
+                            // Nhóm theo user, giữ lại giao dịch định kỳ gốc (là mẫu, không thuộc riêng tháng nào)
+                            Map<String, List<DocumentSnapshot>> documentsByUser = new HashMap<>();
+                            for (DocumentSnapshot document : page) {
+                                String userId = document.getString("userId");
+                                if (userId == null || Boolean.TRUE.equals(document.getBoolean("isRecurring"))) {
+                                    continue;
+                                }
+                                List<DocumentSnapshot> userDocuments = documentsByUser.get(userId);
+                                if (userDocuments == null) {
+                                    userDocuments = new ArrayList<>();
+                                    documentsByUser.put(userId, userDocuments);
+                                }
+                                userDocuments.add(document);
+                            }
+
+                            for (Map.Entry<String, List<DocumentSnapshot>> entry : documentsByUser.entrySet()) {
+                                String archiveId = archiveId(entry.getKey(), monthStart);
+                                if (archiveUserMonth(entry.getKey(), monthStart, entry.getValue())) {
+                                    archivedTransactions += entry.getValue().size();
+                                    archiveDocuments.add(archiveId);
+                                } else {
+                                    skippedArchives.add(archiveId);
+                                }
+                            }
+                            if (page.size() < FirebaseHelper.MAX_BATCH_SIZE) break;
+                        }
+
+                        String monthLabel = monthFormat.format(monthStart);
+                        int archivedSoFar = archivedTransactions;
+                        mainHandler.post(() -> listener.onProgress(monthLabel, archivedSoFar));
+                    }
+                }
+
+                int totalArchived = archivedTransactions;
+                int totalDocuments = archiveDocuments.size();
+                int totalSkipped = skippedArchives.size();
+                mainHandler.post(() -> listener.onCompleted(totalArchived, totalDocuments, totalSkipped));
+            } catch (Exception e) {
+                Log.e(TAG, "Archiving transactions failed", e);
+                String message = e.getMessage() != null ? e.getMessage() : "Unknown error";
+                mainHandler.post(() -> listener.onError(message));
+            }
+        });
+    }
+
+    private static String archiveId(String userId, Date monthStart) {
+        Calendar calendar = startOfMonth(monthStart);
+        return archiveId(userId, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /**
+     * Gộp giao dịch (một trang trong tháng) của user vào archive rồi xóa document gốc, theo thứ tự:
+     * 1. Batch đầu tiên ghi archive và đánh dấu archivedTo trên các document gốc; nếu còn document thì
+     *    các batch tiếp theo đánh dấu phần còn lại
+     * 2. Sau khi mọi document đã được đánh dấu mới xóa chúng trong các batch sau
+     * Cloud Functions dựa vào archivedTo trong change.before của lần xóa để không bớt giao dịch đã lưu trữ
+     * khỏi rollup/thống kê/số dư ví, nên không được xóa document nào trước khi nó được đánh dấu
+     * @return false nếu archive vượt quá kích thước document (giữ nguyên giao dịch gốc)
+     */
+    private boolean archiveUserMonth(String userId, Date monthStart, List<DocumentSnapshot> documents)
+            throws Exception {
+        Calendar calendar = startOfMonth(monthStart);
+        int year = calendar.get(Calendar.YEAR);
+        int month = calendar.get(Calendar.MONTH) + 1;
+        DocumentReference archiveRef = db.collection(COLLECTION_ARCHIVES)
+                .document(archiveId(userId, year, month));
+
+        // Archive đã có (chạy lại hoặc giao dịch được thêm sau): gộp thêm, bỏ qua id đã lưu
+        DocumentSnapshot existing = Tasks.await(archiveRef.get(Source.SERVER));
+        List<Transaction> entries = existing.exists() ? unpack(existing) : new ArrayList<>();
+        Set<String> archivedIds = new HashSet<>();
+        for (Transaction entry : entries) {
+            archivedIds.add(entry.getId());
+        }
+        for (DocumentSnapshot document : documents) {
+            if (!archivedIds.contains(document.getId())) {
+                entries.add(fromDocument(document));
+            }
+        }
+
+        byte[] packed = pack(entries, monthStart);
+        if (packed.length > MAX_PACKED_BYTES) {
+            Log.w(TAG, "Archive too large, skipped: " + archiveRef.getId() + " (" + packed.length + " bytes)");
+            return false;
+        }
+
+        double totalIncome = 0;
+        double totalExpense = 0;
+        for (Transaction entry : entries) {
+            if ("income".equals(entry.getType())) {
+                totalIncome += entry.getAmount();
+            } else {
+                totalExpense += entry.getAmount();
+            }
+        }
+
+        Map<String, Object> archiveData = new HashMap<>();
+        archiveData.put("userId", userId);
+        archiveData.put("year", year);
+        archiveData.put("month", month);
+        archiveData.put("monthStart", new Timestamp(monthStart));
+        archiveData.put("count", entries.size());
+        archiveData.put("totalIncome", totalIncome);
+        archiveData.put("totalExpense", totalExpense);
+        archiveData.put("version", FORMAT_VERSION);
+        archiveData.put("data", Blob.fromBytes(packed));
+        archiveData.put("updatedAt", new Date());
+
+        // Bước 1: ghi archive và đánh dấu archivedTo
+        WriteBatch batch = db.batch();
+        batch.set(archiveRef, archiveData);
+        int operations = 1;
+        for (DocumentSnapshot document : documents) {
+            if (operations == FirebaseHelper.MAX_BATCH_SIZE) {
+                Tasks.await(batch.commit());
+                batch = db.batch();
+                operations = 0;
+            }
+            batch.update(document.getReference(), FIELD_ARCHIVED_TO, archiveRef.getId());
+            operations++;
+        }
+        Tasks.await(batch.commit());
+
+        // Bước 2: xóa document gốc đã được đánh dấu
+        batch = db.batch();
+        operations = 0;
+        for (DocumentSnapshot document : documents) {
+            if (operations == FirebaseHelper.MAX_BATCH_SIZE) {
+                Tasks.await(batch.commit());
+                batch = db.batch();
+                operations = 0;
+            }
+            batch.delete(document.getReference());
+            operations++;
+        }
+        if (operations > 0) {
+            Tasks.await(batch.commit());
+        }
+        return true;
+    }
+
+    private static Transaction fromDocument(DocumentSnapshot document) {
+        Transaction transaction = new Transaction();
+        transaction.setId(document.getId());
+        transaction.setUserId(document.getString("userId"));
+        Double amount = document.getDouble("amount");
+        transaction.setAmount(amount != null ? amount : 0);
+        transaction.setCategory(document.getString("category"));
+        transaction.setCategoryId(document.getString("categoryId"));
+        transaction.setWalletId(document.getString("walletId"));
+        transaction.setNote(document.getString("note"));
+        transaction.setDate(document.getDate("date"));
+        transaction.setType(document.getString("type"));
+        transaction.setRecurringTransactionId(document.getString("recurringTransactionId"));
+        return transaction;
+    }
+
+    /**
+     * Nén danh sách giao dịch thành các mảng song song (category được đánh chỉ số qua bảng từ điển)
+     */
+    static byte[] pack(List<Transaction> entries, Date monthStart) throws IOException {
+        int size = entries.size();
+        PackedMonth packed = new PackedMonth();
+        packed.v = FORMAT_VERSION;
+        packed.ids = new String[size];
+        packed.seconds = new int[size];
+        packed.amounts = new double[size];
+        packed.types = new int[size];
+        packed.category = new int[size];
+        packed.notes = new String[size];
+        packed.recurringIds = new String[size];
+        packed.walletIds = new String[size];
+
+        // Từ điển category: "id|tên" -> chỉ số
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        List<String> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+        long base = monthStart.getTime();
+        for (int i = 0; i < size; i++) {
+            Transaction entry = entries.get(i);
+            packed.ids[i] = entry.getId();
+            packed.seconds[i] = entry.getDate() != null
+                    ? (int) ((entry.getDate().getTime() - base) / 1000) : 0;
+            packed.amounts[i] = entry.getAmount();
+            packed.types[i] = "income".equals(entry.getType()) ? 1 : 0;
+            packed.notes[i] = entry.getNote();
+            packed.recurringIds[i] = entry.getRecurringTransactionId();
+            packed.walletIds[i] = entry.getWalletId();
+
+            String key = entry.getCategoryId() + "|" + entry.getCategory();
+            Integer index = dictionary.get(key);
+            if (index == null) {
+                index = categoryIds.size();
+                dictionary.put(key, index);
+                categoryIds.add(entry.getCategoryId());
+                categoryNames.add(entry.getCategory());
+            }
+            packed.category[i] = index;
+        }
+        packed.categoryIds = categoryIds.toArray(new String[0]);
+        packed.categoryNames = categoryNames.toArray(new String[0]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            GSON.toJson(packed, writer);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Giải nén document archive thành danh sách giao dịch (id là id của document gốc đã xóa)
+     * @return danh sách rỗng nếu archive không đọc được
+     */
+    public static List<Transaction> unpack(DocumentSnapshot archive) {
+        List<Transaction> transactions = new ArrayList<>();
+        Blob data = archive.getBlob("data");
+        Date monthStart = archive.getDate("monthStart");
+        String userId = archive.getString("userId");
+        if (data == null || monthStart == null) {
+            return transactions;
+        }
+
+        PackedMonth packed;
+        try (Reader reader = new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data.toBytes())), StandardCharsets.UTF_8)) {
+            packed = GSON.fromJson(reader, PackedMonth.class);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Cannot read archive " + archive.getId(), e);
+            return transactions;
+        }
+        if (packed == null || packed.ids == null) {
+            return transactions;
+        }
+
+        long base = monthStart.getTime();
+        for (int i = 0; i < packed.ids.length; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setId(packed.ids[i]);
+            transaction.setUserId(userId);
+            transaction.setAmount(packed.amounts[i]);
+            transaction.setDate(new Date(base + packed.seconds[i] * 1000L));
+            transaction.setType(packed.types[i] == 1 ? "income" : "expense");
+            transaction.setCategoryId(packed.categoryIds[packed.category[i]]);
+            transaction.setCategory(packed.categoryNames[packed.category[i]]);
+            transaction.setNote(packed.notes[i]);
+            transaction.setRecurringTransactionId(packed.recurringIds[i]);
+            // Archive tạo trước khi có ví không có walletIds (thuộc ví mặc định)
+            transaction.setWalletId(packed.walletIds != null ? packed.walletIds[i] : null);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private static Calendar startOfMonth(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    /**
+     * Dữ liệu một tháng dạng mảng song song (được Gson ghi thành JSON rồi nén gzip)
+     */
+    private static class PackedMonth {
+        int v;
+        String[] ids;
+        int[] seconds; // Số giây tính từ đầu tháng
+        double[] amounts;
+        int[] types; // 0 = expense, 1 = income
+        int[] category; // Chỉ số trong categoryIds/categoryNames
+        String[] categoryIds;
+        String[] categoryNames;
+        String[] notes;
+        String[] recurringIds;
+        String[] walletIds;
+    }
+
+    public interface OnArchiveProgressListener {
+        void onProgress(String month, int archivedTransactions);
+        void onCompleted(int archivedTransactions, int archiveDocuments, int skippedArchives);
+        void onError(String error);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục tìm kiếm giao dịch trên máy (ghi chú và số tiền)
+ * - Ghi chú được chuẩn hóa bằng TextNormalizer (bỏ dấu, chữ thường) rồi tách thành n-gram:
+ *   trigram của từng từ và tiền tố 1-2 ký tự của từ (để tìm được từ khóa ngắn)
+ * - Mỗi n-gram giữ tập ID giao dịch chứa nó (inverted index); khi tìm chỉ giao các tập của từ khóa
+ *   rồi kiểm tra lại ghi chú của các ứng viên, không duyệt toàn bộ ghi chú
+ * - Số tiền giữ trong TreeMap để lọc theo khoảng
+ * - Cập nhật theo từng giao dịch (put/remove theo ID) khi thêm/sửa/xóa, không dựng lại khi tìm
+ *
+ * Cú pháp truy vấn: các từ khóa (phải có đủ trong ghi chú) và điều kiện số tiền
+ * ">50000", "<200k", "1.5k-2k", "100000-500000" (hậu tố k = nghìn)
+ */
+public class TransactionSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final String PREFIX_MARK = "^";
+    private static final Pattern AMOUNT_RANGE = Pattern.compile("([\\d.,]+k?)-([\\d.,]+k?)");
+    private static final Pattern AMOUNT_BOUND = Pattern.compile("([<>])=?([\\d.,]+k?)");
+
+    private final Map<String, Transaction> transactions = new HashMap<>();
+    private final Map<String, String> normalizedNotes = new HashMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>(); // n-gram -> ID giao dịch
+    private final TreeMap<Double, Set<String>> idsByAmount = new TreeMap<>();
+
+    /**
+     * Thêm hoặc cập nhật nhiều giao dịch
+     */
+    public void putAll(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            put(transaction);
+        }
+    }
+
+    /**
+     * Thêm hoặc cập nhật một giao dịch (n-gram của ghi chú cũ cùng ID được gỡ ra trước)
+     */
+    public void put(Transaction transaction) {
+        if (transaction == null || transaction.getId() == null) return;
+        String id = transaction.getId();
+        remove(id);
+
+        String note = TextNormalizer.normalize(transaction.getNote());
+        transactions.put(id, transaction);
+        normalizedNotes.put(id, note);
+        for (String gram : grams(note)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null) {
+                ids = new HashSet<>();
+                postings.put(gram, ids);
+            }
+            ids.add(id);
+        }
+        Set<String> sameAmount = idsByAmount.get(transaction.getAmount());
+        if (sameAmount == null) {
+            sameAmount = new HashSet<>();
+            idsByAmount.put(transaction.getAmount(), sameAmount);
+        }
+        sameAmount.add(id);
+    }
+
+    /**
+     * Xóa giao dịch khỏi chỉ mục
+     */
+    public void remove(String transactionId) {
+        Transaction existing = transactions.remove(transactionId);
+        if (existing == null) return;
+        for (String gram : grams(normalizedNotes.remove(transactionId))) {
+            Set<String> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(transactionId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        Set<String> sameAmount = idsByAmount.get(existing.getAmount());
+        if (sameAmount != null) {
+            sameAmount.remove(transactionId);
+            if (sameAmount.isEmpty()) {
+                idsByAmount.remove(existing.getAmount());
+            }
+        }
+    }
+
+    public void clear() {
+        transactions.clear();
+        normalizedNotes.clear();
+        postings.clear();
+        idsByAmount.clear();
+    }
+
+    /**
+     * Tìm giao dịch khớp truy vấn (thứ tự không xác định)
+     */
+    public List<Transaction> search(String query) {
+        List<String> keywords = new ArrayList<>();
+        double minAmount = Double.NEGATIVE_INFINITY;
+        double maxAmount = Double.POSITIVE_INFINITY;
+        for (String token : TextNormalizer.normalize(query).split(" ")) {
+            if (token.isEmpty()) continue;
+            Matcher range = AMOUNT_RANGE.matcher(token);
+            Matcher bound = AMOUNT_BOUND.matcher(token);
+            if (range.matches()) {
+                minAmount = Math.max(minAmount, parseAmount(range.group(1)));
+                maxAmount = Math.min(maxAmount, parseAmount(range.group(2)));
+            } else if (bound.matches()) {
+                if (">".equals(bound.group(1))) {
+                    minAmount = Math.max(minAmount, parseAmount(bound.group(2)));
+                } else {
+                    maxAmount = Math.min(maxAmount, parseAmount(bound.group(2)));
+                }
+            } else {
+                keywords.add(token);
+            }
+        }
+
+        // Ứng viên từ n-gram của từ khóa (giao các tập, bắt đầu từ tập nhỏ nhất)
+        Set<String> candidates = null;
+        for (String keyword : keywords) {
+            for (String gram : keywordGrams(keyword)) {
+                Set<String> ids = postings.get(gram);
+                if (ids == null) return new ArrayList<>();
+                candidates = intersect(candidates, ids);
+                if (candidates.isEmpty()) return new ArrayList<>();
+            }
+        }
+        boolean hasAmountFilter = minAmount > Double.NEGATIVE_INFINITY || maxAmount < Double.POSITIVE_INFINITY;
+        if (candidates == null) {
+            if (!hasAmountFilter) {
+                return new ArrayList<>(transactions.values());
+            }
+            if (minAmount > maxAmount) return new ArrayList<>();
+            candidates = new HashSet<>();
+            for (Set<String> ids : idsByAmount.subMap(minAmount, true, maxAmount, true).values()) {
+                candidates.addAll(ids);
+            }
+        }
+
+        // Kiểm tra lại ứng viên: n-gram chỉ loại trừ, từ khóa phải thực sự nằm trong ghi chú
+        List<Transaction> result = new ArrayList<>();
+        for (String id : candidates) {
+            Transaction transaction = transactions.get(id);
+            double amount = transaction.getAmount();
+            if (amount < minAmount || amount > maxAmount) continue;
+            if (containsAll(normalizedNotes.get(id), keywords)) {
+                result.add(transaction);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> intersect(Set<String> current, Set<String> ids) {
+        if (current == null) return new HashSet<>(ids);
+        if (ids.size() < current.size()) {
+            Set<String> smaller = new HashSet<>(ids);
+            smaller.retainAll(current);
+            return smaller;
+        }
+        current.retainAll(ids);
+        return current;
+    }
+
+    private static boolean containsAll(String note, List<String> keywords) {
+        for (String keyword : keywords) {
+            if (!note.contains(keyword)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * N-gram của ghi chú đã chuẩn hóa: tiền tố 1-2 ký tự và trigram của từng từ
+     */
+    private static Set<String> grams(String note) {
+        Set<String> grams = new HashSet<>();
+        if (note == null || note.isEmpty()) return grams;
+        for (String word : note.split(" ")) {
+            for (int length = 1; length < GRAM_LENGTH && length <= word.length(); length++) {
+                grams.add(PREFIX_MARK + word.substring(0, length));
+            }
+            for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                grams.add(word.substring(i, i + GRAM_LENGTH));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * N-gram cần có của một từ khóa: trigram nếu đủ dài, nếu không thì tiền tố của từ
+     */
+    private static Set<String> keywordGrams(String keyword) {
+        Set<String> grams = new HashSet<>();
+        if (keyword.length() < GRAM_LENGTH) {
+            grams.add(PREFIX_MARK + keyword);
+            return grams;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= keyword.length(); i++) {
+            grams.add(keyword.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * Đọc số tiền trong truy vấn: "50000", "50.000", "200k", "1.5k", "1,5k"
+     * Một dấu "." hoặc "," không có đúng 3 chữ số theo sau là dấu thập phân, còn lại là phân cách hàng nghìn
+     */
+    static double parseAmount(String text) {
+        boolean thousands = text.endsWith("k");
+        String number = thousands ? text.substring(0, text.length() - 1) : text;
+        int separators = 0;
+        int lastSeparator = -1;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c == '.' || c == ',') {
+                separators++;
+                lastSeparator = i;
+            }
+        }
+        String digits;
+        if (separators == 1 && number.length() - lastSeparator - 1 != 3) {
+            digits = number.replace(',', '.');
+        } else {
+            digits = number.replace(".", "").replace(",", "");
+        }
+        double value;
+        try {
+            value = Double.parseDouble(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        return thousands ? value * 1000 : value;
+    }
+}
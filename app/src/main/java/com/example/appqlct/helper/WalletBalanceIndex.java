@@ -0,0 +1,99 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Wallet;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Chỉ mục số dư của các ví, dựng từ wallet_balances (do Cloud Function updateWalletBalances cập nhật)
+ * - Mỗi ví giữ các ngày có biến động (yyyyMMdd, tăng dần) và prefix sum của biến động
+ * - Số dư cuối một ngày bất kỳ = số dư ban đầu + prefix sum tới ngày đó, tìm bằng binary search
+ *   nên không phụ thuộc độ dài lịch sử
+ * Ngày được tính theo giờ Việt Nam (UTC+7) giống Cloud Function
+ */
+public class WalletBalanceIndex {
+    private static final TimeZone INDEX_ZONE = TimeZone.getTimeZone("GMT+07:00");
+
+    private final Map<String, Series> seriesByWallet = new HashMap<>();
+
+    /**
+     * Thêm biến động của một ví từ document wallet_balances (field days: yyyyMMdd -> biến động)
+     */
+    public void putWallet(String walletId, Map<String, Object> days) {
+        int size = days != null ? days.size() : 0;
+        int[] keys = new int[size];
+        double[] deltas = new double[size];
+        int count = 0;
+        if (days != null) {
+            for (Map.Entry<String, Object> entry : days.entrySet()) {
+                if (!(entry.getValue() instanceof Number)) continue;
+                try {
+                    keys[count] = Integer.parseInt(entry.getKey());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                deltas[count] = ((Number) entry.getValue()).doubleValue();
+                count++;
+            }
+        }
+
+        // Sắp xếp theo ngày rồi tính prefix sum
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(keys[a], keys[b]));
+        Series series = new Series(count);
+        double running = 0;
+        for (int i = 0; i < count; i++) {
+            running += deltas[order[i]];
+            series.days[i] = keys[order[i]];
+            series.prefix[i] = running;
+        }
+        seriesByWallet.put(walletId, series);
+    }
+
+    /**
+     * Số dư của ví vào cuối ngày chứa date
+     */
+    public double getBalanceAt(Wallet wallet, Date date) {
+        return wallet.getInitialBalance() + getChangeUntil(wallet.getId(), date);
+    }
+
+    /**
+     * Tổng biến động của ví từ đầu tới hết ngày chứa date
+     */
+    public double getChangeUntil(String walletId, Date date) {
+        Series series = seriesByWallet.get(walletId);
+        if (series == null || series.days.length == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(series.days, dayKey(date));
+        // Không có biến động đúng ngày đó: lấy ngày gần nhất trước đó
+        int last = index >= 0 ? index : -index - 2;
+        return last >= 0 ? series.prefix[last] : 0;
+    }
+
+    static int dayKey(Date date) {
+        Calendar calendar = Calendar.getInstance(INDEX_ZONE);
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR) * 10000
+                + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private static class Series {
+        final int[] days;
+        final double[] prefix;
+
+        Series(int size) {
+            days = new int[size];
+            prefix = new double[size];
+        }
+    }
+}
@@ -11,6 +11,7 @@ public class Budget {
     private String id;
     private String userId;
     private String categoryName; // Tên category (hoặc "Tổng thể" cho ngân sách tổng)
+    private String categoryId; // ID ổn định của category, dùng để khớp với giao dịch
     private double amount; // Số tiền ngân sách
     private int month; // Tháng (1-12)
     private int year; // Năm
@@ -59,6 +60,14 @@ public class Budget {
         this.categoryName = categoryName;
     }
 
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(String categoryId) {
+        this.categoryId = categoryId;
+    }
+
     public double getAmount() {
         return amount;
     }
@@ -0,0 +1,51 @@
+package com.example.appqlct.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thống kê tổng toàn hệ thống (đọc từ global_stats, cộng tất cả shard)
+ * Không tính giao dịch định kỳ gốc; giao dịch đã lưu trữ vẫn được tính
+ */
+public class GlobalStats {
+    private long transactionCount; // Tổng số giao dịch (cả income và expense)
+    private long expenseCount;
+    private double expenseTotal;
+    // Khóa là category ID (hoặc tên với dữ liệu cũ)
+    private final Map<String, Long> categoryCounts = new HashMap<>();
+    private final Map<String, Double> categoryTotals = new HashMap<>();
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getExpenseCount() {
+        return expenseCount;
+    }
+
+    public double getExpenseTotal() {
+        return expenseTotal;
+    }
+
+    public Map<String, Long> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public Map<String, Double> getCategoryTotals() {
+        return categoryTotals;
+    }
+
+    /**
+     * Cộng giá trị của một shard vào thống kê
+     */
+    public void addShard(long transactionCount, long expenseCount, double expenseTotal) {
+        this.transactionCount += transactionCount;
+        this.expenseCount += expenseCount;
+        this.expenseTotal += expenseTotal;
+    }
+
+    public void addCategory(String categoryKey, long count, double total) {
+        categoryCounts.put(categoryKey, categoryCounts.getOrDefault(categoryKey, 0L) + count);
+        categoryTotals.put(categoryKey, categoryTotals.getOrDefault(categoryKey, 0.0) + total);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.appqlct.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bảng xếp hạng chi tiêu của một tháng (đọc từ leaderboards/{yyyyMM})
+ * - topUsers: users chi tiêu nhiều nhất (key là userId, label là tên lúc vào bảng xếp hạng)
+ * - topCategories: categories có tổng chi tiêu lớn nhất (key là category ID, hoặc tên với dữ liệu cũ)
+ */
+public class Leaderboard {
+    private final List<Entry> topUsers = new ArrayList<>();
+    private final List<Entry> topCategories = new ArrayList<>();
+
+    public List<Entry> getTopUsers() {
+        return topUsers;
+    }
+
+    public List<Entry> getTopCategories() {
+        return topCategories;
+    }
+
+    public static class Entry {
+        private final String key;
+        private final String label;
+        private final double total;
+
+        public Entry(String key, String label, double total) {
+            this.key = key;
+            this.label = label;
+            this.total = total;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.appqlct.model;
+
+import com.example.appqlct.helper.QuantileSketch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Phân bố chi tiêu của tất cả users trong một tháng (đọc từ spending_rollups)
+ * - transactionAmounts: số tiền mỗi giao dịch chi tiêu
+ * - categoryAmounts: số tiền mỗi giao dịch theo category (khóa là category ID, hoặc tên với dữ liệu cũ)
+ * - userMonthlySpend: tổng chi tiêu trong tháng của mỗi user
+ */
+public class SpendingDistribution {
+    private final int month;
+    private final int year;
+    private final QuantileSketch transactionAmounts = new QuantileSketch();
+    private final QuantileSketch userMonthlySpend = new QuantileSketch();
+    private final Map<String, QuantileSketch> categoryAmounts = new HashMap<>();
+
+    public SpendingDistribution(int month, int year) {
+        this.month = month;
+        this.year = year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public QuantileSketch getTransactionAmounts() {
+        return transactionAmounts;
+    }
+
+    public QuantileSketch getUserMonthlySpend() {
+        return userMonthlySpend;
+    }
+
+    public Map<String, QuantileSketch> getCategoryAmounts() {
+        return categoryAmounts;
+    }
+
+    /**
+     * Gộp sketch của một category (từ một shard) vào phân bố
+     */
+    public void mergeCategory(String categoryKey, QuantileSketch sketch) {
+        QuantileSketch existing = categoryAmounts.get(categoryKey);
+        if (existing == null) {
+            existing = new QuantileSketch();
+            categoryAmounts.put(categoryKey, existing);
+        }
+        existing.merge(sketch);
+    }
+}
@@ -12,7 +12,9 @@ public class Transaction implements Serializable {
     private String id;
     private String userId;
     private double amount;
-    private String category;
+    private String category; // Tên category (giữ để hiển thị, dữ liệu cũ có thể là ID hoặc tên)
+    private String categoryId; // ID ổn định của category, dùng để lọc/tổng hợp
+    private String walletId; // Ví của giao dịch (null với dữ liệu cũ = ví mặc định)
     private String note;
     private Date date;
     private String type; // "income" hoặc "expense"
@@ -20,6 +22,7 @@ public class Transaction implements Serializable {
     private Date recurringStartMonth; // Tháng bắt đầu định kỳ
     private Date recurringEndMonth; // Tháng kết thúc định kỳ
     private String recurringTransactionId; // ID của giao dịch định kỳ gốc (nếu giao dịch này được tạo từ định kỳ)
+    private String importHash; // Hash nội dung (ngày + số tiền + ghi chú) nếu giao dịch được nhập từ sao kê
 
     // Constructor mặc định (cần thiết cho Firestore)
     public Transaction() {
@@ -85,6 +88,22 @@ public class Transaction implements Serializable {
         this.category = category;
     }
 
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(String categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public String getWalletId() {
+        return walletId;
+    }
+
+    public void setWalletId(String walletId) {
+        this.walletId = walletId;
+    }
+
     public String getNote() {
         return note;
     }
@@ -145,5 +164,12 @@ public class Transaction implements Serializable {
     public void setRecurringTransactionId(String recurringTransactionId) {
         this.recurringTransactionId = recurringTransactionId;
     }
-}
 
+    public String getImportHash() {
+        return importHash;
+    }
+
+    public void setImportHash(String importHash) {
+        this.importHash = importHash;
+    }
+}
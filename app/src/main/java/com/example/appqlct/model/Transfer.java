@@ -0,0 +1,91 @@
+package com.example.appqlct.model;
+
+import java.util.Date;
+
+/**
+ * Model class cho Transfer (chuyển tiền giữa hai ví của cùng user) trong Firestore
+ * Collection: transfers
+ * Chuyển khoản không phải thu nhập/chi tiêu nên không được tính vào báo cáo, chỉ vào số dư ví
+ */
+public class Transfer {
+    private String id;
+    private String userId;
+    private String fromWalletId;
+    private String toWalletId;
+    private double amount;
+    private String note;
+    private Date date;
+
+    // Constructor mặc định (cần thiết cho Firestore)
+    public Transfer() {
+    }
+
+    // Constructor đầy đủ
+    public Transfer(String id, String userId, String fromWalletId, String toWalletId,
+                    double amount, String note, Date date) {
+        this.id = id;
+        this.userId = userId;
+        this.fromWalletId = fromWalletId;
+        this.toWalletId = toWalletId;
+        this.amount = amount;
+        this.note = note;
+        this.date = date;
+    }
+
+    // Getters và Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFromWalletId() {
+        return fromWalletId;
+    }
+
+    public void setFromWalletId(String fromWalletId) {
+        this.fromWalletId = fromWalletId;
+    }
+
+    public String getToWalletId() {
+        return toWalletId;
+    }
+
+    public void setToWalletId(String toWalletId) {
+        this.toWalletId = toWalletId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+}
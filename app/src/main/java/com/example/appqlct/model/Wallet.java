@@ -0,0 +1,99 @@
+package com.example.appqlct.model;
+
+import java.util.Date;
+
+/**
+ * Model class cho Wallet (ví: tiền mặt, tài khoản ngân hàng, thẻ) trong Firestore
+ * Collection: wallets
+ * Giao dịch cũ không có walletId thuộc ví mặc định DEFAULT_ID (không có document trong collection)
+ */
+public class Wallet {
+    public static final String DEFAULT_ID = "default";
+    public static final String TYPE_CASH = "cash";
+    public static final String TYPE_BANK = "bank";
+    public static final String TYPE_CARD = "card";
+
+    private String id;
+    private String userId;
+    private String name;
+    private String type; // "cash", "bank" hoặc "card"
+    private double initialBalance; // Số dư ban đầu khi bắt đầu theo dõi ví
+    private Date createdAt;
+
+    // Constructor mặc định (cần thiết cho Firestore)
+    public Wallet() {
+    }
+
+    // Constructor đầy đủ
+    public Wallet(String id, String userId, String name, String type, double initialBalance) {
+        this.id = id;
+        this.userId = userId;
+        this.name = name;
+        this.type = type;
+        this.initialBalance = initialBalance;
+        this.createdAt = new Date();
+    }
+
+    /**
+     * Ví mặc định chứa các giao dịch chưa gán ví, không có document trong Firestore
+     */
+    public static Wallet createDefault(String userId, String name) {
+        Wallet wallet = new Wallet(DEFAULT_ID, userId, name, TYPE_CASH, 0);
+        wallet.setCreatedAt(null);
+        return wallet;
+    }
+
+    // Getters và Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public double getInitialBalance() {
+        return initialBalance;
+    }
+
+    public void setInitialBalance(double initialBalance) {
+        this.initialBalance = initialBalance;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    // Kiểm tra xem có phải ví mặc định không
+    public boolean isDefault() {
+        return DEFAULT_ID.equals(id);
+    }
+}
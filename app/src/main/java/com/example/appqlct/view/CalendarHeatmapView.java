@@ -0,0 +1,169 @@
+package com.example.appqlct.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.appqlct.R;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Heatmap chi tiêu theo ngày của một năm (kiểu lịch đóng góp GitHub)
+ * - Mỗi cột là một tuần (Thứ 2 đến Chủ nhật), mỗi ô là một ngày, màu đậm dần theo số tiền chi
+ * - Dữ liệu là mảng chi tiêu từng ngày (365/366 phần tử) nên vị trí ô được tính thẳng từ chỉ số ngày,
+ *   không tạo Calendar cho từng ô
+ */
+public class CalendarHeatmapView extends View {
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int[] LEVEL_COLORS = {
+            R.color.heatmap_level_0, R.color.heatmap_level_1, R.color.heatmap_level_2,
+            R.color.heatmap_level_3, R.color.heatmap_level_4
+    };
+
+    private final Paint[] levelPaints = new Paint[LEVEL_COLORS.length];
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cellRect = new RectF();
+    private final String[] monthLabels = new DateFormatSymbols(Locale.ENGLISH).getShortMonths();
+    private final float cellGap;
+    private final float labelHeight;
+
+    private double[] values = new double[0];
+    private double maxValue = 0;
+    private int firstWeekday = 0; // Hàng của ngày đầu tiên (0 = Thứ 2)
+    private int year;
+    private float cellSize;
+    private OnDayClickListener listener;
+
+    public CalendarHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public CalendarHeatmapView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        cellGap = 2 * density;
+        labelHeight = 14 * density;
+        for (int i = 0; i < LEVEL_COLORS.length; i++) {
+            levelPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+            levelPaints[i].setColor(ContextCompat.getColor(context, LEVEL_COLORS[i]));
+        }
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.text_secondary));
+        labelPaint.setTextSize(10 * density);
+    }
+
+    /**
+     * Gán dữ liệu của một năm
+     * @param year năm đang hiển thị (trả lại khi chọn ngày)
+     * @param dailyValues chi tiêu từng ngày, phần tử 0 là ngày 1/1
+     * @param firstWeekday thứ của ngày 1/1 (0 = Thứ 2, ..., 6 = Chủ nhật)
+     */
+    public void setData(int year, double[] dailyValues, int firstWeekday) {
+        this.year = year;
+        this.values = dailyValues;
+        this.firstWeekday = firstWeekday;
+        maxValue = 0;
+        for (double value : dailyValues) {
+            maxValue = Math.max(maxValue, value);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    public void setOnDayClickListener(OnDayClickListener listener) {
+        this.listener = listener;
+    }
+
+    private int columnCount() {
+        return Math.max(1, (firstWeekday + values.length + DAYS_PER_WEEK - 1) / DAYS_PER_WEEK);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        cellSize = (width - getPaddingLeft() - getPaddingRight()) / (float) columnCount();
+        int height = (int) Math.ceil(getPaddingTop() + labelHeight + DAYS_PER_WEEK * cellSize + getPaddingBottom());
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float left = getPaddingLeft();
+        float top = getPaddingTop() + labelHeight;
+
+        // Nhãn tháng tại cột chứa ngày 1 của mỗi tháng
+        int monthStart = 0;
+        for (int month = 0; month < 12 && monthStart < values.length; month++) {
+            int column = (firstWeekday + monthStart) / DAYS_PER_WEEK;
+            canvas.drawText(monthLabels[month], left + column * cellSize, top - labelHeight / 4, labelPaint);
+            monthStart += daysInMonth(month);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            int position = firstWeekday + i;
+            float x = left + (position / DAYS_PER_WEEK) * cellSize;
+            float y = top + (position % DAYS_PER_WEEK) * cellSize;
+            cellRect.set(x, y, x + cellSize - cellGap, y + cellSize - cellGap);
+            canvas.drawRoundRect(cellRect, cellGap, cellGap, levelPaints[level(values[i])]);
+        }
+    }
+
+    /**
+     * Mức màu 0..4: 0 là không chi, các mức còn lại chia đều theo ngày chi nhiều nhất năm
+     */
+    private int level(double value) {
+        if (value <= 0 || maxValue <= 0) return 0;
+        int levels = LEVEL_COLORS.length - 1;
+        return Math.max(1, Math.min(levels, (int) Math.ceil(value / maxValue * levels)));
+    }
+
+    private int daysInMonth(int month) {
+        if (month == 1) {
+            return values.length == 366 ? 29 : 28;
+        }
+        return month == 3 || month == 5 || month == 8 || month == 10 ? 30 : 31;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (listener == null || cellSize <= 0) {
+            return super.onTouchEvent(event);
+        }
+        if (event.getAction() == MotionEvent.ACTION_UP) {
+            int column = (int) ((event.getX() - getPaddingLeft()) / cellSize);
+            int row = (int) ((event.getY() - getPaddingTop() - labelHeight) / cellSize);
+            if (column >= 0 && row >= 0 && row < DAYS_PER_WEEK) {
+                int dayOfYear = column * DAYS_PER_WEEK + row - firstWeekday;
+                if (dayOfYear >= 0 && dayOfYear < values.length) {
+                    performClick();
+                    listener.onDayClick(year, dayOfYear);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Callback khi chọn một ngày
+     */
+    public interface OnDayClickListener {
+        /**
+         * @param dayOfYear chỉ số ngày trong năm, 0 = ngày 1/1
+         */
+        void onDayClick(int year, int dayOfYear);
+    }
+}
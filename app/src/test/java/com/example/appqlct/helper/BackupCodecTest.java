@@ -0,0 +1,131 @@
+package com.example.appqlct.helper;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.GeoPoint;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho BackupCodec: ghi một document thành dòng NDJSON rồi đọc lại đúng kiểu dữ liệu
+ * (Blob dùng android.util.Base64 và DocumentReference cần Firestore nên không kiểm tra ở đây)
+ */
+public class BackupCodecTest {
+
+    private static JsonObject encode(String collection, String id, Map<String, Object> data) throws IOException {
+        StringWriter out = new StringWriter();
+        BackupCodec.writeDocument(new JsonWriter(out), collection, id, data);
+        assertFalse("one line per document", out.toString().contains("\n"));
+        return JsonParser.parseString(out.toString()).getAsJsonObject();
+    }
+
+    private static Map<String, Object> roundTrip(Map<String, Object> data) throws IOException {
+        return BackupCodec.readData(null, encode("transactions", "t1", data));
+    }
+
+    @Test
+    public void writeDocument_writesCollectionAndId() throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("note", "Phở");
+        JsonObject line = encode("transactions", "abc", data);
+
+        assertEquals("transactions", line.get(BackupCodec.FIELD_COLLECTION).getAsString());
+        assertEquals("abc", line.get(BackupCodec.FIELD_ID).getAsString());
+        assertEquals("Phở", line.getAsJsonObject(BackupCodec.FIELD_DATA).get("note").getAsString());
+    }
+
+    @Test
+    public void roundTrip_keepsPrimitiveTypes() throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("note", "Cà phê");
+        data.put("isRecurring", true);
+        data.put("count", 42L);
+        data.put("rating", 5);
+        data.put("amount", 45000.5);
+        data.put("wholeAmount", 45000.0);
+        data.put("walletId", null);
+
+        Map<String, Object> restored = roundTrip(data);
+        assertEquals("Cà phê", restored.get("note"));
+        assertEquals(Boolean.TRUE, restored.get("isRecurring"));
+        assertEquals(42L, restored.get("count"));
+        assertEquals(5L, restored.get("rating"));
+        assertEquals(45000.5, restored.get("amount"));
+        // Số thực nguyên vẫn là Double để Firestore không đổi kiểu field
+        assertEquals(45000.0, restored.get("wholeAmount"));
+        assertTrue(restored.containsKey("walletId"));
+        assertNull(restored.get("walletId"));
+    }
+
+    @Test
+    public void roundTrip_restoresTimestampsAndDates() throws IOException {
+        Timestamp timestamp = new Timestamp(1700000000L, 123456789);
+        Date date = new Date(1690000000123L);
+        Map<String, Object> data = new HashMap<>();
+        data.put("createdAt", timestamp);
+        data.put("date", date);
+
+        Map<String, Object> restored = roundTrip(data);
+        assertEquals(timestamp, restored.get("createdAt"));
+        assertEquals(new Timestamp(date), restored.get("date"));
+    }
+
+    @Test
+    public void roundTrip_restoresGeoPoint() throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("location", new GeoPoint(21.0285, 105.8542));
+
+        GeoPoint restored = (GeoPoint) roundTrip(data).get("location");
+        assertEquals(21.0285, restored.getLatitude(), 0);
+        assertEquals(105.8542, restored.getLongitude(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void roundTrip_restoresNestedMapsAndLists() throws IOException {
+        Map<String, Object> month = new HashMap<>();
+        month.put("food", 1500000L);
+        month.put("bus", 250000.5);
+        Map<String, Object> amounts = new HashMap<>();
+        amounts.put("01", month);
+        List<Object> tags = new ArrayList<>(Arrays.asList("a", 2L, new Timestamp(10, 0)));
+        Map<String, Object> data = new HashMap<>();
+        data.put("amounts", amounts);
+        data.put("tags", tags);
+
+        Map<String, Object> restored = roundTrip(data);
+        assertEquals(amounts, restored.get("amounts"));
+        assertEquals(tags, restored.get("tags"));
+    }
+
+    @Test
+    public void readData_treatsUnknownTypeAsMap() {
+        JsonObject line = JsonParser.parseString(
+                "{\"collection\":\"x\",\"id\":\"1\",\"data\":{\"v\":{\"__type\":\"future\",\"n\":1}}}")
+                .getAsJsonObject();
+        Object value = BackupCodec.readData(null, line).get("v");
+        assertTrue(value instanceof Map);
+        assertEquals(1L, ((Map<?, ?>) value).get("n"));
+    }
+
+    @Test
+    public void readData_returnsNullWithoutDataObject() {
+        JsonObject line = JsonParser.parseString("{\"collection\":\"x\",\"id\":\"1\"}").getAsJsonObject();
+        assertNull(BackupCodec.readData(null, line));
+        JsonObject invalid = JsonParser.parseString("{\"collection\":\"x\",\"id\":\"1\",\"data\":[1]}").getAsJsonObject();
+        assertNull(BackupCodec.readData(null, invalid));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Transaction;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho DayBucketIndex: mở rộng khoảng ngày, truy vấn ngoài chỉ mục và put/remove cùng ID
+ */
+public class DayBucketIndexTest {
+    private static final double DELTA = 1e-6;
+
+    private static Date daysFromToday(int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+        return calendar.getTime();
+    }
+
+    private static Transaction expense(String id, double amount, String categoryId, Date date) {
+        Transaction transaction = new Transaction(id, "user", amount, categoryId, "", date, "expense");
+        transaction.setCategoryId(categoryId);
+        return transaction;
+    }
+
+    @Test
+    public void query_sumsExpensesAndIncomeInRange() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("a", 100, "food", daysFromToday(-2)));
+        index.put(expense("b", 50, "food", daysFromToday(-1)));
+        index.put(expense("c", 30, "bus", daysFromToday(0)));
+        index.put(new Transaction("d", "user", 1000, "salary", "", daysFromToday(-1), "income"));
+
+        DayBucketIndex.RangeSummary summary = index.query(daysFromToday(-1), daysFromToday(0));
+        assertEquals(80, summary.getTotalExpense(), DELTA);
+        assertEquals(1000, summary.getTotalIncome(), DELTA);
+        assertEquals(3, summary.getTransactionCount());
+        assertEquals(50, summary.getExpenseByCategory().get("food"), DELTA);
+        assertEquals(Integer.valueOf(1), summary.getCountByCategory().get("bus"));
+    }
+
+    @Test
+    public void put_sameIdReplacesPreviousValue() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("a", 100, "food", daysFromToday(-3)));
+        index.put(expense("a", 40, "bus", daysFromToday(-1)));
+
+        DayBucketIndex.RangeSummary summary = index.query(daysFromToday(-10), daysFromToday(0));
+        assertEquals(40, summary.getTotalExpense(), DELTA);
+        assertEquals(1, summary.getTransactionCount());
+        assertFalse(summary.getExpenseByCategory().containsKey("food"));
+        assertEquals(1, index.transactionsBetween(daysFromToday(-10), daysFromToday(0)).size());
+    }
+
+    @Test
+    public void put_keepsOldValueWhenTransactionIsMutatedInPlace() {
+        DayBucketIndex index = new DayBucketIndex();
+        Transaction transaction = expense("a", 100, "food", daysFromToday(-1));
+        index.put(transaction);
+
+        // Màn hình sửa giao dịch sửa trực tiếp object trước khi put lại
+        transaction.setAmount(25);
+        index.put(transaction);
+
+        assertEquals(25, index.query(daysFromToday(-1), daysFromToday(-1)).getTotalExpense(), DELTA);
+    }
+
+    @Test
+    public void remove_subtractsTransactionAndIgnoresUnknownIds() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("a", 100, "food", daysFromToday(-1)));
+        index.put(expense("b", 20, "food", daysFromToday(-1)));
+
+        index.remove("a");
+        index.remove("missing");
+
+        DayBucketIndex.RangeSummary summary = index.query(daysFromToday(-1), daysFromToday(-1));
+        assertEquals(20, summary.getTotalExpense(), DELTA);
+        assertEquals(Integer.valueOf(1), summary.getCountByCategory().get("food"));
+
+        index.remove("b");
+        assertTrue(index.query(daysFromToday(-1), daysFromToday(-1)).getExpenseByCategory().isEmpty());
+        assertTrue(index.transactionsBetween(daysFromToday(-1), daysFromToday(-1)).isEmpty());
+    }
+
+    @Test
+    public void put_growsIntoPastAndFuture() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("recent", 10, "food", daysFromToday(-1)));
+        index.put(expense("old", 200, "food", daysFromToday(-10 * 366)));
+        index.put(expense("future", 5, "food", daysFromToday(4 * 366)));
+
+        assertEquals(200, index.query(daysFromToday(-10 * 366), daysFromToday(-10 * 366)).getTotalExpense(), DELTA);
+        assertEquals(10, index.query(daysFromToday(-1), daysFromToday(-1)).getTotalExpense(), DELTA);
+        assertEquals(5, index.query(daysFromToday(4 * 366), daysFromToday(4 * 366)).getTotalExpense(), DELTA);
+        assertEquals(215, index.query(daysFromToday(-11 * 366), daysFromToday(5 * 366)).getTotalExpense(), DELTA);
+    }
+
+    @Test
+    public void query_outsideIndexReturnsEmptySummary() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("today", 100, "food", daysFromToday(0)));
+
+        // Bắt đầu sau ngày cuối của chỉ mục: không được kẹp về ngày cuối (hôm nay)
+        DayBucketIndex.RangeSummary future = index.query(daysFromToday(10), daysFromToday(20));
+        assertEquals(0, future.getTotalExpense(), DELTA);
+        assertEquals(0, future.getTransactionCount());
+        assertTrue(future.getExpenseByCategory().isEmpty());
+
+        DayBucketIndex.RangeSummary past = index.query(daysFromToday(-20 * 366), daysFromToday(-19 * 366));
+        assertEquals(0, past.getTotalExpense(), DELTA);
+
+        DayBucketIndex.RangeSummary reversed = index.query(daysFromToday(0), daysFromToday(-1));
+        assertEquals(0, reversed.getTransactionCount());
+    }
+
+    @Test
+    public void query_partiallyOverlappingRangeIsClamped() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("today", 100, "food", daysFromToday(0)));
+
+        assertEquals(100, index.query(daysFromToday(-1), daysFromToday(30)).getTotalExpense(), DELTA);
+    }
+
+    @Test
+    public void put_ignoresRecurringTemplatesAndMissingDates() {
+        DayBucketIndex index = new DayBucketIndex();
+        Transaction template = new Transaction("r", "user", 500, "rent", "", daysFromToday(-1), "expense", true);
+        index.put(template);
+        index.put(expense("n", 10, "food", null));
+
+        assertEquals(0, index.query(daysFromToday(-5), daysFromToday(0)).getTotalExpense(), DELTA);
+    }
+
+    @Test
+    public void expenseSeries_bucketsByWeek() {
+        DayBucketIndex index = new DayBucketIndex();
+        index.put(expense("a", 10, "food", daysFromToday(-13)));
+        index.put(expense("b", 20, "food", daysFromToday(-6)));
+        index.put(expense("c", 30, "bus", daysFromToday(0)));
+
+        double[] series = index.expenseSeries(daysFromToday(-13), daysFromToday(0), null, 7);
+        // Bucket [-13, -7] và [-6, 0]
+        assertArrayEquals(new double[]{10, 50}, series, DELTA);
+        double[] food = index.expenseSeries(daysFromToday(-13), daysFromToday(0), "food", 7);
+        assertArrayEquals(new double[]{10, 20}, food, DELTA);
+    }
+}
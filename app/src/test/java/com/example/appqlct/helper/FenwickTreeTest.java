@@ -0,0 +1,61 @@
+package com.example.appqlct.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho FenwickTree: tổng tiền tố, tổng khoảng và các chỉ số ngoài biên
+ */
+public class FenwickTreeTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void rangeSum_matchesNaiveSum() {
+        double[] values = {5, 0, 3.5, -2, 10, 7, 0, 1};
+        FenwickTree tree = new FenwickTree(values.length);
+        for (int i = 0; i < values.length; i++) {
+            tree.add(i, values[i]);
+        }
+
+        for (int from = 0; from < values.length; from++) {
+            for (int to = from; to < values.length; to++) {
+                double expected = 0;
+                for (int i = from; i <= to; i++) {
+                    expected += values[i];
+                }
+                assertEquals("range [" + from + ", " + to + "]", expected, tree.rangeSum(from, to), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void add_accumulatesAndCancelsOut() {
+        FenwickTree tree = new FenwickTree(10);
+        tree.add(4, 100);
+        tree.add(4, 50);
+        assertEquals(150, tree.rangeSum(4, 4), DELTA);
+
+        tree.add(4, -150);
+        assertEquals(0, tree.prefixSum(9), DELTA);
+    }
+
+    @Test
+    public void prefixSum_handlesOutOfRangeIndexes() {
+        FenwickTree tree = new FenwickTree(4);
+        tree.add(0, 1);
+        tree.add(3, 2);
+
+        assertEquals(0, tree.prefixSum(-1), DELTA);
+        assertEquals(3, tree.prefixSum(3), DELTA);
+        assertEquals(3, tree.prefixSum(100), DELTA);
+    }
+
+    @Test
+    public void rangeSum_emptyWhenToBeforeFrom() {
+        FenwickTree tree = new FenwickTree(4);
+        tree.add(1, 5);
+        assertEquals(0, tree.rangeSum(2, 1), DELTA);
+        assertEquals(4, tree.size());
+    }
+}
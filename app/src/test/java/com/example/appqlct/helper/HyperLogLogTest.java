@@ -0,0 +1,99 @@
+package com.example.appqlct.helper;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho HyperLogLog: registers được tạo giống functions/active-users.js (SHA-1, 64 bit đầu)
+ */
+public class HyperLogLogTest {
+    private static final int PRECISION = HyperLogLog.DEFAULT_PRECISION;
+
+    /**
+     * Ghi userId vào registers giống toRegister trong functions/active-users.js
+     */
+    private static void addUser(Map<String, Object> registers, String userId) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(userId.getBytes(StandardCharsets.UTF_8));
+        long hash = ByteBuffer.wrap(digest).getLong();
+        int index = (int) (hash >>> (64 - PRECISION));
+        long rest = hash << PRECISION;
+        int rank = Math.min(Long.numberOfLeadingZeros(rest), 64 - PRECISION) + 1;
+        String key = String.valueOf(index);
+        Object current = registers.get(key);
+        registers.put(key, Math.max(current == null ? 0 : (Integer) current, rank));
+    }
+
+    private static Map<String, Object> registersFor(int from, int to) throws NoSuchAlgorithmException {
+        Map<String, Object> registers = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            addUser(registers, "user-" + i);
+        }
+        return registers;
+    }
+
+    private static void assertWithinStandardErrors(long expected, long actual) {
+        double tolerance = 3 * HyperLogLog.standardError(PRECISION) * expected;
+        assertEquals("expected ~" + expected + " but was " + actual, expected, actual, tolerance);
+    }
+
+    @Test
+    public void empty_estimatesZero() {
+        assertEquals(0, HyperLogLog.fromMap(PRECISION, new HashMap<>()).estimate());
+        assertEquals(0, HyperLogLog.fromMap(null, null).estimate());
+    }
+
+    @Test
+    public void estimate_smallAndLargeCardinalities() throws NoSuchAlgorithmException {
+        for (int n : new int[]{50, 1000, 20000}) {
+            HyperLogLog hll = HyperLogLog.fromMap(PRECISION, registersFor(0, n));
+            assertWithinStandardErrors(n, hll.estimate());
+        }
+    }
+
+    @Test
+    public void estimate_ignoresDuplicates() throws NoSuchAlgorithmException {
+        Map<String, Object> registers = registersFor(0, 500);
+        long once = HyperLogLog.fromMap(PRECISION, registers).estimate();
+        for (int i = 0; i < 500; i++) {
+            addUser(registers, "user-" + i);
+        }
+
+        assertEquals(once, HyperLogLog.fromMap(PRECISION, registers).estimate());
+    }
+
+    @Test
+    public void merge_estimatesUnion() throws NoSuchAlgorithmException {
+        // Hai tháng có 3000 users chung, tổng cộng 8000 users khác nhau
+        HyperLogLog january = HyperLogLog.fromMap(PRECISION, registersFor(0, 5000));
+        HyperLogLog february = HyperLogLog.fromMap(PRECISION, registersFor(2000, 8000));
+
+        january.merge(february);
+
+        assertWithinStandardErrors(8000, january.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_rejectsDifferentPrecision() {
+        new HyperLogLog(PRECISION).merge(new HyperLogLog(PRECISION - 2));
+    }
+
+    @Test
+    public void fromMap_skipsInvalidEntries() throws NoSuchAlgorithmException {
+        Map<String, Object> registers = registersFor(0, 200);
+        long expected = HyperLogLog.fromMap(PRECISION, registers).estimate();
+        registers.put("-1", 30);
+        registers.put(String.valueOf(1 << PRECISION), 30);
+        registers.put("abc", 30);
+        registers.put("00", "not a number");
+
+        assertEquals(expected, HyperLogLog.fromMap(PRECISION, registers).estimate());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.appqlct.helper;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho LttbDownsampler: trường hợp không cần giảm điểm, cấu trúc kết quả và giữ đỉnh/đáy
+ */
+public class LttbDownsamplerTest {
+
+    private static double[] range(int size) {
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = i;
+        }
+        return x;
+    }
+
+    private static void assertAllIndices(int size, int[] selected) {
+        assertEquals(size, selected.length);
+        for (int i = 0; i < size; i++) {
+            assertEquals(i, selected[i]);
+        }
+    }
+
+    @Test
+    public void select_returnsAllPointsWhenNothingToDrop() {
+        double[] x = range(10);
+        double[] y = new double[10];
+
+        assertAllIndices(10, LttbDownsampler.select(x, y, 10));
+        assertAllIndices(10, LttbDownsampler.select(x, y, 50));
+        // Threshold < 3 không đủ chỗ cho điểm đầu, điểm cuối và một bucket
+        assertAllIndices(10, LttbDownsampler.select(x, y, 2));
+        assertAllIndices(0, LttbDownsampler.select(new double[0], new double[0], 5));
+    }
+
+    @Test
+    public void select_keepsEndpointsAndIncreasingIndices() {
+        Random random = new Random(7);
+        for (int size = 4; size <= 120; size++) {
+            double[] x = range(size);
+            double[] y = new double[size];
+            for (int i = 0; i < size; i++) {
+                y[i] = random.nextDouble() * 1000;
+            }
+            for (int threshold = 3; threshold < size; threshold++) {
+                int[] selected = LttbDownsampler.select(x, y, threshold);
+                String label = "size " + size + ", threshold " + threshold;
+
+                assertEquals(label, threshold, selected.length);
+                assertEquals(label, 0, selected[0]);
+                assertEquals(label, size - 1, selected[threshold - 1]);
+                for (int i = 1; i < threshold; i++) {
+                    assertTrue(label, selected[i] > selected[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void select_keepsSpikesAndDips() {
+        int size = 365;
+        double[] x = range(size);
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            y[i] = 100000 + (i % 7) * 1000;
+        }
+        y[123] = 5000000; // Ngày chi tiêu đột biến
+        y[250] = 0;       // Ngày không chi tiêu
+
+        int[] selected = LttbDownsampler.select(x, y, 30);
+
+        boolean hasSpike = false;
+        boolean hasDip = false;
+        for (int index : selected) {
+            hasSpike |= index == 123;
+            hasDip |= index == 250;
+        }
+        assertTrue(hasSpike);
+        assertTrue(hasDip);
+    }
+}
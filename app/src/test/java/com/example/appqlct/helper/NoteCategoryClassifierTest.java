@@ -0,0 +1,166 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Transaction;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho NoteCategoryClassifier: dự đoán, cập nhật khi sửa/xóa và đọc lại file mô hình
+ */
+public class NoteCategoryClassifierTest {
+    private static final List<String> CATEGORIES = Arrays.asList("food", "transport", "shopping");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File modelFile;
+    private NoteCategoryClassifier classifier;
+
+    @Before
+    public void setUp() throws IOException {
+        modelFile = new File(folder.getRoot(), "note_classifier_test.gz");
+        // Mô hình rỗng đã lưu (giống sau lần học đầu tiên của user chưa có giao dịch)
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(modelFile)), StandardCharsets.UTF_8)) {
+            writer.write("v1\n");
+        }
+        classifier = new NoteCategoryClassifier(modelFile);
+    }
+
+    private static Transaction expense(String categoryId, String note) {
+        Transaction transaction = new Transaction(null, "user", 50000, null, note, new Date(), "expense");
+        transaction.setCategoryId(categoryId);
+        return transaction;
+    }
+
+    private void learnSamples(NoteCategoryClassifier target) {
+        target.learn("food", "Phở bò");
+        target.learn("food", "bún chả");
+        target.learn("food", "cơm tấm sườn");
+        target.learn("transport", "Grab đi làm");
+        target.learn("transport", "đổ xăng xe");
+        target.learn("transport", "grab về nhà");
+    }
+
+    @Test
+    public void tokenize_normalizesVietnameseNotes() {
+        assertEquals(Arrays.asList("grab", "di", "lam"), NoteCategoryClassifier.tokenize("Grab  đi LÀM!"));
+        assertTrue(NoteCategoryClassifier.tokenize(null).isEmpty());
+        assertTrue(NoteCategoryClassifier.tokenize(" - ").isEmpty());
+    }
+
+    @Test
+    public void predict_picksMostLikelyAllowedCategory() {
+        learnSamples(classifier);
+
+        assertEquals("food", classifier.predict("phở gà", CATEGORIES));
+        assertEquals("transport", classifier.predict("GRAB", CATEGORIES));
+        // Token chưa từng gặp thì không gợi ý
+        assertNull(classifier.predict("tiền điện", CATEGORIES));
+        // Chỉ xét các category được phép
+        assertNotEquals("food", classifier.predict("phở", Arrays.asList("transport", "shopping")));
+    }
+
+    @Test
+    public void predict_needsMinimumDocuments() {
+        classifier.learn("food", "phở bò");
+        classifier.learn("food", "phở gà");
+        classifier.learn("transport", "grab");
+
+        assertNull(classifier.predict("phở", CATEGORIES));
+    }
+
+    @Test
+    public void learn_isIgnoredUntilModelIsLoaded() {
+        File missing = new File(folder.getRoot(), "missing.gz");
+        NoteCategoryClassifier notLoaded = new NoteCategoryClassifier(missing);
+        learnSamples(notLoaded);
+        learnSamples(notLoaded);
+
+        assertNull(notLoaded.predict("phở", CATEGORIES));
+        assertFalse(missing.exists());
+    }
+
+    @Test
+    public void relearn_movesNoteToNewCategory() {
+        learnSamples(classifier);
+        classifier.learn("food", "siêu thị");
+        classifier.learn("food", "siêu thị");
+        assertEquals("food", classifier.predict("siêu thị", CATEGORIES));
+
+        classifier.relearn("food", "siêu thị", "shopping", "siêu thị");
+        classifier.relearn("food", "siêu thị", "shopping", "siêu thị");
+
+        assertEquals("shopping", classifier.predict("siêu thị", CATEGORIES));
+    }
+
+    @Test
+    public void forgetAndBulkRelearn_removeDeletedNotes() {
+        learnSamples(classifier);
+        Transaction parking = expense("transport", "gửi xe");
+        classifier.learn(parking.getCategoryId(), parking.getNote());
+        assertEquals("transport", classifier.predict("gửi xe", CATEGORIES));
+
+        classifier.forget(parking);
+        // "xe" vẫn còn trong "đổ xăng xe" nhưng "gui" đã bị bỏ khỏi mô hình
+        assertEquals("transport", classifier.predict("xe", CATEGORIES));
+        assertEquals(classifier.predict("xe", CATEGORIES), classifier.predict("gửi xe", CATEGORIES));
+
+        List<Transaction> food = Arrays.asList(expense("food", "Phở bò"), expense("food", "bún chả"),
+                expense("food", "cơm tấm sườn"));
+        classifier.relearn(food, Collections.emptyList());
+
+        assertNull(classifier.predict("phở", CATEGORIES));
+    }
+
+    @Test
+    public void bulkRelearn_skipsIncomeAndRecurringTransactions() {
+        learnSamples(classifier);
+        Transaction salary = expense("food", "phở");
+        salary.setType("income");
+        Transaction subscription = expense("food", "phở");
+        subscription.setRecurring(true);
+
+        classifier.relearn(Arrays.asList(expense("shopping", "áo"), expense("shopping", "áo")),
+                Arrays.asList(salary, subscription));
+
+        assertEquals("food", classifier.predict("phở", CATEGORIES));
+        assertNull(classifier.predict("áo", CATEGORIES));
+    }
+
+    @Test
+    public void save_writesModelThatCanBeReloaded() throws InterruptedException {
+        learnSamples(classifier);
+
+        // Mô hình được ghi ở background, đợi file mới thay thế file cũ
+        NoteCategoryClassifier reloaded = null;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            NoteCategoryClassifier candidate = new NoteCategoryClassifier(modelFile);
+            if ("transport".equals(candidate.predict("grab", CATEGORIES))) {
+                reloaded = candidate;
+                break;
+            }
+            Thread.sleep(50);
+        }
+
+        assertNotNull("model was not written", reloaded);
+        assertEquals("food", reloaded.predict("phở", CATEGORIES));
+    }
+}
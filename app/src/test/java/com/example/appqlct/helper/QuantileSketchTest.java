@@ -0,0 +1,123 @@
+package com.example.appqlct.helper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho QuantileSketch: sai số tương đối, giá trị 0, gộp sketch và đọc từ map Firestore
+ */
+public class QuantileSketchTest {
+    private static final double[] QUANTILES = {0, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+
+    private static void assertWithinRelativeAccuracy(double expected, double actual) {
+        assertEquals("expected " + expected + " but was " + actual,
+                expected, actual, expected * QuantileSketch.RELATIVE_ACCURACY + 1e-9);
+    }
+
+    @Test
+    public void empty_returnsZero() {
+        QuantileSketch sketch = new QuantileSketch();
+
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.quantile(0.5), 0);
+        assertEquals(0, sketch.getCount());
+    }
+
+    @Test
+    public void quantile_staysWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[5000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // Số tiền trải từ vài nghìn đến vài chục triệu
+            values[i] = Math.round(Math.exp(8 + random.nextDouble() * 9));
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : QUANTILES) {
+            double exact = values[(int) Math.floor(q * (values.length - 1))];
+            assertWithinRelativeAccuracy(exact, sketch.quantile(q));
+        }
+        assertEquals(values.length, sketch.getCount());
+    }
+
+    @Test
+    public void zeroValues_areCountedBelowPositiveValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 6; i++) {
+            sketch.add(0);
+        }
+        for (int i = 0; i < 4; i++) {
+            sketch.add(100000);
+        }
+
+        assertEquals(0, sketch.quantile(0.5), 0);
+        assertWithinRelativeAccuracy(100000, sketch.quantile(0.9));
+        assertEquals(400000, sketch.getSum(), 0);
+    }
+
+    @Test
+    public void merge_matchesSingleSketchRegardlessOfOrder() {
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        for (int i = 1; i <= 1000; i++) {
+            double value = i * 1500;
+            all.add(value);
+            (i % 3 == 0 ? a : b).add(value);
+        }
+
+        QuantileSketch ab = new QuantileSketch();
+        ab.merge(a);
+        ab.merge(b);
+        QuantileSketch ba = new QuantileSketch();
+        ba.merge(b);
+        ba.merge(a);
+
+        for (double q : QUANTILES) {
+            assertEquals(all.quantile(q), ab.quantile(q), 0);
+            assertEquals(all.quantile(q), ba.quantile(q), 0);
+        }
+        assertEquals(all.getCount(), ab.getCount());
+        assertEquals(all.getSum(), ba.getSum(), 1e-6);
+    }
+
+    @Test
+    public void fromMap_skipsEmptyAndInvalidBinsAndRecomputesCount() {
+        QuantileSketch reference = new QuantileSketch();
+        reference.add(50000);
+        reference.add(50000);
+        reference.add(200000);
+
+        Map<String, Object> bins = new HashMap<>();
+        bins.put(String.valueOf(index(50000)), 2L);
+        bins.put(String.valueOf(index(200000)), 1L);
+        bins.put(String.valueOf(index(9000000)), 0L); // Bucket đã bị trừ hết
+        bins.put("not-a-number", 5L);
+        Map<String, Object> map = new HashMap<>();
+        map.put("count", 99L); // count lệch so với bins
+        map.put("sum", 300000.0);
+        map.put("zero", 1L);
+        map.put("bins", bins);
+
+        QuantileSketch sketch = QuantileSketch.fromMap(map);
+
+        assertEquals(4, sketch.getCount());
+        assertEquals(300000, sketch.getSum(), 0);
+        assertEquals(0, sketch.quantile(0), 0);
+        assertEquals(reference.quantile(1), sketch.quantile(1), 0);
+        assertTrue(QuantileSketch.fromMap(null).isEmpty());
+    }
+
+    private static int index(double value) {
+        double gamma = (1 + QuantileSketch.RELATIVE_ACCURACY) / (1 - QuantileSketch.RELATIVE_ACCURACY);
+        return (int) Math.ceil(Math.log(value) / Math.log(gamma));
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.appqlct.helper;
+
+import android.content.SharedPreferences;
+
+import com.example.appqlct.model.Transaction;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho RecurringPatternDetector: điều kiện của mẫu, cập nhật tăng dần và các mẫu bị loại
+ */
+public class RecurringPatternDetectorTest {
+    private static final Date NOW = date(2024, Calendar.JUNE, 15);
+
+    private final RecurringPatternDetector detector = new RecurringPatternDetector(
+            (SharedPreferences) null, "dismissed_test"); // Chỉ gọi apply nên không cần SharedPreferences
+
+    private static Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 10, 0);
+        return calendar.getTime();
+    }
+
+    private static Transaction expense(String id, String categoryId, double amount, int month, int day) {
+        Transaction transaction = new Transaction(id, "user", amount, categoryId, "note " + id,
+                date(2024, month, day), "expense");
+        transaction.setCategoryId(categoryId);
+        return transaction;
+    }
+
+    private List<RecurringPatternDetector.RecurringPattern> apply(Transaction... upserted) {
+        return detector.apply(Arrays.asList(upserted), Collections.emptyList(), new HashSet<>(), NOW);
+    }
+
+    private List<RecurringPatternDetector.RecurringPattern> remove(String... ids) {
+        return detector.apply(Collections.emptyList(), Arrays.asList(ids), new HashSet<>(), NOW);
+    }
+
+    @Test
+    public void detectsMonthlyExpenseWithSimilarAmountAndDay() {
+        List<RecurringPatternDetector.RecurringPattern> patterns = apply(
+                expense("a", "rent", 5000000, Calendar.MARCH, 2),
+                expense("b", "rent", 5100000, Calendar.APRIL, 1),
+                expense("c", "rent", 4900000, Calendar.MAY, 4),
+                expense("d", "rent", 5000000, Calendar.JUNE, 3),
+                expense("e", "food", 45000, Calendar.JUNE, 3));
+
+        assertEquals(1, patterns.size());
+        RecurringPatternDetector.RecurringPattern pattern = patterns.get(0);
+        assertEquals("rent", pattern.getCategoryId());
+        assertEquals(5000000, pattern.getAmount(), 0);
+        assertEquals(3, pattern.getDayOfMonth());
+        assertEquals(4, pattern.getMonthCount());
+        Calendar nextMonth = Calendar.getInstance();
+        nextMonth.clear();
+        nextMonth.set(2024, Calendar.JULY, 1);
+        assertEquals(nextMonth.getTime(), pattern.getNextMonthStart());
+        assertEquals("rent|5000000", pattern.getKey());
+    }
+
+    @Test
+    public void requiresConsecutiveMonthsWithinTolerance() {
+        // Thiếu tháng 4 nên chuỗi chỉ có 2 tháng
+        assertTrue(apply(
+                expense("a", "gym", 300000, Calendar.MARCH, 10),
+                expense("b", "gym", 300000, Calendar.MAY, 10),
+                expense("c", "gym", 300000, Calendar.JUNE, 10)).isEmpty());
+        // Số tiền lệch hơn 10%
+        assertTrue(apply(
+                expense("d", "phone", 100000, Calendar.APRIL, 5),
+                expense("e", "phone", 150000, Calendar.MAY, 5),
+                expense("f", "phone", 100000, Calendar.JUNE, 5)).isEmpty());
+        // Ngày lệch quá MAX_DAY_DIFF
+        assertTrue(apply(
+                expense("g", "internet", 200000, Calendar.APRIL, 5),
+                expense("h", "internet", 200000, Calendar.MAY, 20),
+                expense("i", "internet", 200000, Calendar.JUNE, 5)).isEmpty());
+    }
+
+    @Test
+    public void endOfMonthAndStartOfNextMonthAreClose() {
+        List<RecurringPatternDetector.RecurringPattern> patterns = apply(
+                expense("a", "salary_fee", 20000, Calendar.MARCH, 30),
+                expense("b", "salary_fee", 20000, Calendar.APRIL, 2),
+                expense("c", "salary_fee", 20000, Calendar.MAY, 29));
+
+        assertEquals(1, patterns.size());
+        assertEquals(3, patterns.get(0).getMonthCount());
+    }
+
+    @Test
+    public void ignoresPatternsThatStoppedBeforeLastMonth() {
+        assertTrue(apply(
+                expense("a", "gym", 300000, Calendar.JANUARY, 10),
+                expense("b", "gym", 300000, Calendar.FEBRUARY, 10),
+                expense("c", "gym", 300000, Calendar.MARCH, 10),
+                expense("d", "gym", 300000, Calendar.APRIL, 10)).isEmpty());
+
+        assertEquals(1, apply(expense("e", "gym", 300000, Calendar.MAY, 10)).size());
+    }
+
+    @Test
+    public void skipsIncomeGeneratedCoveredAndDismissedPatterns() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int month = Calendar.APRIL; month <= Calendar.JUNE; month++) {
+            Transaction salary = expense("salary" + month, "salary", 15000000, month, 5);
+            salary.setType("income");
+            transactions.add(salary);
+            Transaction generated = expense("netflix" + month, "netflix", 260000, month, 5);
+            generated.setRecurringTransactionId("netflix_template");
+            transactions.add(generated);
+            transactions.add(expense("water" + month, "water", 120000, month, 8));
+            transactions.add(expense("rent" + month, "rent", 5000000, month, 1));
+        }
+        Transaction template = expense("water_template", "water", 125000, Calendar.JANUARY, 8);
+        template.setRecurring(true);
+        transactions.add(template);
+        Set<String> dismissed = new HashSet<>(Collections.singletonList("rent|5000000"));
+
+        assertTrue(detector.apply(transactions, Collections.emptyList(), dismissed, NOW).isEmpty());
+
+        // Xóa chi tiêu định kỳ thì mẫu tiền nước được đề xuất lại
+        List<RecurringPatternDetector.RecurringPattern> patterns = detector.apply(Collections.emptyList(),
+                Collections.singletonList("water_template"), dismissed, NOW);
+        assertEquals(1, patterns.size());
+        assertEquals("water", patterns.get(0).getCategoryId());
+        // Bỏ khỏi danh sách đã bỏ qua thì mẫu tiền nhà xuất hiện lại, sắp xếp theo số tiền giảm dần
+        patterns = remove();
+        assertEquals(2, patterns.size());
+        assertEquals("rent", patterns.get(0).getCategoryId());
+        assertEquals("water", patterns.get(1).getCategoryId());
+    }
+
+    @Test
+    public void updatesIncrementallyOnEditAndRemove() {
+        assertEquals(1, apply(
+                expense("a", "rent", 5000000, Calendar.APRIL, 1),
+                expense("b", "rent", 5000000, Calendar.MAY, 1),
+                expense("c", "rent", 5000000, Calendar.JUNE, 1)).size());
+
+        // Sửa số tiền tháng 5 làm đứt chuỗi
+        assertTrue(apply(expense("b", "rent", 8000000, Calendar.MAY, 1)).isEmpty());
+        assertEquals(1, apply(expense("b", "rent", 5000000, Calendar.MAY, 1)).size());
+
+        assertTrue(remove("c", "b").isEmpty());
+        assertTrue(apply(expense("a", "other", 5000000, Calendar.APRIL, 1)).isEmpty());
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Category;
+import com.example.appqlct.model.Transaction;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho phần đọc sao kê của StatementImporter: số tiền, ngày, CSV/OFX, ghi nợ/ghi có và tự gán danh mục
+ */
+public class StatementImporterTest {
+    private static final List<Category> CATEGORIES = Arrays.asList(
+            new Category("food", "Ăn uống", "🍔", "expense"),
+            new Category("eat_out", "Ăn uống ngoài", "🍜", "expense"),
+            new Category("transport", "Di chuyển", "🚗", "expense"),
+            new Category("other", "Khác", "📦", "expense"));
+
+    private static List<StatementImporter.StatementRow> rows(String content) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(content));
+        StatementImporter.RowSource source = StatementImporter.openRowSource(reader);
+        List<StatementImporter.StatementRow> rows = new ArrayList<>();
+        StatementImporter.StatementRow row;
+        while ((row = source.next()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Transaction> importAll(String content, StatementImporter.ImportResult result)
+            throws IOException {
+        StatementImporter.CategoryMatcher matcher = new StatementImporter.CategoryMatcher(CATEGORIES);
+        List<Transaction> transactions = new ArrayList<>();
+        for (StatementImporter.StatementRow row : rows(content)) {
+            result.rows++;
+            Transaction transaction = StatementImporter.toTransaction(row, "user", matcher, result);
+            if (transaction != null) transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    @Test
+    public void parseAmount_readsCommonFormats() {
+        assertEquals(1234567, StatementImporter.parseAmount("1.234.567"), 0);
+        assertEquals(1234567, StatementImporter.parseAmount("1,234,567"), 0);
+        assertEquals(1234567.5, StatementImporter.parseAmount("1,234,567.50"), 1e-9);
+        assertEquals(1234567.5, StatementImporter.parseAmount("1.234.567,50"), 1e-9);
+        assertEquals(50000, StatementImporter.parseAmount("50.000"), 0);
+        assertEquals(-50000, StatementImporter.parseAmount("-50000"), 0);
+        assertEquals(-50000, StatementImporter.parseAmount("(50.000)"), 0);
+        assertEquals(50000, StatementImporter.parseAmount("50 000 VND"), 0);
+        assertEquals(12.5, StatementImporter.parseAmount("12,5"), 1e-9);
+        assertTrue(Double.isNaN(StatementImporter.parseAmount("")));
+        assertTrue(Double.isNaN(StatementImporter.parseAmount("abc")));
+        assertTrue(Double.isNaN(StatementImporter.parseAmount(null)));
+    }
+
+    @Test
+    public void parseDate_acceptsSupportedPatternsOnly() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(StatementImporter.parseDate("05/03/2024"));
+        assertEquals(2024, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.MARCH, calendar.get(Calendar.MONTH));
+        assertEquals(5, calendar.get(Calendar.DAY_OF_MONTH));
+
+        assertEquals(StatementImporter.parseDate("2024-03-05"), StatementImporter.parseDate("20240305"));
+        assertNotNull(StatementImporter.parseDate("05/03/2024 14:30:00"));
+        assertNull(StatementImporter.parseDate("31/02/2024"));
+        assertNull(StatementImporter.parseDate("05/03/2024 abc"));
+        assertNull(StatementImporter.parseDate(null));
+    }
+
+    @Test
+    public void csv_skipsPreambleAndReadsQuotedMultilineFields() throws IOException {
+        String csv = "Ngân hàng ABC;Sao kê tháng 3\n"
+                + "Số tài khoản;0123456789\n"
+                + "Ngày giao dịch;Số tiền;Nội dung\n"
+                + "05/03/2024;-45.000;\"Phở bò\nHà Nội\"\n"
+                + "06/03/2024;-20.000;\"Grab \"\"đi làm\"\"\"\n";
+        List<StatementImporter.StatementRow> rows = rows(csv);
+
+        assertEquals(2, rows.size());
+        assertEquals("05/03/2024", rows.get(0).date);
+        assertEquals("-45.000", rows.get(0).amount);
+        assertEquals("Phở bò\nHà Nội", rows.get(0).note);
+        assertEquals("Grab \"đi làm\"", rows.get(1).note);
+    }
+
+    @Test
+    public void csv_debitAndCreditColumns_zeroDebitIsIncome() throws IOException {
+        String csv = "Date,Description,Debit,Credit\n"
+                + "05/03/2024,Pho bo,45000,0\n"
+                + "06/03/2024,Salary,0,10000000\n"
+                + "07/03/2024,Refund,,200000\n"
+                + "08/03/2024,Bus ticket,\"7,000\",\n";
+        StatementImporter.ImportResult result = new StatementImporter.ImportResult();
+        List<Transaction> transactions = importAll(csv, result);
+
+        assertEquals(2, transactions.size());
+        assertEquals(45000, transactions.get(0).getAmount(), 0);
+        assertEquals(7000, transactions.get(1).getAmount(), 0);
+        assertEquals(2, result.income);
+        assertEquals(0, result.invalid);
+    }
+
+    @Test
+    public void csv_zeroDebitFallsThroughToAmountColumn() throws IOException {
+        String csv = "Ngay;So tien ghi no;So tien;Ghi chu\n"
+                + "05/03/2024;0;-30000;Cafe\n"
+                + "06/03/2024;0;500000;Luong\n";
+        StatementImporter.ImportResult result = new StatementImporter.ImportResult();
+        List<Transaction> transactions = importAll(csv, result);
+
+        assertEquals(1, transactions.size());
+        assertEquals(30000, transactions.get(0).getAmount(), 0);
+        assertEquals(1, result.income);
+    }
+
+    @Test
+    public void csv_invalidDatesAreCounted() throws IOException {
+        String csv = "Date,Amount,Memo\n"
+                + "not a date,-1000,x\n"
+                + "05/03/2024,-1000,y\n";
+        StatementImporter.ImportResult result = new StatementImporter.ImportResult();
+        assertEquals(1, importAll(csv, result).size());
+        assertEquals(1, result.invalid);
+    }
+
+    @Test
+    public void ofx_readsStatementTransactions() throws IOException {
+        String ofx = "OFXHEADER:100\nDATA:OFXSGML\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>"
+                + "<STMTTRN><TRNTYPE>DEBIT<DTPOSTED>20240305120000<TRNAMT>-45000.00<NAME>PHO BO<MEMO>Pho bo Ha Noi</STMTTRN>\n"
+                + "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20240306\n<TRNAMT>1000000\n<NAME>LUONG\n</STMTTRN>\n"
+                + "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>";
+        List<StatementImporter.StatementRow> rows = rows(ofx);
+
+        assertEquals(2, rows.size());
+        assertEquals("20240305", rows.get(0).date);
+        assertEquals("-45000.00", rows.get(0).amount);
+        assertEquals("Pho bo Ha Noi", rows.get(0).note);
+        assertEquals("LUONG", rows.get(1).note);
+
+        StatementImporter.ImportResult result = new StatementImporter.ImportResult();
+        List<Transaction> transactions = importAll(ofx, result);
+        assertEquals(1, transactions.size());
+        assertEquals(45000, transactions.get(0).getAmount(), 0);
+        assertEquals(1, result.income);
+    }
+
+    @Test
+    public void ofx_readsSeveralTransactionsOnOneLine() throws IOException {
+        String ofx = "<OFX><BANKTRANLIST>"
+                + "<STMTTRN><DTPOSTED>20240301<TRNAMT>-10000<NAME>A</STMTTRN>"
+                + "<STMTTRN><DTPOSTED>20240302<TRNAMT>-20000<NAME>B</STMTTRN>"
+                + "<STMTTRN><DTPOSTED>20240303<TRNAMT>-30000<NAME>C</STMTTRN>"
+                + "</BANKTRANLIST></OFX>";
+        List<StatementImporter.StatementRow> rows = rows(ofx);
+
+        assertEquals(3, rows.size());
+        assertEquals("20240302", rows.get(1).date);
+        assertEquals("-30000", rows.get(2).amount);
+        assertEquals("C", rows.get(2).note);
+    }
+
+    @Test
+    public void categoryMatcher_prefersCategoryColumnThenLongestNameInNote() {
+        StatementImporter.CategoryMatcher matcher = new StatementImporter.CategoryMatcher(CATEGORIES);
+
+        assertEquals("transport", matcher.match("DI CHUYỂN", "an uong").getId());
+        assertEquals("eat_out", matcher.match(null, "Thanh toan an uong ngoai cuoi tuan").getId());
+        assertEquals("food", matcher.match("", "an uong tai nha").getId());
+        assertEquals("other", matcher.match("Unknown", "chuyen khoan").getId());
+    }
+
+    @Test
+    public void toTransaction_assignsCategoryIdAndExpenseType() {
+        StatementImporter.StatementRow row = new StatementImporter.StatementRow();
+        row.date = "05/03/2024";
+        row.amount = "-120.000";
+        row.note = "  Grab di chuyen  ";
+        StatementImporter.ImportResult result = new StatementImporter.ImportResult();
+
+        Transaction transaction = StatementImporter.toTransaction(row, "user",
+                new StatementImporter.CategoryMatcher(CATEGORIES), result);
+        assertNotNull(transaction);
+        assertEquals("transport", transaction.getCategoryId());
+        assertEquals("Di chuyển", transaction.getCategory());
+        assertEquals("expense", transaction.getType());
+        assertEquals("Grab di chuyen", transaction.getNote());
+        assertEquals(120000, transaction.getAmount(), 0);
+        assertEquals("user", transaction.getUserId());
+        assertTrue(transaction.getDate().before(new Date()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.appqlct.helper;
+
+import com.example.appqlct.model.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test cho TransactionSearchIndex: từ khóa có dấu/không dấu, tiền tố ngắn và điều kiện số tiền
+ */
+public class TransactionSearchIndexTest {
+    private TransactionSearchIndex index;
+
+    private static Transaction transaction(String id, double amount, String note) {
+        return new Transaction(id, "user", amount, "food", note, new Date(), "expense");
+    }
+
+    private static List<String> ids(List<Transaction> transactions) {
+        List<String> ids = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            ids.add(transaction.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static List<String> list(String... ids) {
+        List<String> result = new ArrayList<>();
+        Collections.addAll(result, ids);
+        return result;
+    }
+
+    @Before
+    public void setUp() {
+        index = new TransactionSearchIndex();
+        index.put(transaction("pho", 45000, "Phở bò Hà Nội"));
+        index.put(transaction("coffee", 1500, "Cà phê sáng"));
+        index.put(transaction("grab", 120000, "Grab đi làm"));
+        index.put(transaction("rent", 3500000, "Tiền nhà tháng 5"));
+        index.put(transaction("market", 250000, "Đi chợ cuối tuần"));
+    }
+
+    @Test
+    public void search_ignoresDiacriticsAndCase() {
+        assertEquals(list("pho"), ids(index.search("pho bo")));
+        assertEquals(list("pho"), ids(index.search("PHỞ Bò")));
+        assertEquals(list("market"), ids(index.search("cho")));
+        assertEquals(list("grab", "market"), ids(index.search("đi")));
+    }
+
+    @Test
+    public void search_shortKeywordsMatchWordPrefixes() {
+        assertEquals(list("coffee", "market"), ids(index.search("c")));
+        assertEquals(list("rent"), ids(index.search("th")));
+        assertEquals(list("market"), ids(index.search("di ch")));
+        assertTrue(index.search("xy").isEmpty());
+    }
+
+    @Test
+    public void search_requiresEveryKeyword() {
+        assertEquals(list("grab"), ids(index.search("grab lam")));
+        assertTrue(index.search("grab cho").isEmpty());
+        assertTrue(index.search("pho hanoi").isEmpty());
+    }
+
+    @Test
+    public void search_filtersByAmountRangeAndBounds() {
+        assertEquals(list("grab", "market"), ids(index.search("100000-300000")));
+        assertEquals(list("grab", "market"), ids(index.search("100k-300k")));
+        assertEquals(list("market", "rent"), ids(index.search(">200k")));
+        assertEquals(list("coffee", "pho"), ids(index.search("<50.000")));
+        assertEquals(list("coffee", "pho"), ids(index.search("<=45000")));
+        assertEquals(list("market"), ids(index.search("di >200k")));
+        assertTrue(index.search("300k-100k").isEmpty());
+    }
+
+    @Test
+    public void search_acceptsDecimalThousands() {
+        assertEquals(list("coffee"), ids(index.search("1.5k-2k")));
+        assertEquals(list("coffee"), ids(index.search("1,5k-1,5k")));
+    }
+
+    @Test
+    public void parseAmount_handlesSeparatorsAndSuffix() {
+        assertEquals(1500, TransactionSearchIndex.parseAmount("1.5k"), 0);
+        assertEquals(1500, TransactionSearchIndex.parseAmount("1,5k"), 0);
+        assertEquals(1250, TransactionSearchIndex.parseAmount("1.25k"), 0);
+        assertEquals(200000, TransactionSearchIndex.parseAmount("200k"), 0);
+        assertEquals(1500000, TransactionSearchIndex.parseAmount("1.500k"), 0);
+        assertEquals(50000, TransactionSearchIndex.parseAmount("50.000"), 0);
+        assertEquals(1234567, TransactionSearchIndex.parseAmount("1.234.567"), 0);
+        assertEquals(1234567, TransactionSearchIndex.parseAmount("1,234,567"), 0);
+    }
+
+    @Test
+    public void putAndRemove_keepIndexInSync() {
+        index.put(transaction("pho", 45000, "Bún chả"));
+        assertTrue(index.search("pho bo").isEmpty());
+        assertEquals(list("pho"), ids(index.search("bun cha")));
+
+        index.remove("pho");
+        assertTrue(index.search("bun").isEmpty());
+        assertTrue(index.search("40k-50k").isEmpty());
+        assertEquals(4, index.search("").size());
+    }
+}
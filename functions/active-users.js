@@ -0,0 +1,140 @@
+/**
+ * Đếm số users hoạt động (có giao dịch) theo tháng bằng HyperLogLog (collection active_users)
+ * - active_users/{yyyyMM}: registers của toàn bộ users trong tháng
+ * - active_users/{yyyyMM}/categories/{categoryDocId(categoryKey)}: registers theo category, categoryKey
+ *   gốc nằm trong field categoryKey (tên danh mục cũ có thể chứa "/" nên không dùng làm ID document)
+ * Mỗi document có tối đa 2^PRECISION registers dù có bao nhiêu users, sai số chuẩn ~1.04/sqrt(2^PRECISION)
+ * Register chỉ tăng (lấy max) nên giao dịch bị xóa sau đó vẫn được tính là đã hoạt động trong tháng.
+ * HyperLogLog.java trong app ước lượng số users từ các registers này.
+ */
+const crypto = require('crypto');
+const admin = require('firebase-admin');
+const { monthKey, monthBounds } = require('./spending-rollup');
+const { getArchivedTransactions } = require('./transaction-archives');
+
+const COLLECTION_ACTIVE_USERS = 'active_users';
+const PRECISION = 10;
+
+function toDate(value) {
+  if (!value) return null;
+  if (typeof value.toDate === 'function') return value.toDate();
+  if (value instanceof Date) return value;
+  return null;
+}
+
+/**
+ * Vị trí register và giá trị (số bit 0 đầu tiên + 1) của một userId
+ */
+function registerOf(userId) {
+  const hash = crypto.createHash('sha1').update(userId).digest().readBigUInt64BE(0);
+  const index = Number(hash >> BigInt(64 - PRECISION));
+  const rest = hash & ((1n << BigInt(64 - PRECISION)) - 1n);
+  let rank = 1;
+  for (let bit = 64 - PRECISION - 1; bit >= 0 && ((rest >> BigInt(bit)) & 1n) === 0n; bit--) {
+    rank++;
+  }
+  return { index: String(index), rank };
+}
+
+/**
+ * ID document an toàn cho một category (hash của categoryKey)
+ */
+function categoryDocId(categoryKey) {
+  return crypto.createHash('sha1').update(categoryKey).digest('hex');
+}
+
+/**
+ * Giao dịch được tính là hoạt động: mọi giao dịch thực tế (không phải giao dịch định kỳ gốc)
+ */
+function toActivityEntry(snap) {
+  if (!snap.exists) return null;
+  const data = snap.data();
+  const date = toDate(data.date);
+  if (!data.userId || !date || data.isRecurring === true) {
+    return null;
+  }
+  return {
+    month: monthKey(date),
+    userId: data.userId,
+    categoryKey: data.categoryId || data.category || 'unknown'
+  };
+}
+
+function needsUpdate(snap, register) {
+  const current = snap.exists ? Number(snap.get(`registers.${register.index}`)) || 0 : 0;
+  return register.rank > current;
+}
+
+/**
+ * Ghi register của user vào document tháng và document category nếu lớn hơn giá trị hiện có
+ * Phần lớn lần ghi không làm tăng register nào nên chỉ tốn 2 lần đọc, không ghi
+ */
+async function recordActivity(db, entry) {
+  const register = registerOf(entry.userId);
+  const monthRef = db.collection(COLLECTION_ACTIVE_USERS).doc(entry.month);
+  const categoryRef = monthRef.collection('categories').doc(categoryDocId(entry.categoryKey));
+
+  const [monthSnap, categorySnap] = await db.getAll(monthRef, categoryRef);
+  if (!needsUpdate(monthSnap, register) && !needsUpdate(categorySnap, register)) {
+    return;
+  }
+
+  await db.runTransaction(async (transaction) => {
+    const [month, category] = await transaction.getAll(monthRef, categoryRef);
+    const data = {
+      precision: PRECISION,
+      registers: { [register.index]: register.rank },
+      updatedAt: admin.firestore.FieldValue.serverTimestamp()
+    };
+    if (needsUpdate(month, register)) {
+      transaction.set(monthRef, data, { merge: true });
+    }
+    if (needsUpdate(category, register)) {
+      transaction.set(categoryRef, Object.assign({ categoryKey: entry.categoryKey }, data), { merge: true });
+    }
+  });
+}
+
+/**
+ * Tính lại registers của một tháng từ transactions và transaction_archives
+ * @returns số giao dịch đã đọc (kể cả giao dịch đã lưu trữ)
+ */
+async function rebuildActiveUsersMonth(db, key) {
+  const monthRef = db.collection(COLLECTION_ACTIVE_USERS).doc(key);
+  await db.recursiveDelete(monthRef);
+
+  const { start, end } = monthBounds(key);
+  const snapshot = await db.collection('transactions')
+    .where('date', '>=', start)
+    .where('date', '<', end)
+    .get();
+  const archived = await getArchivedTransactions(db, start, end);
+  const docs = snapshot.docs.concat(archived);
+
+  const merge = (registers, userId) => {
+    const register = registerOf(userId);
+    registers[register.index] = Math.max(registers[register.index] || 0, register.rank);
+  };
+  const monthRegisters = {};
+  const categoryRegisters = {};
+  docs.forEach((doc) => {
+    const entry = toActivityEntry(doc);
+    // Archive theo tháng của thiết bị nên có thể lệch múi giờ ở biên tháng
+    if (!entry || entry.month !== key) return;
+    merge(monthRegisters, entry.userId);
+    categoryRegisters[entry.categoryKey] = categoryRegisters[entry.categoryKey] || {};
+    merge(categoryRegisters[entry.categoryKey], entry.userId);
+  });
+
+  const updatedAt = admin.firestore.FieldValue.serverTimestamp();
+  const writer = db.bulkWriter();
+  writer.set(monthRef, { precision: PRECISION, registers: monthRegisters, updatedAt });
+  Object.entries(categoryRegisters).forEach(([categoryKey, registers]) => {
+    writer.set(monthRef.collection('categories').doc(categoryDocId(categoryKey)),
+      { categoryKey, precision: PRECISION, registers, updatedAt });
+  });
+  await writer.close();
+  return docs.length;
+}
+
+module.exports = { recordActivity, rebuildActiveUsersMonth, toActivityEntry };
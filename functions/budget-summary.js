@@ -0,0 +1,71 @@
+/**
+ * Tổng hợp ngân sách theo năm của một user (collection budget_summaries)
+ * Document {userId}_{yyyy}: amounts["MM"][categoryId] = số tiền, mỗi category/tháng chỉ lấy
+ * budget mới nhất (dựa vào updatedAt hoặc createdAt) giống cách app loại bỏ duplicate
+ * Budget cũ chưa có categoryId được ghi theo categoryName (app tự quy về ID khi đọc)
+ */
+const admin = require('firebase-admin');
+
+const COLLECTION_BUDGETS = 'budgets';
+const COLLECTION_BUDGET_SUMMARIES = 'budget_summaries';
+
+function summaryId(userId, year) {
+  return `${userId}_${year}`;
+}
+
+function toMillis(value) {
+  if (!value) return 0;
+  if (typeof value.toMillis === 'function') return value.toMillis();
+  if (value instanceof Date) return value.getTime();
+  return 0;
+}
+
+function buildBudgetSummary(userId, year, docs) {
+  const newest = {};
+  docs.forEach((doc) => {
+    const data = doc.data();
+    const month = Number(data.month);
+    const categoryKey = data.categoryId || data.categoryName;
+    if (!categoryKey || !(month >= 1 && month <= 12)) return;
+
+    const slot = `${month}|${categoryKey}`;
+    const time = toMillis(data.updatedAt || data.createdAt);
+    if (!newest[slot] || time > newest[slot].time) {
+      newest[slot] = { month, categoryKey, amount: Number(data.amount) || 0, time };
+    }
+  });
+
+  const amounts = {};
+  let total = 0;
+  Object.values(newest).forEach(({ month, categoryKey, amount }) => {
+    const monthKey = String(month).padStart(2, '0');
+    amounts[monthKey] = amounts[monthKey] || {};
+    amounts[monthKey][categoryKey] = amount;
+    total += amount;
+  });
+
+  return { userId, year, amounts, total };
+}
+
+/**
+ * Tính lại tổng hợp năm của user từ budgets (tối đa 12 x số category documents)
+ * Xóa document tổng hợp khi năm đó không còn budget nào
+ */
+async function rebuildBudgetSummary(db, userId, year) {
+  const snapshot = await db.collection(COLLECTION_BUDGETS)
+    .where('userId', '==', userId)
+    .where('year', '==', year)
+    .get();
+
+  const summaryRef = db.collection(COLLECTION_BUDGET_SUMMARIES).doc(summaryId(userId, year));
+  if (snapshot.empty) {
+    await summaryRef.delete();
+    return;
+  }
+
+  const summary = buildBudgetSummary(userId, year, snapshot.docs);
+  summary.updatedAt = admin.firestore.FieldValue.serverTimestamp();
+  await summaryRef.set(summary);
+}
+
+module.exports = { rebuildBudgetSummary, summaryId };
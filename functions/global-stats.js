@@ -0,0 +1,133 @@
+/**
+ * Thống kê tổng toàn hệ thống (số giao dịch, tổng chi tiêu, tổng theo category) dạng sharded counter
+ * global_stats/totals/shards/{n}: mỗi lần ghi chọn ngẫu nhiên một trong GLOBAL_STATS_SHARDS shard và
+ * tăng bằng FieldValue.increment, nên tốc độ ghi tối đa gấp GLOBAL_STATS_SHARDS lần giới hạn ~1 lần ghi/giây
+ * của một document. Khi đọc, app cộng tất cả shard (không phụ thuộc số shard hiện tại nên có thể
+ * tăng/giảm GLOBAL_STATS_SHARDS mà không cần chuyển dữ liệu).
+ */
+const zlib = require('zlib');
+const admin = require('firebase-admin');
+
+const COLLECTION_GLOBAL_STATS = 'global_stats';
+const TOTALS_DOC = 'totals';
+const GLOBAL_STATS_SHARDS = Number(process.env.GLOBAL_STATS_SHARDS) || 20;
+
+function shardsRef(db, root = TOTALS_DOC) {
+  return db.collection(COLLECTION_GLOBAL_STATS).doc(root).collection('shards');
+}
+
+/**
+ * Giao dịch được tính vào thống kê: mọi giao dịch thực tế (không phải giao dịch định kỳ gốc)
+ */
+function toStatsEntry(snap) {
+  if (!snap.exists) return null;
+  const data = snap.data();
+  const amount = Number(data.amount);
+  if (data.isRecurring === true || !(amount >= 0)) {
+    return null;
+  }
+  return {
+    type: data.type === 'expense' ? 'expense' : 'income',
+    amount,
+    categoryKey: data.categoryId || data.category || 'unknown'
+  };
+}
+
+/**
+ * Cộng dồn thay đổi của một giao dịch (sign = 1 thêm, -1 bớt) vào object delta dạng số
+ */
+function addToDelta(delta, entry, sign) {
+  delta.transactionCount = (delta.transactionCount || 0) + sign;
+  if (entry.type !== 'expense') return;
+  delta.expenseCount = (delta.expenseCount || 0) + sign;
+  delta.expenseTotal = (delta.expenseTotal || 0) + sign * entry.amount;
+  delta.categories = delta.categories || {};
+  const category = delta.categories[entry.categoryKey] || { count: 0, total: 0 };
+  category.count += sign;
+  category.total += sign * entry.amount;
+  delta.categories[entry.categoryKey] = category;
+}
+
+/**
+ * Chuyển delta dạng số sang FieldValue.increment, bỏ các giá trị bằng 0
+ */
+function toIncrements(delta) {
+  const increment = admin.firestore.FieldValue.increment;
+  const result = {};
+  Object.entries(delta).forEach(([key, value]) => {
+    if (typeof value === 'number') {
+      if (value !== 0) result[key] = increment(value);
+    } else {
+      const nested = toIncrements(value);
+      if (Object.keys(nested).length > 0) result[key] = nested;
+    }
+  });
+  return result;
+}
+
+/**
+ * Ghi delta vào một shard ngẫu nhiên
+ */
+async function incrementRandomShard(db, delta, shardCount = GLOBAL_STATS_SHARDS, root = TOTALS_DOC) {
+  const increments = toIncrements(delta);
+  if (Object.keys(increments).length === 0) return;
+  const shard = String(Math.floor(Math.random() * shardCount));
+  await shardsRef(db, root).doc(shard).set(increments, { merge: true });
+}
+
+async function applyStatsChange(db, before, after) {
+  const delta = {};
+  if (before) addToDelta(delta, before, -1);
+  if (after) addToDelta(delta, after, 1);
+  await incrementRandomShard(db, delta);
+}
+
+/**
+ * Tính lại thống kê từ transactions và transaction_archives (giao dịch đã lưu trữ vẫn được tính)
+ */
+async function rebuildGlobalStats(db) {
+  const delta = {};
+  const transactions = await db.collection('transactions')
+    .select('type', 'amount', 'categoryId', 'category', 'isRecurring')
+    .get();
+  transactions.docs.forEach((doc) => {
+    const entry = toStatsEntry(doc);
+    if (entry) addToDelta(delta, entry, 1);
+  });
+
+  // Định dạng nén của TransactionArchiver: JSON (gzip) gồm các mảng song song
+  const archives = await db.collection('transaction_archives').get();
+  archives.docs.forEach((doc) => {
+    const data = doc.get('data');
+    if (!data) return;
+    const packed = JSON.parse(zlib.gunzipSync(Buffer.from(data)).toString('utf8'));
+    (packed.amounts || []).forEach((amount, i) => {
+      const categoryIndex = packed.category ? packed.category[i] : -1;
+      const categoryId = categoryIndex >= 0 && packed.categoryIds ? packed.categoryIds[categoryIndex] : null;
+      const categoryName = categoryIndex >= 0 && packed.categoryNames ? packed.categoryNames[categoryIndex] : null;
+      addToDelta(delta, {
+        type: packed.types && packed.types[i] === 0 ? 'expense' : 'income',
+        amount,
+        categoryKey: categoryId || categoryName || 'unknown'
+      }, 1);
+    });
+  });
+
+  await db.recursiveDelete(db.collection(COLLECTION_GLOBAL_STATS).doc(TOTALS_DOC));
+  await shardsRef(db).doc('0').set(Object.assign({
+    transactionCount: 0,
+    expenseCount: 0,
+    expenseTotal: 0,
+    categories: {}
+  }, delta));
+  return { transactions: transactions.size, archives: archives.size };
+}
+
+module.exports = {
+  GLOBAL_STATS_SHARDS,
+  toStatsEntry,
+  applyStatsChange,
+  incrementRandomShard,
+  toIncrements,
+  rebuildGlobalStats
+};
@@ -1,5 +1,12 @@
 const functions = require('firebase-functions');
 const admin = require('firebase-admin');
+const { rebuildBudgetSummary } = require('./budget-summary');
+const { applyTransactionChange, toRollupEntry, monthKey } = require('./spending-rollup');
+const { updateUserLeaderboard, refreshCategoryLeaderboard } = require('./leaderboard');
+const { recordActivity, toActivityEntry } = require('./active-users');
+const { applyStatsChange, toStatsEntry } = require('./global-stats');
+const { applySampleChange, toStatsSample } = require('./spending-stats');
+const { applyWalletChange, toTransactionEntries, toTransferEntries, sameEntries } = require('./wallet-balances');
 
 admin.initializeApp();
 
@@ -68,3 +75,408 @@ exports.sendOTPEmail = functions.firestore
     return null;
   });
 
+
+const OTP_SWEEP_BATCH_SIZE = 500;
+
+/**
+ * Cloud Function dọn các mã OTP đã hết hạn
+ * TTL policy trên otp_codes.expiresAt (firestore.indexes.json) tự xóa document hết hạn nhưng
+ * có thể trễ tới 24 giờ; hàm này chạy mỗi giờ và xóa theo từng WriteBatch những document còn sót
+ */
+exports.sweepExpiredOTPs = functions.pubsub
+  .schedule('every 60 minutes')
+  .onRun(async (context) => {
+    const db = admin.firestore();
+    const now = admin.firestore.Timestamp.now();
+    let deleted = 0;
+
+    // eslint-disable-next-line no-constant-condition
+    while (true) {
+      const page = await db.collection('otp_codes')
+        .where('expiresAt', '<', now)
+        .limit(OTP_SWEEP_BATCH_SIZE)
+        .get();
+      if (page.empty) break;
+
+      const batch = db.batch();
+      page.docs.forEach((doc) => batch.delete(doc.ref));
+      await batch.commit();
+      deleted += page.size;
+
+      if (page.size < OTP_SWEEP_BATCH_SIZE) break;
+    }
+
+    console.log(`Swept ${deleted} expired OTP codes`);
+    return null;
+  });
+
+/**
+ * Cloud Function để admin thay đổi role của user
+ * Role được lưu vào custom claim "role" của Firebase Auth (firestore.rules đọc từ
+ * request.auth.token.role thay vì get() document users/{uid}) và đồng bộ vào Firestore
+ */
+exports.setUserRole = functions.https.onCall(async (data, context) => {
+  if (!context.auth) {
+    throw new functions.https.HttpsError('unauthenticated', 'Bạn cần đăng nhập');
+  }
+
+  const { uid, role } = data || {};
+  if (typeof uid !== 'string' || !uid || !['user', 'admin'].includes(role)) {
+    throw new functions.https.HttpsError(
+      'invalid-argument',
+      'uid và role (user/admin) là bắt buộc'
+    );
+  }
+
+  const db = admin.firestore();
+  // Admin cũ chưa có claim vẫn được xác thực qua document users (chỉ đọc ở server)
+  let callerIsAdmin = context.auth.token.role === 'admin';
+  if (!callerIsAdmin) {
+    const callerDoc = await db.collection('users').doc(context.auth.uid).get();
+    callerIsAdmin = callerDoc.exists && callerDoc.get('role') === 'admin';
+  }
+  if (!callerIsAdmin) {
+    throw new functions.https.HttpsError('permission-denied', 'Chỉ admin mới được đổi role');
+  }
+
+  try {
+    const userRecord = await admin.auth().getUser(uid);
+    const claims = Object.assign({}, userRecord.customClaims, { role });
+    await admin.auth().setCustomUserClaims(uid, claims);
+    await db.collection('users').doc(uid).set({ role }, { merge: true });
+
+    return { success: true, role };
+  } catch (error) {
+    console.error('Error setting user role:', error);
+    throw new functions.https.HttpsError(
+      'internal',
+      'Lỗi khi cập nhật role: ' + error.message
+    );
+  }
+});
+
+// Các collection chứa dữ liệu theo userId cần xóa theo khi user bị xóa
+const USER_OWNED_COLLECTIONS = ['transactions', 'transaction_archives', 'budgets', 'feedback',
+  'wallets', 'transfers'];
+// Dữ liệu dẫn xuất theo userId do các trigger ghi, xóa sau khi dữ liệu gốc đã xóa xong
+const USER_DERIVED_COLLECTIONS = ['wallet_balances', 'budget_summaries', 'spending_stats'];
+const PURGE_BATCH_SIZE = 500;
+
+/**
+ * Giao dịch/budget/chuyển khoản bị xóa do user đang bị xóa dây chuyền (đã có user_deletions/{uid})
+ * Các trigger ghi dữ liệu dẫn xuất theo user bỏ qua những lần xóa này, nếu không chúng có thể ghi lại
+ * wallet_balances, spending_stats... sau khi purgeDeletedUserData đã dọn xong
+ */
+async function isPurgedUserDeletion(db, change) {
+  if (change.after.exists || !change.before.exists) {
+    return false;
+  }
+  const userId = change.before.get('userId');
+  if (!userId) {
+    return false;
+  }
+  const job = await db.collection('user_deletions').doc(userId).get();
+  return job.exists;
+}
+
+/**
+ * Xóa user khỏi bảng xếp hạng của mọi tháng (kèm tổng chi tiêu tháng trong spending_rollups/{month}/users,
+ * để lần lấy lại top users sau đó không đưa user trở lại)
+ */
+async function purgeUserFromLeaderboards(db, uid) {
+  const months = await db.collection('leaderboards').get();
+  let removed = 0;
+  for (const monthDoc of months.docs) {
+    await db.collection('spending_rollups').doc(monthDoc.id).collection('users').doc(uid).delete();
+    const changed = await db.runTransaction(async (transaction) => {
+      const snap = await transaction.get(monthDoc.ref);
+      const users = snap.exists ? snap.get('users') || [] : [];
+      const remaining = users.filter((entry) => entry.userId !== uid);
+      if (remaining.length === users.length) return false;
+      transaction.update(monthDoc.ref, {
+        users: remaining,
+        updatedAt: admin.firestore.FieldValue.serverTimestamp()
+      });
+      return true;
+    });
+    if (changed) removed++;
+  }
+  return removed;
+}
+
+/**
+ * Cloud Function xóa dây chuyền dữ liệu của user đã bị xóa
+ * Trigger khi document users/{uid} bị xóa: xóa transactions (kể cả archive), budgets, feedback, ví của user
+ * theo từng trang (mỗi trang một WriteBatch) và ghi tiến độ vào user_deletions/{uid}
+ * Sau đó xóa dữ liệu dẫn xuất (số dư ví, tổng hợp ngân sách, thống kê chi tiêu, bảng xếp hạng); các trigger
+ * bỏ qua lần xóa của user đang bị xóa nên không ghi lại những dữ liệu này
+ * Query luôn lấy lại từ đầu nên chạy lại (retry) sẽ tiếp tục phần còn lại
+ */
+exports.purgeDeletedUserData = functions
+  .runWith({ timeoutSeconds: 540, memory: '512MB' })
+  .firestore
+  .document('users/{uid}')
+  .onDelete(async (snap, context) => {
+    const uid = context.params.uid;
+    const db = admin.firestore();
+    const jobRef = db.collection('user_deletions').doc(uid);
+
+    const collections = USER_OWNED_COLLECTIONS.concat(USER_DERIVED_COLLECTIONS);
+    const deleted = { leaderboards: 0 };
+    collections.forEach((collection) => { deleted[collection] = 0; });
+    await jobRef.set({
+      uid,
+      email: snap.get('email') || null,
+      status: 'running',
+      deleted,
+      startedAt: admin.firestore.FieldValue.serverTimestamp(),
+      updatedAt: admin.firestore.FieldValue.serverTimestamp()
+    });
+
+    try {
+      for (const collection of collections) {
+        // eslint-disable-next-line no-constant-condition
+        while (true) {
+          const page = await db.collection(collection)
+            .where('userId', '==', uid)
+            .limit(PURGE_BATCH_SIZE)
+            .get();
+          if (page.empty) break;
+
+          const batch = db.batch();
+          page.docs.forEach((doc) => batch.delete(doc.ref));
+          await batch.commit();
+
+          deleted[collection] += page.size;
+          await jobRef.update({
+            [`deleted.${collection}`]: deleted[collection],
+            updatedAt: admin.firestore.FieldValue.serverTimestamp()
+          });
+
+          if (page.size < PURGE_BATCH_SIZE) break;
+        }
+      }
+
+      deleted.leaderboards = await purgeUserFromLeaderboards(db, uid);
+      await jobRef.update({
+        status: 'done',
+        'deleted.leaderboards': deleted.leaderboards,
+        finishedAt: admin.firestore.FieldValue.serverTimestamp(),
+        updatedAt: admin.firestore.FieldValue.serverTimestamp()
+      });
+      console.log(`Purged data of deleted user ${uid}:`, deleted);
+    } catch (error) {
+      console.error(`Error purging data of deleted user ${uid}:`, error);
+      await jobRef.update({
+        status: 'failed',
+        error: error.message,
+        updatedAt: admin.firestore.FieldValue.serverTimestamp()
+      });
+      // Ném lỗi để Cloud Functions retry (nếu bật) tiếp tục xóa phần còn lại
+      throw error;
+    }
+    return null;
+  });
+
+/**
+ * Cloud Function cập nhật tổng hợp ngân sách theo năm (budget_summaries/{userId}_{yyyy})
+ * Trigger khi budget được tạo/sửa/xóa: tính lại năm cũ và năm mới của budget
+ * App đọc tổng hợp này thay vì tải toàn bộ lịch sử budgets
+ */
+exports.updateBudgetSummary = functions.firestore
+  .document('budgets/{budgetId}')
+  .onWrite(async (change, context) => {
+    const db = admin.firestore();
+    if (await isPurgedUserDeletion(db, change)) {
+      return null;
+    }
+    const targets = new Map();
+    [change.before, change.after].forEach((snap) => {
+      if (!snap.exists) return;
+      const userId = snap.get('userId');
+      const year = snap.get('year');
+      if (userId && year) {
+        targets.set(`${userId}_${year}`, { userId, year });
+      }
+    });
+
+    for (const { userId, year } of targets.values()) {
+      await rebuildBudgetSummary(db, userId, year);
+    }
+    return null;
+  });
+
+/**
+ * Lần xóa do lưu trữ (TransactionArchiver) hoặc xóa dữ liệu cũ: app đánh dấu archivedTo lên giao dịch
+ * trước khi xóa, nên dấu này có trong change.before (không suy đoán theo ngày của giao dịch)
+ * Rollup, thống kê tổng và số dư ví của các giao dịch đó được giữ nguyên
+ */
+function isArchivalDeletion(change) {
+  return !change.after.exists && change.before.exists && Boolean(change.before.get('archivedTo'));
+}
+
+/**
+ * Cloud Function cập nhật phân bố chi tiêu theo tháng (spending_rollups) khi giao dịch thay đổi
+ * Admin xem median/p90/p99 của toàn bộ users bằng cách đọc vài shard thay vì tải giao dịch
+ */
+exports.updateSpendingRollups = functions.firestore
+  .document('transactions/{transactionId}')
+  .onWrite(async (change, context) => {
+    const before = toRollupEntry(change.before);
+    const after = toRollupEntry(change.after);
+
+    if (isArchivalDeletion(change)) {
+      return null;
+    }
+    if (before && after && before.month === after.month && before.userId === after.userId &&
+        before.amount === after.amount && before.categoryKey === after.categoryKey) {
+      return null;
+    }
+    if (!before && !after) {
+      return null;
+    }
+
+    const db = admin.firestore();
+    const userTotals = await applyTransactionChange(db, before, after);
+    // Rollup chung vẫn bớt giao dịch của user bị xóa, bảng xếp hạng do purgeDeletedUserData dọn
+    if (await isPurgedUserDeletion(db, change)) {
+      return null;
+    }
+    for (const { month, userId, total } of userTotals) {
+      await updateUserLeaderboard(db, month, userId, total);
+    }
+    return null;
+  });
+
+/**
+ * Cloud Function làm mới top categories của tháng hiện tại và tháng trước (leaderboards)
+ */
+exports.refreshCategoryLeaderboards = functions.pubsub
+  .schedule('every 10 minutes')
+  .timeZone('Asia/Ho_Chi_Minh')
+  .onRun(async (context) => {
+    const db = admin.firestore();
+    const now = new Date();
+    const previous = new Date(now.getFullYear(), now.getMonth() - 1, 15);
+    for (const month of new Set([monthKey(previous), monthKey(now)])) {
+      await refreshCategoryLeaderboard(db, month);
+    }
+    return null;
+  });
+
+/**
+ * Cloud Function ghi nhận user hoạt động theo tháng/category (active_users) khi giao dịch được tạo/sửa
+ * Admin đếm số users hoạt động bằng HyperLogLog, không cần tải giao dịch để lọc trùng userId
+ */
+exports.updateActiveUsers = functions.firestore
+  .document('transactions/{transactionId}')
+  .onWrite(async (change, context) => {
+    const entry = toActivityEntry(change.after);
+    if (!entry) {
+      return null;
+    }
+    const before = toActivityEntry(change.before);
+    if (before && before.month === entry.month && before.userId === entry.userId &&
+        before.categoryKey === entry.categoryKey) {
+      return null;
+    }
+
+    await recordActivity(admin.firestore(), entry);
+    return null;
+  });
+
+/**
+ * Cloud Function cập nhật thống kê tổng toàn hệ thống (global_stats) khi giao dịch thay đổi
+ * Ghi vào một shard ngẫu nhiên để không bị giới hạn tốc độ ghi của một document vào cuối tháng
+ */
+exports.updateGlobalStats = functions.firestore
+  .document('transactions/{transactionId}')
+  .onWrite(async (change, context) => {
+    if (isArchivalDeletion(change)) {
+      return null;
+    }
+    const before = toStatsEntry(change.before);
+    const after = toStatsEntry(change.after);
+    if (!before && !after) {
+      return null;
+    }
+    if (before && after && before.type === after.type && before.amount === after.amount &&
+        before.categoryKey === after.categoryKey) {
+      return null;
+    }
+
+    await applyStatsChange(admin.firestore(), before, after);
+    return null;
+  });
+
+/**
+ * Cloud Function cập nhật thống kê Welford theo user/category (spending_stats) khi giao dịch thay đổi
+ * App dùng để cảnh báo khoản chi bất thường ngay khi lưu mà không phải đọc lịch sử
+ */
+exports.updateSpendingStats = functions.firestore
+  .document('transactions/{transactionId}')
+  .onWrite(async (change, context) => {
+    if (isArchivalDeletion(change)) {
+      return null;
+    }
+    const before = toStatsSample(change.before);
+    const after = toStatsSample(change.after);
+    if (!before && !after) {
+      return null;
+    }
+    if (before && after && before.userId === after.userId && before.categoryKey === after.categoryKey &&
+        before.amount === after.amount) {
+      return null;
+    }
+    const db = admin.firestore();
+    if (await isPurgedUserDeletion(db, change)) {
+      return null;
+    }
+
+    await applySampleChange(db, before, after);
+    return null;
+  });
+
+/**
+ * Cloud Function cập nhật chỉ mục số dư ví (wallet_balances) khi giao dịch thay đổi
+ * Giao dịch bị xóa khi lưu trữ (có dấu archivedTo) vẫn được tính vào số dư
+ */
+exports.updateWalletBalances = functions.firestore
+  .document('transactions/{transactionId}')
+  .onWrite(async (change, context) => {
+    if (isArchivalDeletion(change)) {
+      return null;
+    }
+    const before = toTransactionEntries(change.before);
+    const after = toTransactionEntries(change.after);
+    if (sameEntries(before, after)) {
+      return null;
+    }
+    const db = admin.firestore();
+    if (await isPurgedUserDeletion(db, change)) {
+      return null;
+    }
+
+    await applyWalletChange(db, before, after);
+    return null;
+  });
+
+/**
+ * Cloud Function cập nhật chỉ mục số dư ví khi chuyển khoản giữa các ví được tạo/sửa/xóa
+ */
+exports.updateTransferBalances = functions.firestore
+  .document('transfers/{transferId}')
+  .onWrite(async (change, context) => {
+    const before = toTransferEntries(change.before);
+    const after = toTransferEntries(change.after);
+    if (sameEntries(before, after)) {
+      return null;
+    }
+    const db = admin.firestore();
+    if (await isPurgedUserDeletion(db, change)) {
+      return null;
+    }
+
+    await applyWalletChange(db, before, after);
+    return null;
+  });
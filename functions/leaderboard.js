@@ -0,0 +1,120 @@
+/**
+ * Bảng xếp hạng theo tháng (leaderboards/{yyyyMM}) cho báo cáo Admin
+ * - users: top user theo tổng chi tiêu tháng, giữ LEADERBOARD_BUFFER (> LEADERBOARD_SIZE) phần tử để
+ *   khi một user trong top giảm chi tiêu vẫn còn ứng viên thay thế
+ * - categories: top category theo tổng chi tiêu tháng
+ * Bất biến của users: nếu danh sách chưa đầy thì nó chứa mọi user có chi tiêu > 0 trong tháng.
+ * Chỉ ghi khi user nằm trong danh sách hoặc vượt ngưỡng (tổng nhỏ nhất của danh sách), nên phần lớn
+ * lần ghi giao dịch chỉ tốn một lần đọc document này.
+ */
+const admin = require('firebase-admin');
+const { COLLECTION_ROLLUPS } = require('./spending-rollup');
+
+const COLLECTION_LEADERBOARDS = 'leaderboards';
+const LEADERBOARD_SIZE = 20;
+const LEADERBOARD_BUFFER = LEADERBOARD_SIZE * 2;
+
+function byTotalDesc(a, b) {
+  return b.total - a.total;
+}
+
+async function userName(db, reader, userId) {
+  const snap = await reader.get(db.collection('users').doc(userId));
+  return snap.exists ? snap.get('name') || snap.get('email') || '' : '';
+}
+
+/**
+ * Lấy lại top users từ spending_rollups/{month}/users (khi danh sách hiện có không còn đủ tin cậy)
+ */
+async function queryTopUsers(db, reader, month) {
+  const snapshot = await reader.get(db.collection(COLLECTION_ROLLUPS).doc(month).collection('users')
+    .orderBy('total', 'desc')
+    .limit(LEADERBOARD_BUFFER));
+  const users = [];
+  for (const doc of snapshot.docs) {
+    users.push({ userId: doc.id, name: await userName(db, reader, doc.id), total: Number(doc.get('total')) || 0 });
+  }
+  return users;
+}
+
+function needsUpdate(users, userId, total) {
+  if (users.some((entry) => entry.userId === userId)) return true;
+  if (total <= 0) return false;
+  return users.length < LEADERBOARD_BUFFER || total > users[users.length - 1].total;
+}
+
+/**
+ * Cập nhật vị trí của một user sau khi tổng chi tiêu tháng của user thay đổi
+ */
+async function updateUserLeaderboard(db, month, userId, total) {
+  const ref = db.collection(COLLECTION_LEADERBOARDS).doc(month);
+  const current = await ref.get();
+  if (!needsUpdate(current.exists ? current.get('users') || [] : [], userId, total)) {
+    return;
+  }
+
+  await db.runTransaction(async (transaction) => {
+    const snap = await transaction.get(ref);
+    const users = snap.exists ? (snap.get('users') || []).slice() : [];
+    if (!needsUpdate(users, userId, total)) return;
+
+    const wasFull = users.length >= LEADERBOARD_BUFFER;
+    const index = users.findIndex((entry) => entry.userId === userId);
+    const existing = index >= 0 ? users.splice(index, 1)[0] : null;
+
+    let result;
+    if (existing && wasFull && users.length > 0 && total < users[users.length - 1].total) {
+      // User trong top giảm xuống dưới phần còn lại: có thể có user ngoài danh sách lớn hơn
+      result = await queryTopUsers(db, transaction, month);
+    } else {
+      if (total > 0) {
+        const name = existing ? existing.name : await userName(db, transaction, userId);
+        users.push({ userId, name, total });
+      }
+      result = users.sort(byTotalDesc).slice(0, LEADERBOARD_BUFFER);
+    }
+
+    transaction.set(ref, {
+      month,
+      users: result,
+      updatedAt: admin.firestore.FieldValue.serverTimestamp()
+    }, { merge: true });
+  });
+}
+
+/**
+ * Tính top categories của tháng từ các shard spending_rollups (tổng theo category ít thay đổi thứ tự,
+ * được làm mới định kỳ thay vì ghi document này ở mọi giao dịch)
+ */
+async function refreshCategoryLeaderboard(db, month) {
+  const shards = await db.collection(COLLECTION_ROLLUPS).doc(month).collection('shards').get();
+  const totals = {};
+  shards.docs.forEach((doc) => {
+    Object.entries(doc.get('categories') || {}).forEach(([categoryKey, sketch]) => {
+      totals[categoryKey] = (totals[categoryKey] || 0) + (Number(sketch.sum) || 0);
+    });
+  });
+  const categories = Object.entries(totals)
+    .filter(([, total]) => total > 0)
+    .map(([categoryKey, total]) => ({ categoryKey, total }))
+    .sort(byTotalDesc)
+    .slice(0, LEADERBOARD_SIZE);
+
+  await db.collection(COLLECTION_LEADERBOARDS).doc(month).set({
+    month,
+    categories,
+    updatedAt: admin.firestore.FieldValue.serverTimestamp()
+  }, { merge: true });
+}
+
+/**
+ * Tính lại toàn bộ bảng xếp hạng của một tháng (sau khi rebuild spending_rollups)
+ */
+async function rebuildLeaderboard(db, month) {
+  const reader = { get: (refOrQuery) => refOrQuery.get() };
+  const users = await queryTopUsers(db, reader, month);
+  await db.collection(COLLECTION_LEADERBOARDS).doc(month).set({ month, users }, { merge: true });
+  await refreshCategoryLeaderboard(db, month);
+}
+
+module.exports = { updateUserLeaderboard, refreshCategoryLeaderboard, rebuildLeaderboard };
@@ -0,0 +1,33 @@
+/**
+ * Script tạo budget_summaries cho các budgets đã có trước khi có Cloud Function updateBudgetSummary
+ * Chạy một lần sau khi deploy functions:
+ *   npm run backfill:budget-summaries (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+const { rebuildBudgetSummary, summaryId } = require('../budget-summary');
+
+async function main() {
+  admin.initializeApp();
+  const db = admin.firestore();
+
+  // Chỉ đọc userId/year để lấy danh sách cặp user-năm cần tổng hợp
+  const budgets = await db.collection('budgets').select('userId', 'year').get();
+  const pairs = new Map();
+  budgets.docs.forEach((doc) => {
+    const userId = doc.get('userId');
+    const year = doc.get('year');
+    if (userId && year) {
+      pairs.set(summaryId(userId, year), { userId, year });
+    }
+  });
+
+  for (const { userId, year } of pairs.values()) {
+    await rebuildBudgetSummary(db, userId, year);
+  }
+  console.log(`Rebuilt ${pairs.size} budget summaries from ${budgets.size} budgets`);
+}
+
+main().catch((error) => {
+  console.error('Error backfilling budget summaries:', error);
+  process.exit(1);
+});
@@ -0,0 +1,34 @@
+/**
+ * Script gán custom claim "role" cho các user đã có trước khi chuyển sang claim
+ * Chạy một lần trước khi deploy firestore.rules mới:
+ *   npm run backfill:roles (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+
+async function main() {
+  admin.initializeApp();
+  const users = await admin.firestore().collection('users').get();
+
+  let updated = 0;
+  for (const doc of users.docs) {
+    const role = doc.get('role') === 'admin' ? 'admin' : 'user';
+    try {
+      const userRecord = await admin.auth().getUser(doc.id);
+      if ((userRecord.customClaims || {}).role === role) {
+        continue;
+      }
+      const claims = Object.assign({}, userRecord.customClaims, { role });
+      await admin.auth().setCustomUserClaims(doc.id, claims);
+      updated++;
+    } catch (error) {
+      // User đã bị xóa khỏi Auth nhưng còn document, bỏ qua
+      console.warn(`Skip ${doc.id}: ${error.message}`);
+    }
+  }
+  console.log(`Updated role claims for ${updated}/${users.size} users`);
+}
+
+main().catch((error) => {
+  console.error('Error backfilling role claims:', error);
+  process.exit(1);
+});
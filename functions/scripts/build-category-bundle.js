@@ -0,0 +1,71 @@
+/**
+ * Script tạo Firestore bundle cho danh mục mặc định
+ * Chạy: npm run bundle:categories (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ *
+ * 1. Ghi (merge) các danh mục mặc định với ID cố định
+ * 2. Xóa các bản sao cũ cùng tên (ID tự sinh từ phiên bản app trước)
+ * 3. Đặt config/category_catalog.version = CATALOG_VERSION (client nạp bundle coi cache đã ở phiên bản này)
+ * 4. Xuất bundle + named query vào assets của app để client nạp bằng loadBundle
+ *
+ * Khi thay đổi danh sách dưới đây, tăng CATALOG_VERSION ở đây và trong CategoryInitializer.java;
+ * CATALOG_VERSION không được nhỏ hơn phiên bản hiện tại trên server (admin sửa danh mục cũng tăng phiên bản)
+ */
+const fs = require('fs');
+const path = require('path');
+const admin = require('firebase-admin');
+
+const CATALOG_VERSION = 1;
+const BUNDLE_ID = 'default-categories';
+const NAMED_QUERY = 'default-categories';
+const OUTPUT = path.join(__dirname, '..', '..', 'app', 'src', 'main', 'assets',
+  'bundles', 'default_categories.bundle');
+
+const DEFAULT_CATEGORIES = [
+  { id: 'food_dining', name: 'Food & Dining', icon: '🍔', type: 'expense' },
+  { id: 'transportation', name: 'Transportation', icon: '🚗', type: 'expense' },
+  { id: 'education', name: 'Education', icon: '📚', type: 'expense' },
+  { id: 'utilities', name: 'Utilities', icon: '💡', type: 'expense' },
+  { id: 'entertainment', name: 'Entertainment', icon: '🎬', type: 'expense' },
+];
+
+async function main() {
+  admin.initializeApp();
+  const db = admin.firestore();
+  const categories = db.collection('categories');
+  const catalogRef = db.collection('config').doc('category_catalog');
+
+  const catalog = await catalogRef.get();
+  const serverVersion = (catalog.exists && catalog.get('version')) || 0;
+  if (serverVersion > CATALOG_VERSION) {
+    throw new Error(`Server catalog is at version ${serverVersion}, set CATALOG_VERSION to at least ${serverVersion + 1}`);
+  }
+
+  const existing = await categories.get();
+  const defaultIds = new Set(DEFAULT_CATEGORIES.map((c) => c.id));
+  const defaultNames = new Set(DEFAULT_CATEGORIES.map((c) => c.name));
+
+  const batch = db.batch();
+  DEFAULT_CATEGORIES.forEach(({ id, name, icon, type }) => {
+    batch.set(categories.doc(id), { name, icon, type }, { merge: true });
+  });
+  // Giao dịch lưu tên danh mục nên xóa bản sao trùng tên không làm mất liên kết
+  existing.docs
+    .filter((doc) => !defaultIds.has(doc.id) && defaultNames.has(doc.get('name')))
+    .forEach((doc) => batch.delete(doc.ref));
+  batch.set(catalogRef, { version: CATALOG_VERSION }, { merge: true });
+  await batch.commit();
+
+  const snapshot = await categories.get();
+  const buffer = db.bundle(BUNDLE_ID)
+    .add(NAMED_QUERY, snapshot)
+    .build();
+
+  fs.mkdirSync(path.dirname(OUTPUT), { recursive: true });
+  fs.writeFileSync(OUTPUT, buffer);
+  console.log(`Wrote bundle v${CATALOG_VERSION} (${snapshot.size} categories, ${buffer.length} bytes) to ${OUTPUT}`);
+}
+
+main().catch((error) => {
+  console.error('Error building category bundle:', error);
+  process.exit(1);
+});
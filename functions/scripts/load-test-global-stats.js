@@ -0,0 +1,74 @@
+/**
+ * Load test sharded counter global_stats trên Firestore emulator
+ * Ghi đồng thời nhiều giao dịch giả vào global_stats/loadtest_{shards}/shards và đo throughput/lỗi ghi,
+ * so sánh với 1 shard để thấy giới hạn ghi của một document:
+ *   firebase emulators:exec --only firestore "npm run loadtest:global-stats -- --writes 5000 --concurrency 200 --shards 20"
+ */
+const admin = require('firebase-admin');
+const { incrementRandomShard } = require('../global-stats');
+
+function option(name, fallback) {
+  const index = process.argv.indexOf(`--${name}`);
+  return index >= 0 ? Number(process.argv[index + 1]) : fallback;
+}
+
+async function run(db, shards, writes, concurrency) {
+  const root = `loadtest_${shards}`;
+  await db.recursiveDelete(db.collection('global_stats').doc(root));
+
+  let next = 0;
+  let errors = 0;
+  const errorCodes = {};
+  const started = Date.now();
+  const worker = async () => {
+    while (next < writes) {
+      next++;
+      const amount = 1000 + Math.floor(Math.random() * 100000);
+      try {
+        await incrementRandomShard(db, {
+          transactionCount: 1,
+          expenseCount: 1,
+          expenseTotal: amount,
+          categories: { [`category_${amount % 8}`]: { count: 1, total: amount } }
+        }, shards, root);
+      } catch (error) {
+        errors++;
+        errorCodes[error.code] = (errorCodes[error.code] || 0) + 1;
+      }
+    }
+  };
+  await Promise.all(Array.from({ length: concurrency }, worker));
+  const seconds = (Date.now() - started) / 1000;
+
+  // Đọc lại và cộng các shard để kiểm tra không mất lần ghi nào
+  const snapshot = await db.collection('global_stats').doc(root).collection('shards').get();
+  const counted = snapshot.docs.reduce((sum, doc) => sum + (doc.get('transactionCount') || 0), 0);
+
+  console.log(`shards=${shards} writes=${writes} concurrency=${concurrency}: ` +
+    `${(writes / seconds).toFixed(0)} writes/s, ${errors} errors ${JSON.stringify(errorCodes)}, ` +
+    `merged count ${counted}/${writes - errors}`);
+  return errors;
+}
+
+async function main() {
+  if (!process.env.FIRESTORE_EMULATOR_HOST) {
+    throw new Error('FIRESTORE_EMULATOR_HOST is not set, refusing to load test a real project');
+  }
+  admin.initializeApp({ projectId: process.env.GCLOUD_PROJECT || 'yidoan-3d606' });
+  const db = admin.firestore();
+
+  const writes = option('writes', 5000);
+  const concurrency = option('concurrency', 200);
+  const shards = option('shards', 20);
+
+  await run(db, 1, writes, concurrency);
+  const errors = await run(db, shards, writes, concurrency);
+  if (errors > 0) {
+    process.exitCode = 1;
+  }
+}
+
+main().catch((error) => {
+  console.error('Error running global stats load test:', error);
+  process.exit(1);
+});
@@ -0,0 +1,37 @@
+/**
+ * Script tính lại active_users cho các tháng chỉ định (hoặc tất cả các tháng có giao dịch/archive)
+ * Chạy sau khi deploy Cloud Function updateActiveUsers lần đầu:
+ *   npm run rebuild:active-users -- 202401 202402 (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+const { rebuildActiveUsersMonth } = require('../active-users');
+const { monthKey } = require('../spending-rollup');
+
+async function main() {
+  admin.initializeApp();
+  const db = admin.firestore();
+
+  let months = process.argv.slice(2);
+  if (months.length === 0) {
+    // Không chỉ định tháng: lấy tất cả các tháng có giao dịch hoặc archive (chỉ đọc field ngày)
+    const dates = await db.collection('transactions').select('date').get();
+    const archives = await db.collection('transaction_archives').select('monthStart').get();
+    const keys = new Set();
+    const addMonth = (date) => {
+      if (date && typeof date.toDate === 'function') keys.add(monthKey(date.toDate()));
+    };
+    dates.docs.forEach((doc) => addMonth(doc.get('date')));
+    archives.docs.forEach((doc) => addMonth(doc.get('monthStart')));
+    months = Array.from(keys).sort();
+  }
+
+  for (const month of months) {
+    const count = await rebuildActiveUsersMonth(db, month);
+    console.log(`Rebuilt active users ${month} from ${count} transactions`);
+  }
+}
+
+main().catch((error) => {
+  console.error('Error rebuilding active users:', error);
+  process.exit(1);
+});
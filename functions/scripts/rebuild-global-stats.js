@@ -0,0 +1,18 @@
+/**
+ * Script tính lại global_stats từ transactions và transaction_archives
+ * Chạy sau khi deploy Cloud Function updateGlobalStats lần đầu (hoặc khi cần sửa sai lệch):
+ *   npm run rebuild:global-stats (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+const { rebuildGlobalStats } = require('../global-stats');
+
+async function main() {
+  admin.initializeApp();
+  const { transactions, archives } = await rebuildGlobalStats(admin.firestore());
+  console.log(`Rebuilt global stats from ${transactions} transactions and ${archives} archives`);
+}
+
+main().catch((error) => {
+  console.error('Error rebuilding global stats:', error);
+  process.exit(1);
+});
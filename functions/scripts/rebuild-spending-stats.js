@@ -0,0 +1,18 @@
+/**
+ * Script tính lại spending_stats (thống kê Welford theo user/category) từ transactions
+ * Chạy sau khi deploy Cloud Function updateSpendingStats lần đầu:
+ *   npm run rebuild:spending-stats (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+const { rebuildSpendingStats } = require('../spending-stats');
+
+async function main() {
+  admin.initializeApp();
+  const users = await rebuildSpendingStats(admin.firestore());
+  console.log(`Rebuilt spending stats for ${users} users`);
+}
+
+main().catch((error) => {
+  console.error('Error rebuilding spending stats:', error);
+  process.exit(1);
+});
@@ -0,0 +1,19 @@
+/**
+ * Script tính lại wallet_balances từ transactions, transaction_archives và transfers
+ * Chạy sau khi deploy Cloud Function updateWalletBalances lần đầu (hoặc khi cần sửa sai lệch):
+ *   npm run rebuild:wallet-balances (cần GOOGLE_APPLICATION_CREDENTIALS của project)
+ */
+const admin = require('firebase-admin');
+const { rebuildWalletBalances } = require('../wallet-balances');
+
+async function main() {
+  admin.initializeApp();
+  const { wallets, transactions, archives, transfers } = await rebuildWalletBalances(admin.firestore());
+  console.log(`Rebuilt ${wallets} wallet balances from ${transactions} transactions, ` +
+    `${archives} archives and ${transfers} transfers`);
+}
+
+main().catch((error) => {
+  console.error('Error rebuilding wallet balances:', error);
+  process.exit(1);
+});
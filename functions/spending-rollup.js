@@ -0,0 +1,218 @@
+/**
+ * Tổng hợp phân bố chi tiêu theo tháng (collection spending_rollups) cho báo cáo Admin
+ * Mỗi tháng spending_rollups/{yyyyMM} có subcollection:
+ * - shards/{n}: sketch phân vị của số tiền mỗi giao dịch (transactions), theo category
+ *   (categories.{categoryKey}) và của tổng chi tiêu tháng mỗi user (userSpend)
+ * - users/{uid}: tổng chi tiêu tháng của user (để cập nhật userSpend khi tổng thay đổi)
+ *
+ * Sketch là DDSketch: đếm số giá trị theo bucket logarit với sai số tương đối RELATIVE_ACCURACY.
+ * Gộp hai sketch là cộng count từng bucket nên có tính kết hợp/giao hoán tuyệt đối (shard, tháng
+ * gộp theo thứ tự nào cũng ra cùng kết quả) và xóa một giá trị chỉ là trừ count, nên cập nhật
+ * được bằng FieldValue.increment không cần đọc trước.
+ * Phải giữ RELATIVE_ACCURACY khớp với QuantileSketch.java trong app.
+ */
+const admin = require('firebase-admin');
+const { getArchivedTransactions } = require('./transaction-archives');
+
+const COLLECTION_ROLLUPS = 'spending_rollups';
+const ROLLUP_SHARDS = 10;
+const RELATIVE_ACCURACY = 0.01;
+const LOG_GAMMA = Math.log((1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY));
+// Tháng được tính theo giờ Việt Nam (UTC+7, không có giờ mùa hè) giống trên thiết bị
+const UTC_OFFSET_MS = 7 * 60 * 60 * 1000;
+
+function binIndex(value) {
+  return Math.ceil(Math.log(value) / LOG_GAMMA);
+}
+
+function toDate(value) {
+  if (!value) return null;
+  if (typeof value.toDate === 'function') return value.toDate();
+  if (value instanceof Date) return value;
+  return null;
+}
+
+function monthKey(date) {
+  const local = new Date(date.getTime() + UTC_OFFSET_MS);
+  return `${local.getUTCFullYear()}${String(local.getUTCMonth() + 1).padStart(2, '0')}`;
+}
+
+function monthBounds(key) {
+  const year = Number(key.slice(0, 4));
+  const month = Number(key.slice(4, 6));
+  return {
+    start: new Date(Date.UTC(year, month - 1, 1) - UTC_OFFSET_MS),
+    end: new Date(Date.UTC(year, month, 1) - UTC_OFFSET_MS)
+  };
+}
+
+function shardOf(id) {
+  let hash = 0;
+  for (let i = 0; i < id.length; i++) {
+    hash = (hash * 31 + id.charCodeAt(i)) | 0;
+  }
+  return String(Math.abs(hash) % ROLLUP_SHARDS);
+}
+
+/**
+ * Thay đổi (dạng FieldValue.increment) để thêm (sign = 1) hoặc bớt (sign = -1) một giá trị
+ */
+function sketchDelta(value, sign) {
+  const increment = admin.firestore.FieldValue.increment;
+  const delta = { count: increment(sign), sum: increment(sign * value) };
+  if (value > 0) {
+    delta.bins = { [binIndex(value)]: increment(sign) };
+  } else {
+    delta.zero = increment(sign);
+  }
+  return delta;
+}
+
+/**
+ * Thêm một giá trị vào sketch dạng object thường (dùng khi tính lại cả tháng)
+ */
+function addToSketch(sketch, value) {
+  sketch.count = (sketch.count || 0) + 1;
+  sketch.sum = (sketch.sum || 0) + value;
+  if (value > 0) {
+    const index = binIndex(value);
+    sketch.bins = sketch.bins || {};
+    sketch.bins[index] = (sketch.bins[index] || 0) + 1;
+  } else {
+    sketch.zero = (sketch.zero || 0) + 1;
+  }
+}
+
+/**
+ * Giao dịch được tính vào phân bố: chi tiêu thực tế (không phải giao dịch định kỳ gốc)
+ */
+function toRollupEntry(snap) {
+  if (!snap.exists) return null;
+  const data = snap.data();
+  const date = toDate(data.date);
+  const amount = Number(data.amount);
+  if (data.type !== 'expense' || data.isRecurring === true || !data.userId || !date || !(amount >= 0)) {
+    return null;
+  }
+  return {
+    id: snap.id,
+    month: monthKey(date),
+    userId: data.userId,
+    amount,
+    categoryKey: data.categoryId || data.category || 'unknown'
+  };
+}
+
+/**
+ * Cập nhật rollup khi một giao dịch thay đổi: bớt phiên bản cũ, thêm phiên bản mới
+ * @returns tổng chi tiêu tháng mới của các user bị ảnh hưởng [{month, userId, total}]
+ */
+async function applyTransactionChange(db, before, after) {
+  const entries = [];
+  if (before) entries.push(Object.assign({ sign: -1 }, before));
+  if (after) entries.push(Object.assign({ sign: 1 }, after));
+
+  // Chênh lệch tổng chi tiêu tháng theo từng user
+  const userDeltas = new Map();
+  entries.forEach((entry) => {
+    const key = `${entry.month}|${entry.userId}`;
+    userDeltas.set(key, (userDeltas.get(key) || 0) + entry.sign * entry.amount);
+  });
+
+  return db.runTransaction(async (transaction) => {
+    // Đọc tổng cũ trước mọi lần ghi (yêu cầu của transaction)
+    const userTotals = [];
+    for (const [key, delta] of userDeltas) {
+      const [month, userId] = key.split('|');
+      const ref = db.collection(COLLECTION_ROLLUPS).doc(month).collection('users').doc(userId);
+      const snap = await transaction.get(ref);
+      const oldTotal = snap.exists ? Number(snap.get('total')) || 0 : 0;
+      userTotals.push({ month, userId, ref, oldTotal, newTotal: oldTotal + delta });
+    }
+
+    entries.forEach((entry) => {
+      const shardRef = db.collection(COLLECTION_ROLLUPS).doc(entry.month)
+        .collection('shards').doc(shardOf(entry.id));
+      const delta = sketchDelta(entry.amount, entry.sign);
+      transaction.set(shardRef, {
+        transactions: delta,
+        categories: { [entry.categoryKey]: delta }
+      }, { merge: true });
+    });
+
+    userTotals.forEach(({ month, userId, ref, oldTotal, newTotal }) => {
+      const shardRef = db.collection(COLLECTION_ROLLUPS).doc(month)
+        .collection('shards').doc(shardOf(userId));
+      if (oldTotal > 0) {
+        transaction.set(shardRef, { userSpend: sketchDelta(oldTotal, -1) }, { merge: true });
+      }
+      if (newTotal > 0) {
+        transaction.set(shardRef, { userSpend: sketchDelta(newTotal, 1) }, { merge: true });
+        transaction.set(ref, { userId, total: newTotal });
+      } else {
+        transaction.delete(ref);
+      }
+    });
+
+    return userTotals.map(({ month, userId, newTotal }) => ({ month, userId, total: newTotal }));
+  });
+}
+
+/**
+ * Tính lại toàn bộ rollup của một tháng từ transactions và transaction_archives
+ * (dùng khi khởi tạo hoặc sửa sai lệch; tháng đã lưu trữ không bị mất phân bố và tổng của user)
+ * @returns số giao dịch đã đọc (kể cả giao dịch đã lưu trữ)
+ */
+async function rebuildMonth(db, key) {
+  const monthRef = db.collection(COLLECTION_ROLLUPS).doc(key);
+  await db.recursiveDelete(monthRef);
+
+  const { start, end } = monthBounds(key);
+  const snapshot = await db.collection('transactions')
+    .where('date', '>=', start)
+    .where('date', '<', end)
+    .get();
+  const archived = await getArchivedTransactions(db, start, end);
+  const docs = snapshot.docs.concat(archived);
+
+  const shards = {};
+  const userTotals = {};
+  const shard = (id) => {
+    const n = shardOf(id);
+    shards[n] = shards[n] || { transactions: {}, categories: {}, userSpend: {} };
+    return shards[n];
+  };
+
+  docs.forEach((doc) => {
+    const entry = toRollupEntry(doc);
+    // Archive theo tháng của thiết bị nên có thể lệch múi giờ ở biên tháng
+    if (!entry || entry.month !== key) return;
+    const target = shard(entry.id);
+    addToSketch(target.transactions, entry.amount);
+    target.categories[entry.categoryKey] = target.categories[entry.categoryKey] || {};
+    addToSketch(target.categories[entry.categoryKey], entry.amount);
+    userTotals[entry.userId] = (userTotals[entry.userId] || 0) + entry.amount;
+  });
+  Object.entries(userTotals).forEach(([userId, total]) => {
+    if (total > 0) addToSketch(shard(userId).userSpend, total);
+  });
+
+  const writer = db.bulkWriter();
+  Object.entries(shards).forEach(([n, data]) => {
+    writer.set(monthRef.collection('shards').doc(n), data);
+  });
+  Object.entries(userTotals).forEach(([userId, total]) => {
+    if (total > 0) writer.set(monthRef.collection('users').doc(userId), { userId, total });
+  });
+  await writer.close();
+  return docs.length;
+}
+
+module.exports = {
+  COLLECTION_ROLLUPS,
+  applyTransactionChange,
+  rebuildMonth,
+  toRollupEntry,
+  monthKey,
+  monthBounds
+};
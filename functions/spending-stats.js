@@ -0,0 +1,102 @@
+/**
+ * Thống kê chi tiêu theo user/category (spending_stats/{userId}) để app phát hiện khoản chi bất thường
+ * Mỗi category lưu {n, mean, m2} theo thuật toán Welford, cập nhật O(1) khi thêm/sửa/xóa giao dịch
+ * (xóa là phép ngược của thêm). App giữ document này qua snapshot listener nên khi lưu giao dịch
+ * chỉ cần tính z-score từ bộ nhớ, không đọc thêm lịch sử.
+ */
+const admin = require('firebase-admin');
+
+const COLLECTION_SPENDING_STATS = 'spending_stats';
+
+/**
+ * Giao dịch được tính: chi tiêu thực tế (không phải giao dịch định kỳ gốc)
+ */
+function toStatsSample(snap) {
+  if (!snap.exists) return null;
+  const data = snap.data();
+  const amount = Number(data.amount);
+  if (data.type !== 'expense' || data.isRecurring === true || !data.userId || !(amount > 0)) {
+    return null;
+  }
+  return {
+    userId: data.userId,
+    categoryKey: data.categoryId || data.category || 'unknown',
+    amount
+  };
+}
+
+function addSample(stats, x) {
+  const n = stats.n + 1;
+  const delta = x - stats.mean;
+  const mean = stats.mean + delta / n;
+  return { n, mean, m2: stats.m2 + delta * (x - mean) };
+}
+
+function removeSample(stats, x) {
+  if (stats.n <= 1) {
+    return { n: 0, mean: 0, m2: 0 };
+  }
+  const n = stats.n - 1;
+  const mean = (stats.n * stats.mean - x) / n;
+  // Sai số làm tròn có thể làm m2 âm một chút
+  return { n, mean, m2: Math.max(0, stats.m2 - (x - mean) * (x - stats.mean)) };
+}
+
+/**
+ * Bớt giá trị cũ và thêm giá trị mới của giao dịch vào thống kê của user
+ */
+async function applySampleChange(db, before, after) {
+  const userIds = new Set([before, after].filter(Boolean).map((sample) => sample.userId));
+  for (const userId of userIds) {
+    const ref = db.collection(COLLECTION_SPENDING_STATS).doc(userId);
+    await db.runTransaction(async (transaction) => {
+      const snap = await transaction.get(ref);
+      const categories = snap.exists ? snap.get('categories') || {} : {};
+      const updates = {};
+      const current = (key) => updates[key] || categories[key] || { n: 0, mean: 0, m2: 0 };
+
+      if (before && before.userId === userId) {
+        updates[before.categoryKey] = removeSample(current(before.categoryKey), before.amount);
+      }
+      if (after && after.userId === userId) {
+        updates[after.categoryKey] = addSample(current(after.categoryKey), after.amount);
+      }
+
+      transaction.set(ref, {
+        userId,
+        categories: updates,
+        updatedAt: admin.firestore.FieldValue.serverTimestamp()
+      }, { merge: true });
+    });
+  }
+}
+
+/**
+ * Tính lại thống kê của tất cả users từ transactions
+ */
+async function rebuildSpendingStats(db) {
+  const snapshot = await db.collection('transactions')
+    .select('userId', 'type', 'amount', 'categoryId', 'category', 'isRecurring')
+    .get();
+  const users = {};
+  snapshot.docs.forEach((doc) => {
+    const sample = toStatsSample(doc);
+    if (!sample) return;
+    const categories = users[sample.userId] = users[sample.userId] || {};
+    categories[sample.categoryKey] = addSample(categories[sample.categoryKey] || { n: 0, mean: 0, m2: 0 },
+      sample.amount);
+  });
+
+  const writer = db.bulkWriter();
+  Object.entries(users).forEach(([userId, categories]) => {
+    writer.set(db.collection(COLLECTION_SPENDING_STATS).doc(userId), {
+      userId,
+      categories,
+      updatedAt: admin.firestore.FieldValue.serverTimestamp()
+    });
+  });
+  await writer.close();
+  return Object.keys(users).length;
+}
+
+module.exports = { toStatsSample, applySampleChange, rebuildSpendingStats, addSample, removeSample };
@@ -0,0 +1,244 @@
+/**
+ * Kiểm thử firestore.rules trên Firestore emulator (users, transactions, budgets, feedback, category catalog)
+ *   npm run test:rules (cần firebase-tools; emulator được khởi động và tắt tự động)
+ */
+const fs = require('fs');
+const path = require('path');
+const { after, before, beforeEach, describe, test } = require('node:test');
+const { increment } = require('firebase/firestore');
+const {
+  assertFails,
+  assertSucceeds,
+  initializeTestEnvironment,
+} = require('@firebase/rules-unit-testing');
+
+const PROJECT_ID = 'demo-appqlct-rules';
+const ALICE = 'alice';
+const BOB = 'bob';
+const ADMIN = 'admin-user';
+
+let testEnv;
+
+function userDb(uid) {
+  return testEnv.authenticatedContext(uid).firestore();
+}
+
+function adminDb() {
+  // Role admin nằm trong custom claim do setUserRole gán
+  return testEnv.authenticatedContext(ADMIN, { role: 'admin' }).firestore();
+}
+
+async function seed(docs) {
+  await testEnv.withSecurityRulesDisabled(async (context) => {
+    const db = context.firestore();
+    for (const [docPath, data] of Object.entries(docs)) {
+      await db.doc(docPath).set(data);
+    }
+  });
+}
+
+before(async () => {
+  testEnv = await initializeTestEnvironment({
+    projectId: PROJECT_ID,
+    firestore: {
+      rules: fs.readFileSync(path.join(__dirname, '..', '..', 'firestore.rules'), 'utf8'),
+    },
+  });
+});
+
+beforeEach(async () => {
+  await testEnv.clearFirestore();
+});
+
+after(async () => {
+  await testEnv.cleanup();
+});
+
+describe('users', () => {
+  beforeEach(async () => {
+    await seed({
+      [`users/${ALICE}`]: { name: 'Alice', email: 'alice@example.com', role: 'user' },
+      [`users/${BOB}`]: { name: 'Bob', email: 'bob@example.com', role: 'user' },
+      // Hồ sơ cũ tạo trước khi có field role
+      'users/legacy': { name: 'Legacy', email: 'legacy@example.com' },
+    });
+  });
+
+  test('user reads and updates own profile', async () => {
+    const db = userDb(ALICE);
+    await assertSucceeds(db.doc(`users/${ALICE}`).get());
+    await assertSucceeds(db.doc(`users/${ALICE}`).update({ name: 'Alice N.' }));
+  });
+
+  test('user cannot read or write another profile', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc(`users/${BOB}`).get());
+    await assertFails(db.doc(`users/${BOB}`).update({ name: 'Hacked' }));
+    await assertFails(db.collection('users').get());
+  });
+
+  test('user cannot change own role', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc(`users/${ALICE}`).update({ role: 'admin' }));
+    await assertFails(db.doc(`users/${ALICE}`).set({ name: 'Alice', role: 'admin' }));
+  });
+
+  test('user creates own profile only with role user', async () => {
+    const db = userDb('carol');
+    await assertFails(db.doc('users/carol').set({ name: 'Carol', role: 'admin' }));
+    await assertSucceeds(db.doc('users/carol').set({ name: 'Carol', role: 'user' }));
+  });
+
+  test('legacy profile without role can be updated but not promoted', async () => {
+    const db = userDb('legacy');
+    await assertSucceeds(db.doc('users/legacy').update({ name: 'Legacy N.' }));
+    await assertSucceeds(db.doc('users/legacy').update({ role: 'user' }));
+    await seed({ 'users/legacy': { name: 'Legacy', email: 'legacy@example.com' } });
+    await assertFails(db.doc('users/legacy').update({ role: 'admin' }));
+  });
+
+  test('admin reads and writes all profiles', async () => {
+    const db = adminDb();
+    await assertSucceeds(db.collection('users').get());
+    await assertSucceeds(db.doc(`users/${BOB}`).update({ role: 'admin' }));
+    await assertSucceeds(db.doc(`users/${ALICE}`).delete());
+  });
+
+  test('unauthenticated requests are denied', async () => {
+    const db = testEnv.unauthenticatedContext().firestore();
+    await assertFails(db.doc(`users/${ALICE}`).get());
+  });
+});
+
+describe('transactions', () => {
+  beforeEach(async () => {
+    await seed({
+      'transactions/t-alice': { userId: ALICE, amount: 50000, type: 'expense' },
+      'transactions/t-bob': { userId: BOB, amount: 70000, type: 'expense' },
+    });
+  });
+
+  test('user reads, creates, updates and deletes own transactions', async () => {
+    const db = userDb(ALICE);
+    await assertSucceeds(db.doc('transactions/t-alice').get());
+    await assertSucceeds(db.collection('transactions').where('userId', '==', ALICE).get());
+    await assertSucceeds(db.doc('transactions/t-new').set({ userId: ALICE, amount: 1000, type: 'expense' }));
+    await assertSucceeds(db.doc('transactions/t-alice').update({ amount: 60000 }));
+    await assertSucceeds(db.doc('transactions/t-alice').delete());
+  });
+
+  test('user cannot touch another user transactions', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc('transactions/t-bob').get());
+    await assertFails(db.collection('transactions').get());
+    await assertFails(db.doc('transactions/t-bob').update({ amount: 1 }));
+    await assertFails(db.doc('transactions/t-bob').delete());
+    await assertFails(db.doc('transactions/t-forged').set({ userId: BOB, amount: 1000, type: 'expense' }));
+  });
+
+  test('admin reads and writes all transactions', async () => {
+    const db = adminDb();
+    await assertSucceeds(db.collection('transactions').get());
+    await assertSucceeds(db.doc('transactions/t-restored').set({ userId: BOB, amount: 1000, type: 'expense' }));
+    await assertSucceeds(db.doc('transactions/t-bob').delete());
+  });
+});
+
+describe('budgets', () => {
+  beforeEach(async () => {
+    await seed({
+      'budgets/b-alice': { userId: ALICE, amount: 2000000, month: 1, year: 2026 },
+      'budgets/b-bob': { userId: BOB, amount: 3000000, month: 1, year: 2026 },
+    });
+  });
+
+  test('user reads and writes own budgets', async () => {
+    const db = userDb(ALICE);
+    await assertSucceeds(db.doc('budgets/b-alice').get());
+    await assertSucceeds(db.doc('budgets/b-new').set({ userId: ALICE, amount: 100000, month: 2, year: 2026 }));
+    await assertSucceeds(db.doc('budgets/b-alice').update({ amount: 2500000 }));
+    await assertSucceeds(db.doc('budgets/b-alice').delete());
+  });
+
+  test('user cannot touch another user budgets', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc('budgets/b-bob').get());
+    await assertFails(db.doc('budgets/b-bob').update({ amount: 1 }));
+    await assertFails(db.doc('budgets/b-forged').set({ userId: BOB, amount: 1, month: 2, year: 2026 }));
+  });
+
+  test('admin reads and writes all budgets', async () => {
+    const db = adminDb();
+    await assertSucceeds(db.collection('budgets').get());
+    await assertSucceeds(db.doc('budgets/b-restored').set({ userId: BOB, amount: 1, month: 3, year: 2026 }));
+    await assertSucceeds(db.doc('budgets/b-bob').delete());
+  });
+});
+
+describe('feedback', () => {
+  beforeEach(async () => {
+    await seed({
+      'feedback/f-alice': { userId: ALICE, rating: 5, content: 'Great' },
+      'feedback/f-bob': { userId: BOB, rating: 3, content: 'OK' },
+    });
+  });
+
+  test('signed-in user reads feedback and writes own', async () => {
+    const db = userDb(ALICE);
+    await assertSucceeds(db.doc('feedback/f-bob').get());
+    await assertSucceeds(db.doc('feedback/f-new').set({ userId: ALICE, rating: 4, content: 'Nice' }));
+    await assertSucceeds(db.doc('feedback/f-alice').update({ rating: 4 }));
+    await assertSucceeds(db.doc('feedback/f-alice').delete());
+  });
+
+  test('user cannot create, update or delete feedback of another user', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc('feedback/f-forged').set({ userId: BOB, rating: 1, content: 'Bad' }));
+    await assertFails(db.doc('feedback/f-bob').update({ rating: 1 }));
+    await assertFails(db.doc('feedback/f-bob').delete());
+  });
+
+  test('unauthenticated users cannot read feedback', async () => {
+    const db = testEnv.unauthenticatedContext().firestore();
+    await assertFails(db.doc('feedback/f-alice').get());
+  });
+
+  test('admin creates, updates and deletes any feedback', async () => {
+    const db = adminDb();
+    await assertSucceeds(db.doc('feedback/f-restored').set({ userId: BOB, rating: 2, content: 'Restored' }));
+    await assertSucceeds(db.doc('feedback/f-bob').update({ content: 'Edited' }));
+    await assertSucceeds(db.doc('feedback/f-alice').delete());
+  });
+});
+
+describe('category catalog', () => {
+  test('signed-in user reads the version and creates it only as version 1', async () => {
+    const db = userDb(ALICE);
+    await assertFails(db.doc('config/category_catalog').set({ version: 42 }));
+    await assertSucceeds(db.doc('config/category_catalog').set({ version: 1 }));
+    await assertSucceeds(db.doc('config/category_catalog').get());
+  });
+
+  test('user cannot change an existing version', async () => {
+    await seed({ 'config/category_catalog': { version: 3 } });
+    const db = userDb(ALICE);
+    await assertFails(db.doc('config/category_catalog').update({ version: increment(1) }));
+    await assertFails(db.doc('config/category_catalog').update({ version: 1000 }));
+    await assertFails(db.doc('config/category_catalog').delete());
+  });
+
+  test('admin only increments the version by one', async () => {
+    await seed({ 'config/category_catalog': { version: 3 } });
+    const db = adminDb();
+    await assertSucceeds(db.doc('config/category_catalog').set({ version: increment(1) }, { merge: true }));
+    await assertFails(db.doc('config/category_catalog').update({ version: 10 }));
+    await assertFails(db.doc('config/category_catalog').update({ version: 4, extra: true }));
+    await assertFails(db.doc('config/category_catalog').delete());
+  });
+
+  test('other config documents stay admin only', async () => {
+    await seed({ 'config/app': { maintenance: false } });
+    await assertFails(userDb(ALICE).doc('config/app').get());
+    await assertSucceeds(adminDb().doc('config/app').update({ maintenance: true }));
+  });
+});
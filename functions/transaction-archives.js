@@ -0,0 +1,59 @@
+/**
+ * Đọc transaction_archives do TransactionArchiver (app) ghi: mỗi document là giao dịch một tháng của một user,
+ * field data là JSON (gzip) gồm các mảng song song (ids, seconds tính từ monthStart, amounts, types, category...)
+ * Dùng để các bản tính lại (rebuild) vẫn tính cả giao dịch đã lưu trữ.
+ */
+const zlib = require('zlib');
+
+const COLLECTION_ARCHIVES = 'transaction_archives';
+
+function toDate(value) {
+  if (!value) return null;
+  if (typeof value.toDate === 'function') return value.toDate();
+  if (value instanceof Date) return value;
+  return null;
+}
+
+/**
+ * Giải nén một archive thành các snapshot có cùng dạng document transactions gốc ({exists, id, data()})
+ * để dùng chung các hàm toRollupEntry, toActivityEntry...
+ */
+function unpackArchive(doc) {
+  const data = doc.get('data');
+  const monthStart = toDate(doc.get('monthStart'));
+  const userId = doc.get('userId');
+  if (!data || !monthStart || !userId) return [];
+  const packed = JSON.parse(zlib.gunzipSync(Buffer.from(data)).toString('utf8'));
+  return (packed.amounts || []).map((amount, i) => {
+    const categoryIndex = packed.category ? packed.category[i] : -1;
+    const transaction = {
+      userId,
+      amount,
+      date: new Date(monthStart.getTime() + ((packed.seconds && packed.seconds[i]) || 0) * 1000),
+      type: packed.types && packed.types[i] === 1 ? 'income' : 'expense',
+      categoryId: categoryIndex >= 0 && packed.categoryIds ? packed.categoryIds[categoryIndex] : null,
+      category: categoryIndex >= 0 && packed.categoryNames ? packed.categoryNames[categoryIndex] : null,
+      walletId: packed.walletIds ? packed.walletIds[i] : null,
+      // Giao dịch định kỳ gốc không được lưu trữ
+      isRecurring: false
+    };
+    return {
+      exists: true,
+      id: (packed.ids && packed.ids[i]) || `${doc.id}_${i}`,
+      data: () => transaction
+    };
+  });
+}
+
+/**
+ * Các giao dịch đã lưu trữ của những archive có monthStart trong [start, end)
+ */
+async function getArchivedTransactions(db, start, end) {
+  const archives = await db.collection(COLLECTION_ARCHIVES)
+    .where('monthStart', '>=', start)
+    .where('monthStart', '<', end)
+    .get();
+  return archives.docs.flatMap(unpackArchive);
+}
+
+module.exports = { COLLECTION_ARCHIVES, unpackArchive, getArchivedTransactions };
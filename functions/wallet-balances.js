@@ -0,0 +1,194 @@
+/**
+ * Chỉ mục số dư theo ví (collection wallet_balances), mỗi ví của một user là một document
+ * wallet_balances/{userId}_{walletId}:
+ * - balance: tổng biến động của ví (thu nhập +, chi tiêu -, chuyển đi -, chuyển đến +)
+ * - days.{yyyyMMdd}: biến động trong từng ngày (giờ Việt Nam, UTC+7)
+ * Cloud Function cập nhật bằng FieldValue.increment mỗi khi giao dịch/chuyển khoản thay đổi nên không
+ * cần đọc lại lịch sử. App lấy số dư tại một ngày bất kỳ bằng prefix sum trên days (WalletBalanceIndex.java).
+ * Giao dịch cũ không có walletId thuộc ví mặc định DEFAULT_WALLET_ID.
+ */
+const zlib = require('zlib');
+const { toIncrements } = require('./global-stats');
+
+const COLLECTION_WALLET_BALANCES = 'wallet_balances';
+const DEFAULT_WALLET_ID = 'default';
+// Ngày được tính theo giờ Việt Nam (UTC+7) giống spending_rollups và WalletBalanceIndex.java
+const UTC_OFFSET_MS = 7 * 60 * 60 * 1000;
+
+function toDate(value) {
+  if (!value) return null;
+  if (typeof value.toDate === 'function') return value.toDate();
+  if (value instanceof Date) return value;
+  return null;
+}
+
+function dayKey(date) {
+  const local = new Date(date.getTime() + UTC_OFFSET_MS);
+  return `${local.getUTCFullYear()}${String(local.getUTCMonth() + 1).padStart(2, '0')}` +
+    String(local.getUTCDate()).padStart(2, '0');
+}
+
+function balanceDocId(userId, walletId) {
+  return `${userId}_${walletId}`;
+}
+
+/**
+ * Biến động số dư của một giao dịch: chỉ giao dịch thực tế (không phải giao dịch định kỳ gốc)
+ */
+function toTransactionEntries(snap) {
+  if (!snap.exists) return [];
+  const data = snap.data();
+  const amount = Number(data.amount);
+  const date = toDate(data.date);
+  if (data.isRecurring === true || !data.userId || !date || !(amount >= 0)) {
+    return [];
+  }
+  return [{
+    userId: data.userId,
+    walletId: data.walletId || DEFAULT_WALLET_ID,
+    day: dayKey(date),
+    amount: data.type === 'income' ? amount : -amount
+  }];
+}
+
+/**
+ * Biến động số dư của một lần chuyển khoản: trừ ví nguồn, cộng ví đích
+ */
+function toTransferEntries(snap) {
+  if (!snap.exists) return [];
+  const data = snap.data();
+  const amount = Number(data.amount);
+  const date = toDate(data.date);
+  const from = data.fromWalletId || DEFAULT_WALLET_ID;
+  const to = data.toWalletId || DEFAULT_WALLET_ID;
+  if (!data.userId || !date || !(amount > 0) || from === to) {
+    return [];
+  }
+  const day = dayKey(date);
+  return [
+    { userId: data.userId, walletId: from, day, amount: -amount },
+    { userId: data.userId, walletId: to, day, amount }
+  ];
+}
+
+function sameEntries(before, after) {
+  return JSON.stringify(before) === JSON.stringify(after);
+}
+
+/**
+ * Cộng dồn biến động (sign = 1 thêm, -1 bớt) vào delta theo document số dư
+ */
+function addEntries(deltas, entries, sign) {
+  entries.forEach((entry) => {
+    const docId = balanceDocId(entry.userId, entry.walletId);
+    const delta = deltas.get(docId) || {
+      userId: entry.userId,
+      walletId: entry.walletId,
+      values: { balance: 0, days: {} }
+    };
+    delta.values.balance += sign * entry.amount;
+    delta.values.days[entry.day] = (delta.values.days[entry.day] || 0) + sign * entry.amount;
+    deltas.set(docId, delta);
+  });
+}
+
+async function applyWalletChange(db, beforeEntries, afterEntries) {
+  const deltas = new Map();
+  addEntries(deltas, beforeEntries, -1);
+  addEntries(deltas, afterEntries, 1);
+
+  const batch = db.batch();
+  let writes = 0;
+  deltas.forEach(({ userId, walletId, values }, docId) => {
+    const increments = toIncrements(values);
+    if (Object.keys(increments).length === 0) return;
+    batch.set(db.collection(COLLECTION_WALLET_BALANCES).doc(docId),
+      Object.assign({ userId, walletId }, increments), { merge: true });
+    writes++;
+  });
+  if (writes > 0) {
+    await batch.commit();
+  }
+}
+
+/**
+ * Tính lại toàn bộ wallet_balances từ transactions, transaction_archives và transfers
+ */
+async function rebuildWalletBalances(db) {
+  const totals = new Map();
+  const add = (entries) => entries.forEach((entry) => {
+    const docId = balanceDocId(entry.userId, entry.walletId);
+    const total = totals.get(docId) || { userId: entry.userId, walletId: entry.walletId, balance: 0, days: {} };
+    total.balance += entry.amount;
+    total.days[entry.day] = (total.days[entry.day] || 0) + entry.amount;
+    totals.set(docId, total);
+  });
+
+  const transactions = await db.collection('transactions')
+    .select('userId', 'walletId', 'type', 'amount', 'date', 'isRecurring')
+    .get();
+  transactions.docs.forEach((doc) => add(toTransactionEntries(doc)));
+
+  // Định dạng nén của TransactionArchiver: JSON (gzip) gồm các mảng song song
+  const archives = await db.collection('transaction_archives').get();
+  archives.docs.forEach((doc) => {
+    const data = doc.get('data');
+    const monthStart = toDate(doc.get('monthStart'));
+    const userId = doc.get('userId');
+    if (!data || !monthStart || !userId) return;
+    const packed = JSON.parse(zlib.gunzipSync(Buffer.from(data)).toString('utf8'));
+    (packed.amounts || []).forEach((amount, i) => {
+      const date = new Date(monthStart.getTime() + (packed.seconds[i] || 0) * 1000);
+      add([{
+        userId,
+        walletId: (packed.walletIds && packed.walletIds[i]) || DEFAULT_WALLET_ID,
+        day: dayKey(date),
+        amount: packed.types && packed.types[i] === 1 ? amount : -amount
+      }]);
+    });
+  });
+
+  const transfers = await db.collection('transfers').get();
+  transfers.docs.forEach((doc) => add(toTransferEntries(doc)));
+
+  const existing = await db.collection(COLLECTION_WALLET_BALANCES).get();
+  let batch = db.batch();
+  let operations = 0;
+  const flushIfFull = async () => {
+    if (++operations >= 400) {
+      await batch.commit();
+      batch = db.batch();
+      operations = 0;
+    }
+  };
+  for (const doc of existing.docs) {
+    if (!totals.has(doc.id)) {
+      batch.delete(doc.ref);
+      await flushIfFull();
+    }
+  }
+  for (const [docId, total] of totals) {
+    batch.set(db.collection(COLLECTION_WALLET_BALANCES).doc(docId), total);
+    await flushIfFull();
+  }
+  if (operations > 0) {
+    await batch.commit();
+  }
+  return {
+    wallets: totals.size,
+    transactions: transactions.size,
+    archives: archives.size,
+    transfers: transfers.size
+  };
+}
+
+module.exports = {
+  COLLECTION_WALLET_BALANCES,
+  DEFAULT_WALLET_ID,
+  dayKey,
+  toTransactionEntries,
+  toTransferEntries,
+  sameEntries,
+  applyWalletChange,
+  rebuildWalletBalances
+};